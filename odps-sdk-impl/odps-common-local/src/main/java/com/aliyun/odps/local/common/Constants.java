@@ -44,6 +44,18 @@ public class Constants {
   public static final int LIMIT_DOWNLOAD_RECORD = 10000;
   public static final int DEFAULT_DOWNLOAD_RECORD = 100;
   public static final String TUNNEL_ENDPOINT = "odps.tunnel.end.point";
+  // map 输出在内存中排序的大小上限(MB), 超过后写到本地临时文件
+  public static final String LOCAL_SORT_BUFFER_MB = "odps.mapred.local.sort.buffer.mb";
+  public static final int DEFAULT_SORT_BUFFER_MB = 256;
+  // 读取时同时归并的 spill 文件数上限, 超过后先把已有的 spill 文件归并为一个
+  public static final String LOCAL_SORT_MERGE_FACTOR = "odps.mapred.local.sort.merge.factor";
+  public static final int DEFAULT_SORT_MERGE_FACTOR = 64;
+  // 同时运行的 map/reduce task 数, 默认依次运行
+  public static final String LOCAL_WORKER_NUM = "odps.mapred.local.worker.num";
+  // graph 作业同时计算的 worker 线程数, 默认为 1, 即依次执行
+  public static final String LOCAL_GRAPH_WORKER_THREADS = "odps.graph.local.worker.threads";
+  // 是否把 graph 作业每个超步的消息写到作业目录, 用于调试
+  public static final String LOCAL_GRAPH_DUMP_MESSAGE = "odps.graph.local.dump.message";
 
   public static final String DATE_FORMAT_1 = "yyyyMMddHHmmss_SSS";
   public static final String DATE_FORMAT_2 = "yyyy-MM-dd HH:mm:ss SSS";
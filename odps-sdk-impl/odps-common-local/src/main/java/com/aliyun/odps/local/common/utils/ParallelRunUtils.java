@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.local.common.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.conf.Configuration;
+import com.aliyun.odps.local.common.WareHouse;
+
+/**
+ * 本地运行时并发执行同一阶段的多个 task
+ */
+public class ParallelRunUtils {
+
+  /**
+   * 同一阶段中的一个 task
+   */
+  public interface Task {
+
+    void run() throws IOException;
+  }
+
+  /**
+   * 创建执行 task 的线程池, threadNum 不大于 1 时返回 null, 此时 task 依次执行
+   */
+  public static ExecutorService newExecutor(int threadNum, final String threadNamePrefix) {
+    if (threadNum <= 1) {
+      return null;
+    }
+    final AtomicInteger threadIndex = new AtomicInteger();
+    return Executors.newFixedThreadPool(threadNum, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, threadNamePrefix + threadIndex.getAndIncrement());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * 运行所有 task, 全部完成后返回; executor 为 null 时在当前线程依次执行
+   */
+  public static void runAll(ExecutorService executor, List<? extends Task> tasks)
+      throws IOException {
+    if (executor == null) {
+      for (Task task : tasks) {
+        task.run();
+      }
+      return;
+    }
+
+    // WareHouse 的 odps 和配置保存在 ThreadLocal 中, 需要传给运行 task 的线程
+    final WareHouse wareHouse = WareHouse.getInstance();
+    final Odps odps = wareHouse.getOdps();
+    final Configuration whConf = wareHouse.getConfiguration();
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+    for (final Task task : tasks) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          wareHouse.setOdps(odps);
+          wareHouse.setConfiguration(whConf);
+          task.run();
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      // 有 task 失败时不再运行剩余的 task
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+}
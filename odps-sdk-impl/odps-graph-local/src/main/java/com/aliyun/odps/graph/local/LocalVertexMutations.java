@@ -83,7 +83,7 @@ public class LocalVertexMutations<I extends WritableComparable, V extends Writab
    * @param vertex
    *     Vertex to be added
    */
-  public void addVertex(Vertex<I, V, E, M> vertex) {
+  public synchronized void addVertex(Vertex<I, V, E, M> vertex) {
     if (addedVertexList == null) {
       addedVertexList = new ArrayList<Vertex<I, V, E, M>>(1);
     }
@@ -98,7 +98,7 @@ public class LocalVertexMutations<I extends WritableComparable, V extends Writab
   /**
    * Removed a vertex mutation (increments a count)
    */
-  public void removeVertex() {
+  public synchronized void removeVertex() {
     ++removedVertexCount;
   }
 
@@ -113,7 +113,7 @@ public class LocalVertexMutations<I extends WritableComparable, V extends Writab
    * @param edge
    *     Edge to be added
    */
-  public void addEdge(Edge<I, E> edge) {
+  public synchronized void addEdge(Edge<I, E> edge) {
     if (addedEdgeList == null) {
       addedEdgeList = new ArrayList<Edge<I, E>>(1);
     }
@@ -131,7 +131,7 @@ public class LocalVertexMutations<I extends WritableComparable, V extends Writab
    * @param destinationVertexId
    *     Vertex index of the destination of the edge
    */
-  public void removeEdge(I destinationVertexId) {
+  public synchronized void removeEdge(I destinationVertexId) {
     if (removedEdgeList == null) {
       removedEdgeList = new ArrayList<I>(1);
     }
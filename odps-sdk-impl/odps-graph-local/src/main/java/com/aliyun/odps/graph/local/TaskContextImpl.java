@@ -164,7 +164,8 @@ public class TaskContextImpl<VERTEX_ID extends WritableComparable<?>, VERTEX_VAL
           "ODPS-0730001: sendMessage: Cannot send null message to "
           + destVertexID);
     }
-    mWorker.getMaster().pushMsg(mCtx, getSuperstep() + 1, destVertexID, msg);
+    mWorker.getMaster().pushMsg(mCtx, getSuperstep() + 1, destVertexID, msg,
+                                mWorker.getCombiner());
   }
 
   @Override
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
@@ -34,6 +35,7 @@ import com.aliyun.odps.counter.CounterGroup;
 import com.aliyun.odps.counter.Counters;
 import com.aliyun.odps.data.TableInfo;
 import com.aliyun.odps.graph.Aggregator;
+import com.aliyun.odps.graph.Combiner;
 import com.aliyun.odps.graph.JobConf;
 import com.aliyun.odps.graph.Partitioner;
 import com.aliyun.odps.graph.VertexResolver;
@@ -47,7 +49,9 @@ import com.aliyun.odps.graph.local.worker.Worker;
 import com.aliyun.odps.graph.utils.VerifyUtils;
 import com.aliyun.odps.io.Writable;
 import com.aliyun.odps.io.WritableComparable;
+import com.aliyun.odps.local.common.Constants;
 import com.aliyun.odps.local.common.FileSplit;
+import com.aliyun.odps.local.common.utils.ParallelRunUtils;
 import com.aliyun.odps.utils.ReflectionUtils;
 
 @SuppressWarnings("rawtypes")
@@ -70,6 +74,17 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
   int totalVertex = 0;
   int totalEdge = 0;
 
+  // 各 worker 并发执行同一阶段, 为 null 时依次执行
+  private ExecutorService mExecutor;
+
+  /**
+   * 在一个 worker 上执行的阶段
+   */
+  private interface WorkerTask {
+
+    void run(Worker w) throws IOException;
+  }
+
   public Master(JobConf job, RuntimeContext ctx, List<FileSplit> inputs,
                 Map<String, TableInfo> outputs) throws Exception {
 
@@ -131,9 +146,12 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
   }
 
   private void initGraph() throws IOException {
-    for (Worker w : mWorkers) {
-      w.loadGraph();
-    }
+    runWorkers(new WorkerTask() {
+      @Override
+      public void run(Worker w) throws IOException {
+        w.loadGraph();
+      }
+    });
 
     VertexResolver vertexResolver = LocalGraphRunUtils
         .createLoadingVertexResolver(mJob);
@@ -232,6 +250,23 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
   }
 
   public void run() throws IOException {
+    int threadNum = mJob.getInt(Constants.LOCAL_GRAPH_WORKER_THREADS, 1);
+    threadNum = Math.min(threadNum, mWorkers.size());
+    if (threadNum > 1) {
+      LOG.info("Run workers in parallel, thread num: " + threadNum);
+    }
+    mExecutor = ParallelRunUtils.newExecutor(threadNum, "odps-graph-worker-");
+    try {
+      runSuperSteps();
+    } finally {
+      if (mExecutor != null) {
+        mExecutor.shutdownNow();
+        mExecutor = null;
+      }
+    }
+  }
+
+  private void runSuperSteps() throws IOException {
 
     WorkerSetup();
 
@@ -252,22 +287,32 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
 
       ++superStep;
 
-      for (Worker w : mWorkers) {
-        w.processNextStep();
-      }
+      runWorkers(new WorkerTask() {
+        @Override
+        public void run(Worker w) throws IOException {
+          w.processNextStep();
+        }
+      });
 
-      for (Worker w : mWorkers) {
-        w.Compute();
-      }
+      // 所有 worker 计算完成后才进入下一个超步
+      runWorkers(new WorkerTask() {
+        @Override
+        public void run(Worker w) throws IOException {
+          w.Compute();
+        }
+      });
 
       if (Aggregate()) {
         break;
       }
     }
 
-    for (Worker w : mWorkers) {
-      w.cleanup();
-    }
+    runWorkers(new WorkerTask() {
+      @Override
+      public void run(Worker w) throws IOException {
+        w.cleanup();
+      }
+    });
 
     for (Worker w : mWorkers) {
       w.close();
@@ -275,6 +320,22 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
     close();
   }
 
+  /**
+   * 在所有 worker 上执行 task, 全部完成后返回
+   */
+  private void runWorkers(final WorkerTask task) throws IOException {
+    List<ParallelRunUtils.Task> tasks = new ArrayList<ParallelRunUtils.Task>(mWorkers.size());
+    for (final Worker w : mWorkers) {
+      tasks.add(new ParallelRunUtils.Task() {
+        @Override
+        public void run() throws IOException {
+          task.run(w);
+        }
+      });
+    }
+    ParallelRunUtils.runAll(mExecutor, tasks);
+  }
+
   private Worker getWorkerByVertexID(VERTEX_ID vertex_id) {
     int worker_id = p.getPartition(vertex_id, mWorkers.size());
     return mWorkers.get(worker_id);
@@ -291,9 +352,8 @@ public class Master<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
 
   @SuppressWarnings("unchecked")
   public void pushMsg(RuntimeContext context, long superStep,
-                      VERTEX_ID vertexId, Writable msg) {
-    getWorkerByVertexID(vertexId).pushMsg(context, superStep, vertexId, msg);
-
+                      VERTEX_ID vertexId, Writable msg, Combiner combiner) throws IOException {
+    getWorkerByVertexID(vertexId).pushMsg(context, superStep, vertexId, msg, combiner);
   }
 
 }
@@ -22,42 +22,135 @@ package com.aliyun.odps.graph.local.message;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.io.FileUtils;
 
+import com.aliyun.odps.conf.Configuration;
+import com.aliyun.odps.graph.Combiner;
+import com.aliyun.odps.io.DataInputBuffer;
+import com.aliyun.odps.io.DataOutputBuffer;
 import com.aliyun.odps.io.Writable;
+import com.aliyun.odps.io.WritableComparable;
+import com.aliyun.odps.io.WritableUtils;
+import com.aliyun.odps.utils.ReflectionUtils;
 
+/**
+ * 发往一个点的消息
+ *
+ * <p>
+ * 没有 combiner 时, 消息在发送时序列化后追加到字节数组中, 读取时再反序列化;
+ * 有 combiner 时, 只保存合并后的一条消息. 发送方可以在发送后继续修改消息对象.
+ *
+ * <p>
+ * 读取时所有消息都按第一条消息的类型反序列化, 因此发往同一个点的消息必须是同一个类型,
+ * 与集群上按作业的消息类型序列化一致; 类型不同时 {@link #addMessage(Writable)} 抛出异常.
+ *
+ * <p>
+ * combiner 在发送时由发送方 worker 的实例调用, 而不是在接收方计算前统一调用.
+ * 多个 worker 并发发送时合并的顺序不确定, combiner 需要满足交换律和结合律.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
 public class MsgBuffer {
 
-  private List<Writable> msges;
+  private final Configuration conf;
 
-  public MsgBuffer() {
-    msges = new ArrayList<Writable>();
+  private Class<? extends Writable> msgClass;
+  private DataOutputBuffer data;
+  private int count = 0;
+
+  private Writable combined;
+
+  public MsgBuffer(Configuration conf) {
+    this.conf = conf;
   }
 
-  public void addMessage(Writable msg) {
-    synchronized (msges) {
-      msges.add(msg);
+  public synchronized void addMessage(Writable msg) throws IOException {
+    if (msgClass == null) {
+      msgClass = msg.getClass();
+      data = new DataOutputBuffer();
+    } else if (msgClass != msg.getClass()) {
+      throw new IllegalArgumentException(
+          "ODPS-0730001: messages sent to one vertex must be of the same class, expected "
+          + msgClass.getName() + ", but " + msg.getClass().getName());
     }
+    msg.write(data);
+    count++;
   }
 
-  public boolean hasMessages() {
-    synchronized (msges) {
-      return msges.size() > 0;
+  /**
+   * 使用发送方的 combiner 把消息合并到已有的消息中
+   */
+  public synchronized void combineMessage(WritableComparable vertexId, Writable msg,
+                                          Combiner combiner) throws IOException {
+    if (combined == null) {
+      combined = WritableUtils.clone(msg, conf);
+    } else {
+      combiner.combine(vertexId, combined, msg);
     }
+    count = 1;
   }
 
-  public List<Writable> getMessages() {
-    synchronized (msges) {
-      return msges;
+  public synchronized boolean hasMessages() {
+    return count > 0;
+  }
+
+  public synchronized Iterable<Writable> getMessages() {
+    if (combined != null) {
+      return Collections.singletonList(combined);
     }
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    final byte[] bytes = data.getData();
+    final int length = data.getLength();
+    final int total = count;
+    return new Iterable<Writable>() {
+      @Override
+      public Iterator<Writable> iterator() {
+        final DataInputBuffer in = new DataInputBuffer();
+        in.reset(bytes, length);
+        return new Iterator<Writable>() {
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return index < total;
+          }
+
+          @Override
+          public Writable next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Writable msg = ReflectionUtils.newInstance(msgClass, conf);
+            try {
+              msg.readFields(in);
+            } catch (IOException e) {
+              throw new RuntimeException("Read message failed", e);
+            }
+            index++;
+            return msg;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
   }
 
   public void dump(File out) throws IOException {
-    synchronized (msges) {
-      FileUtils.writeLines(out, msges);
+    List<Writable> msges = new ArrayList<Writable>();
+    for (Writable msg : getMessages()) {
+      msges.add(msg);
     }
+    FileUtils.writeLines(out, msges);
   }
 
 }
@@ -25,30 +25,45 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.aliyun.odps.graph.Combiner;
+import com.aliyun.odps.graph.JobConf;
 import com.aliyun.odps.graph.local.RuntimeContext;
 import com.aliyun.odps.io.Writable;
 import com.aliyun.odps.io.WritableComparable;
+import com.aliyun.odps.local.common.Constants;
 
 public class MsgManager {
 
   private static Log LOG = LogFactory.getLog(MsgManager.class);
 
-  public MsgManager() {
-    curBuffer = new SuperStepBuffer(-1);
-    nextBuffer = new SuperStepBuffer(0);
+  public MsgManager(JobConf conf) {
+    this.conf = conf;
+    dumpMessage = conf.getBoolean(Constants.LOCAL_GRAPH_DUMP_MESSAGE, false);
+    curBuffer = new SuperStepBuffer(-1, conf);
+    nextBuffer = new SuperStepBuffer(0, conf);
   }
 
+  private final JobConf conf;
+  // 把每个超步的消息写到作业目录, 仅用于调试
+  private final boolean dumpMessage;
   private SuperStepBuffer curBuffer = null;
   private SuperStepBuffer nextBuffer = null;
 
+  /**
+   * 发送下一个超步的消息
+   *
+   * @param combiner
+   *     发送方 worker 的 combiner, 为 null 时不合并消息
+   */
   public void pushMsg(RuntimeContext context, long superStep,
-                      WritableComparable<?> vertexId, Writable msg) {
+                      WritableComparable<?> vertexId, Writable msg, Combiner combiner)
+      throws IOException {
     if (superStep != nextBuffer.getSuperStep()) {
       throw new RuntimeException(
           "Internal error, super step is inconsistent, expected "
           + nextBuffer.getSuperStep() + ", but " + superStep);
     }
-    nextBuffer.pushMsg(vertexId, msg);
+    nextBuffer.pushMsg(vertexId, msg, combiner);
   }
 
   public boolean hasMessageForVertex(RuntimeContext context, long superStep,
@@ -74,10 +89,12 @@ public class MsgManager {
   public void nextSuperStep(RuntimeContext context)
       throws IOException {
     // dump next buffer, from 0
-    nextBuffer.dump(context);
+    if (dumpMessage) {
+      nextBuffer.dump(context);
+    }
 
     curBuffer = nextBuffer;
-    nextBuffer = new SuperStepBuffer(curBuffer.getSuperStep() + 1);
+    nextBuffer = new SuperStepBuffer(curBuffer.getSuperStep() + 1, conf);
   }
 
   public Set<WritableComparable<?>> getVertexIDList() {
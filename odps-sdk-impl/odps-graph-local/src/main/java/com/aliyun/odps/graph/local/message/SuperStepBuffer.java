@@ -21,12 +21,13 @@ package com.aliyun.odps.graph.local.message;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.aliyun.odps.conf.Configuration;
+import com.aliyun.odps.graph.Combiner;
 import com.aliyun.odps.graph.local.RuntimeContext;
 import com.aliyun.odps.io.Writable;
 import com.aliyun.odps.io.WritableComparable;
@@ -34,11 +35,14 @@ import com.aliyun.odps.io.WritableComparable;
 public class SuperStepBuffer {
 
   private long superStep;
-  private Map<WritableComparable<?>, MsgBuffer> msgBuffer = null;
+  private final Configuration conf;
+  // 多个 worker 可能同时向同一个 worker 发送消息
+  private ConcurrentHashMap<WritableComparable<?>, MsgBuffer> msgBuffer = null;
 
-  public SuperStepBuffer(long superstep) {
+  public SuperStepBuffer(long superstep, Configuration conf) {
     superStep = superstep;
-    msgBuffer = new HashMap<WritableComparable<?>, MsgBuffer>();
+    this.conf = conf;
+    msgBuffer = new ConcurrentHashMap<WritableComparable<?>, MsgBuffer>();
   }
 
   public void setSuperStep(long superstep) {
@@ -49,23 +53,38 @@ public class SuperStepBuffer {
     return this.superStep;
   }
 
-  public void pushMsg(WritableComparable<?> vertexId, Writable msg) {
-    if (msgBuffer.containsKey(vertexId)) {
-      msgBuffer.get(vertexId).addMessage(msg);
+  private MsgBuffer getOrCreateBuffer(WritableComparable<?> vertexId) {
+    MsgBuffer buffer = msgBuffer.get(vertexId);
+    if (buffer == null) {
+      buffer = new MsgBuffer(conf);
+      MsgBuffer old = msgBuffer.putIfAbsent(vertexId, buffer);
+      if (old != null) {
+        buffer = old;
+      }
+    }
+    return buffer;
+  }
+
+  public void pushMsg(WritableComparable<?> vertexId, Writable msg, Combiner combiner)
+      throws IOException {
+    if (combiner != null) {
+      getOrCreateBuffer(vertexId).combineMessage(vertexId, msg, combiner);
     } else {
-      MsgBuffer buffer = new MsgBuffer();
-      buffer.addMessage(msg);
-      msgBuffer.put(vertexId, buffer);
+      getOrCreateBuffer(vertexId).addMessage(msg);
     }
   }
 
   public boolean hasMsg(WritableComparable<?> vertexId) {
-    return msgBuffer.containsKey(vertexId)
-           && msgBuffer.get(vertexId).hasMessages();
+    MsgBuffer buffer = msgBuffer.get(vertexId);
+    return buffer != null && buffer.hasMessages();
   }
 
   public Iterable<Writable> popMsges(final WritableComparable<?> vertexId) {
-    return new MsgIterable(vertexId);
+    MsgBuffer buffer = msgBuffer.get(vertexId);
+    if (buffer == null) {
+      return Collections.emptyList();
+    }
+    return buffer.getMessages();
   }
 
   public void dump(RuntimeContext context) throws IOException {
@@ -86,23 +105,4 @@ public class SuperStepBuffer {
     return !msgBuffer.isEmpty();
   }
 
-  class MsgIterable implements Iterable<Writable> {
-
-    private WritableComparable<?> vertexId;
-
-    public MsgIterable(WritableComparable<?> id) {
-      this.vertexId = id;
-    }
-
-    @Override
-    public Iterator<Writable> iterator() {
-      // TODO Auto-generated method stub
-      if (msgBuffer.containsKey(vertexId)) {
-        return msgBuffer.get(vertexId).getMessages().iterator();
-      } else {
-        return new ArrayList<Writable>().iterator();
-      }
-    }
-
-  }
 }
@@ -119,7 +119,9 @@ public class Worker<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
     mCounters = new Counters();
 
     mAggregators = LocalGraphRunUtils.getAggregator(mJob);
-    mMsgManager = new MsgManager();
+    mMsgManager = new MsgManager(mJob);
+    // 加载图时就可能发送消息, 需要提前创建 combiner
+    initCombiner();
 
     mTaskContext = new TaskContextImpl(mCtx, mJob, this, mWorkerID, mWorkerNum,
                                        mOutputs, mCounters);
@@ -239,7 +241,6 @@ public class Worker<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
 
   @SuppressWarnings("unchecked")
   public void init() throws IOException {
-    initCombiner();
     initWorkerComputer();
     initAggregatorValues();
 
@@ -348,7 +349,7 @@ public class Worker<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
     return vertices.size();
   }
 
-  public LocalVertexMutations getVertexMutations(VERTEX_ID id) {
+  public synchronized LocalVertexMutations getVertexMutations(VERTEX_ID id) {
     LocalVertexMutations ret = mVertexMutations.get(id);
     if (ret == null) {
       ret = new LocalVertexMutations();
@@ -362,8 +363,13 @@ public class Worker<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
   }
 
   public void pushMsg(RuntimeContext context, long superStep,
-                      WritableComparable<?> vertexId, Writable msg) {
-    mMsgManager.pushMsg(context, superStep, vertexId, msg);
+                      WritableComparable<?> vertexId, Writable msg, Combiner combiner)
+      throws IOException {
+    mMsgManager.pushMsg(context, superStep, vertexId, msg, combiner);
+  }
+
+  public Combiner getCombiner() {
+    return mCombiner;
   }
 
   public void close() throws IOException {
@@ -386,39 +392,15 @@ public class Worker<VERTEX_ID extends WritableComparable<?>, VERTEX_VALUE extend
     mWorkerComputer.cleanup(mTaskContext);
   }
 
-  @SuppressWarnings("unchecked")
-  private Iterable<Writable> combineMsg(WritableComparable id,
-                                        Iterable<Writable> msgs) throws IOException {
-    if (mCombiner != null) {
-      Writable combineMsg = null;
-      for (Writable msg : msgs) {
-        if (combineMsg == null) {
-          combineMsg = msg;
-        } else {
-          mCombiner.combine(id, combineMsg, msg);
-        }
-      }
-      ArrayList<Writable> combinedMsgs = new ArrayList<Writable>();
-      if (combineMsg != null) {
-        combinedMsgs.add(combineMsg);
-      }
-      return combinedMsgs;
-    } else {
-      return msgs;
-    }
-  }
-
   private void prepareMsg() throws IOException {
     long superStep = master.getSuperStep();
     LOG.debug("worker super step " + superStep + ", vertices count "
               + vertices.size());
     mLastStepMessage.clear();
     for (Vertex v : vertices.values()) {
+      // 发送消息时已经用发送方 worker 的 combiner 合并, 这里不再合并
       Iterable<Writable> msgs = mMsgManager
           .popMsges(mCtx, superStep, v.getId());
-      if (mCombiner != null) {
-        msgs = combineMsg(v.getId(), msgs);
-      }
       mLastStepMessage.put(v, msgs);
     }
 
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.examples.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.data.TableInfo;
+import com.aliyun.odps.graph.Combiner;
+import com.aliyun.odps.graph.ComputeContext;
+import com.aliyun.odps.graph.GraphJob;
+import com.aliyun.odps.graph.GraphLoader;
+import com.aliyun.odps.graph.MutationContext;
+import com.aliyun.odps.graph.Vertex;
+import com.aliyun.odps.graph.WorkerContext;
+import com.aliyun.odps.io.LongWritable;
+import com.aliyun.odps.io.WritableRecord;
+import com.aliyun.odps.local.common.Constants;
+import com.aliyun.odps.local.common.WareHouse;
+import com.aliyun.odps.mapred.conf.SessionState;
+
+/**
+ * 多个线程并发运行 worker 时, 结果与依次运行相同; 发送方使用 combiner 合并消息
+ */
+public class ParallelWorkerTest {
+
+  private static final String PROJECT = TestUtils.yzy2;
+  private static final String OUTPUT_TABLE = "parallel_worker_out";
+
+  // sssp_in 的每条记录生成的点数
+  private static final int VERTICES_PER_RECORD = 200;
+  private static final int VERTEX_NUM = 5 * VERTICES_PER_RECORD;
+
+  private File tempDir;
+
+  // 运行 compute 的线程
+  private static final Set<String> COMPUTE_THREADS =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private static final AtomicLong COMBINE_COUNT = new AtomicLong();
+  // compute 一次收到的最多消息数
+  private static final AtomicInteger MAX_MESSAGES = new AtomicInteger();
+
+  /**
+   * 从点 0 开始的单源最短路径
+   */
+  public static class DistanceVertex extends
+                                     Vertex<LongWritable, LongWritable, LongWritable, LongWritable> {
+
+    @Override
+    public void compute(
+        ComputeContext<LongWritable, LongWritable, LongWritable, LongWritable> context,
+        Iterable<LongWritable> messages) throws IOException {
+      COMPUTE_THREADS.add(Thread.currentThread().getName());
+      long minDist = getId().get() == 0 ? 0 : Long.MAX_VALUE;
+      int count = 0;
+      for (LongWritable msg : messages) {
+        minDist = Math.min(minDist, msg.get());
+        count++;
+      }
+      int max;
+      while ((max = MAX_MESSAGES.get()) < count && !MAX_MESSAGES.compareAndSet(max, count)) {
+      }
+
+      if (minDist < getValue().get()) {
+        setValue(new LongWritable(minDist));
+        // 所有出边复用同一个消息对象
+        LongWritable msg = new LongWritable();
+        for (long dest : destinations(getId().get())) {
+          msg.set(minDist + weight(getId().get(), dest));
+          context.sendMessage(new LongWritable(dest), msg);
+        }
+      }
+      voteToHalt();
+    }
+
+    @Override
+    public void cleanup(
+        WorkerContext<LongWritable, LongWritable, LongWritable, LongWritable> context)
+        throws IOException {
+      context.write(getId(), getValue());
+    }
+  }
+
+  public static class MinCombiner extends Combiner<LongWritable, LongWritable> {
+
+    @Override
+    public void combine(LongWritable vertexId, LongWritable combinedMessage,
+                        LongWritable messageToCombine) throws IOException {
+      COMBINE_COUNT.incrementAndGet();
+      if (combinedMessage.get() > messageToCombine.get()) {
+        combinedMessage.set(messageToCombine.get());
+      }
+    }
+  }
+
+  public static class DistanceLoader extends
+                                     GraphLoader<LongWritable, LongWritable, LongWritable, LongWritable> {
+
+    @Override
+    public void load(
+        LongWritable recordNum,
+        WritableRecord record,
+        MutationContext<LongWritable, LongWritable, LongWritable, LongWritable> context)
+        throws IOException {
+      long first = (((LongWritable) record.get(0)).get() - 1) * VERTICES_PER_RECORD;
+      for (long id = first; id < first + VERTICES_PER_RECORD; id++) {
+        DistanceVertex vertex = new DistanceVertex();
+        vertex.setId(new LongWritable(id));
+        vertex.setValue(new LongWritable(Long.MAX_VALUE));
+        context.addVertexRequest(vertex);
+      }
+    }
+  }
+
+  private static long[] destinations(long id) {
+    return new long[]{(id + 1) % VERTEX_NUM, (id * 7 + 3) % VERTEX_NUM,
+                      (id * 13 + 5) % VERTEX_NUM};
+  }
+
+  private static long weight(long from, long to) {
+    return (from * 31 + to) % 17 + 1;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory("parallel_worker").toFile();
+    // 只读写本地 warehouse 中的表
+    Odps odps = new Odps(new AliyunAccount("ak", "sk"));
+    odps.setDefaultProject(PROJECT);
+    odps.setEndpoint("http://127.0.0.1:1/api");
+    SessionState.get().setOdps(odps);
+    SessionState.get().setLocalRun(true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    WareHouse.getInstance().dropTableDataIfExists(PROJECT, OUTPUT_TABLE, null);
+    FileUtils.deleteQuietly(tempDir);
+  }
+
+  private List<String> runJob(int threadNum, boolean combine) throws Exception {
+    COMPUTE_THREADS.clear();
+    COMBINE_COUNT.set(0);
+    MAX_MESSAGES.set(0);
+    WareHouse wareHouse = WareHouse.getInstance();
+    wareHouse.dropTableDataIfExists(PROJECT, OUTPUT_TABLE, null);
+
+    GraphJob job = new GraphJob();
+    job.setGraphLoaderClass(DistanceLoader.class);
+    job.setVertexClass(DistanceVertex.class);
+    if (combine) {
+      job.setCombinerClass(MinCombiner.class);
+    }
+    job.setNumWorkers(4);
+    job.setInt(Constants.LOCAL_GRAPH_WORKER_THREADS, threadNum);
+    job.set(Constants.LOCAL_TEMP_DIR, tempDir.getPath());
+    job.addInput(TableInfo.builder().tableName("sssp_in").build());
+    job.addOutput(TableInfo.builder().tableName(OUTPUT_TABLE).build());
+    job.run();
+
+    List<String> rows = new ArrayList<String>();
+    for (Object[] row : wareHouse.readData(PROJECT, OUTPUT_TABLE, null, null, ',')) {
+      rows.add(Arrays.asList(row).toString());
+    }
+    // 多个 worker 的输出文件顺序不固定
+    Collections.sort(rows);
+    return rows;
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    List<String> serial = runJob(1, false);
+    Assert.assertEquals(VERTEX_NUM, serial.size());
+    Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), COMPUTE_THREADS);
+    Assert.assertTrue(MAX_MESSAGES.get() > 1);
+
+    Assert.assertEquals(serial, runJob(4, false));
+    Assert.assertTrue(COMPUTE_THREADS.size() > 1);
+    for (String thread : COMPUTE_THREADS) {
+      Assert.assertTrue(thread, thread.startsWith("odps-graph-worker-"));
+    }
+  }
+
+  @Test
+  public void testCombiner() throws Exception {
+    List<String> expected = runJob(1, false);
+    Assert.assertEquals(0, COMBINE_COUNT.get());
+
+    // 每个点在一个超步中最多收到一条合并后的消息
+    Assert.assertEquals(expected, runJob(1, true));
+    Assert.assertTrue(COMBINE_COUNT.get() > 0);
+    Assert.assertEquals(1, MAX_MESSAGES.get());
+
+    Assert.assertEquals(expected, runJob(4, true));
+    Assert.assertTrue(COMBINE_COUNT.get() > 0);
+    Assert.assertEquals(1, MAX_MESSAGES.get());
+  }
+}
@@ -23,7 +23,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -545,6 +547,215 @@ public class LotMapperUDTF extends LotTaskUDTF {
       }
     }
 
+    /**
+     * Combine context with a memory budget. Map outputs are aggregated in a hash table keyed by
+     * the grouping columns, and only sorted when the buffered data exceeds the budget and the
+     * combiner runs.
+     */
+    class HashCombineContextImpl extends DirectMapContextImpl implements
+                                                    com.aliyun.odps.mapred.Reducer.TaskContext, CombineContext {
+
+      /**
+       * Key row wrapper, equal when the grouping columns are equal.
+       */
+      private class GroupKey {
+
+        private final Object[] key;
+        private final int hash;
+
+        GroupKey(Object[] key) {
+          this.key = key;
+          int h = 1;
+          for (int idx : groupIndexes) {
+            h = 31 * h + (key[idx] == null ? 0 : key[idx].hashCode());
+          }
+          this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+          return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+          if (!(o instanceof GroupKey)) {
+            return false;
+          }
+          GroupKey other = (GroupKey) o;
+          if (hash != other.hash) {
+            return false;
+          }
+          for (int idx : groupIndexes) {
+            Object a = key[idx];
+            Object b = other.key[idx];
+            if (a == null ? b != null : !a.equals(b)) {
+              return false;
+            }
+          }
+          return true;
+        }
+      }
+
+      private static final String COUNTER_GROUP = "ODPS_SDK_FRAMEWORK_COUNTER_GROUP";
+
+      private Record key;
+      private Record value;
+      private int[] groupIndexes;
+      private Comparator<Object[]> keyComparator;
+      private long memoryLimit;
+      private long memoryUsed = 0;
+
+      private HashMap<GroupKey, List<Object[]>> combinerBuffer =
+          new HashMap<GroupKey, List<Object[]>>();
+      private Iterator<Entry<GroupKey, List<Object[]>>> itr;
+      private NonGroupingRecordIterator recordsItr;
+
+      private long inputRecords = 0;
+      private long outputRecords = 0;
+      private Counter inputCounter;
+      private Counter outputCounter;
+      private Counter spillCounter;
+      // combine ratio of this task, output records * 100 / input records
+      private Counter ratioCounter;
+
+      public HashCombineContextImpl(BridgeJobConf conf, long memoryLimit,
+          Comparator<Object[]> keyComparator, String[] keyGrpColumns, Column[] keyRS,
+          ExecutionContext context) {
+        super(conf, null, context);
+
+        if (pipeMode) {
+          key = new WritableRecord(pipeNode.getOutputKeySchema());
+          value = new WritableRecord(pipeNode.getOutputValueSchema());
+        } else {
+          key = new WritableRecord(conf.getMapOutputKeySchema());
+          value = new WritableRecord(conf.getMapOutputValueSchema());
+        }
+
+        this.memoryLimit = memoryLimit;
+        this.keyComparator = keyComparator;
+        groupIndexes = new int[keyGrpColumns.length];
+        for (int i = 0; i < keyGrpColumns.length; i++) {
+          groupIndexes[i] = -1;
+          for (int j = 0; j < keyRS.length; j++) {
+            if (keyRS[j].getName().equalsIgnoreCase(keyGrpColumns[i])) {
+              groupIndexes[i] = j;
+              break;
+            }
+          }
+          if (groupIndexes[i] < 0) {
+            throw new IllegalArgumentException("Grouping column not found in key schema: "
+                                               + keyGrpColumns[i]);
+          }
+        }
+
+        // not to break counters number limit
+        try {
+          inputCounter = getCounter(COUNTER_GROUP, "combine_input_records");
+          outputCounter = getCounter(COUNTER_GROUP, "combine_output_records");
+          spillCounter = getCounter(COUNTER_GROUP, "combine_spill_count");
+          ratioCounter = getCounter(COUNTER_GROUP, "combine_ratio_percent");
+        } catch (IllegalArgumentException e) {
+          inputCounter = null;
+        }
+      }
+
+      @Override
+      public void write(Record r) throws IOException {
+        ProxiedMapContextImpl.this.write(r);
+      }
+
+      @Override
+      public void write(Record r, String label) throws IOException {
+        ProxiedMapContextImpl.this.write(r, label);
+      }
+
+      @Override
+      public Record getCurrentKey() {
+        return key;
+      }
+
+      @Override
+      public boolean nextKeyValue() {
+        if (itr.hasNext()) {
+          Entry<GroupKey, List<Object[]>> entry = itr.next();
+          recordsItr = new NonGroupingRecordIterator(entry.getValue(), (WritableRecord) value);
+          key.set(Arrays.copyOf(entry.getKey().key, key.getColumnCount()));
+          return true;
+        }
+        return false;
+      }
+
+      @Override
+      public Iterator<Record> getValues() {
+        return recordsItr;
+      }
+
+      @Override
+      public void write(Record key, Record value) {
+        outputRecords++;
+        ProxiedMapContextImpl.this.writeDirect(key, value);
+      }
+
+      @Override
+      public void offerKeyValue(Record key, Record value) throws InterruptedException {
+        Object[] objValue =
+            Arrays.copyOf(((WritableRecord) value).toWritableArray(), value.getColumnCount());
+        GroupKey groupKey = new GroupKey(
+            Arrays.copyOf(((WritableRecord) key).toWritableArray(), key.getColumnCount()));
+        List<Object[]> values = combinerBuffer.get(groupKey);
+        if (values == null) {
+          values = new ArrayList<Object[]>(1);
+          combinerBuffer.put(groupKey, values);
+          // key row, hash map entry and value list
+          memoryUsed += MapReduceUtils.estimateSize(groupKey.key) + 96;
+        }
+        values.add(objValue);
+        memoryUsed += MapReduceUtils.estimateSize(objValue);
+        inputRecords++;
+
+        if (memoryUsed >= memoryLimit) {
+          spill();
+        }
+      }
+
+      /**
+       * Sort the buffered groups and run the combiner on them.
+       */
+      @Override
+      public void spill() {
+        if (combinerBuffer.isEmpty()) {
+          return;
+        }
+        List<Entry<GroupKey, List<Object[]>>> entries =
+            new ArrayList<Entry<GroupKey, List<Object[]>>>(combinerBuffer.entrySet());
+        Collections.sort(entries, new Comparator<Entry<GroupKey, List<Object[]>>>() {
+          @Override
+          public int compare(Entry<GroupKey, List<Object[]>> o1,
+                             Entry<GroupKey, List<Object[]>> o2) {
+            return keyComparator.compare(o1.getKey().key, o2.getKey().key);
+          }
+        });
+        this.itr = entries.iterator();
+
+        try {
+          MapReduceUtils.runReducer((Class<Reducer>) this.getCombinerClass(), this);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        } finally {
+          combinerBuffer.clear();
+          memoryUsed = 0;
+        }
+
+        if (inputCounter != null) {
+          inputCounter.setValue(inputRecords);
+          outputCounter.setValue(outputRecords);
+          spillCounter.increment(1);
+          ratioCounter.setValue(inputRecords == 0 ? 0 : outputRecords * 100 / inputRecords);
+        }
+      }
+    }
+
     CombineContext combineCtx;
 
     @SuppressWarnings({"unchecked", "rawtypes"})
@@ -586,8 +797,15 @@ public class LotMapperUDTF extends LotTaskUDTF {
         keyComparator = new ColumnBasedRecordComparator(keySortColumns, keyRS, keySortOrder);
       }
 
-      if (conf.getCombinerOptimizeEnable() && Arrays.deepEquals(keySortColumns, keyGrpColumns)
-          && keyComparatorClass == keyGroupingComparatorClass) {
+      int cacheMemory = conf.getCombinerCacheMemory();
+      if (cacheMemory > 0 && keyComparatorClass == null && keyGroupingComparatorClass == null
+          && Arrays.deepEquals(keySortColumns, keyGrpColumns)) {
+        // grouping is plain column equality, so the buffered rows can be hashed
+        combineCtx = new HashCombineContextImpl(conf, cacheMemory * 1024L * 1024L, keyComparator,
+                                                keyGrpColumns, keyRS, context);
+      } else if (conf.getCombinerOptimizeEnable()
+                 && Arrays.deepEquals(keySortColumns, keyGrpColumns)
+                 && keyComparatorClass == keyGroupingComparatorClass) {
         combineCtx =
             new NonGroupingCombineContextImpl(conf, bufferSize, combineBufferSpillPercent,
                 keyComparator, context);
@@ -27,6 +27,7 @@ import java.util.List;
 
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.TableInfo;
+import com.aliyun.odps.io.BinaryComparable;
 import com.aliyun.odps.mapred.Mapper;
 import com.aliyun.odps.mapred.Reducer;
 import com.aliyun.odps.mapred.TaskContext;
@@ -171,6 +172,24 @@ public class MapReduceUtils {
     }
   }
 
+  /**
+   * Estimate the heap size of a buffered row, in bytes.
+   *
+   * @param row
+   * @return estimated size
+   */
+  public static long estimateSize(Object[] row) {
+    long size = 16 + 8L * row.length;
+    for (Object field : row) {
+      if (field instanceof BinaryComparable) {
+        size += 48 + ((BinaryComparable) field).getLength();
+      } else if (field != null) {
+        size += 24;
+      }
+    }
+    return size;
+  }
+
   /**
    * Check if TableInfo existing is semantically included by desc.
    *
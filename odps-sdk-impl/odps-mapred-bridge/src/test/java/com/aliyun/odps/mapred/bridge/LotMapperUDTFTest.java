@@ -200,6 +200,67 @@ public class LotMapperUDTFTest {
     assertEquals(new LongWritable(1), forwarded.get(3)[1]);
   }
 
+  @Test
+  public void testHashCombiner() throws Exception {
+    conf.setCombinerCacheMemory(1);
+    conf.setMapperClass(WordCount.TokenizerMapper.class);
+    conf.setCombinerClass(WordCount.SumCombiner.class);
+    conf.setMapOutputKeySchema(SchemaUtils.fromString("word:string"));
+    conf.setMapOutputValueSchema(SchemaUtils.fromString("count:bigint"));
+    MockMapperUDTF udtf = new MockMapperUDTF(conf, testData);
+
+    udtf.setup(ctx);
+    udtf.run();
+    udtf.close();
+
+    List<Object[]> forwarded = udtf.getForwarded();
+    assertEquals(4, forwarded.size());
+    assertEquals(new Text("be"), forwarded.get(0)[0]);
+    assertEquals(new LongWritable(2), forwarded.get(0)[1]);
+    assertEquals(new Text("not"), forwarded.get(1)[0]);
+    assertEquals(new LongWritable(1), forwarded.get(1)[1]);
+    assertEquals(new Text("or"), forwarded.get(2)[0]);
+    assertEquals(new LongWritable(1), forwarded.get(2)[1]);
+    assertEquals(new Text("to"), forwarded.get(3)[0]);
+    assertEquals(new LongWritable(2), forwarded.get(3)[1]);
+
+    String group = "ODPS_SDK_FRAMEWORK_COUNTER_GROUP";
+    assertEquals(6, ctx.getCounter(group, "combine_input_records").getValue());
+    assertEquals(4, ctx.getCounter(group, "combine_output_records").getValue());
+    assertEquals(1, ctx.getCounter(group, "combine_spill_count").getValue());
+    assertEquals(66, ctx.getCounter(group, "combine_ratio_percent").getValue());
+  }
+
+  @Test
+  public void testHashCombinerSpill() throws Exception {
+    conf.setCombinerCacheMemory(1);
+    conf.setMapperClass(WordCount.TokenizerMapper.class);
+    conf.setCombinerClass(WordCount.SumCombiner.class);
+    conf.setMapOutputKeySchema(SchemaUtils.fromString("word:string"));
+    conf.setMapOutputValueSchema(SchemaUtils.fromString("count:bigint"));
+    MockMapperUDTF udtf = new MockMapperUDTF(conf, testData);
+
+    udtf.setup(ctx);
+    Object[][] testData = new Object[100000][1];
+    for (int i = 0; i < 100000; i++) {
+      testData[i] = new Object[]{new Text(RandomStringUtils.randomAlphabetic(3))};
+    }
+    udtf.setTestData(testData);
+    udtf.run();
+    udtf.close();
+
+    int sum = 0;
+    for (Object[] item : udtf.getForwarded()) {
+      sum += ((LongWritable) item[1]).get();
+    }
+    assertEquals(100000, sum);
+    // 超过 1MB 后 spill, 每次 spill 输出的 key 不重复
+    String group = "ODPS_SDK_FRAMEWORK_COUNTER_GROUP";
+    assertTrue(ctx.getCounter(group, "combine_spill_count").getValue() > 1);
+    assertEquals(udtf.getForwarded().size(),
+                 ctx.getCounter(group, "combine_output_records").getValue());
+  }
+
   @Test
   public void testEmptyInputWithCombiner() throws Exception {
     conf.setMapperClass(WordCount.TokenizerMapper.class);
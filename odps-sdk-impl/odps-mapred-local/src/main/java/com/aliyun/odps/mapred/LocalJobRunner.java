@@ -33,6 +33,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -59,6 +60,7 @@ import com.aliyun.odps.local.common.security.ApplicatitionType;
 import com.aliyun.odps.local.common.security.SecurityClient;
 import com.aliyun.odps.local.common.utils.DownloadUtils;
 import com.aliyun.odps.local.common.utils.LocalRunUtils;
+import com.aliyun.odps.local.common.utils.ParallelRunUtils;
 import com.aliyun.odps.local.common.utils.PartitionUtils;
 import com.aliyun.odps.local.common.utils.SchemaUtils;
 import com.aliyun.odps.mapred.bridge.utils.Validator;
@@ -97,6 +99,17 @@ public class LocalJobRunner implements JobRunner {
   // pipe mode
   private Pipeline pipeline;
 
+  // 同一 stage 的 task 并发执行, 为 null 时依次执行
+  private ExecutorService taskExecutor;
+
+  /**
+   * stage 中的一个 map 或 reduce task
+   */
+  private interface LocalTask {
+
+    void run(BridgeJobConf taskConf, Counters taskCounters) throws IOException;
+  }
+
   public void initialize() {
     odps = SessionState.get().getOdps();
     String warehouseDir = System.getProperty("odps.runner.warehouseDir");
@@ -195,6 +208,12 @@ public class LocalJobRunner implements JobRunner {
     validator.validate();
     LOG.info("Finished validate configuration");
 
+    int workerNum = conf.getInt(Constants.LOCAL_WORKER_NUM, 1);
+    if (workerNum > 1) {
+      LOG.info("Run tasks in parallel, worker num: " + workerNum);
+    }
+    taskExecutor = ParallelRunUtils.newExecutor(workerNum, "odps-local-task-");
+
     try {
       SecurityClient.open();
       if (pipeline != null) {
@@ -206,6 +225,10 @@ public class LocalJobRunner implements JobRunner {
       throw new OdpsException(ex);
     } finally {
       SecurityClient.close();
+      if (taskExecutor != null) {
+        taskExecutor.shutdownNow();
+        taskExecutor = null;
+      }
     }
 
     // copy output files from temporary directory to warehouse
@@ -250,20 +273,14 @@ public class LocalJobRunner implements JobRunner {
 
     MapOutputBuffer inputBuffer = new MapOutputBuffer(conf, pipeline, taskId.getTaskId(), reduceCopyNum);
 
+    List<LocalTask> mapTasks = new ArrayList<LocalTask>(mapCopyNum);
     for (int mapId = 0; mapId < mapCopyNum; mapId++) {
-      FileSplit split = inputs.size() > 0 ? inputs.get(mapId) : FileSplit.NullSplit;
-      taskId = new LocalTaskId("M1", 0, odps.getDefaultProject());
-      LOG.info(
-          "Start to run mapper, TaskId: " + taskId + ", Input: " + splitToTableInfo.get(split));
-
-      MapDriver mapDriver = new MapDriver(conf, split, taskId, inputBuffer, counters,
-                                          splitToTableInfo.get(split));
-      mapDriver.run();
-
-      setInputOutputRecordCount(stageStatic);
-      LOG.info(
-          "Fininshed run mapper, TaskId: " + taskId + ", Input: " + splitToTableInfo.get(split));
+      // 并发运行时每个 mapper 使用不同的 TaskId, 输出到不同的文件; 依次运行时保持原来的 TaskId
+      int taskIndex = taskExecutor == null ? 0 : mapId;
+      mapTasks.add(createMapTask(mapId, new LocalTaskId("M1", taskIndex, odps.getDefaultProject()),
+                                 inputBuffer));
     }
+    runTasks(mapTasks, stageStatic);
     LOG.info("Fininshed run all mappers, num: " + mapCopyNum);
 
     int reduceNodeCount = pipeline.getNodeNum() - 1;
@@ -288,14 +305,13 @@ public class LocalJobRunner implements JobRunner {
 
         MapOutputBuffer outputBuffer = new MapOutputBuffer(conf, pipeline, taskId.getTaskId(), nextReduceCopyNum);
 
+        List<LocalTask> reduceTasks = new ArrayList<LocalTask>(reduceCopyNum);
         for (int j = 0; j < reduceCopyNum; ++j) {
-          taskId = new LocalTaskId("R" + (i + 2) + "_" + (i + 1), j, odps.getDefaultProject());
-          ReduceDriver reduceDriver = new ReduceDriver(conf, inputBuffer, outputBuffer, taskId,
-                                                       counters, j);
-          reduceDriver.run();
-
-          setInputOutputRecordCount(stageStatic);
+          reduceTasks.add(createReduceTask(
+              j, new LocalTaskId("R" + (i + 2) + "_" + (i + 1), j, odps.getDefaultProject()),
+              inputBuffer, outputBuffer));
         }
+        runTasks(reduceTasks, stageStatic);
 
         // 前一个节点的输出作为下一个节点的输入
         inputBuffer = outputBuffer;
@@ -333,20 +349,11 @@ public class LocalJobRunner implements JobRunner {
     StageStatic stageStatic = createStageStatic(taskId);
     stageStatic.setWorkerCount(mapCopyNum);
 
+    List<LocalTask> mapTasks = new ArrayList<LocalTask>(mapCopyNum);
     for (int mapId = 0; mapId < mapCopyNum; mapId++) {
-      FileSplit split = inputs.size() > 0 ? inputs.get(mapId) : FileSplit.NullSplit;
-      taskId = new TaskId("M", mapId + 1);
-      LOG.info(
-          "Start to run mapper, TaskId: " + taskId + ", Input: " + splitToTableInfo.get(split));
-
-      MapDriver mapDriver = new MapDriver(conf, split, taskId, buffer, counters,
-                                          splitToTableInfo.get(split));
-      mapDriver.run();
-
-      setInputOutputRecordCount(stageStatic);
-      LOG.info(
-          "Fininshed run mapper, TaskId: " + taskId + ", Input: " + splitToTableInfo.get(split));
+      mapTasks.add(createMapTask(mapId, new TaskId("M", mapId + 1), buffer));
     }
+    runTasks(mapTasks, stageStatic);
 
     LOG.info("Fininshed run all mappers, num: " + mapCopyNum);
 
@@ -360,19 +367,11 @@ public class LocalJobRunner implements JobRunner {
       stageStatic = createStageStatic(taskId);
       stageStatic.setWorkerCount(reduceCopyNum);
 
+      List<LocalTask> reduceTasks = new ArrayList<LocalTask>(reduceCopyNum);
       for (int reduceId = 0; reduceId < reduceCopyNum; ++reduceId) {
-
-        taskId = new TaskId("R", reduceId);
-        LOG.info("Start to run reduce, taskId: " + taskId);
-
-        ReduceDriver
-            reduceDriver =
-            new ReduceDriver(conf, buffer, null, taskId, counters, reduceId);
-        reduceDriver.run();
-
-        setInputOutputRecordCount(stageStatic);
-        LOG.info("Finished run reduce, taskId: " + taskId);
+        reduceTasks.add(createReduceTask(reduceId, new TaskId("R", reduceId), buffer, null));
       }
+      runTasks(reduceTasks, stageStatic);
 
       stageStatic.setNextTaskId("R2_1FS_9");
 
@@ -392,13 +391,75 @@ public class LocalJobRunner implements JobRunner {
     return stageStatic;
   }
 
-  private void setInputOutputRecordCount(StageStatic stageStatic) {
-    stageStatic.setInputRecordCount(counters.findCounter(JobCounter.__EMPTY_INPUT_RECORD_COUNT)
+  private void setInputOutputRecordCount(StageStatic stageStatic, Counters taskCounters) {
+    stageStatic.setInputRecordCount(taskCounters.findCounter(JobCounter.__EMPTY_INPUT_RECORD_COUNT)
                                         .getValue());
-    stageStatic.setOutputRecordCount(counters.findCounter(JobCounter.__EMPTY_OUTPUT_RECORD_COUNT)
+    stageStatic.setOutputRecordCount(taskCounters.findCounter(JobCounter.__EMPTY_OUTPUT_RECORD_COUNT)
                                          .getValue());
-    counters.findCounter(JobCounter.__EMPTY_INPUT_RECORD_COUNT).setValue(0);
-    counters.findCounter(JobCounter.__EMPTY_OUTPUT_RECORD_COUNT).setValue(0);
+    taskCounters.findCounter(JobCounter.__EMPTY_INPUT_RECORD_COUNT).setValue(0);
+    taskCounters.findCounter(JobCounter.__EMPTY_OUTPUT_RECORD_COUNT).setValue(0);
+  }
+
+  private LocalTask createMapTask(final int mapId, final TaskId taskId,
+                                  final MapOutputBuffer buffer) {
+    return new LocalTask() {
+      @Override
+      public void run(BridgeJobConf taskConf, Counters taskCounters) throws IOException {
+        FileSplit split = inputs.size() > 0 ? inputs.get(mapId) : FileSplit.NullSplit;
+        TableInfo tableInfo = splitToTableInfo.get(split);
+        LOG.info("Start to run mapper, TaskId: " + taskId + ", Input: " + tableInfo);
+
+        // mapper 会设置输入表的分区, 每个 task 使用单独的副本
+        MapDriver mapDriver = new MapDriver(taskConf, split, taskId, buffer, taskCounters,
+                                            tableInfo == null ? null : new TableInfo(tableInfo));
+        mapDriver.run();
+
+        LOG.info("Fininshed run mapper, TaskId: " + taskId + ", Input: " + tableInfo);
+      }
+    };
+  }
+
+  private LocalTask createReduceTask(final int reduceId, final TaskId taskId,
+                                     final MapOutputBuffer inputBuffer,
+                                     final MapOutputBuffer outputBuffer) {
+    return new LocalTask() {
+      @Override
+      public void run(BridgeJobConf taskConf, Counters taskCounters) throws IOException {
+        LOG.info("Start to run reduce, taskId: " + taskId);
+
+        ReduceDriver reduceDriver = new ReduceDriver(taskConf, inputBuffer, outputBuffer, taskId,
+                                                     taskCounters, reduceId);
+        reduceDriver.run();
+
+        LOG.info("Finished run reduce, taskId: " + taskId);
+      }
+    };
+  }
+
+  /**
+   * 运行一个 stage 的所有 task, 每个 task 使用单独的 Counters, 结束后合并到作业的 Counters
+   */
+  private void runTasks(List<LocalTask> tasks, final StageStatic stageStatic)
+      throws IOException {
+    List<ParallelRunUtils.Task> stageTasks = new ArrayList<ParallelRunUtils.Task>(tasks.size());
+    for (final LocalTask task : tasks) {
+      stageTasks.add(new ParallelRunUtils.Task() {
+        @Override
+        public void run() throws IOException {
+          runTask(task, stageStatic);
+        }
+      });
+    }
+    ParallelRunUtils.runAll(taskExecutor, stageTasks);
+  }
+
+  private void runTask(LocalTask task, StageStatic stageStatic) throws IOException {
+    Counters taskCounters = new Counters();
+    task.run(new BridgeJobConf(conf), taskCounters);
+    synchronized (counters) {
+      setInputOutputRecordCount(stageStatic, taskCounters);
+      counters.incrAllCounters(taskCounters);
+    }
   }
 
   private void processInput(TableInfo tableInfo) throws IOException, OdpsException {
@@ -21,11 +21,14 @@ package com.aliyun.odps.mapred.local;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.logging.Log;
@@ -38,6 +41,7 @@ import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.RecordReader;
 import com.aliyun.odps.data.TableInfo;
 import com.aliyun.odps.data.VolumeInfo;
+import com.aliyun.odps.local.common.Constants;
 import com.aliyun.odps.local.common.FileSplit;
 import com.aliyun.odps.local.common.TableMeta;
 import com.aliyun.odps.local.common.WareHouse;
@@ -50,6 +54,7 @@ import com.aliyun.odps.mapred.TaskId;
 import com.aliyun.odps.mapred.bridge.ErrorCode;
 import com.aliyun.odps.mapred.bridge.WritableRecord;
 import com.aliyun.odps.mapred.bridge.type.ColumnBasedRecordComparator;
+import com.aliyun.odps.mapred.bridge.utils.MapReduceUtils;
 import com.aliyun.odps.mapred.conf.BridgeJobConf;
 import com.aliyun.odps.utils.ReflectionUtils;
 import com.aliyun.odps.volume.FileSystem;
@@ -270,6 +275,13 @@ public class MapDriver extends DriverBase {
         return true;
       }
 
+      /**
+       * 开始合并下一批数据
+       */
+      void reset() {
+        itr = null;
+      }
+
       @Override
       public Record getCurrentKey() {
         return key;
@@ -366,34 +378,62 @@ public class MapDriver extends DriverBase {
       }
     }
 
-    private LinkedList<Object[]> queue = new LinkedList<Object[]>();
+    // 待合并的 map 输出, 超过内存上限时先合并一批
+    private List<Object[]> pending = new ArrayList<Object[]>();
+    private long pendingSize = 0;
+    private final long combineLimit;
+    private Queue<Object[]> queue;
+    private CombinerContextImpl combineCtx;
 
     public ProxiedMapContextImpl(BridgeJobConf conf, TaskId taskid, Counters counters,
                                  RecordReader reader, TableInfo inputTableInfo) throws IOException {
       super(conf, taskid, counters, reader, inputTableInfo);
+      combineLimit = conf.getLong(Constants.LOCAL_SORT_BUFFER_MB,
+                                  Constants.DEFAULT_SORT_BUFFER_MB) * 1024 * 1024;
     }
 
     @Override
     public void write(Record key, Record value) {
       mapOutputRecordCounter.increment(1);
-      queue.add(ArrayUtils.addAll(((WritableRecord) key).toWritableArray(),
-                                  ((WritableRecord) value).toWritableArray()));
+      Object[] row = ArrayUtils.addAll(((WritableRecord) key).toWritableArray(),
+                                       ((WritableRecord) value).toWritableArray());
+      pending.add(row);
+      pendingSize += MapReduceUtils.estimateSize(row);
       counters.findCounter(JobCounter.__EMPTY_OUTPUT_RECORD_COUNT).increment(1);
+      if (pendingSize > combineLimit) {
+        try {
+          combine();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
     }
 
-    @Override
-    public void close() throws IOException {
-      Collections.sort(queue, outputBuffer.getComparator());
+    private void combine() throws IOException {
+      Collections.sort(pending, outputBuffer.getComparator());
+      queue = new ArrayDeque<Object[]>(pending);
+      pending = new ArrayList<Object[]>();
+      pendingSize = 0;
+
       Reducer combiner = ReflectionUtils.newInstance(getCombinerClass(), conf);
-      CombinerContextImpl combineCtx = new CombinerContextImpl(conf, taskId, counters);
+      if (combineCtx == null) {
+        combineCtx = new CombinerContextImpl(conf, taskId, counters);
+      } else {
+        combineCtx.reset();
+      }
 
-      LOG.info("Start to run Combiner, TaskId: " + taskId);
+      LOG.info("Start to run Combiner, TaskId: " + taskId + ", records: " + queue.size());
 
       combiner.setup(combineCtx);
       while (combineCtx.nextKeyValue()) {
         combiner.reduce(combineCtx.getCurrentKey(), combineCtx.getValues(), combineCtx);
       }
       combiner.cleanup(combineCtx);
+    }
+
+    @Override
+    public void close() throws IOException {
+      combine();
 
       super.close();
 
@@ -19,32 +19,95 @@
 
 package com.aliyun.odps.mapred.local;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import com.aliyun.odps.Column;
 import com.aliyun.odps.data.Record;
+import com.aliyun.odps.io.Writable;
+import com.aliyun.odps.local.common.Constants;
+import com.aliyun.odps.local.common.JobDirecotry;
 import com.aliyun.odps.mapred.bridge.WritableRecord;
+import com.aliyun.odps.mapred.bridge.utils.MapReduceUtils;
 import com.aliyun.odps.mapred.conf.JobConf;
 import com.aliyun.odps.mapred.conf.JobConf.SortOrder;
 import com.aliyun.odps.mapred.local.utils.LocalColumnBasedRecordComparator;
 import com.aliyun.odps.pipeline.Pipeline;
 import com.aliyun.odps.pipeline.Pipeline.TransformNode;
+import com.aliyun.odps.utils.ReflectionUtils;
 
+/**
+ * Map 输出的缓冲区, 按 reduce 分区保存并排序.
+ *
+ * <p>
+ * 内存中的数据超过 {@link Constants#LOCAL_SORT_BUFFER_MB} 后, 各分区排序后写到作业临时目录下的 spill 文件,
+ * 读取分区时对内存和 spill 文件中的有序数据做多路归并. spill 文件数达到
+ * {@link Constants#LOCAL_SORT_MERGE_FACTOR} 时, 先把已有的 spill 文件归并为一个, 限制同时打开的文件数.
+ *
+ * <p>
+ * 支持多个 task 并发写入, 每个分区只由一个 reduce task 读取.
+ */
 public class MapOutputBuffer {
 
+  private static final Log LOG = LogFactory.getLog(MapOutputBuffer.class);
+
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
   int[] partColIdxs;
   int numReduce;
-  private List<PriorityQueue<Object[]>> buffers;
+  private List<List<Object[]>> buffers;
+  private long[] recordCounts;
   Comparator<Object[]> comparator;
 
+  private long memoryLimit;
+  private int mergeFactor;
+  private long memoryUsed;
+  private boolean spillable = true;
+  private File spillDir;
+  private final List<SpillFile> spills = new ArrayList<SpillFile>();
+  // spill 文件中按下标记录字段类型
+  private final List<Class<?>> fieldClasses = new ArrayList<Class<?>>();
+  private final Map<Class<?>, Short> fieldClassIndexes = new HashMap<Class<?>, Short>();
+
+  /**
+   * 一次 spill 的文件, 各分区的数据依次写在文件中
+   */
+  private static class SpillFile {
+
+    final File file;
+    final long[] offsets;
+    final long[] counts;
+    int openPartitions;
+
+    SpillFile(File file, long[] offsets, long[] counts) {
+      this.file = file;
+      this.offsets = offsets;
+      this.counts = counts;
+      this.openPartitions = offsets.length;
+    }
+  }
+
   public MapOutputBuffer(JobConf conf, int reduceNum) {
 
     Column[] key = conf.getMapOutputKeySchema();
@@ -66,10 +129,7 @@ public class MapOutputBuffer {
       String[] sortColumns = conf.getOutputKeySortColumns();
       SortOrder[] sortOrders = conf.getOutputKeySortOrder();
       comparator = new LocalColumnBasedRecordComparator(sortColumns, key, sortOrders);
-      buffers = new ArrayList<PriorityQueue<Object[]>>(numReduce);
-      for (i = 0; i < numReduce; i++) {
-        buffers.add(new PriorityQueue<Object[]>(16, comparator));
-      }
+      initBuffers(conf);
     }
 
   }
@@ -97,15 +157,24 @@ public class MapOutputBuffer {
       String[] sortColumns = pipeNode.getOutputKeySortColumns();
       SortOrder[] sortOrders = pipeNode.getOutputKeySortOrder();
       comparator = new LocalColumnBasedRecordComparator(sortColumns, key, sortOrders);
-      buffers = new ArrayList<PriorityQueue<Object[]>>(numReduce);
-      for (i = 0; i < numReduce; i++) {
-        buffers.add(new PriorityQueue<Object[]>(16, comparator));
-      }
+      initBuffers(conf);
     }
 
   }
 
 
+  private void initBuffers(JobConf conf) {
+    buffers = new ArrayList<List<Object[]>>(numReduce);
+    for (int i = 0; i < numReduce; i++) {
+      buffers.add(new ArrayList<Object[]>());
+    }
+    recordCounts = new long[numReduce];
+    memoryLimit = conf.getLong(Constants.LOCAL_SORT_BUFFER_MB, Constants.DEFAULT_SORT_BUFFER_MB)
+                  * 1024 * 1024;
+    mergeFactor = Math.max(2, conf.getInt(Constants.LOCAL_SORT_MERGE_FACTOR,
+                                          Constants.DEFAULT_SORT_MERGE_FACTOR));
+  }
+
   /**
    * Hard coded partition strategy. Should be the same as FUXI hash function.
    *
@@ -125,38 +194,366 @@ public class MapOutputBuffer {
   }
 
   public void add(Record key, Record value) {
-    int partition = getPartition(key);
-    buffers.get(partition).offer(
-        ArrayUtils.addAll(((WritableRecord) key).toWritableArray().clone(),
-                          ((WritableRecord) value).toWritableArray().clone()));
+    add(key, value, getPartition(key));
   }
 
-  public void add(Record key, Record value, int partition) {
-    buffers.get(partition).offer(
-        ArrayUtils.addAll(((WritableRecord) key).toWritableArray().clone(),
-                          ((WritableRecord) value).toWritableArray().clone()));
+  public synchronized void add(Record key, Record value, int partition) {
+    Object[] row = ArrayUtils.addAll(((WritableRecord) key).toWritableArray().clone(),
+                                     ((WritableRecord) value).toWritableArray().clone());
+    buffers.get(partition).add(row);
+    recordCounts[partition]++;
+    memoryUsed += MapReduceUtils.estimateSize(row);
+    if (spillable && !checkSpillable(row)) {
+      spillable = false;
+      LOG.warn("Map output contains fields that can not be spilled, keep all data in memory");
+    }
+    if (spillable && memoryUsed > memoryLimit) {
+      try {
+        spill();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
 
-  public Queue<Object[]> getPartitionQueue(int partition) {
-    return buffers.get(partition);
+  /**
+   * 返回分区的有序数据, 只能在写入完成后读取一次
+   */
+  public synchronized Queue<Object[]> getPartitionQueue(int partition) {
+    List<Object[]> rows = buffers.get(partition);
+    buffers.set(partition, new ArrayList<Object[]>());
+    Collections.sort(rows, comparator);
+
+    List<Run> runs = new ArrayList<Run>(spills.size() + 1);
+    for (SpillFile spill : spills) {
+      runs.add(new SpillRun(runs.size(), spill, partition));
+    }
+    runs.add(new MemoryRun(runs.size(), rows));
+    return new MergeQueue(partition, runs);
   }
 
   public Comparator<? super Object[]> getComparator() {
     return comparator;
   }
 
-  public long getTotalRecordCount() {
-    if (buffers == null) {
+  public synchronized long getTotalRecordCount() {
+    if (recordCounts == null) {
       return 0;
     }
     long totalCount = 0;
-    for (PriorityQueue<Object[]> item : buffers) {
-      if (item == null) {
+    for (long count : recordCounts) {
+      totalCount += count;
+    }
+    return totalCount;
+  }
+
+  private boolean checkSpillable(Object[] row) {
+    for (Object field : row) {
+      if (field == null || fieldClassIndexes.containsKey(field.getClass())) {
         continue;
       }
-      totalCount += item.size();
+      Class<?> cls = field.getClass();
+      try {
+        // 读取时需要通过无参构造函数创建对象
+        cls.getDeclaredConstructor();
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+      if (!(field instanceof Writable) || fieldClasses.size() == Short.MAX_VALUE) {
+        return false;
+      }
+      fieldClassIndexes.put(cls, (short) fieldClasses.size());
+      fieldClasses.add(cls);
+    }
+    return true;
+  }
+
+  private void spill() throws IOException {
+    File file = createSpillFile();
+    long[] offsets = new long[numReduce];
+    long[] counts = new long[numReduce];
+    FileOutputStream fos = new FileOutputStream(file);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, IO_BUFFER_SIZE));
+      for (int i = 0; i < numReduce; i++) {
+        out.flush();
+        offsets[i] = fos.getChannel().position();
+        List<Object[]> rows = buffers.get(i);
+        Collections.sort(rows, comparator);
+        for (Object[] row : rows) {
+          writeRow(out, row);
+        }
+        counts[i] = rows.size();
+        buffers.set(i, new ArrayList<Object[]>());
+      }
+      out.flush();
+    } finally {
+      fos.close();
+    }
+    LOG.info("Spilled map output to " + file + ", size: " + file.length() + ", estimated memory: "
+             + memoryUsed);
+    spills.add(new SpillFile(file, offsets, counts));
+    memoryUsed = 0;
+    if (spills.size() >= mergeFactor) {
+      mergeSpills();
+    }
+  }
+
+  /**
+   * 把已有的 spill 文件按分区归并为一个. 新文件中的数据都早于之后写入的数据, 相同 key 的顺序不变
+   */
+  private void mergeSpills() throws IOException {
+    File file = createSpillFile();
+    long[] offsets = new long[numReduce];
+    long[] counts = new long[numReduce];
+    FileOutputStream fos = new FileOutputStream(file);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, IO_BUFFER_SIZE));
+      for (int i = 0; i < numReduce; i++) {
+        out.flush();
+        offsets[i] = fos.getChannel().position();
+        List<Run> runs = new ArrayList<Run>(spills.size());
+        for (SpillFile spill : spills) {
+          runs.add(new SpillRun(runs.size(), spill, i));
+        }
+        RunMerger merger = new RunMerger(runs);
+        Object[] row;
+        while ((row = merger.poll()) != null) {
+          writeRow(out, row);
+          counts[i]++;
+        }
+      }
+      out.flush();
+    } finally {
+      fos.close();
+    }
+    LOG.info("Merged " + spills.size() + " spill files to " + file + ", size: " + file.length());
+    // 归并时各分区都已读完, 旧文件已经删除
+    spills.clear();
+    spills.add(new SpillFile(file, offsets, counts));
+  }
+
+  private File createSpillFile() throws IOException {
+    if (spillDir == null) {
+      spillDir = new File(new JobDirecotry().getJobDir(), "spill");
+      if (!spillDir.exists() && !spillDir.mkdirs()) {
+        throw new IOException("Create spill directory failed: " + spillDir);
+      }
+    }
+    return File.createTempFile("map_output_", ".spill", spillDir);
+  }
+
+  private void writeRow(DataOutputStream out, Object[] row) throws IOException {
+    out.writeInt(row.length);
+    for (Object field : row) {
+      if (field == null) {
+        out.writeShort(-1);
+      } else {
+        out.writeShort(fieldClassIndexes.get(field.getClass()));
+        ((Writable) field).write(out);
+      }
+    }
+  }
+
+  private Object[] readRow(DataInputStream in) throws IOException {
+    Writable[] row = new Writable[in.readInt()];
+    for (int i = 0; i < row.length; i++) {
+      short index = in.readShort();
+      if (index >= 0) {
+        row[i] = (Writable) ReflectionUtils.newInstance(fieldClasses.get(index), null);
+        row[i].readFields(in);
+      }
+    }
+    return row;
+  }
+
+  /**
+   * 一段有序的数据
+   */
+  private abstract static class Run {
+
+    final int index;
+    Object[] head;
+
+    Run(int index) {
+      this.index = index;
+    }
+
+    /**
+     * 读取下一行到 head, 没有数据时返回 false
+     */
+    abstract boolean advance() throws IOException;
+  }
+
+  private static class MemoryRun extends Run {
+
+    private final List<Object[]> rows;
+    private int position = 0;
+
+    MemoryRun(int index, List<Object[]> rows) {
+      super(index);
+      this.rows = rows;
+    }
+
+    @Override
+    boolean advance() {
+      if (position == rows.size()) {
+        head = null;
+        return false;
+      }
+      head = rows.get(position);
+      // 读过的数据不再保留
+      rows.set(position++, null);
+      return true;
+    }
+  }
+
+  private class SpillRun extends Run {
+
+    private final SpillFile spill;
+    private final int partition;
+    private long remaining;
+    private DataInputStream in;
+
+    SpillRun(int index, SpillFile spill, int partition) {
+      super(index);
+      this.spill = spill;
+      this.partition = partition;
+      this.remaining = spill.counts[partition];
+    }
+
+    @Override
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        close();
+        return false;
+      }
+      if (in == null) {
+        FileInputStream fis = new FileInputStream(spill.file);
+        fis.getChannel().position(spill.offsets[partition]);
+        in = new DataInputStream(new BufferedInputStream(fis, IO_BUFFER_SIZE));
+      }
+      head = readRow(in);
+      remaining--;
+      return true;
+    }
+
+    private void close() throws IOException {
+      head = null;
+      if (in != null) {
+        in.close();
+        in = null;
+      }
+      synchronized (spill) {
+        // 所有分区都读完后删除文件
+        if (--spill.openPartitions == 0 && !spill.file.delete()) {
+          LOG.warn("Delete spill file failed: " + spill.file);
+        }
+      }
+    }
+  }
+
+  /**
+   * 多路归并各段有序数据
+   */
+  private class RunMerger {
+
+    private final PriorityQueue<Run> heap;
+
+    RunMerger(List<Run> runs) {
+      this.heap = new PriorityQueue<Run>(Math.max(1, runs.size()), new Comparator<Run>() {
+        @Override
+        public int compare(Run r1, Run r2) {
+          int result = comparator.compare(r1.head, r2.head);
+          // 相同的 key 按写入顺序输出
+          return result != 0 ? result : r1.index - r2.index;
+        }
+      });
+      for (Run run : runs) {
+        advance(run);
+      }
+    }
+
+    private void advance(Run run) {
+      try {
+        if (run.advance()) {
+          heap.add(run);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    Object[] poll() {
+      Run run = heap.poll();
+      if (run == null) {
+        return null;
+      }
+      Object[] row = run.head;
+      advance(run);
+      return row;
+    }
+
+    Object[] peek() {
+      Run run = heap.peek();
+      return run == null ? null : run.head;
+    }
+  }
+
+  /**
+   * 分区的有序数据, 不支持写入
+   */
+  private class MergeQueue extends AbstractQueue<Object[]> {
+
+    private final int partition;
+    private RunMerger merger;
+    // 调用 iterator 后, 剩余的数据全部读到内存中
+    private ArrayDeque<Object[]> remaining;
+
+    MergeQueue(int partition, List<Run> runs) {
+      this.partition = partition;
+      this.merger = new RunMerger(runs);
+    }
+
+    @Override
+    public boolean offer(Object[] row) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object[] poll() {
+      Object[] row = remaining == null ? merger.poll() : remaining.poll();
+      if (row != null) {
+        recordCounts[partition]--;
+      }
+      return row;
+    }
+
+    @Override
+    public Object[] peek() {
+      return remaining == null ? merger.peek() : remaining.peek();
+    }
+
+    @Override
+    public int size() {
+      return (int) recordCounts[partition];
+    }
+
+    /**
+     * 按顺序遍历剩余的数据, 不移除. 需要先把剩余的数据全部读到内存中, 只适合数据量小的场景
+     */
+    @Override
+    public Iterator<Object[]> iterator() {
+      if (remaining == null) {
+        remaining = new ArrayDeque<Object[]>();
+        Object[] row;
+        while ((row = merger.poll()) != null) {
+          remaining.add(row);
+        }
+        merger = null;
+      }
+      return Collections.unmodifiableCollection(remaining).iterator();
     }
-    return totalCount;
   }
 
   public void add(Record record, String label) {
@@ -0,0 +1,134 @@
+package com.aliyun.odps.mapred.local;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.io.LongWritable;
+import com.aliyun.odps.io.Text;
+import com.aliyun.odps.local.common.Constants;
+import com.aliyun.odps.local.common.WareHouse;
+import com.aliyun.odps.mapred.bridge.WritableRecord;
+import com.aliyun.odps.mapred.conf.JobConf;
+import com.aliyun.odps.mapred.utils.SchemaUtils;
+
+public class MapOutputBufferTest {
+
+  private static final int RECORD_COUNT = 200;
+  private static final int KEY_COUNT = 10;
+
+  private File tempDir;
+  private JobConf conf;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory("map_output_buffer").toFile();
+    WareHouse.getInstance().getConfiguration().set(Constants.LOCAL_TEMP_DIR, tempDir.getPath());
+    WareHouse.getInstance().setJobName("mr_ut_map_output_buffer");
+
+    conf = new JobConf();
+    conf.setMapOutputKeySchema(SchemaUtils.fromString("key:string"));
+    conf.setMapOutputValueSchema(SchemaUtils.fromString("value:bigint"));
+    // 每条记录都写到 spill 文件
+    conf.setInt(Constants.LOCAL_SORT_BUFFER_MB, 0);
+  }
+
+  @After
+  public void tearDown() {
+    WareHouse.getInstance().getConfiguration().set(Constants.LOCAL_TEMP_DIR, "temp");
+    FileUtils.deleteQuietly(tempDir);
+  }
+
+  private MapOutputBuffer write(int reduceNum) {
+    MapOutputBuffer buffer = new MapOutputBuffer(conf, reduceNum);
+    WritableRecord key = new WritableRecord(conf.getMapOutputKeySchema());
+    WritableRecord value = new WritableRecord(conf.getMapOutputValueSchema());
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      key.set(0, "key" + (i * 7 % KEY_COUNT));
+      value.set(0, (long) i);
+      buffer.add(key, value);
+    }
+    return buffer;
+  }
+
+  private int spillFileCount() {
+    File[] files = new File(new File(tempDir, "mr_ut_map_output_buffer"), "spill").listFiles();
+    return files == null ? 0 : files.length;
+  }
+
+  /**
+   * 按 key 有序, 相同的 key 按写入顺序
+   */
+  private static void assertOrdered(List<Object[]> rows) {
+    for (int i = 1; i < rows.size(); i++) {
+      String k1 = rows.get(i - 1)[0].toString();
+      String k2 = rows.get(i)[0].toString();
+      Assert.assertTrue(k1.compareTo(k2) <= 0);
+      if (k1.equals(k2)) {
+        Assert.assertTrue(((LongWritable) rows.get(i - 1)[1]).get()
+                          < ((LongWritable) rows.get(i)[1]).get());
+      }
+    }
+  }
+
+  @Test
+  public void testMultiPassMerge() {
+    conf.setInt(Constants.LOCAL_SORT_MERGE_FACTOR, 4);
+    MapOutputBuffer buffer = write(3);
+    // 达到 4 个文件时归并为一个
+    Assert.assertTrue(spillFileCount() < 4);
+
+    List<Object[]> all = new ArrayList<Object[]>();
+    for (int i = 0; i < 3; i++) {
+      List<Object[]> rows = new ArrayList<Object[]>();
+      Queue<Object[]> queue = buffer.getPartitionQueue(i);
+      Object[] row;
+      while ((row = queue.poll()) != null) {
+        Assert.assertTrue(row[0] instanceof Text);
+        rows.add(row);
+      }
+      assertOrdered(rows);
+      all.addAll(rows);
+    }
+    Assert.assertEquals(RECORD_COUNT, all.size());
+    Assert.assertEquals(0, buffer.getTotalRecordCount());
+    Assert.assertEquals(0, spillFileCount());
+  }
+
+  @Test
+  public void testIterator() {
+    MapOutputBuffer buffer = write(1);
+    Queue<Object[]> queue = buffer.getPartitionQueue(0);
+    Object[] first = queue.poll();
+    Assert.assertEquals(RECORD_COUNT - 1, queue.size());
+
+    // 遍历不移除数据
+    List<Object[]> iterated = new ArrayList<Object[]>();
+    Iterator<Object[]> iter = queue.iterator();
+    while (iter.hasNext()) {
+      iterated.add(iter.next());
+    }
+    Assert.assertEquals(RECORD_COUNT - 1, iterated.size());
+    Assert.assertEquals(RECORD_COUNT - 1, queue.size());
+
+    List<Object[]> polled = new ArrayList<Object[]>();
+    polled.add(first);
+    Assert.assertSame(iterated.get(0), queue.peek());
+    Object[] row;
+    while ((row = queue.poll()) != null) {
+      polled.add(row);
+    }
+    Assert.assertEquals(iterated, polled.subList(1, polled.size()));
+    assertOrdered(polled);
+    Assert.assertTrue(queue.isEmpty());
+  }
+}
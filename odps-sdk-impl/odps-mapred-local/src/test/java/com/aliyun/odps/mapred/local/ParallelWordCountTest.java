@@ -0,0 +1,125 @@
+package com.aliyun.odps.mapred.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.counter.Counters;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.TableInfo;
+import com.aliyun.odps.local.common.Constants;
+import com.aliyun.odps.local.common.WareHouse;
+import com.aliyun.odps.mapred.JobClient;
+import com.aliyun.odps.mapred.RunningJob;
+import com.aliyun.odps.mapred.conf.JobConf;
+import com.aliyun.odps.mapred.conf.SessionState;
+import com.aliyun.odps.mapred.local.utils.TestUtils;
+import com.aliyun.odps.mapred.utils.InputUtils;
+import com.aliyun.odps.mapred.utils.OutputUtils;
+import com.aliyun.odps.mapred.utils.SchemaUtils;
+
+/**
+ * 多个 worker 并发运行 task 时, 结果与依次运行相同
+ */
+public class ParallelWordCountTest {
+
+  private static final String PROJECT = TestUtils.odps_test_mrtask;
+  private static final String OUTPUT_TABLE = "parallel_wordcount_out";
+
+  private File tempDir;
+
+  // 运行 mapper 的线程
+  private static final Set<String> MAP_THREADS =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public static class ThreadRecordingMapper extends WordCount.TokenizerMapper {
+
+    @Override
+    public void map(long recordNum, Record record, TaskContext context) throws IOException {
+      MAP_THREADS.add(Thread.currentThread().getName());
+      super.map(recordNum, record, context);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory("parallel_wordcount").toFile();
+    // 只读写本地 warehouse 中的表
+    Odps odps = new Odps(new AliyunAccount("ak", "sk"));
+    odps.setDefaultProject(PROJECT);
+    odps.setEndpoint("http://127.0.0.1:1/api");
+    SessionState.get().setOdps(odps);
+    SessionState.get().setLocalRun(true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    WareHouse.getInstance().dropTableDataIfExists(PROJECT, OUTPUT_TABLE, null);
+    FileUtils.deleteQuietly(tempDir);
+  }
+
+  private List<String> runWordCount(int workerNum, List<Long> counters) throws Exception {
+    MAP_THREADS.clear();
+    WareHouse wareHouse = WareHouse.getInstance();
+    wareHouse.dropTableDataIfExists(PROJECT, OUTPUT_TABLE, null);
+
+    JobConf job = new JobConf();
+    job.setMapperClass(ThreadRecordingMapper.class);
+    job.setCombinerClass(WordCount.SumCombiner.class);
+    job.setReducerClass(WordCount.SumReducer.class);
+    job.setMapOutputKeySchema(SchemaUtils.fromString("word:string"));
+    job.setMapOutputValueSchema(SchemaUtils.fromString("count:bigint"));
+    job.setNumReduceTasks(3);
+    job.setInt(Constants.LOCAL_WORKER_NUM, workerNum);
+    job.set(Constants.LOCAL_TEMP_DIR, tempDir.getPath());
+
+    InputUtils.addTable(TableInfo.builder().tableName("l_ss").build(), job);
+    InputUtils.addTable(TableInfo.builder().tableName("l_p_ss").partSpec("p1=1/p2=2").build(), job);
+    InputUtils.addTable(TableInfo.builder().tableName("l_p_ss").partSpec("p1=1").build(), job);
+    OutputUtils.addTable(TableInfo.builder().tableName(OUTPUT_TABLE).build(), job);
+
+    RunningJob rj = JobClient.runJob(job);
+    Counters jobCounters = rj.getCounters();
+    counters.add(jobCounters.findCounter("MyCounters", "map_outputs").getValue());
+    counters.add(jobCounters.findCounter("MyCounters", "global_counts").getValue());
+    counters.add(jobCounters.findCounter("MyCounters", "reduce_outputs").getValue());
+
+    List<String> rows = new ArrayList<String>();
+    for (Object[] row : wareHouse.readData(PROJECT, OUTPUT_TABLE, null, null, ',')) {
+      rows.add(Arrays.asList(row).toString());
+    }
+    // 多个 reducer 的输出文件顺序不固定
+    Collections.sort(rows);
+    return rows;
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    List<Long> serialCounters = new ArrayList<Long>();
+    List<String> serial = runWordCount(1, serialCounters);
+    Assert.assertEquals(4, serial.size());
+    Assert.assertTrue(serialCounters.get(0) > 0);
+    Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), MAP_THREADS);
+
+    List<Long> parallelCounters = new ArrayList<Long>();
+    Assert.assertEquals(serial, runWordCount(4, parallelCounters));
+    Assert.assertEquals(serialCounters, parallelCounters);
+    for (String thread : MAP_THREADS) {
+      Assert.assertTrue(thread, thread.startsWith("odps-local-task-"));
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.aliyun.odps.counter.Counter;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.TableInfo;
 import com.aliyun.odps.io.Text;
+import com.aliyun.odps.local.common.Constants;
 import com.aliyun.odps.mapred.MapperBase;
 import com.aliyun.odps.mapred.ReducerBase;
 import com.aliyun.odps.mapred.conf.JobConf;
@@ -237,6 +238,38 @@ public class WordCountTest extends MRUnitTest {
     Assert.assertEquals(3, output.getCounters().getGroup("MyCounters").findCounter("reduce_outputs").getValue());
   }
 
+  @Test
+  public void TestReduceWithSpill() throws IOException, ClassNotFoundException,
+                                           InterruptedException {
+    JobConf jobConf = new JobConf(job);
+    // 每条记录都写到 spill 文件, 读取时归并
+    jobConf.setInt(Constants.LOCAL_SORT_BUFFER_MB, 0);
+
+    ReduceUTContext context = new ReduceUTContext();
+    context.setOutputSchema(OUTPUT_SCHEMA, jobConf);
+
+    Record key = context.createInputKeyRecord(jobConf);
+    Record value = context.createInputValueRecord(jobConf);
+    for (int i = 0; i < 300; i++) {
+      key.set(0, "key" + (i * 7 % 100));
+      value.set(0, new Long(i));
+      context.addInputKeyValue(key, value);
+    }
+    TaskOutput output = runReducer(jobConf, context);
+
+    List<Record> records = output.getOutputRecords(false);
+    Assert.assertEquals(100, records.size());
+    for (int i = 1; i < records.size(); i++) {
+      Assert.assertTrue(((String) records.get(i - 1).get("k"))
+                            .compareTo((String) records.get(i).get("k")) < 0);
+    }
+    long total = 0;
+    for (Record record : records) {
+      total += (Long) record.get("v");
+    }
+    Assert.assertEquals(299 * 300 / 2, total);
+  }
+
   @Test
   public void TestBinaryReduce() throws IOException, ClassNotFoundException, InterruptedException {
     JobConf jobConf = new JobConf(job);
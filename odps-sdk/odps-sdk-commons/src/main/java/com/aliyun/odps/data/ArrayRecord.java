@@ -59,7 +59,8 @@ public class ArrayRecord implements Record {
 
   private Column[] columns;
   private final Object[] values;
-  private HashMap<String, Integer> nameMap = new HashMap<>();
+  // 列名索引，可以在多个 record 之间共享；未指定时在第一次按列名访问时构建
+  private ColumnIndex columnIndex;
 
   /**
    * When strictTypeValidation is enabled, max length of string and range of datetime are
@@ -80,21 +81,34 @@ public class ArrayRecord implements Record {
   }
 
   public ArrayRecord(Column[] columns, boolean strictTypeValidation, Long fieldMaxSize) {
+    this(columns, null, strictTypeValidation, fieldMaxSize);
+  }
+
+  /**
+   * 使用共享的 {@link ColumnIndex} 构造 record，读取大量相同 schema 的 record 时可以避免重复构建列名索引
+   *
+   * @param columns
+   *     列
+   * @param columnIndex
+   *     基于 columns 构建的列名索引，null 表示按需构建
+   */
+  public ArrayRecord(Column[] columns, ColumnIndex columnIndex, boolean strictTypeValidation,
+                     Long fieldMaxSize) {
     if (columns == null) {
       throw new IllegalArgumentException();
     }
+    if (columnIndex != null && !columnIndex.isFor(columns)) {
+      throw new IllegalArgumentException("Column index is not built for the given columns.");
+    }
 
     this.columns = columns;
+    this.columnIndex = columnIndex;
     this.strictTypeValidation = strictTypeValidation;
     if (fieldMaxSize != null) {
       this.fieldMaxSize = fieldMaxSize;
     }
 
     values = new Object[columns.length];
-
-    for (int i = 0; i < columns.length; i++) {
-      nameMap.put(columns[i].getName(), i);
-    }
   }
 
   public ArrayRecord(Column[] columns, Object[] values) {
@@ -398,8 +412,11 @@ public class ArrayRecord implements Record {
   }
 
   private int getColumnIndex(String name) {
-    Integer idx = nameMap.get(name);
-    if (idx == null) {
+    if (columnIndex == null) {
+      columnIndex = ColumnIndex.of(columns);
+    }
+    int idx = columnIndex.indexOf(name);
+    if (idx < 0) {
       throw new IllegalArgumentException("No such column:" + name);
     }
     return idx;
@@ -1118,7 +1135,10 @@ public class ArrayRecord implements Record {
 
   @Override
   public Record clone() {
-    ArrayRecord record = new ArrayRecord(getColumns());
+    Column[] cols = getColumns();
+    ArrayRecord record = new ArrayRecord(
+        cols, columnIndex != null && columnIndex.isFor(cols) ? columnIndex : null, true,
+        DEFAULT_FIELD_MAX_SIZE);
     record.set(values);
     return record;
   }
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aliyun.odps.Column;
+
+/**
+ * 列名到列下标的不可变索引
+ *
+ * <p>同一组列只需要构建一次，可以被多个 {@link ArrayRecord} 共享，例如在 RecordReader 中为读出的每一条
+ * 记录使用同一个 ColumnIndex，避免每条记录都重新构建列名索引。</p>
+ *
+ * 此类是线程安全的。
+ */
+public final class ColumnIndex {
+
+  private final Column[] columns;
+  private final Map<String, Integer> nameMap;
+
+  private ColumnIndex(Column[] columns) {
+    this.columns = columns;
+    this.nameMap = new HashMap<>(columns.length * 4 / 3 + 1);
+    for (int i = 0; i < columns.length; i++) {
+      nameMap.put(columns[i].getName(), i);
+    }
+  }
+
+  /**
+   * 为给定的列构建索引
+   *
+   * @param columns
+   *     列，构建后不应再修改
+   */
+  public static ColumnIndex of(Column[] columns) {
+    if (columns == null) {
+      throw new IllegalArgumentException("Columns cannot be null.");
+    }
+    return new ColumnIndex(columns);
+  }
+
+  /**
+   * 获取列名对应的下标
+   *
+   * @return 列下标，不存在时返回 -1
+   */
+  public int indexOf(String name) {
+    Integer idx = nameMap.get(name);
+    return idx == null ? -1 : idx;
+  }
+
+  /**
+   * 当前索引是否是基于给定的列构建的
+   */
+  public boolean isFor(Column[] columns) {
+    return this.columns == columns;
+  }
+
+  public int size() {
+    return columns.length;
+  }
+}
@@ -21,7 +21,7 @@ package com.aliyun.odps.io;
 import java.io.DataInput;
 import java.io.IOException;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.aliyun.odps.utils.ReflectionUtils;
 
@@ -38,10 +38,10 @@ import com.aliyun.odps.utils.ReflectionUtils;
 @SuppressWarnings("rawtypes")
 public class WritableComparator implements RawComparator {
 
-  private static HashMap<Class, WritableComparator>
+  // registry, 读取时不加锁
+  private static final ConcurrentHashMap<Class, WritableComparator>
       comparators =
-      new HashMap<Class, WritableComparator>();
-      // registry
+      new ConcurrentHashMap<Class, WritableComparator>();
 
   /**
    * 此静态方法用于获取为类型 c 注册的 WritableComparator 实现.
@@ -55,15 +55,28 @@ public class WritableComparator implements RawComparator {
    * @return WritableComparator 实现
    * @see JobConf#getOutputKeyComparator()
    */
-  public static synchronized WritableComparator get(
+  public static WritableComparator get(
       Class<? extends WritableComparable> c) {
     WritableComparator comparator = comparators.get(c);
     if (comparator == null) {
-      comparator = new WritableComparator(c, true);
+      // 比较器在类的静态初始化中注册, 先触发初始化再查找
+      forceInit(c);
+      comparator = comparators.get(c);
+      if (comparator == null) {
+        comparator = new WritableComparator(c, true);
+      }
     }
     return comparator;
   }
 
+  private static void forceInit(Class<?> c) {
+    try {
+      Class.forName(c.getName(), true, c.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Can't initialize class " + c, e);
+    }
+  }
+
   /**
    * 此静态方法用于为指定类型注册更高效的 WritableComparator 实现，否则默认使用本实现.
    *
@@ -76,7 +89,7 @@ public class WritableComparator implements RawComparator {
    *     更高效的 WritableComparator 实现
    * @see #get(Class)
    */
-  public static synchronized void define(Class c, WritableComparator comparator) {
+  public static void define(Class c, WritableComparator comparator) {
     comparators.put(c, comparator);
   }
 
@@ -186,7 +199,10 @@ public class WritableComparator implements RawComparator {
   }
 
   /**
-   * 逐字节比较两组二进制数据.
+   * 按字典序比较两组二进制数据, 字节按无符号数比较.
+   *
+   * <p>
+   * 支持时每次比较 8 个字节, 返回值与逐字节比较相同.
    *
    * @param b1
    * @param s1
@@ -199,16 +215,7 @@ public class WritableComparator implements RawComparator {
    */
   public static int compareBytes(byte[] b1, int s1, int l1, byte[] b2, int s2,
                                  int l2) {
-    int end1 = s1 + l1;
-    int end2 = s2 + l2;
-    for (int i = s1, j = s2; i < end1 && j < end2; i++, j++) {
-      int a = (b1[i] & 0xff);
-      int b = (b2[j] & 0xff);
-      if (a != b) {
-        return a - b;
-      }
-    }
-    return l1 - l2;
+    return FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2);
   }
 
   /**
@@ -222,7 +229,13 @@ public class WritableComparator implements RawComparator {
    */
   public static int hashBytes(byte[] bytes, int length) {
     int hash = 1;
-    for (int i = 0; i < length; i++) {
+    int i = 0;
+    // 每次处理 4 个字节, 结果与逐字节计算相同: 31^4 = 923521, 31^3 = 29791, 31^2 = 961
+    for (int end = length & ~3; i < end; i += 4) {
+      hash = 923521 * hash + 29791 * bytes[i] + 961 * bytes[i + 1] + 31 * bytes[i + 2]
+             + bytes[i + 3];
+    }
+    for (; i < length; i++) {
       hash = (31 * hash) + (int) bytes[i];
     }
     return hash;
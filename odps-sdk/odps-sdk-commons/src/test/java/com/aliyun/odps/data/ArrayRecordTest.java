@@ -390,6 +390,37 @@ public class ArrayRecordTest {
     Assert.assertNull("column 1 should be null after clear", r.get(1));
   }
 
+  @Test
+  public void testSharedColumnIndex() {
+    Column[] columns = new Column[]{new Column("col1", TypeInfoFactory.BIGINT),
+                                    new Column("col2", TypeInfoFactory.STRING)};
+    ColumnIndex index = ColumnIndex.of(columns);
+    Assert.assertEquals(0, index.indexOf("col1"));
+    Assert.assertEquals(1, index.indexOf("col2"));
+    Assert.assertEquals(-1, index.indexOf("col3"));
+
+    ArrayRecord r1 = new ArrayRecord(columns, index, true, null);
+    ArrayRecord r2 = new ArrayRecord(columns, index, true, null);
+    r1.setBigint("col1", 1L);
+    r2.setString("col2", "hello");
+    Assert.assertEquals(Long.valueOf(1L), r1.getBigint(0));
+    Assert.assertEquals("hello", r2.getString(1));
+    Assert.assertEquals(Long.valueOf(1L), r1.clone().getBigint("col1"));
+
+    try {
+      r1.get("col3");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("col3"));
+    }
+
+    try {
+      new ArrayRecord(columns.clone(), index, true, null);
+      Assert.fail();
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+
   @Test
   public void testInterval() {
     TableSchema schema = new TableSchema();
@@ -0,0 +1,158 @@
+package com.aliyun.odps.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WritableComparatorTest {
+
+  private static int sign(int v) {
+    return Integer.signum(v);
+  }
+
+  @Test
+  public void testCompareBytes() {
+    Random random = new Random(0);
+    byte[] b1 = new byte[64];
+    byte[] b2 = new byte[64];
+    for (int round = 0; round < 20000; round++) {
+      random.nextBytes(b1);
+      // 共享一段随机长度的前缀, 覆盖不同的字节位置
+      System.arraycopy(b1, 0, b2, 0, b2.length);
+      int diff = random.nextInt(b2.length);
+      b2[diff] = (byte) random.nextInt();
+      int s1 = random.nextInt(8);
+      int s2 = random.nextInt(8);
+      int l1 = random.nextInt(b1.length - s1 + 1);
+      int l2 = random.nextInt(b2.length - s2 + 1);
+      if (round % 2 == 0) {
+        s2 = s1;
+      }
+      Assert.assertEquals(FastByteComparisons.compareByByte(b1, s1, l1, b2, s2, l2),
+                          WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2));
+      Assert.assertEquals(FastByteComparisons.compareByByte(b2, s2, l2, b1, s1, l1),
+                          WritableComparator.compareBytes(b2, s2, l2, b1, s1, l1));
+    }
+
+    // 无符号比较
+    byte[] a = {0, 0, 0, 0, 0, 0, 0, (byte) 0x80};
+    byte[] b = {0, 0, 0, 0, 0, 0, 0, 0x7f};
+    Assert.assertEquals(1, WritableComparator.compareBytes(a, 0, 8, b, 0, 8));
+    Assert.assertEquals(0, WritableComparator.compareBytes(a, 0, 8, a, 0, 8));
+    Assert.assertEquals(-1, sign(WritableComparator.compareBytes(a, 0, 7, a, 0, 8)));
+  }
+
+  @Test
+  public void testHashBytes() {
+    Random random = new Random(0);
+    for (int length = 0; length < 40; length++) {
+      byte[] bytes = new byte[length];
+      random.nextBytes(bytes);
+      int expected = 1;
+      for (byte v : bytes) {
+        expected = 31 * expected + v;
+      }
+      Assert.assertEquals(expected, WritableComparator.hashBytes(bytes, length));
+    }
+  }
+
+  @Test
+  public void testConcurrentGet() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<WritableComparator>> futures = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        futures.add(executor.submit(() -> WritableComparator.get(Text.class)));
+      }
+      for (Future<WritableComparator> future : futures) {
+        Assert.assertTrue(future.get() instanceof Text.Comparator);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // 未注册的类型每次返回新的通用实现
+    Assert.assertNotSame(WritableComparator.get(Tuple.class), WritableComparator.get(Tuple.class));
+  }
+
+  private static byte[][] serialize(List<? extends Writable> keys) throws IOException {
+    byte[][] data = new byte[keys.size()][];
+    DataOutputBuffer out = new DataOutputBuffer();
+    for (int i = 0; i < keys.size(); i++) {
+      out.reset();
+      keys.get(i).write(out);
+      data[i] = new byte[out.getLength()];
+      System.arraycopy(out.getData(), 0, data[i], 0, out.getLength());
+    }
+    return data;
+  }
+
+  private static void bench(String name, Class<? extends WritableComparable> keyClass,
+                            List<? extends Writable> keys) throws IOException {
+    byte[][] data = serialize(keys);
+    WritableComparator comparator = WritableComparator.get(keyClass);
+    // 前几轮预热, 输出最后一轮的结果
+    for (int round = 0; round < 10; round++) {
+      long checksum = 0;
+      long start = System.nanoTime();
+      for (int i = 1; i < data.length; i++) {
+        checksum += comparator.compare(data[i - 1], 0, data[i - 1].length, data[i], 0,
+                                       data[i].length);
+      }
+      long compare = System.nanoTime() - start;
+
+      // 整段序列化数据的字节比较, 每次 8 个字节与逐字节对照
+      start = System.nanoTime();
+      for (int i = 1; i < data.length; i++) {
+        checksum += FastByteComparisons.compareTo(data[i - 1], 0, data[i - 1].length,
+                                                  data[i], 0, data[i].length);
+      }
+      long words = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 1; i < data.length; i++) {
+        checksum += FastByteComparisons.compareByByte(data[i - 1], 0, data[i - 1].length,
+                                                      data[i], 0, data[i].length);
+      }
+      long bytes = System.nanoTime() - start;
+
+      if (round == 9) {
+        int ops = data.length - 1;
+        System.out.println(String.format(
+            "%s: compare %.1f ns/op, compareBytes %.1f ns/op, byte loop %.1f ns/op, unsafe: %s, "
+            + "checksum: %d", name, (double) compare / ops, (double) words / ops,
+            (double) bytes / ops, FastByteComparisons.isUnsafeAvailable(), checksum));
+      }
+    }
+  }
+
+  /**
+   * 排序常见 key 类型的比较耗时, 只输出结果
+   */
+  @Test
+  public void testBenchmark() throws IOException {
+    Random random = new Random(0);
+    String prefix = "user_0000000000_";
+    List<Text> texts = new ArrayList<>();
+    List<BytesWritable> bytes = new ArrayList<>();
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      String s = prefix + random.nextInt(1000);
+      texts.add(new Text(s));
+      byte[] b = new byte[32];
+      random.nextBytes(b);
+      System.arraycopy(prefix.getBytes(), 0, b, 0, 16);
+      bytes.add(new BytesWritable(b));
+      tuples.add(new Tuple(new Writable[]{new Text(s), new LongWritable(i)}));
+    }
+    bench("Text", Text.class, texts);
+    bench("BytesWritable", BytesWritable.class, bytes);
+    bench("Tuple", Tuple.class, tuples);
+  }
+}
@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.aliyun.odps.utils.GsonObjectBuilder;
 import com.google.gson.Gson;
@@ -886,11 +887,15 @@ public class Instance extends com.aliyun.odps.LazyLoad {
   /**
    * 阻塞当前线程, 直到Instance结束
    *
+   * <p>
+   * 轮询间隔从 100ms 开始逐步增加到 1s, 短作业可以更快返回
+   * </p>
+   *
    * @throws OdpsException
    *     Instance失败
    */
   public void waitForSuccess() throws OdpsException {
-    waitForSuccess(1000);
+    waitForSuccess(100, 1000);
   }
 
   /**
@@ -902,14 +907,45 @@ public class Instance extends com.aliyun.odps.LazyLoad {
    *     Instance失败
    */
   public void waitForSuccess(long interval) throws OdpsException {
+    waitForSuccess(interval, interval);
+  }
+
+  private void waitForSuccess(long interval, long maxInterval) throws OdpsException {
     while (!isTerminated()) {
       try {
         Thread.sleep(interval);
       } catch (InterruptedException e) {
         break;
       }
+      interval = Math.min(maxInterval, interval * 2);
     }
 
+    checkSuccess();
+  }
+
+  /**
+   * 异步等待Instance执行成功, 不阻塞当前线程
+   *
+   * <p>
+   * 使用 {@link InstanceWaiter#getDefault()} 共享的线程轮询状态
+   * </p>
+   *
+   * @return Instance成功结束时完成的 future, Instance失败时以 {@link OdpsException} 异常结束
+   */
+  public CompletableFuture<Instance> waitForSuccessAsync() {
+    return InstanceWaiter.getDefault().waitForSuccess(this);
+  }
+
+  /**
+   * 异步等待Instance结束, 不检查执行结果
+   *
+   * @return Instance结束时完成的 future
+   */
+  public CompletableFuture<Instance> waitForTerminationAsync() {
+    return InstanceWaiter.getDefault().waitForTermination(this);
+  }
+
+  void checkSuccess() throws OdpsException {
     if (!isSuccessful()) {
       for (Entry<String, TaskStatus> e : getTaskStatus().entrySet()) {
         if (e.getValue().getStatus() == TaskStatus.Status.FAILED) {
@@ -921,6 +957,20 @@ public class Instance extends com.aliyun.odps.LazyLoad {
     }
   }
 
+  /**
+   * 返回最近一次获取的状态, 不发送请求
+   */
+  Status getCachedStatus() {
+    return status;
+  }
+
+  /**
+   * 由 {@link InstanceWaiter} 在确认 Instance 结束后调用
+   */
+  void setTerminated() {
+    status = Status.TERMINATED;
+  }
+
   // SysTask
 
   /**
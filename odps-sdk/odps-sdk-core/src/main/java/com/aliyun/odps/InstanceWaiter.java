@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InstanceWaiter 在共享的线程上异步等待 {@link Instance} 结束
+ *
+ * <p>
+ * 每个 Instance 的轮询间隔从 initialInterval 开始逐步翻倍直到 maxInterval,
+ * 短作业能很快返回, 长作业的轮询次数也不会太多。<br />
+ * 同一个 Instance 的多个等待者共享一次轮询;
+ * 同一个 project 中等待的 Instance 达到 batchThreshold 时,
+ * 通过一次列举 RUNNING 状态的 Instance 确认仍在运行的 Instance, 只单独查询不在列表中的 Instance,
+ * 等待中的 Instance 全部出现在列表中时提前结束列举。
+ * </p>
+ *
+ * <pre>
+ * CompletableFuture&lt;Instance&gt; f = instance.waitForSuccessAsync();
+ * f.thenAccept(i -&gt; ...);
+ * </pre>
+ */
+public class InstanceWaiter implements Closeable {
+
+  public static final long DEFAULT_INITIAL_INTERVAL_MILLIS = 100;
+  public static final long DEFAULT_MAX_INTERVAL_MILLIS = 5000;
+  public static final int DEFAULT_POLL_THREADS = 4;
+  public static final int DEFAULT_BATCH_THRESHOLD = 16;
+
+  // 连续查询失败的次数达到上限时, 等待以异常结束
+  private static final int MAX_CONSECUTIVE_ERRORS = 3;
+
+  private static class DefaultHolder {
+    static final InstanceWaiter INSTANCE = new InstanceWaiter();
+  }
+
+  /**
+   * @return 进程内共享的 InstanceWaiter, {@link Instance#waitForSuccessAsync()} 使用它等待
+   */
+  public static InstanceWaiter getDefault() {
+    return DefaultHolder.INSTANCE;
+  }
+
+  private static class Waiter {
+
+    final Instance instance;
+    final boolean checkSuccess;
+    final CompletableFuture<Instance> future = new CompletableFuture<>();
+
+    Waiter(Instance instance, boolean checkSuccess) {
+      this.instance = instance;
+      this.checkSuccess = checkSuccess;
+    }
+  }
+
+  private static class Tracked {
+
+    final String key;
+    final Odps odps;
+    final String project;
+    final String id;
+    // 轮询使用独立的 Instance 对象, 不和调用者的对象共享状态
+    final Instance poller;
+    final List<Waiter> waiters = new ArrayList<>();
+    boolean done = false;
+
+    volatile boolean polling = false;
+    long interval;
+    long nextPollAt;
+    int errors = 0;
+
+    Tracked(String key, Instance instance, long interval) {
+      this.key = key;
+      this.odps = instance.getOdps();
+      this.project = instance.getProject();
+      this.id = instance.getId();
+      this.poller = odps.instances().get(project, id);
+      this.interval = interval;
+      this.nextPollAt = System.currentTimeMillis() + interval;
+    }
+  }
+
+  private final long initialIntervalMillis;
+  private final long maxIntervalMillis;
+  private volatile int batchThreshold = DEFAULT_BATCH_THRESHOLD;
+
+  private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService pollers;
+  private volatile boolean closed = false;
+
+  private final AtomicLong pollCount = new AtomicLong();
+  private final AtomicLong batchPollCount = new AtomicLong();
+
+  public InstanceWaiter() {
+    this(DEFAULT_POLL_THREADS, DEFAULT_INITIAL_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+  }
+
+  /**
+   * @param pollThreads 执行状态查询的线程数
+   * @param initialIntervalMillis 第一次轮询的间隔, 单位毫秒
+   * @param maxIntervalMillis 最大轮询间隔, 单位毫秒
+   */
+  public InstanceWaiter(int pollThreads, long initialIntervalMillis, long maxIntervalMillis) {
+    if (pollThreads <= 0 || initialIntervalMillis <= 0 || maxIntervalMillis < initialIntervalMillis) {
+      throw new IllegalArgumentException(
+          "Invalid waiter config: pollThreads=" + pollThreads + ", initialIntervalMillis="
+          + initialIntervalMillis + ", maxIntervalMillis=" + maxIntervalMillis);
+    }
+    this.initialIntervalMillis = initialIntervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "odps-instance-waiter");
+      t.setDaemon(true);
+      return t;
+    });
+    AtomicInteger index = new AtomicInteger();
+    this.pollers = Executors.newFixedThreadPool(pollThreads, r -> {
+      Thread t = new Thread(r, "odps-instance-waiter-poller-" + index.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    long tick = Math.max(10, Math.min(50, initialIntervalMillis / 2));
+    scheduler.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 设置批量查询的阈值, 同一个 project 中等待的 Instance 数达到阈值时使用列举代替逐个查询
+   *
+   * @param batchThreshold 阈值, 小于等于 0 表示不使用批量查询
+   */
+  public void setBatchThreshold(int batchThreshold) {
+    this.batchThreshold = batchThreshold;
+  }
+
+  /**
+   * 等待 Instance 结束, 不检查执行结果
+   *
+   * @return Instance 结束时完成的 future, 结果为传入的 instance
+   */
+  public CompletableFuture<Instance> waitForTermination(Instance instance) {
+    return register(new Waiter(instance, false));
+  }
+
+  /**
+   * 等待 Instance 执行成功
+   *
+   * @return Instance 成功结束时完成的 future, Instance 失败时以 {@link OdpsException} 异常结束
+   */
+  public CompletableFuture<Instance> waitForSuccess(Instance instance) {
+    return register(new Waiter(instance, true));
+  }
+
+  /**
+   * @return 正在等待的 Instance 数
+   */
+  public int getTrackedCount() {
+    return tracked.size();
+  }
+
+  /**
+   * @return 单个 Instance 状态查询的次数
+   */
+  public long getPollCount() {
+    return pollCount.get();
+  }
+
+  /**
+   * @return 批量列举查询的次数
+   */
+  public long getBatchPollCount() {
+    return batchPollCount.get();
+  }
+
+  /**
+   * 停止轮询, 所有未结束的等待以异常结束
+   */
+  @Override
+  public void close() {
+    closed = true;
+    scheduler.shutdownNow();
+    pollers.shutdownNow();
+    for (Tracked t : new ArrayList<>(tracked.values())) {
+      fail(t, new OdpsException("Instance waiter is closed."));
+    }
+  }
+
+  private CompletableFuture<Instance> register(Waiter waiter) {
+    Instance instance = waiter.instance;
+    if (closed) {
+      waiter.future.completeExceptionally(new OdpsException("Instance waiter is closed."));
+      return waiter.future;
+    }
+    if (instance.getCachedStatus() == Instance.Status.TERMINATED) {
+      submit(() -> finish(waiter));
+      return waiter.future;
+    }
+
+    String key = instance.getOdps().getEndpoint() + "/" + instance.getProject() + "/"
+                 + instance.getId();
+    while (true) {
+      Tracked t = tracked.computeIfAbsent(key, k -> new Tracked(k, instance,
+                                                                initialIntervalMillis));
+      synchronized (t) {
+        if (!t.done) {
+          t.waiters.add(waiter);
+          return waiter.future;
+        }
+      }
+    }
+  }
+
+  private void submit(Runnable task) {
+    try {
+      pollers.execute(task);
+    } catch (RejectedExecutionException e) {
+      // closed
+    }
+  }
+
+  private void tick() {
+    long now = System.currentTimeMillis();
+    Map<Odps, Map<String, List<Tracked>>> groups = new IdentityHashMap<>();
+    for (Tracked t : tracked.values()) {
+      if (t.polling) {
+        continue;
+      }
+      synchronized (t) {
+        // 所有等待者都已取消
+        t.waiters.removeIf(w -> w.future.isDone());
+        if (t.waiters.isEmpty()) {
+          t.done = true;
+          tracked.remove(t.key, t);
+          continue;
+        }
+      }
+      groups.computeIfAbsent(t.odps, o -> new HashMap<>())
+          .computeIfAbsent(t.project, p -> new ArrayList<>()).add(t);
+    }
+
+    int threshold = batchThreshold;
+    for (Map<String, List<Tracked>> projects : groups.values()) {
+      for (List<Tracked> group : projects.values()) {
+        boolean anyDue = false;
+        for (Tracked t : group) {
+          anyDue |= t.nextPollAt <= now;
+        }
+        if (!anyDue) {
+          continue;
+        }
+        if (threshold > 0 && group.size() >= threshold) {
+          // 一次列举确认整个 project 中的 Instance, 同一 project 的 Instance 因此保持同一轮询节奏
+          for (Tracked t : group) {
+            t.polling = true;
+          }
+          submit(() -> batchPoll(group));
+        } else {
+          for (Tracked t : group) {
+            if (t.nextPollAt <= now) {
+              t.polling = true;
+              submit(() -> poll(t));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void batchPoll(List<Tracked> group) {
+    Tracked first = group.get(0);
+    Set<String> ids = new HashSet<>();
+    for (Tracked t : group) {
+      ids.add(t.id);
+    }
+    Set<String> running = new HashSet<>();
+    try {
+      InstanceFilter filter = new InstanceFilter();
+      filter.setStatus(Instance.Status.RUNNING);
+      filter.setOnlyOwner(true);
+      Iterator<Instance> it = first.odps.instances().iterator(first.project, filter);
+      // 只记录等待中的 Instance, 全部找到后不再读取后续分页
+      while (running.size() < ids.size() && it.hasNext()) {
+        String id = it.next().getId();
+        if (ids.contains(id)) {
+          running.add(id);
+        }
+      }
+      batchPollCount.incrementAndGet();
+    } catch (RuntimeException e) {
+      // 列举失败时逐个查询
+      running.clear();
+    }
+
+    // 不在列表中的 Instance 可能已经结束, 也可能处于其他状态, 需要单独确认
+    for (Tracked t : group) {
+      if (!running.contains(t.id)) {
+        poll(t);
+      }
+    }
+    // 最后再释放仍在运行的 Instance, 避免单独查询期间它们被拆成小组逐个查询
+    for (Tracked t : group) {
+      if (running.contains(t.id)) {
+        reschedule(t);
+      }
+    }
+  }
+
+  private void poll(Tracked t) {
+    try {
+      pollCount.incrementAndGet();
+      Instance.Status status = t.poller.getStatus();
+      t.errors = 0;
+      if (status == Instance.Status.TERMINATED) {
+        complete(t);
+      } else {
+        reschedule(t);
+      }
+    } catch (RuntimeException e) {
+      if (++t.errors >= MAX_CONSECUTIVE_ERRORS) {
+        fail(t, e);
+      } else {
+        reschedule(t);
+      }
+    }
+  }
+
+  private void reschedule(Tracked t) {
+    t.interval = Math.min(maxIntervalMillis, t.interval * 2);
+    t.nextPollAt = System.currentTimeMillis() + t.interval;
+    t.polling = false;
+  }
+
+  private List<Waiter> detach(Tracked t) {
+    List<Waiter> waiters;
+    synchronized (t) {
+      t.done = true;
+      waiters = new ArrayList<>(t.waiters);
+      t.waiters.clear();
+    }
+    tracked.remove(t.key, t);
+    return waiters;
+  }
+
+  private void complete(Tracked t) {
+    for (Waiter w : detach(t)) {
+      finish(w);
+    }
+  }
+
+  private void fail(Tracked t, Throwable e) {
+    for (Waiter w : detach(t)) {
+      w.future.completeExceptionally(e);
+    }
+  }
+
+  private void finish(Waiter w) {
+    if (w.future.isDone()) {
+      return;
+    }
+    try {
+      Instance instance = w.instance;
+      instance.setTerminated();
+      // 触发 hooks, 与同步等待的行为一致
+      instance.getStatus();
+      if (w.checkSuccess) {
+        instance.checkSuccess();
+      }
+      w.future.complete(instance);
+    } catch (OdpsException | RuntimeException e) {
+      w.future.completeExceptionally(e);
+    }
+  }
+}
@@ -560,6 +560,22 @@ public class Instances implements Iterable<Instance> {
       this.project = projectName;
     }
 
+    @Override
+    public List<Instance> list(String marker, long maxItems) {
+      if (marker != null) {
+        params.put("marker", marker);
+      }
+      if (maxItems >= 0) {
+        params.put("maxitems", String.valueOf(maxItems));
+      }
+      return list();
+    }
+
+    @Override
+    public String getMarker() {
+      return params.get("marker");
+    }
+
     @Override
     protected List<Instance> list() {
       ArrayList<Instance> instances = new ArrayList<Instance>();
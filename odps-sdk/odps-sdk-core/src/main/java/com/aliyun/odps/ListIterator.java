@@ -23,9 +23,23 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 支持通过{@link #list()}自定义的Iterator
+ * <br />
+ * 调用{@link #prefetch(int, long)}后, 在后台线程中提前获取后续的若干页, 调用方处理当前页时,
+ * 下一页的请求和解析同时进行:
+ * <pre>
+ * ListIterator&lt;Table&gt; iter = (ListIterator&lt;Table&gt;) odps.tables().iterator();
+ * iter.prefetch(2, 1000);
+ * </pre>
  */
 public abstract class ListIterator<E> implements Iterator<E> {
 
@@ -45,12 +59,89 @@ public abstract class ListIterator<E> implements Iterator<E> {
     return null;
   }
 
+  private static final AtomicInteger PREFETCH_THREAD_INDEX = new AtomicInteger();
+
+  private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "odps-list-prefetch-" + PREFETCH_THREAD_INDEX.getAndIncrement());
+    t.setDaemon(true);
+    return t;
+  });
+
+  /**
+   * 调用方长时间不取数据时, 后台线程退出, 之后的页面由调用方同步获取
+   */
+  private static final long PREFETCH_IDLE_TIMEOUT_MILLIS = 60 * 1000L;
+
+  private static class Page<E> {
+
+    final List<E> items;
+    final RuntimeException error;
+
+    Page(List<E> items, RuntimeException error) {
+      this.items = items;
+      this.error = error;
+    }
+  }
+
   private LinkedList<E> cache = new LinkedList<E>();
 
+  private int prefetchDepth = 0;
+  private long pageSize = -1;
+  private BlockingQueue<Page<E>> pages;
+  private Semaphore freeSlots;
+  private volatile boolean producing = false;
+  private volatile boolean closed = false;
+  private boolean exhausted = false;
+
+  /**
+   * 开启异步预取, 见{@link #prefetch(int, long)}
+   *
+   * @param depth
+   *     最多提前获取的页数
+   * @return this
+   */
+  public ListIterator<E> prefetch(int depth) {
+    return prefetch(depth, -1);
+  }
+
+  /**
+   * 开启异步预取, 需要在第一次调用{@link #hasNext()}之前调用.
+   * 开启后{@link #list()}只在后台线程中调用, 不要再在其他线程中调用{@link #list()}或者
+   * {@link #getMarker()}. 不再使用时调用{@link #close()}停止预取.
+   *
+   * @param depth
+   *     最多提前获取的页数
+   * @param pageSize
+   *     每页的条数, 通过{@link #list(String, long)}传给服务端, 小于等于 0 时使用服务端的默认值
+   * @return this
+   */
+  public ListIterator<E> prefetch(int depth, long pageSize) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("Argument 'depth' should be greater than 0");
+    }
+    if (pages != null) {
+      throw new IllegalStateException("Prefetch has already started");
+    }
+    this.prefetchDepth = depth;
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * 停止预取, 之后{@link #hasNext()}返回 false
+   */
+  public void close() {
+    closed = true;
+    cache.clear();
+    if (pages != null) {
+      pages.clear();
+    }
+  }
+
   @Override
   public boolean hasNext() {
     while (cache.size() == 0) {
-      List<E> list = list();
+      List<E> list = prefetchDepth > 0 ? nextPrefetchedPage() : list();
       if (list == null) {
         return false;
       } else {
@@ -68,6 +159,70 @@ public abstract class ListIterator<E> implements Iterator<E> {
     return cache.pollFirst();
   }
 
+  private List<E> fetchPage() {
+    return pageSize > 0 ? list(null, pageSize) : list();
+  }
+
+  private List<E> nextPrefetchedPage() {
+    if (exhausted || closed) {
+      return null;
+    }
+    if (pages == null) {
+      pages = new LinkedBlockingQueue<Page<E>>();
+      freeSlots = new Semaphore(prefetchDepth);
+      producing = true;
+      PREFETCH_EXECUTOR.execute(this::produce);
+    }
+
+    try {
+      Page<E> page = pages.poll();
+      while (page == null) {
+        if (!producing) {
+          page = pages.poll();
+          if (page == null) {
+            // 后台线程已经退出, 同步获取
+            return fetchPage();
+          }
+          break;
+        }
+        page = pages.poll(100, TimeUnit.MILLISECONDS);
+      }
+      freeSlots.release();
+      if (page.error != null) {
+        exhausted = true;
+        throw page.error;
+      }
+      if (page.items == null) {
+        exhausted = true;
+      }
+      return page.items;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
+
+  private void produce() {
+    try {
+      while (!closed && freeSlots.tryAcquire(PREFETCH_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        Page<E> page;
+        try {
+          page = new Page<E>(fetchPage(), null);
+        } catch (RuntimeException e) {
+          page = new Page<E>(null, e);
+        }
+        pages.add(page);
+        if (page.items == null) {
+          return;
+        }
+      }
+    } catch (InterruptedException ignore) {
+      // exit
+    } finally {
+      producing = false;
+    }
+  }
+
   @Override
   public void remove() {
     throw new RuntimeException("Method not supported.");
@@ -28,6 +28,7 @@ import com.aliyun.odps.account.AccountFormat;
 import com.aliyun.odps.account.AppAccount;
 import com.aliyun.odps.account.AppStsAccount;
 import com.aliyun.odps.commons.transport.DefaultTransport;
+import com.aliyun.odps.commons.transport.PooledTransport;
 import com.aliyun.odps.ml.OfflineModels;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.tunnel.TableTunnel;
@@ -158,6 +159,10 @@ public class Odps {
     setEndpoint(odps.getEndpoint());
     setLogViewHost(odps.getLogViewHost());
     client.setIgnoreCerts(odps.getRestClient().isIgnoreCerts());
+    if (odps.getRestClient().getTransport() instanceof PooledTransport) {
+      // 共享连接池
+      client.setTransport(odps.getRestClient().getTransport());
+    }
     if (odps.getRestClient().getProxy() != null) {
       client.setProxy(odps.getRestClient().getProxy());
     }
@@ -20,6 +20,7 @@
 package com.aliyun.odps;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -34,6 +35,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -42,6 +51,9 @@ import com.aliyun.odps.Resource.Type;
 import com.aliyun.odps.commons.transport.Headers;
 import com.aliyun.odps.commons.transport.Params;
 import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.commons.util.RetryExceedLimitException;
+import com.aliyun.odps.commons.util.RetryStrategy;
+import com.aliyun.odps.commons.util.backoff.ExponentialBackOffStrategy;
 import com.aliyun.odps.rest.ResourceBuilder;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.rest.SimpleXmlUtils;
@@ -97,6 +109,11 @@ public class Resources implements Iterable<Resource> {
   private final RestClient client;
   private Odps odps;
   private int chunkSize;
+  private int uploadThreads = 4;
+  // 默认只缓存一个分片, 分片依次上传
+  private long maxInflightBytes = 0;
+  private int partRetryTimes = 3;
+  private boolean resumable = false;
 
   Resources(Odps odps) {
     this.odps = odps;
@@ -464,34 +481,43 @@ public class Resources implements Iterable<Resource> {
     }
 
     MessageDigest digest = DigestUtils.getMd5Digest();
-    byte[] tmpContent = new byte[chunkSize];
     long totalBytes = 0L;
-    int readSize;
     int cnt = 0;
     List<String> tmpFiles = new ArrayList<>();
-    while ((readSize = in.read(tmpContent)) != -1) {
-      digest.update(tmpContent, 0, readSize);
-      InputStream input = new ByteArrayInputStream(tmpContent, 0, readSize);
-      FileResource tmp = new FileResource();
-      String tmpName;
-
-      // Using a deterministic temp resource name instead of a random UUID has 2 benefits:
-      // 1. Human readable, much easier to debug
-      // 2. Temp resources that has been uploaded could be reused if the MD5 matches.
-      if (NameSpaceSchemaUtils.isSchemaEnabled(schema)) {
-        tmpName = String.format("%s.%s.part.tmp.%06d", schema, r.getName(), cnt);
-      } else {
-        tmpName = String.format("%s.part.tmp.%06d", r.getName(), cnt);
-      }
+    try (PartUploader uploader = new PartUploader(project, schema)) {
+      while (true) {
+        byte[] tmpContent = uploader.takeBuffer();
+        // 读满整个分片, 保证同一文件每次切分出的分片相同, 以便断点续传时复用
+        int readSize = readChunk(in, tmpContent);
+        if (readSize == 0) {
+          uploader.returnBuffer(tmpContent);
+          break;
+        }
+        digest.update(tmpContent, 0, readSize);
+        String tmpName;
+
+        // Using a deterministic temp resource name instead of a random UUID has 2 benefits:
+        // 1. Human readable, much easier to debug
+        // 2. Temp resources that has been uploaded could be reused if the MD5 matches.
+        if (NameSpaceSchemaUtils.isSchemaEnabled(schema)) {
+          tmpName = String.format("%s.%s.part.tmp.%06d", schema, r.getName(), cnt);
+        } else {
+          tmpName = String.format("%s.part.tmp.%06d", r.getName(), cnt);
+        }
 
-      tmp.setIsTempResource(true);
-      tmp.setName(tmpName);
-      tmpFiles.add(tmpName);
-      createTempPartFile(project, schema, tmp, input);
+        tmpFiles.add(tmpName);
+        uploader.submit(tmpName, tmpContent, readSize);
 
-      cnt++;
-      totalBytes += readSize;
-      input.close();
+        cnt++;
+        totalBytes += readSize;
+        if (readSize < tmpContent.length) {
+          break;
+        }
+      }
+      uploader.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OdpsException("Interrupted while uploading resource " + r.getName(), e);
     }
 
     byte[] md5Bytes = digest.digest();
@@ -770,6 +796,202 @@ public class Resources implements Iterable<Resource> {
     return new String(new char[32 - md5.length()]).replace("\0", "0") + md5;
   }
 
+  /**
+   * 从输入流读满 buffer, 直到 buffer 写满或者流结束
+   *
+   * @return 读取的字节数, 流已结束时返回 0
+   */
+  private static int readChunk(InputStream in, byte[] buffer) throws IOException {
+    int total = 0;
+    while (total < buffer.length) {
+      int n = in.read(buffer, total, buffer.length - total);
+      if (n == -1) {
+        break;
+      }
+      total += n;
+    }
+    return total;
+  }
+
+  /**
+   * 判断分片是否已经上传过. 只有同名临时资源存在, 并且大小和 MD5 都一致时才认为可以复用
+   */
+  private boolean isPartUploaded(String project, String schema, String name, long size,
+                                 String md5) throws OdpsException {
+    ResourceModel model = new ResourceModel();
+    model.name = name;
+    model.schemaName = schema;
+    Resource part = new Resource(model, project, odps);
+    try {
+      part.reload();
+    } catch (NoSuchObjectException e) {
+      return false;
+    }
+    return part.model.size != null && part.model.size == size
+           && md5.equalsIgnoreCase(part.model.contentMD5);
+  }
+
+  private void uploadPart(String project, String schema, String name, byte[] content, int len)
+      throws OdpsException, IOException, InterruptedException {
+    if (resumable) {
+      MessageDigest digest = DigestUtils.getMd5Digest();
+      digest.update(content, 0, len);
+      if (isPartUploaded(project, schema, name, len, toHexString(digest.digest()))) {
+        return;
+      }
+    }
+
+    FileResource tmp = new FileResource();
+    tmp.setIsTempResource(true);
+    tmp.setName(name);
+    RetryStrategy retry = new PartRetryStrategy(partRetryTimes);
+    while (true) {
+      try {
+        createTempPartFile(project, schema, tmp, new ByteArrayInputStream(content, 0, len));
+        return;
+      } catch (OdpsException | IOException e) {
+        try {
+          retry.onFailure(e);
+        } catch (RetryExceedLimitException ignore) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * 分片上传失败时的重试策略, 客户端错误(4xx)不重试
+   */
+  private static class PartRetryStrategy extends RetryStrategy {
+
+    PartRetryStrategy(int limit) {
+      super(limit, new ExponentialBackOffStrategy(1));
+    }
+
+    @Override
+    protected boolean needRetry(Exception e) {
+      if (e instanceof OdpsException) {
+        Integer status = ((OdpsException) e).getStatus();
+        return status == null || status / 100 != 4 || status == 429;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * 并发上传分片. 分片缓冲区的个数由 maxInflightBytes 限定, 缓冲区在分片上传完成后复用,
+   * 读取线程在没有空闲缓冲区时等待.
+   */
+  private class PartUploader implements Closeable {
+
+    private final String project;
+    private final String schema;
+    private final int maxBuffers;
+    private final ExecutorService executor;
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private int allocated = 0;
+    private volatile Throwable failure;
+
+    PartUploader(String project, String schema) {
+      this.project = project;
+      this.schema = schema;
+      this.maxBuffers = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInflightBytes / chunkSize));
+      int threads = Math.max(1, Math.min(uploadThreads, maxBuffers));
+      if (threads > 1) {
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+          Thread t = new Thread(r, "odps-resource-uploader-" + index.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        });
+      } else {
+        this.executor = null;
+      }
+    }
+
+    byte[] takeBuffer() throws OdpsException, IOException, InterruptedException {
+      checkFailure();
+      byte[] buffer = freeBuffers.poll();
+      if (buffer != null) {
+        return buffer;
+      }
+      if (allocated < maxBuffers) {
+        allocated++;
+        return new byte[chunkSize];
+      }
+      while ((buffer = freeBuffers.poll(100, TimeUnit.MILLISECONDS)) == null) {
+        checkFailure();
+      }
+      return buffer;
+    }
+
+    void returnBuffer(byte[] buffer) {
+      freeBuffers.offer(buffer);
+    }
+
+    void submit(String name, byte[] content, int len)
+        throws OdpsException, IOException, InterruptedException {
+      if (executor == null) {
+        try {
+          uploadPart(project, schema, name, content, len);
+        } finally {
+          returnBuffer(content);
+        }
+        return;
+      }
+      futures.add(executor.submit(() -> {
+        try {
+          if (failure == null) {
+            uploadPart(project, schema, name, content, len);
+          }
+        } catch (Throwable e) {
+          failure = e;
+        } finally {
+          returnBuffer(content);
+        }
+        return null;
+      }));
+    }
+
+    void await() throws OdpsException, IOException, InterruptedException {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          failure = e.getCause();
+        }
+      }
+      checkFailure();
+    }
+
+    private void checkFailure() throws OdpsException, IOException, InterruptedException {
+      Throwable e = failure;
+      if (e == null) {
+        return;
+      }
+      if (e instanceof OdpsException) {
+        throw (OdpsException) e;
+      } else if (e instanceof IOException) {
+        throw (IOException) e;
+      } else if (e instanceof InterruptedException) {
+        throw (InterruptedException) e;
+      } else if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      } else if (e instanceof Error) {
+        throw (Error) e;
+      }
+      throw new OdpsException(e.getMessage(), e);
+    }
+
+    @Override
+    public void close() {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
   private void createTempPartFile(
       String project,
       String schema,
@@ -1037,4 +1259,56 @@ public class Resources implements Iterable<Resource> {
   protected void setChunkSize(int chunkSize) {
     this.chunkSize = chunkSize;
   }
+
+  /**
+   * 设置上传大文件资源时并发上传分片的线程数, 默认为 4. 实际的并发数同时受
+   * {@link #setMaxInflightBytes(long)} 限制
+   *
+   * @param uploadThreads
+   *     线程数, 为 1 时顺序上传
+   */
+  public void setUploadThreads(int uploadThreads) {
+    if (uploadThreads < 1) {
+      throw new IllegalArgumentException("Argument 'uploadThreads' should be positive");
+    }
+    this.uploadThreads = uploadThreads;
+  }
+
+  /**
+   * 设置上传大文件资源时, 正在上传的分片最多占用的内存. 实际的并发数不会超过
+   * maxInflightBytes / 分片大小, 并且至少为 1. 默认只占用一个分片, 即顺序上传
+   *
+   * @param maxInflightBytes
+   *     最多占用的字节数
+   */
+  public void setMaxInflightBytes(long maxInflightBytes) {
+    if (maxInflightBytes < 1) {
+      throw new IllegalArgumentException("Argument 'maxInflightBytes' should be positive");
+    }
+    this.maxInflightBytes = maxInflightBytes;
+  }
+
+  /**
+   * 设置单个分片上传失败时的重试次数, 默认为 3
+   *
+   * @param partRetryTimes
+   *     重试次数
+   */
+  public void setPartRetryTimes(int partRetryTimes) {
+    if (partRetryTimes < 0) {
+      throw new IllegalArgumentException("Argument 'partRetryTimes' should not be negative");
+    }
+    this.partRetryTimes = partRetryTimes;
+  }
+
+  /**
+   * 设置是否断点续传, 默认关闭. 开启后, 已经存在并且大小和 MD5 一致的临时分片不会重复上传,
+   * 每个分片上传前会多一次查询请求
+   *
+   * @param resumable
+   *     是否断点续传
+   */
+  public void setResumable(boolean resumable) {
+    this.resumable = resumable;
+  }
 }
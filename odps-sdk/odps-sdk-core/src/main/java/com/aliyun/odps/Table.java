@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import com.aliyun.odps.Partition.PartitionModel;
 import com.aliyun.odps.Partition.PartitionSpecModel;
 import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.data.ArrowStreamRecordReader;
 import com.aliyun.odps.data.RecordReader;
 import com.aliyun.odps.rest.ResourceBuilder;
@@ -234,6 +236,82 @@ public class Table extends LazyLoad {
     TableLifecycleConfig tableLifecycleConfig;
 
     List<ColumnMaskInfo> columnMaskInfoList;
+
+    /**
+     * 拷贝元数据, 集合和 Date 等可修改的字段复制一份, 拷贝之间互不影响.
+     * 其余对象类型的字段在加载元数据时整体替换, 不会被修改, 因此共享同一个实例.
+     * 增加字段时需要同时修改此方法
+     */
+    TableModel copy() {
+      TableModel copy = new TableModel();
+      copy.name = name;
+      copy.ID = ID;
+      copy.format = format;
+      if (schema != null) {
+        copy.schema = new Schema();
+        copy.schema.content = schema.content;
+      }
+      copy.comment = comment;
+      copy.owner = owner;
+      copy.projectName = projectName;
+      copy.schemaName = schemaName;
+      copy.tableLabel = tableLabel;
+      copy.cryptoAlgoName = cryptoAlgoName;
+      copy.tableMaskInfo = tableMaskInfo;
+      copy.createdTime = copyOf(createdTime);
+      copy.lastModifiedTime = copyOf(lastModifiedTime);
+      copy.lastAccessTime = copyOf(lastAccessTime);
+      copy.type = type;
+      copy.lastMetaModifiedTime = copyOf(lastMetaModifiedTime);
+      copy.isVirtualView = isVirtualView;
+      copy.isMaterializedViewRewriteEnabled = isMaterializedViewRewriteEnabled;
+      copy.isMaterializedViewOutdated = isMaterializedViewOutdated;
+      copy.isExternalTable = isExternalTable;
+      copy.life = life;
+      copy.hubLifecycle = hubLifecycle;
+      copy.viewText = viewText;
+      copy.viewExpandedText = viewExpandedText;
+      copy.size = size;
+      copy.recordNum = recordNum;
+      copy.isArchived = isArchived;
+      copy.physicalSize = physicalSize;
+      copy.fileNum = fileNum;
+      copy.isTransactional = isTransactional;
+      copy.reserved = reserved;
+      copy.shard = shard;
+      copy.storageHandler = storageHandler;
+      copy.location = location;
+      copy.resources = resources;
+      copy.serDeProperties = copyOf(serDeProperties);
+      copy.clusterInfo = clusterInfo;
+      copy.tableExtendedLabels = copyOf(tableExtendedLabels);
+      copy.mvProperties = copyOf(mvProperties);
+      if (refreshHistory != null) {
+        copy.refreshHistory = new ArrayList<Map<String, String>>(refreshHistory.size());
+        for (Map<String, String> history : refreshHistory) {
+          copy.refreshHistory.add(copyOf(history));
+        }
+      }
+      copy.hasRowAccessPolicy = hasRowAccessPolicy;
+      copy.primaryKey = copyOf(primaryKey);
+      copy.acidDataRetainHours = acidDataRetainHours;
+      copy.storageTierInfo = storageTierInfo;
+      copy.tableLifecycleConfig = tableLifecycleConfig;
+      copy.columnMaskInfoList = copyOf(columnMaskInfoList);
+      return copy;
+    }
+
+    private static Date copyOf(Date date) {
+      return date == null ? null : new Date(date.getTime());
+    }
+
+    private static <T> List<T> copyOf(List<T> list) {
+      return list == null ? null : new ArrayList<T>(list);
+    }
+
+    private static Map<String, String> copyOf(Map<String, String> map) {
+      return map == null ? null : new LinkedHashMap<String, String>(map);
+    }
   }
 
   public static class ColumnMaskInfo {
@@ -331,11 +409,49 @@ public class Table extends LazyLoad {
     reload(client.request(TableModel.class, resource, "GET", params));
   }
 
+  /**
+   * 由{@link TableMetaCache}中的元数据创建已加载的表, 使用元数据的拷贝
+   */
+  Table(TableModel model, TableSchema tableSchema, Odps odps) {
+    this(model.copy(), model.projectName, model.schemaName, odps);
+    this.tableSchema = tableSchema;
+    setLoaded(true);
+  }
+
   public void reload(TableModel model) throws OdpsException {
-    this.model = model;
-    if (model.schema != null) {
-      tableSchema = loadSchemaFromJson(model.schema.content);
+    TableMetaCache cache = odps.tables().getMetaCache();
+    if (cache == null) {
+      this.model = model;
+      if (model.schema != null) {
+        tableSchema = loadSchemaFromJson(model.schema.content);
+      }
+      setLoaded(true);
+      return;
+    }
+
+    String key = TableMetaCache.key(
+        model.projectName == null ? this.model.projectName : model.projectName,
+        model.schemaName == null ? this.model.schemaName : model.schemaName,
+        model.name == null ? this.model.name : model.name);
+    String json = model.schema == null ? null : model.schema.content;
+    TableMetaCache.Entry cached = cache.get(key);
+    if (cached != null && json != null && json.equals(cached.schemaJson)) {
+      // 元数据完全相同, 不再重复解析
+      this.model = cached.model.copy();
+      tableSchema = cached.schema;
+    } else {
+      this.model = model;
+      if (json != null) {
+        tableSchema = loadSchemaFromJson(json);
+        if (cached != null && cached.schema != null && model.lastMetaModifiedTime != null
+            && model.lastMetaModifiedTime.equals(cached.model.lastMetaModifiedTime)) {
+          // 只有数据变化时, 沿用缓存中的表结构
+          tableSchema = cached.schema;
+        }
+      }
     }
+    // 缓存保存独立的拷贝, 之后 reloadExtendInfo 等修改本表的元数据时不影响缓存
+    cache.put(key, this.model.copy(), tableSchema, json);
     setLoaded(true);
   }
 
@@ -1623,22 +1739,6 @@ public class Table extends LazyLoad {
     runSQL(taskName, sb.toString());
   }
 
-  // for list partition response
-  @Root(name = "Partitions", strict = false)
-  private static class ListPartitionsResponse {
-
-    @ElementList(entry = "Partition", inline = true, required = false)
-    private List<PartitionModel> partitions = new LinkedList<PartitionModel>();
-
-    @Element(name = "Marker", required = false)
-    @Convert(SimpleXmlUtils.EmptyStringConverter.class)
-    private String marker;
-
-    @Element(name = "MaxItems", required = false)
-    private Integer maxItems;
-  }
-
-
   /**
    * 在Table上创建Shards
    *
@@ -1753,21 +1853,27 @@ public class Table extends LazyLoad {
         try {
 
           params.putAll(initParamsWithSchema());
-          ListPartitionsResponse
-              resp =
-              client.request(ListPartitionsResponse.class, resource, "GET", params);
-
-          for (PartitionModel partitionModel : resp.partitions) {
-            Partition t = new Partition(
-                partitionModel,
-                model.projectName,
-                model.schemaName,
-                model.name,
-                odps);
-            partitions.add(t);
+          Response resp = client.request(resource, "GET", params, null, null);
+          // the partitions are bound one by one without an intermediate response object. The body
+          // and the page are still held in memory, as for the table list
+          SimpleXmlUtils.ListReader<PartitionModel> reader;
+          try {
+            reader =
+                SimpleXmlUtils.unmarshalList(resp.getBody(), "Partition", PartitionModel.class);
+            while (reader.hasNext()) {
+              Partition t = new Partition(
+                  reader.next(),
+                  model.projectName,
+                  model.schemaName,
+                  model.name,
+                  odps);
+              partitions.add(t);
+            }
+          } catch (Exception e) {
+            throw new OdpsException("Can't bind xml to partition list", e);
           }
 
-          params.put("marker", resp.marker);
+          params.put("marker", reader.getField("Marker"));
         } catch (OdpsException e) {
           throw new RuntimeException(e.getMessage(), e);
         }
@@ -1847,8 +1953,12 @@ public class Table extends LazyLoad {
 
   private void runSQL(String taskName, String query) throws OdpsException {
     Map<String, String> hints = NameSpaceSchemaUtils.setSchemaFlagInHints(null, model.schemaName);
-    Instance i = SQLTask.run(odps, odps.getDefaultProject(), query, taskName, hints, null);
-    i.waitForSuccess();
+    try {
+      Instance i = SQLTask.run(odps, odps.getDefaultProject(), query, taskName, hints, null);
+      i.waitForSuccess();
+    } finally {
+      odps.tables().invalidateMetaCache(model.projectName, model.schemaName, model.name);
+    }
   }
 
   private HashMap<String, String> initParamsWithSchema() throws OdpsException {
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.aliyun.odps.Table.TableModel;
+import com.aliyun.odps.utils.StringUtils;
+
+/**
+ * 表元数据的客户端缓存, 通过{@link Tables#setMetaCache(TableMetaCache)}开启
+ * <br />
+ * 缓存以 project/schema/表名 为 key, 保存加载后的表信息和 {@link TableSchema}, 按最近最少使用淘汰.
+ * 在有效期内, {@link Tables#get(String, String, String)} 直接返回已加载的 {@link Table},
+ * {@link Tables#loadTables(String, String, java.util.Collection)} 只批量请求未命中的表.
+ * 过期的表重新加载时, 如果表的元数据没有变化 (见 {@link Table#getLastMetaModifiedTime()}),
+ * 沿用已经解析的 {@link TableSchema}.
+ * <br />
+ * 缓存返回的 {@link Table} 各自持有表信息的拷贝, 但共享同一个 {@link TableSchema}, 不要修改.
+ * 通过 SDK 创建、删除表以及执行表的 DDL 后清除对应的缓存;
+ * 通过 SDK 以外的方式修改表结构后, 最多在有效期内读到旧的元数据, 可以调用 {@link #invalidate} 清除.
+ */
+public class TableMetaCache {
+
+  static class Entry {
+
+    final TableModel model;
+    final TableSchema schema;
+    final String schemaJson;
+    final long loadTime;
+
+    Entry(TableModel model, TableSchema schema, String schemaJson, long loadTime) {
+      this.model = model;
+      this.schema = schema;
+      this.schemaJson = schemaJson;
+      this.loadTime = loadTime;
+    }
+  }
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, Entry> entries;
+
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long revalidatedCount = 0;
+  private long evictionCount = 0;
+
+  /**
+   * 创建缓存
+   *
+   * @param maxSize
+   *     最多缓存的表数
+   * @param ttl
+   *     有效期
+   * @param unit
+   *     有效期的单位
+   */
+  public TableMetaCache(int maxSize, long ttl, TimeUnit unit) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Argument 'maxSize' should be greater than 0");
+    }
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("Argument 'ttl' should be greater than 0");
+    }
+    this.maxSize = maxSize;
+    this.ttlMillis = unit.toMillis(ttl);
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > TableMetaCache.this.maxSize) {
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  static String key(String project, String schema, String table) {
+    // 未指定 schema 时服务端使用 default schema
+    if (StringUtils.isNullOrEmpty(schema)) {
+      schema = "default";
+    }
+    return (project + "." + schema + "." + table).toLowerCase();
+  }
+
+  /**
+   * 返回有效期内的缓存, 并计入命中或未命中
+   */
+  synchronized Entry getIfFresh(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && System.currentTimeMillis() - entry.loadTime < ttlMillis) {
+      hitCount++;
+      return entry;
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * 返回缓存, 包括已经过期的
+   */
+  synchronized Entry get(String key) {
+    return entries.get(key);
+  }
+
+  synchronized void put(String key, TableModel model, TableSchema schema, String schemaJson) {
+    Entry old = entries.get(key);
+    if (old != null && model.lastMetaModifiedTime != null
+        && Objects.equals(old.model.lastMetaModifiedTime, model.lastMetaModifiedTime)) {
+      revalidatedCount++;
+    }
+    entries.put(key, new Entry(model, schema, schemaJson, System.currentTimeMillis()));
+  }
+
+  /**
+   * 清除指定表的缓存
+   *
+   * @param project
+   *     所在{@link Project}名称
+   * @param schema
+   *     schema 名称, 为空时表示 default schema
+   * @param table
+   *     表名
+   */
+  public synchronized void invalidate(String project, String schema, String table) {
+    entries.remove(key(project, schema, table));
+  }
+
+  /**
+   * 清除所有缓存
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return 在有效期内命中缓存的次数
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return 没有缓存或者缓存已过期的次数
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return 过期后重新加载, 元数据没有变化的次数
+   */
+  public synchronized long getRevalidatedCount() {
+    return revalidatedCount;
+  }
+
+  /**
+   * @return 因超过容量被淘汰的表数
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+}
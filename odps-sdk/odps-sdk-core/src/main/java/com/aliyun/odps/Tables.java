@@ -29,6 +29,7 @@ import java.util.stream.Collectors;
 
 import com.aliyun.odps.Table.TableModel;
 import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.rest.ResourceBuilder;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.rest.SimpleXmlUtils;
@@ -95,14 +96,47 @@ public class Tables implements Iterable<Table> {
     private List<QueryTable> tables = new ArrayList<QueryTable>();
   }
 
+  /**
+   * rest api 一次最多可请求的表数
+   */
+  private static final int MAX_TABLES_PER_QUERY = 100;
+
   private RestClient client;
   private Odps odps;
+  private volatile TableMetaCache metaCache;
 
   Tables(Odps odps) {
     this.odps = odps;
     this.client = odps.getRestClient();
   }
 
+  /**
+   * 设置表元数据缓存, 默认不缓存. 见{@link TableMetaCache}
+   *
+   * @param metaCache
+   *     缓存, 为 null 时关闭缓存
+   */
+  public void setMetaCache(TableMetaCache metaCache) {
+    this.metaCache = metaCache;
+  }
+
+  /**
+   * @return 表元数据缓存, 未开启时返回 null
+   */
+  public TableMetaCache getMetaCache() {
+    return metaCache;
+  }
+
+  /**
+   * 通过 SDK 修改表后清除缓存中的旧元数据. 即使 DDL 失败也清除, 表可能已经被修改
+   */
+  void invalidateMetaCache(String projectName, String schemaName, String tableName) {
+    TableMetaCache cache = metaCache;
+    if (cache != null) {
+      cache.invalidate(projectName, schemaName, tableName);
+    }
+  }
+
   /**
    * 获得指定表信息
    *
@@ -136,6 +170,14 @@ public class Tables implements Iterable<Table> {
    * @return {@link Table}
    */
   public Table get(String projectName, String schemaName, String tableName) {
+    TableMetaCache cache = metaCache;
+    if (cache != null) {
+      TableMetaCache.Entry entry =
+          cache.getIfFresh(TableMetaCache.key(projectName, schemaName, tableName));
+      if (entry != null) {
+        return new Table(entry.model, entry.schema, odps);
+      }
+    }
     TableModel model = new TableModel();
     model.name = tableName;
     return new Table(model, projectName, schemaName, odps);
@@ -419,15 +461,22 @@ public class Tables implements Iterable<Table> {
       String resource = ResourceBuilder.buildTablesResource(projectName);
       try {
 
-        ListTablesResponse resp = client.request(ListTablesResponse.class, resource, "GET",
-                                                 params);
-
-        for (TableModel model : resp.tables) {
-          Table t = new Table(model, projectName, schemaName, odps);
-          tables.add(t);
+        Response resp = client.request(resource, "GET", params, null, null);
+        // the tables are bound one by one without an intermediate ListTablesResponse. RestClient
+        // has already read the whole body for retry and error handling, and ListIterator needs the
+        // marker before the next page, so each page is still held in memory as a list
+        SimpleXmlUtils.ListReader<TableModel> reader;
+        try {
+          reader = SimpleXmlUtils.unmarshalList(resp.getBody(), "Table", TableModel.class);
+          while (reader.hasNext()) {
+            Table t = new Table(reader.next(), projectName, schemaName, odps);
+            tables.add(t);
+          }
+        } catch (Exception e) {
+          throw new OdpsException("Can't bind xml to " + ListTablesResponse.class.getName(), e);
         }
 
-        params.put("marker", resp.marker);
+        params.put("marker", reader.getField("Marker"));
       } catch (OdpsException e) {
         throw new RuntimeException(e.getMessage(), e);
       }
@@ -852,7 +901,11 @@ public class Tables implements Iterable<Table> {
     task.setName(taskName);
     task.setQuery(sb.toString());
 
-    submitCreateAndWait(schemaName, sb.toString(), "SQLDropTableTask", null, null);
+    try {
+      submitCreateAndWait(schemaName, sb.toString(), "SQLDropTableTask", null, null);
+    } finally {
+      invalidateMetaCache(projectName, schemaName, tableName);
+    }
   }
 
   /**
@@ -903,12 +956,54 @@ public class Tables implements Iterable<Table> {
       throw new IllegalArgumentException("Invalid table names.");
     }
 
+    TableMetaCache cache = metaCache;
+    if (cache == null) {
+      QueryTables queryTables = new QueryTables();
+      for (String name : tableNames) {
+        queryTables.tables.add(new QueryTables.QueryTable(projectName, schemaName, name));
+      }
+      return loadTablesInternal(queryTables);
+    }
+
+    // 只请求缓存中没有或者已过期的表, 加载后的表在 Table.reload 中写回缓存
+    Map<String, Table> tables = new HashMap<>();
     QueryTables queryTables = new QueryTables();
     for (String name : tableNames) {
+      String key = TableMetaCache.key(projectName, schemaName, name);
+      if (tables.containsKey(key)) {
+        continue;
+      }
+      TableMetaCache.Entry entry = cache.getIfFresh(key);
+      if (entry != null) {
+        tables.put(key, new Table(entry.model, entry.schema, odps));
+        continue;
+      }
+      // 占位, 同名的表只请求一次
+      tables.put(key, null);
       queryTables.tables.add(new QueryTables.QueryTable(projectName, schemaName, name));
+      if (queryTables.tables.size() == MAX_TABLES_PER_QUERY) {
+        putLoadedTables(tables, loadTablesInternal(queryTables));
+        queryTables = new QueryTables();
+      }
+    }
+    putLoadedTables(tables, loadTablesInternal(queryTables));
+
+    // 按传入的顺序返回, 不存在的表不返回
+    List<Table> result = new ArrayList<>();
+    for (String name : tableNames) {
+      Table table = tables.get(TableMetaCache.key(projectName, schemaName, name));
+      if (table != null) {
+        result.add(table);
+      }
     }
+    return result;
+  }
 
-    return loadTablesInternal(queryTables);
+  private static void putLoadedTables(Map<String, Table> tables, List<Table> loaded) {
+    for (Table table : loaded) {
+      tables.put(TableMetaCache.key(table.getProject(), table.getSchemaName(), table.getName()),
+                 table);
+    }
   }
 
   /**
@@ -1154,31 +1249,41 @@ public class Tables implements Iterable<Table> {
     }
 
     public void create() throws OdpsException {
-      hints = NameSpaceSchemaUtils.setSchemaFlagInHints(hints, schemaName);
-      Instance
-          i =
-          SQLTask.run(odps, projectName, generateCreateTableSql(), "SQLCreateTableTask", hints,
-                      aliases);
-      if (debug) {
-        String logView = odps.logview().generateLogView(i, 24);
-        System.out.println(logView);
+      try {
+        hints = NameSpaceSchemaUtils.setSchemaFlagInHints(hints, schemaName);
+        Instance
+            i =
+            SQLTask.run(odps, projectName, generateCreateTableSql(), "SQLCreateTableTask", hints,
+                        aliases);
+        if (debug) {
+          String logView = odps.logview().generateLogView(i, 24);
+          System.out.println(logView);
+        }
+        i.waitForSuccess();
+      } finally {
+        // 缓存中可能还有在 SDK 以外删除的同名表
+        odps.tables().invalidateMetaCache(projectName, schemaName, tableName);
       }
-      i.waitForSuccess();
     }
 
     public void createExternal(String storedBy, String location) throws OdpsException {
       this.storedBy = storedBy;
       this.location = location;
-      hints = NameSpaceSchemaUtils.setSchemaFlagInHints(hints, schemaName);
-      Instance
-          i =
-          SQLTask.run(odps, projectName, generateCreateExternalTableSql(),
-                      "SQLCreateExternalTableTask", hints, aliases);
-      if (debug) {
-        String logView = odps.logview().generateLogView(i, 24);
-        System.out.println(logView);
+      try {
+        hints = NameSpaceSchemaUtils.setSchemaFlagInHints(hints, schemaName);
+        Instance
+            i =
+            SQLTask.run(odps, projectName, generateCreateExternalTableSql(),
+                        "SQLCreateExternalTableTask", hints, aliases);
+        if (debug) {
+          String logView = odps.logview().generateLogView(i, 24);
+          System.out.println(logView);
+        }
+        i.waitForSuccess();
+      } finally {
+        // 缓存中可能还有在 SDK 以外删除的同名表
+        odps.tables().invalidateMetaCache(projectName, schemaName, tableName);
       }
-      i.waitForSuccess();
     }
 
     private String generateCreateExternalTableSql() {
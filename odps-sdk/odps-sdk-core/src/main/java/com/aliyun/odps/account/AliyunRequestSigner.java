@@ -46,8 +46,27 @@ public class AliyunRequestSigner implements RequestSigner {
 
   private final String accessId;
   private final String accessKey;
+  private final byte[] accessKeyBytes;
   private String regionName;
 
+  /**
+   * v4 签名的派生密钥只与日期和 region 有关, 缓存当天的结果
+   */
+  private volatile SignatureKey signatureKey;
+
+  private static final class SignatureKey {
+
+    private final String date;
+    private final String regionName;
+    private final byte[] key;
+
+    SignatureKey(String date, String regionName, byte[] key) {
+      this.date = date;
+      this.regionName = regionName;
+      this.key = key;
+    }
+  }
+
   public AliyunRequestSigner(String accessId, String accessKey) {
     this(accessId, accessKey, null);
   }
@@ -61,6 +80,7 @@ public class AliyunRequestSigner implements RequestSigner {
     }
     this.accessId = accessId;
     this.accessKey = accessKey;
+    this.accessKeyBytes = accessKey.getBytes();
     this.regionName = regionName;
   }
 
@@ -94,7 +114,7 @@ public class AliyunRequestSigner implements RequestSigner {
   private String calculateSignatureV2(String strToSign) {
     byte[] crypto;
     crypto = SecurityUtils.hmacsha1Signature(strToSign.getBytes(StandardCharsets.UTF_8),
-                                             accessKey.getBytes());
+                                             accessKeyBytes);
 
     String signature = Base64.encodeBase64String(crypto).trim();
     return "ODPS " + accessId + ":" + signature;
@@ -112,6 +132,16 @@ public class AliyunRequestSigner implements RequestSigner {
   }
 
   private byte[] getSignatureKey(String key, String date, String regionName) {
+    SignatureKey cached = signatureKey;
+    if (cached != null && cached.date.equals(date) && cached.regionName.equals(regionName)) {
+      return cached.key;
+    }
+    byte[] derived = deriveSignatureKey(key, date, regionName);
+    signatureKey = new SignatureKey(date, regionName, derived);
+    return derived;
+  }
+
+  private static byte[] deriveSignatureKey(String key, String date, String regionName) {
     byte[] kSecret = ("aliyun_v4" + key).getBytes(StandardCharsets.UTF_8);
     byte[] kDate = hmacsha256Signature(date.getBytes(StandardCharsets.UTF_8), kSecret);
     byte[] kRegion = hmacsha256Signature(regionName.getBytes(StandardCharsets.UTF_8), kDate);
@@ -34,7 +34,24 @@ import javax.net.ssl.X509TrustManager;
 public class AuthorizationUtil {
 
   public static void ignoreHttpsCerts(HttpURLConnection conn) throws IOException {
+    SSLContext ctx = createIgnoreCertsSSLContext();
 
+    HostnameVerifier hv = new HostnameVerifier() {
+      public boolean verify(String urlHostName, SSLSession session) {
+        return true;
+      }
+    };
+
+    if (conn instanceof HttpsURLConnection) {
+      ((HttpsURLConnection) conn).setSSLSocketFactory(ctx.getSocketFactory());
+      ((HttpsURLConnection) conn).setHostnameVerifier(hv);
+    }
+  }
+
+  /**
+   * 创建不校验服务端证书的 SSLContext
+   */
+  public static SSLContext createIgnoreCertsSSLContext() throws IOException {
     try {
       SSLContext ctx = SSLContext.getInstance("TLS");
       X509TrustManager tm = new X509TrustManager() {
@@ -51,20 +68,10 @@ public class AuthorizationUtil {
         }
       };
 
-      HostnameVerifier hv = new HostnameVerifier() {
-        public boolean verify(String urlHostName, SSLSession session) {
-          return true;
-        }
-      };
-
       ctx.init(null, new TrustManager[]{tm}, null);
-      if (conn instanceof HttpsURLConnection) {
-        ((HttpsURLConnection) conn).setSSLSocketFactory(ctx.getSocketFactory());
-        ((HttpsURLConnection) conn).setHostnameVerifier(hv);
-      }
+      return ctx;
     } catch (Exception e) {
       throw new IOException(e.getMessage(), e);
     }
-
   }
 }
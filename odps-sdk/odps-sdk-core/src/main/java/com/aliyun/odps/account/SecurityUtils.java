@@ -19,12 +19,14 @@
 
 package com.aliyun.odps.account;
 
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -39,38 +41,107 @@ public class SecurityUtils {
 
   private static final String NEW_LINE = "\n";
 
+  private static final String CONTENT_TYPE = Headers.CONTENT_TYPE.toLowerCase();
+  private static final String CONTENT_MD5 = Headers.CONTENT_MD5.toLowerCase();
+  private static final String DATE = Headers.DATE.toLowerCase();
+
+  /**
+   * 每个线程缓存的 Mac 个数上限, v4 签名每天会派生新的密钥
+   */
+  static final int MAX_CACHED_MAC_PER_THREAD = 16;
+
+  /**
+   * 按算法和密钥缓存已初始化的 Mac, 避免每次签名都查找 provider 并初始化密钥。
+   * Mac 不是线程安全的, 因此每个线程单独缓存。
+   * 缓存中的密钥副本和 Mac 与线程的生命周期相同, 线程池中的线程不再签名时,
+   * 可以调用 {@link #clearMacCache()} 释放
+   */
+  private static final ThreadLocal<Map<MacKey, Mac>> MAC_CACHE =
+      new ThreadLocal<Map<MacKey, Mac>>() {
+        @Override
+        protected Map<MacKey, Mac> initialValue() {
+          return new LinkedHashMap<MacKey, Mac>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+              return size() > MAX_CACHED_MAC_PER_THREAD;
+            }
+          };
+        }
+      };
+
+  private static final class MacKey {
+
+    private final String algorithm;
+    private final byte[] key;
+    private final int hash;
+
+    MacKey(String algorithm, byte[] key) {
+      this.algorithm = algorithm;
+      this.key = key;
+      this.hash = 31 * algorithm.hashCode() + Arrays.hashCode(key);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MacKey)) {
+        return false;
+      }
+      MacKey other = (MacKey) o;
+      return algorithm.equals(other.algorithm) && Arrays.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * 清除当前线程缓存的 Mac 和密钥副本
+   */
+  public static void clearMacCache() {
+    MAC_CACHE.remove();
+  }
+
   protected static void init() {
     //解决多线程并发问题
   }
 
   protected static String buildCanonicalString(String resource, Request request, String prefix) {
-    StringBuilder builder = new StringBuilder();
-    builder.append(request.getMethod() + NEW_LINE);
+    StringBuilder builder = new StringBuilder(256);
+    builder.append(request.getMethod()).append(NEW_LINE);
 
     Map<String, String> headers = request.getHeaders();
     TreeMap<String, String> headersToSign = new TreeMap<String, String>();
 
     if (headers != null) {
       for (Entry<String, String> header : headers.entrySet()) {
-        if (header.getKey() == null) {
+        String key = header.getKey();
+        // 先忽略大小写过滤, 只有需要签名的 header 才转换为小写
+        if (key == null || !(key.regionMatches(true, 0, prefix, 0, prefix.length())
+                             || key.equalsIgnoreCase(CONTENT_TYPE)
+                             || key.equalsIgnoreCase(CONTENT_MD5)
+                             || key.equalsIgnoreCase(DATE))) {
           continue;
         }
 
-        String lowerKey = header.getKey().toLowerCase();
+        String lowerKey = key.toLowerCase();
 
-        if (lowerKey.equals(Headers.CONTENT_TYPE.toLowerCase())
-            || lowerKey.equals(Headers.CONTENT_MD5.toLowerCase())
-            || lowerKey.equals(Headers.DATE.toLowerCase()) || lowerKey.startsWith(prefix)) {
+        if (lowerKey.equals(CONTENT_TYPE) || lowerKey.equals(CONTENT_MD5)
+            || lowerKey.equals(DATE) || lowerKey.startsWith(prefix)) {
           headersToSign.put(lowerKey, header.getValue());
         }
       }
     }
 
-    if (!headersToSign.containsKey(Headers.CONTENT_TYPE.toLowerCase())) {
-      headersToSign.put(Headers.CONTENT_TYPE.toLowerCase(), "");
+    if (!headersToSign.containsKey(CONTENT_TYPE)) {
+      headersToSign.put(CONTENT_TYPE, "");
     }
-    if (!headersToSign.containsKey(Headers.CONTENT_MD5.toLowerCase())) {
-      headersToSign.put(Headers.CONTENT_MD5.toLowerCase(), "");
+    if (!headersToSign.containsKey(CONTENT_MD5)) {
+      headersToSign.put(CONTENT_MD5, "");
     }
 
     // Add params that have the prefix "x-oss-"
@@ -85,37 +156,35 @@ public class SecurityUtils {
     // Add all headers to sign to the builder
     for (Map.Entry<String, String> entry : headersToSign.entrySet()) {
       String key = entry.getKey();
-      Object value = entry.getValue();
-
+      String value = entry.getValue();
 
       if (key.startsWith(prefix)) {
-
         // null key will error in jdk.
-        builder.append(key);
-
-        builder.append(':');
-
+        builder.append(key).append(':');
         if (value != null) {
           builder.append(value);
         }
-
       } else {
         builder.append(value);
       }
 
-      builder.append("\n");
+      builder.append(NEW_LINE);
     }
 
-
-
     // Add canonical resource
-    builder.append(buildCanonicalizedResource(resource, request.getParameters()));
+    appendCanonicalizedResource(builder, resource, request.getParameters());
 
     return builder.toString();
   }
 
   protected static String buildCanonicalizedResource(String resource, Map<String, String> params) {
     StringBuilder builder = new StringBuilder();
+    appendCanonicalizedResource(builder, resource, params);
+    return builder.toString();
+  }
+
+  private static void appendCanonicalizedResource(StringBuilder builder, String resource,
+                                                  Map<String, String> params) {
     builder.append(resource);
 
     if (params != null && params.size() > 0) {
@@ -134,32 +203,40 @@ public class SecurityUtils {
         separater = '&';
       }
     }
-    String str = builder.toString();
-    return str;
   }
 
   protected static byte[] hmacsha1Signature(byte[] data, byte[] key) {
-    try {
-      SecretKeySpec signingKey = new SecretKeySpec(key, "HmacSHA1");
-      Mac mac = Mac.getInstance("HmacSHA1");
-      mac.init(signingKey);
-      return mac.doFinal(data);
-    } catch (Exception e) {
-      throw new RuntimeException(e.getMessage(), e);
-    }
+    return hmacSignature("HmacSHA1", data, key);
   }
 
   protected static byte[] hmacsha256Signature(byte[] data, byte[] key) {
+    return hmacSignature("HmacSHA256", data, key);
+  }
+
+  private static byte[] hmacSignature(String algorithm, byte[] data, byte[] key) {
     try {
-      SecretKeySpec signingKey = new SecretKeySpec(key, "HmacSHA256");
-      Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(signingKey);
-      return mac.doFinal(data);
+      // doFinal 之后 Mac 恢复到初始化后的状态, 可以直接复用
+      return getMac(algorithm, key).doFinal(data);
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
     }
   }
 
+  /**
+   * 获取当前线程缓存的 Mac, 不存在时创建并初始化
+   */
+  static Mac getMac(String algorithm, byte[] key) throws GeneralSecurityException {
+    Map<MacKey, Mac> cache = MAC_CACHE.get();
+    Mac mac = cache.get(new MacKey(algorithm, key));
+    if (mac == null) {
+      mac = Mac.getInstance(algorithm);
+      mac.init(new SecretKeySpec(key, algorithm));
+      // 复制一份密钥, 防止调用方修改数组后缓存失效
+      cache.put(new MacKey(algorithm, key.clone()), mac);
+    }
+    return mac;
+  }
+
   protected static PrivateKey getPrivateKey(byte[] encodedkey) throws Exception {
     PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(encodedkey);
     try {
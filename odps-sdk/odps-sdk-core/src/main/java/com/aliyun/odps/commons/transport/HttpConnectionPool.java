@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.aliyun.odps.account.AuthorizationUtil;
+
+/**
+ * 按路由(scheme, host, port)管理的 HTTP/1.1 keep-alive 连接池
+ *
+ * <p>
+ * 借出的连接弱引用其使用者, 使用者没有归还连接就被回收时(例如丢弃了没有关闭的响应),
+ * 连接在下次等待连接或定期清理时被关闭并释放名额。
+ * </p>
+ */
+class HttpConnectionPool {
+
+  private static final Logger log = Logger.getLogger(HttpConnectionPool.class.getName());
+
+  // 等待连接时检查泄漏连接的间隔
+  private static final long LEAK_CHECK_INTERVAL_MILLIS = 1000;
+
+  /**
+   * 连接的目标, 忽略证书的连接和校验证书的连接不能混用
+   */
+  static final class Route {
+
+    final boolean https;
+    final String host;
+    final int port;
+    final boolean ignoreCerts;
+
+    Route(boolean https, String host, int port, boolean ignoreCerts) {
+      this.https = https;
+      this.host = host;
+      this.port = port;
+      this.ignoreCerts = ignoreCerts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Route)) {
+        return false;
+      }
+      Route route = (Route) o;
+      return https == route.https && port == route.port && ignoreCerts == route.ignoreCerts
+             && host.equals(route.host);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(https, host, port, ignoreCerts);
+    }
+
+    @Override
+    public String toString() {
+      return (https ? "https://" : "http://") + host + ":" + port;
+    }
+  }
+
+  /**
+   * 池中的一个 socket 连接
+   */
+  static final class PooledSocket {
+
+    final Route route;
+    final Socket socket;
+    final InputStream in;
+    final OutputStream out;
+    // 空闲连接的过期时间
+    long expireAt;
+    // 是否是从空闲连接中复用的
+    boolean reused;
+    // 借出时的使用者
+    WeakReference<Object> owner;
+
+    PooledSocket(Route route, Socket socket) throws IOException {
+      this.route = route;
+      this.socket = socket;
+      this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+      this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    /**
+     * 检查空闲期间服务端是否已经关闭连接
+     */
+    boolean isStale() {
+      if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+        return true;
+      }
+      try {
+        int timeout = socket.getSoTimeout();
+        try {
+          socket.setSoTimeout(1);
+          // 空闲连接上不应有数据, 读到 EOF 或数据都说明连接不可用
+          in.read();
+          return true;
+        } finally {
+          socket.setSoTimeout(timeout);
+        }
+      } catch (SocketTimeoutException e) {
+        return false;
+      } catch (IOException e) {
+        return true;
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException ignore) {
+      }
+    }
+  }
+
+  private static final class RoutePool {
+
+    final ArrayDeque<PooledSocket> idle = new ArrayDeque<>();
+    // 已借出的连接
+    final Set<PooledSocket> leasedSockets =
+        Collections.newSetFromMap(new IdentityHashMap<PooledSocket, Boolean>());
+    // 已借出的连接数, 包括正在建立的连接
+    int leased;
+  }
+
+  private final int maxConnectionsPerRoute;
+  private final int maxIdleConnectionsPerRoute;
+  private final long keepAliveMillis;
+  private final Map<Route, RoutePool> routes = new ConcurrentHashMap<>();
+  private volatile boolean closed = false;
+  private volatile SSLSocketFactory ignoreCertsFactory;
+
+  final AtomicLong createdCount = new AtomicLong();
+  final AtomicLong reusedCount = new AtomicLong();
+  final AtomicLong evictedCount = new AtomicLong();
+  final AtomicLong discardedCount = new AtomicLong();
+  final AtomicLong leakedCount = new AtomicLong();
+
+  HttpConnectionPool(int maxConnectionsPerRoute, int maxIdleConnectionsPerRoute,
+                     long keepAliveMillis) {
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    this.maxIdleConnectionsPerRoute = maxIdleConnectionsPerRoute;
+    this.keepAliveMillis = keepAliveMillis;
+  }
+
+  /**
+   * 获取一个到 route 的连接, 优先复用空闲连接, 达到单路由的连接数上限时等待其他连接释放
+   *
+   * @param connectTimeout 建立连接以及等待空闲连接的超时时间, 单位毫秒, 0 表示不超时
+   * @param owner 连接的使用者, 没有归还连接就被回收时连接按泄漏处理
+   * @param fresh 是否不复用空闲连接, 总是新建连接
+   */
+  PooledSocket acquire(Route route, int connectTimeout, Object owner, boolean fresh)
+      throws IOException {
+    if (closed) {
+      throw new IOException("Connection pool is closed.");
+    }
+    RoutePool pool = routes.computeIfAbsent(route, r -> new RoutePool());
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+    PooledSocket candidate = null;
+    synchronized (pool) {
+      while (true) {
+        candidate = fresh ? null : pollIdle(pool);
+        if (candidate != null || pool.leased < maxConnectionsPerRoute) {
+          pool.leased++;
+          if (candidate != null) {
+            candidate.owner = new WeakReference<>(owner);
+            pool.leasedSockets.add(candidate);
+          }
+          break;
+        }
+        if (reclaimLeaked(pool) > 0) {
+          continue;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (connectTimeout > 0 && remaining <= 0) {
+          throw new SocketTimeoutException("Timeout waiting for connection to " + route);
+        }
+        try {
+          pool.wait(connectTimeout > 0 ? Math.min(remaining, LEAK_CHECK_INTERVAL_MILLIS)
+                                       : LEAK_CHECK_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for connection to " + route, e);
+        }
+      }
+    }
+
+    if (candidate != null) {
+      if (!candidate.isStale()) {
+        reusedCount.incrementAndGet();
+        candidate.reused = true;
+        return candidate;
+      }
+      evictedCount.incrementAndGet();
+      candidate.close();
+      synchronized (pool) {
+        pool.leasedSockets.remove(candidate);
+      }
+    }
+    try {
+      PooledSocket socket = new PooledSocket(route, connect(route, connectTimeout));
+      socket.owner = new WeakReference<>(owner);
+      createdCount.incrementAndGet();
+      synchronized (pool) {
+        pool.leasedSockets.add(socket);
+      }
+      return socket;
+    } catch (IOException | RuntimeException e) {
+      synchronized (pool) {
+        pool.leased--;
+        pool.notify();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * 关闭使用者已被回收但没有归还的连接, 需要持有 pool 的锁
+   *
+   * @return 释放的连接数
+   */
+  private int reclaimLeaked(RoutePool pool) {
+    int count = 0;
+    Iterator<PooledSocket> it = pool.leasedSockets.iterator();
+    while (it.hasNext()) {
+      PooledSocket socket = it.next();
+      if (socket.owner.get() == null) {
+        it.remove();
+        pool.leased--;
+        count++;
+        leakedCount.incrementAndGet();
+        socket.close();
+        log.log(Level.WARNING, "A connection to " + socket.route
+                               + " was leaked, close the response or its input stream.");
+      }
+    }
+    if (count > 0) {
+      pool.notifyAll();
+    }
+    return count;
+  }
+
+  private PooledSocket pollIdle(RoutePool pool) {
+    long now = System.currentTimeMillis();
+    PooledSocket socket;
+    // 后进先出, 最近使用过的连接最可能仍然可用
+    while ((socket = pool.idle.pollLast()) != null) {
+      if (socket.expireAt > now) {
+        return socket;
+      }
+      evictedCount.incrementAndGet();
+      socket.close();
+    }
+    return null;
+  }
+
+  /**
+   * 归还连接
+   *
+   * @param reusable 连接上的请求和响应是否已经完整结束, 可以发起下一个请求
+   * @param keepAliveHint 服务端通过 Keep-Alive 头给出的空闲超时, 单位毫秒, 小于 0 表示没有
+   */
+  void release(PooledSocket socket, boolean reusable, long keepAliveHint) {
+    RoutePool pool = routes.get(socket.route);
+    boolean keep = false;
+    if (pool != null) {
+      synchronized (pool) {
+        if (!pool.leasedSockets.remove(socket)) {
+          // 已经按泄漏关闭
+          return;
+        }
+        pool.leased--;
+        socket.owner = null;
+        socket.reused = false;
+        if (reusable && !closed && pool.idle.size() < maxIdleConnectionsPerRoute) {
+          long keepAlive = keepAliveHint >= 0 ? Math.min(keepAliveHint, keepAliveMillis)
+                                              : keepAliveMillis;
+          socket.expireAt = System.currentTimeMillis() + keepAlive;
+          pool.idle.addLast(socket);
+          keep = true;
+        }
+        pool.notify();
+      }
+    }
+    if (!keep) {
+      discardedCount.incrementAndGet();
+      socket.close();
+    }
+  }
+
+  /**
+   * 关闭所有已过期的空闲连接和泄漏的连接
+   */
+  void evictExpired() {
+    long now = System.currentTimeMillis();
+    for (RoutePool pool : routes.values()) {
+      synchronized (pool) {
+        reclaimLeaked(pool);
+        Iterator<PooledSocket> it = pool.idle.iterator();
+        while (it.hasNext()) {
+          PooledSocket socket = it.next();
+          if (socket.expireAt <= now) {
+            it.remove();
+            evictedCount.incrementAndGet();
+            socket.close();
+          }
+        }
+      }
+    }
+  }
+
+  int getIdleCount() {
+    int count = 0;
+    for (RoutePool pool : routes.values()) {
+      synchronized (pool) {
+        count += pool.idle.size();
+      }
+    }
+    return count;
+  }
+
+  int getLeasedCount() {
+    int count = 0;
+    for (RoutePool pool : routes.values()) {
+      synchronized (pool) {
+        count += pool.leased;
+      }
+    }
+    return count;
+  }
+
+  void close() {
+    closed = true;
+    for (RoutePool pool : routes.values()) {
+      synchronized (pool) {
+        for (PooledSocket socket : pool.idle) {
+          socket.close();
+        }
+        pool.idle.clear();
+        pool.notifyAll();
+      }
+    }
+  }
+
+  private Socket connect(Route route, int connectTimeout) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.connect(new InetSocketAddress(route.host, route.port), connectTimeout);
+      if (!route.https) {
+        return socket;
+      }
+      SSLSocketFactory factory = route.ignoreCerts ? getIgnoreCertsFactory()
+                                                   : HttpsURLConnection.getDefaultSSLSocketFactory();
+      SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, route.host, route.port, true);
+      if (!route.ignoreCerts) {
+        SSLParameters parameters = sslSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(parameters);
+      }
+      if (connectTimeout > 0) {
+        sslSocket.setSoTimeout(connectTimeout);
+      }
+      sslSocket.startHandshake();
+      return sslSocket;
+    } catch (IOException | RuntimeException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private SSLSocketFactory getIgnoreCertsFactory() throws IOException {
+    if (ignoreCertsFactory == null) {
+      ignoreCertsFactory = AuthorizationUtil.createIgnoreCertsSSLContext().getSocketFactory();
+    }
+    return ignoreCertsFactory;
+  }
+}
@@ -0,0 +1,762 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.mail.internet.MimeUtility;
+
+import com.aliyun.odps.commons.transport.HttpConnectionPool.PooledSocket;
+import com.aliyun.odps.commons.transport.HttpConnectionPool.Route;
+import com.aliyun.odps.rest.RestClient;
+
+/**
+ * PooledConnection 在 {@link HttpConnectionPool} 管理的 socket 上实现 HTTP/1.1 请求
+ *
+ * <p>
+ * 响应的 body 被完整读取后(或者没有 body), 连接立即归还到连接池;
+ * 没有读完的响应在 {@link #disconnect()} 或关闭输入流时关闭连接。
+ * 没有关闭就被丢弃的响应, 其连接在 PooledConnection 被回收后由连接池关闭。<br />
+ * 复用的空闲连接在发送请求或读取响应头时失败(服务端已关闭连接), 且请求幂等、body 可以重发时,
+ * 在新连接上重试一次。<br />
+ * 设置了代理时退化为 {@link DefaultConnection}。
+ * </p>
+ */
+class PooledConnection implements Connection {
+
+  private static final Logger log = Logger.getLogger(PooledConnection.class.getName());
+
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+  private final HttpConnectionPool pool;
+  private final Proxy proxy;
+
+  private DefaultConnection delegate;
+
+  private Request req;
+  private Route route;
+  private int connectTimeout;
+  private int readTimeout;
+  private PooledSocket socket;
+
+  // request
+  private boolean headersSent = false;
+  private boolean requestComplete = false;
+  private boolean chunked = false;
+  private long contentLength = -1;
+  private OutputStream bodyOut;
+
+  // response
+  private DefaultResponse response;
+  private Map<String, String> rawHeaders;
+  private boolean keepAlive = true;
+  private long keepAliveHint = -1;
+  private BodyInputStream bodyIn;
+  private InputStream userIn;
+
+  PooledConnection(HttpConnectionPool pool, Proxy proxy) {
+    this.pool = pool;
+    this.proxy = proxy;
+  }
+
+  @Override
+  public void connect(Request req) throws IOException {
+    URI u = req.getURI();
+
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Connecting to " + u);
+    }
+
+    if (u == null || u.getScheme() == null) {
+      IllegalArgumentException e = new IllegalArgumentException(
+          "Request URI(http or https) required.");
+      log.log(Level.SEVERE, e.getMessage(), e);
+      throw e;
+    }
+
+    String scheme = u.getScheme().toLowerCase();
+    if (proxy != null || !("http".equals(scheme) || "https".equals(scheme))) {
+      delegate = new DefaultConnection(proxy);
+      delegate.connect(req);
+      return;
+    }
+    if (u.getHost() == null) {
+      throw new IllegalArgumentException("Invalid request URI: " + u);
+    }
+
+    this.req = req;
+    RestClient client = req.getRestClient();
+    boolean https = "https".equals(scheme);
+    int port = u.getPort() != -1 ? u.getPort() : (https ? 443 : 80);
+    String host = u.getHost();
+    if (host.startsWith("[") && host.endsWith("]")) {
+      host = host.substring(1, host.length() - 1);
+    }
+    route = new Route(https, host, port, client.isIgnoreCerts());
+    connectTimeout = client.getConnectTimeout() * 1000;
+    readTimeout = client.getReadTimeout() * 1000;
+
+    if (req.getBody() != null) {
+      contentLength = req.getBodyLength();
+    }
+    if (req.getHeaders() != null) {
+      for (Entry<String, String> kv : req.getHeaders().entrySet()) {
+        if (Headers.TRANSFER_ENCODING.equalsIgnoreCase(kv.getKey())
+            && Headers.CHUNKED.equalsIgnoreCase(kv.getValue())) {
+          chunked = true;
+        } else if (Headers.CONTENT_LENGTH.equalsIgnoreCase(kv.getKey())
+                   && contentLength < 0 && kv.getValue() != null) {
+          contentLength = Long.parseLong(kv.getValue().trim());
+        }
+      }
+    }
+    if (chunked) {
+      contentLength = -1;
+    }
+
+    acquire(false);
+  }
+
+  private void acquire(boolean fresh) throws IOException {
+    socket = pool.acquire(route, connectTimeout, this, fresh);
+    try {
+      socket.socket.setSoTimeout(readTimeout);
+    } catch (IOException e) {
+      release(false);
+      throw e;
+    }
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    if (delegate != null) {
+      return delegate.getOutputStream();
+    }
+    checkConnection();
+    if (response != null) {
+      throw new IOException("Cannot write request body after response has been read.");
+    }
+    if (bodyOut == null) {
+      if (chunked) {
+        sendHeaders(-1);
+        bodyOut = new ChunkedOutputStream(socket.out);
+      } else if (contentLength >= 0) {
+        sendHeaders(contentLength);
+        bodyOut = new FixedLengthOutputStream(socket.out, contentLength);
+      } else {
+        // 长度未知, 缓存完整的 body 以设置 Content-Length
+        bodyOut = new ByteArrayOutputStream();
+      }
+    }
+    return bodyOut;
+  }
+
+  @Override
+  public Response getResponse() throws IOException {
+    if (delegate != null) {
+      return delegate.getResponse();
+    }
+    if (response == null) {
+      checkConnection();
+      try {
+        finishRequest();
+        readResponseHead();
+      } catch (IOException e) {
+        if (!canRetry(e)) {
+          throw e;
+        }
+        if (log.isLoggable(Level.FINE)) {
+          log.fine("Reused connection to " + route + " failed, retry on a new connection: " + e);
+        }
+        release(false);
+        headersSent = false;
+        requestComplete = false;
+        acquire(true);
+        finishRequest();
+        readResponseHead();
+      }
+    }
+    return response;
+  }
+
+  /**
+   * 复用的连接可能在空闲检查之后被服务端关闭, 此时幂等且 body 可以重发的请求可以重试
+   */
+  private boolean canRetry(IOException e) {
+    if (socket == null || !socket.reused || e instanceof SocketTimeoutException) {
+      return false;
+    }
+    Request.Method method = req.getMethod();
+    if (method == Request.Method.POST) {
+      return false;
+    }
+    // body 已经直接写到了连接上的请求无法重发
+    return bodyOut == null ? contentLength <= 0 : bodyOut instanceof ByteArrayOutputStream;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if (delegate != null) {
+      return delegate.getInputStream();
+    }
+    if (userIn != null) {
+      return userIn;
+    }
+    getResponse();
+    InputStream is = bodyIn;
+    String encoding = response.getHeader(Headers.CONTENT_ENCODING);
+    if (encoding != null && encoding.equalsIgnoreCase("gzip") && !bodyIn.isComplete()) {
+      is = new GZIPInputStream(is);
+    }
+    userIn = is;
+    return userIn;
+  }
+
+  @Override
+  public void disconnect() throws IOException {
+    if (delegate != null) {
+      delegate.disconnect();
+      return;
+    }
+    if (socket == null) {
+      return;
+    }
+    if (bodyIn != null && !bodyIn.isComplete()) {
+      bodyIn.drain();
+    }
+    release(requestComplete && bodyIn != null && bodyIn.isComplete() && keepAlive);
+  }
+
+  private void release(boolean reusable) {
+    if (socket != null) {
+      PooledSocket s = socket;
+      socket = null;
+      pool.release(s, reusable, keepAliveHint);
+    }
+  }
+
+  private void checkConnection() throws IOException {
+    if (socket == null) {
+      throw new IOException("Invalid connection.");
+    }
+  }
+
+  private void sendHeaders(long length) throws IOException {
+    URI u = req.getURI();
+    StringBuilder sb = new StringBuilder(512);
+    String path = u.getRawPath();
+    sb.append(req.getMethod().toString()).append(' ')
+        .append(path == null || path.isEmpty() ? "/" : path);
+    if (u.getRawQuery() != null) {
+      sb.append('?').append(u.getRawQuery());
+    }
+    sb.append(" HTTP/1.1\r\n");
+
+    boolean hasHost = false;
+    if (req.getHeaders() != null) {
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Request headers: " + req.getHeaders().toString());
+      }
+      for (Entry<String, String> kv : req.getHeaders().entrySet()) {
+        if (kv.getKey() == null || kv.getValue() == null
+            || Headers.CONTENT_LENGTH.equalsIgnoreCase(kv.getKey())) {
+          continue;
+        }
+        hasHost |= Headers.HOST.equalsIgnoreCase(kv.getKey());
+        sb.append(kv.getKey()).append(": ").append(kv.getValue()).append("\r\n");
+      }
+    }
+    if (!hasHost) {
+      sb.append(Headers.HOST).append(": ").append(u.getHost());
+      if (u.getPort() != -1) {
+        sb.append(':').append(u.getPort());
+      }
+      sb.append("\r\n");
+    }
+    if (length >= 0) {
+      sb.append(Headers.CONTENT_LENGTH).append(": ").append(length).append("\r\n");
+    }
+    sb.append("\r\n");
+    socket.out.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    headersSent = true;
+  }
+
+  private void finishRequest() throws IOException {
+    if (!headersSent) {
+      if (bodyOut instanceof ByteArrayOutputStream) {
+        ByteArrayOutputStream buffer = (ByteArrayOutputStream) bodyOut;
+        sendHeaders(buffer.size());
+        buffer.writeTo(socket.out);
+      } else if (chunked) {
+        sendHeaders(-1);
+        socket.out.write(new byte[]{'0', '\r', '\n', '\r', '\n'});
+      } else if (contentLength > 0) {
+        throw new IOException("Insufficient data written, expect " + contentLength + " bytes.");
+      } else {
+        Request.Method method = req.getMethod();
+        boolean hasBody = method == Request.Method.POST || method == Request.Method.PUT;
+        sendHeaders(hasBody ? 0 : contentLength);
+      }
+    } else if (bodyOut != null) {
+      bodyOut.close();
+    }
+    socket.out.flush();
+    requestComplete = true;
+  }
+
+  private void readResponseHead() throws IOException {
+    String statusLine;
+    int status;
+    String message;
+    Map<String, List<String>> fields;
+    do {
+      statusLine = readLine(socket.in);
+      if (statusLine == null) {
+        throw new EOFException("Unexpected end of stream, no response from server.");
+      }
+      String[] parts = statusLine.split(" ", 3);
+      if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+        throw new IOException("Invalid response status line: " + statusLine);
+      }
+      status = Integer.parseInt(parts[1]);
+      message = parts.length > 2 ? parts[2] : "";
+      fields = readHeaderFields(socket.in);
+      // 跳过 100-continue 等中间响应
+    } while (status / 100 == 1 && status != 101);
+
+    response = new DefaultResponse();
+    response.setStatus(status);
+    response.setMessage(message);
+    rawHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    Map<String, String> headers = response.getHeaders();
+    for (Entry<String, List<String>> kv : fields.entrySet()) {
+      StringBuilder raw = new StringBuilder();
+      StringBuilder sb = new StringBuilder();
+      String pad = "";
+      for (String v : kv.getValue()) {
+        raw.append(pad).append(v);
+        sb.append(pad).append(MimeUtility.decodeText(v));
+        pad = ",";
+      }
+      rawHeaders.put(kv.getKey(), raw.toString());
+      headers.put(Headers.toCaseSensitiveHeaderName(kv.getKey()), sb.toString());
+    }
+
+    String connection = rawHeaders.get("Connection");
+    if (statusLine.startsWith("HTTP/1.0")) {
+      keepAlive = connection != null && connection.toLowerCase().contains("keep-alive");
+    } else {
+      keepAlive = connection == null || !connection.toLowerCase().contains("close");
+    }
+    keepAliveHint = parseKeepAliveTimeout(rawHeaders.get("Keep-Alive"));
+
+    String transferEncoding = rawHeaders.get(Headers.TRANSFER_ENCODING);
+    String length = rawHeaders.get(Headers.CONTENT_LENGTH);
+    if (req.getMethod() == Request.Method.HEAD || status / 100 == 1 || status == 204
+        || status == 304) {
+      bodyIn = new FixedLengthInputStream(socket.in, 0);
+    } else if (transferEncoding != null
+               && transferEncoding.toLowerCase().contains(Headers.CHUNKED)) {
+      bodyIn = new ChunkedInputStream(socket.in);
+    } else if (length != null) {
+      bodyIn = new FixedLengthInputStream(socket.in, Long.parseLong(length.trim()));
+    } else {
+      bodyIn = new UntilCloseInputStream(socket.in);
+      keepAlive = false;
+    }
+    if (bodyIn.isComplete()) {
+      release(keepAlive);
+    }
+  }
+
+  private static long parseKeepAliveTimeout(String keepAlive) {
+    if (keepAlive == null) {
+      return -1;
+    }
+    for (String param : keepAlive.split(",")) {
+      String[] kv = param.trim().split("=", 2);
+      if (kv.length == 2 && "timeout".equalsIgnoreCase(kv[0].trim())) {
+        try {
+          return Long.parseLong(kv[1].trim()) * 1000;
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static Map<String, List<String>> readHeaderFields(InputStream in) throws IOException {
+    Map<String, List<String>> fields = new LinkedHashMap<>();
+    Map<String, String> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    String line;
+    while ((line = readLine(in)) != null && !line.isEmpty()) {
+      int idx = line.indexOf(':');
+      if (idx <= 0) {
+        continue;
+      }
+      String name = line.substring(0, idx).trim();
+      String value = line.substring(idx + 1).trim();
+      String key = names.computeIfAbsent(name, n -> n);
+      fields.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+    return fields;
+  }
+
+  /**
+   * 读取一行, 去掉行尾的 CRLF, 流结束时返回 null
+   */
+  static String readLine(InputStream in) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == '\r') {
+          sb.setLength(len - 1);
+        }
+        return sb.toString();
+      }
+      sb.append((char) b);
+    }
+    return sb.length() == 0 ? null : sb.toString();
+  }
+
+  /**
+   * 以 chunked 编码写 body, close 时写入结束块, 不关闭底层连接
+   */
+  private static class ChunkedOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[32 * 1024];
+    private int count = 0;
+    private boolean closed = false;
+
+    ChunkedOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        flushChunk();
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      checkClosed();
+      if (len >= buffer.length) {
+        flushChunk();
+        writeChunk(b, off, len);
+        return;
+      }
+      if (len > buffer.length - count) {
+        flushChunk();
+      }
+      System.arraycopy(b, off, buffer, count, len);
+      count += len;
+    }
+
+    private void flushChunk() throws IOException {
+      checkClosed();
+      if (count > 0) {
+        writeChunk(buffer, 0, count);
+        count = 0;
+      }
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+      out.write(Integer.toHexString(len).getBytes(StandardCharsets.ISO_8859_1));
+      out.write(CRLF);
+      out.write(b, off, len);
+      out.write(CRLF);
+    }
+
+    private void checkClosed() throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed.");
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushChunk();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        flushChunk();
+        out.write(new byte[]{'0', '\r', '\n', '\r', '\n'});
+        out.flush();
+        closed = true;
+      }
+    }
+  }
+
+  /**
+   * 写入固定长度的 body, 不关闭底层连接
+   */
+  private static class FixedLengthOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private long remaining;
+    private boolean closed = false;
+
+    FixedLengthOutputStream(OutputStream out, long length) {
+      this.out = out;
+      this.remaining = length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed.");
+      }
+      if (len > remaining) {
+        throw new IOException("Too many bytes written, exceed Content-Length.");
+      }
+      out.write(b, off, len);
+      remaining -= len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        if (remaining > 0) {
+          throw new IOException("Insufficient data written, " + remaining + " bytes remaining.");
+        }
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * 响应 body 的输入流, 读完并关闭时把连接归还到连接池
+   */
+  private abstract class BodyInputStream extends InputStream {
+
+    protected final InputStream in;
+    private boolean closed = false;
+
+    BodyInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    abstract boolean isComplete();
+
+    abstract int readBody(byte[] b, int off, int len) throws IOException;
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int n = read(b, 0, 1);
+      return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = readBody(b, off, len);
+      if (isComplete()) {
+        // 读完即归还连接, 不依赖调用方关闭
+        release(requestComplete && keepAlive);
+      }
+      return n;
+    }
+
+    /**
+     * 读完剩余的少量数据, 使连接可以复用
+     */
+    void drain() {
+      try {
+        byte[] buf = new byte[4096];
+        long drained = 0;
+        while (!isComplete() && drained < MAX_DRAIN_BYTES) {
+          int n = read(buf, 0, buf.length);
+          if (n == -1) {
+            break;
+          }
+          drained += n;
+        }
+      } catch (IOException ignore) {
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        if (!isComplete()) {
+          drain();
+        }
+        release(requestComplete && isComplete() && keepAlive);
+      }
+    }
+  }
+
+  private class FixedLengthInputStream extends BodyInputStream {
+
+    private long remaining;
+
+    FixedLengthInputStream(InputStream in, long length) {
+      super(in);
+      this.remaining = length;
+    }
+
+    @Override
+    boolean isComplete() {
+      return remaining == 0;
+    }
+
+    @Override
+    int readBody(byte[] b, int off, int len) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int n = in.read(b, off, (int) Math.min(len, remaining));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of stream, " + remaining + " bytes remaining.");
+      }
+      remaining -= n;
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+  private class ChunkedInputStream extends BodyInputStream {
+
+    private long chunkRemaining = 0;
+    private boolean eof = false;
+
+    ChunkedInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    boolean isComplete() {
+      return eof;
+    }
+
+    @Override
+    int readBody(byte[] b, int off, int len) throws IOException {
+      if (eof) {
+        return -1;
+      }
+      if (chunkRemaining == 0) {
+        nextChunk();
+        if (eof) {
+          return -1;
+        }
+      }
+      int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of chunked stream.");
+      }
+      chunkRemaining -= n;
+      if (chunkRemaining == 0) {
+        // chunk 末尾的 CRLF
+        readLine(in);
+      }
+      return n;
+    }
+
+    private void nextChunk() throws IOException {
+      String line = readLine(in);
+      if (line == null) {
+        throw new EOFException("Unexpected end of chunked stream.");
+      }
+      int idx = line.indexOf(';');
+      String size = (idx >= 0 ? line.substring(0, idx) : line).trim();
+      try {
+        chunkRemaining = Long.parseLong(size, 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + line);
+      }
+      if (chunkRemaining == 0) {
+        // trailers
+        readHeaderFields(in);
+        eof = true;
+      }
+    }
+  }
+
+  private class UntilCloseInputStream extends BodyInputStream {
+
+    private boolean eof = false;
+
+    UntilCloseInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    boolean isComplete() {
+      return eof;
+    }
+
+    @Override
+    int readBody(byte[] b, int off, int len) throws IOException {
+      if (eof) {
+        return -1;
+      }
+      int n = in.read(b, off, len);
+      if (n == -1) {
+        eof = true;
+      }
+      return n;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Proxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PooledTransport 在 HTTP/1.1 keep-alive 连接池上发送请求, 复用到同一 endpoint 的 TCP/TLS 连接
+ *
+ * <p>
+ * 同一个 PooledTransport 可以被多个 {@link com.aliyun.odps.rest.RestClient} 共享,
+ * 通过 {@link com.aliyun.odps.Odps#clone()} 得到的 Odps 对象(包括 Tunnel 使用的 RestClient)
+ * 共享同一个连接池。<br />
+ * 设置了代理时不使用连接池, 行为与 {@link DefaultTransport} 一致。
+ * </p>
+ *
+ * <pre>
+ * odps.getRestClient().setTransport(new PooledTransport());
+ * </pre>
+ */
+public class PooledTransport extends DefaultTransport implements Closeable {
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 64;
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS_PER_ROUTE = 16;
+  public static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+  private final HttpConnectionPool pool;
+  private final ScheduledExecutorService evictor;
+  private volatile Proxy proxy;
+
+  public PooledTransport() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_IDLE_CONNECTIONS_PER_ROUTE,
+         DEFAULT_KEEP_ALIVE_MILLIS);
+  }
+
+  /**
+   * @param maxConnectionsPerRoute 到同一个 endpoint 的最大连接数, 达到上限时请求等待其他连接释放
+   * @param maxIdleConnectionsPerRoute 到同一个 endpoint 保留的最大空闲连接数
+   * @param keepAliveMillis 空闲连接的保留时间, 单位毫秒
+   */
+  public PooledTransport(int maxConnectionsPerRoute, int maxIdleConnectionsPerRoute,
+                         long keepAliveMillis) {
+    if (maxConnectionsPerRoute <= 0 || maxIdleConnectionsPerRoute < 0 || keepAliveMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid connection pool config: maxConnectionsPerRoute=" + maxConnectionsPerRoute
+          + ", maxIdleConnectionsPerRoute=" + maxIdleConnectionsPerRoute
+          + ", keepAliveMillis=" + keepAliveMillis);
+    }
+    this.pool = new HttpConnectionPool(maxConnectionsPerRoute, maxIdleConnectionsPerRoute,
+                                       keepAliveMillis);
+    this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "odps-transport-idle-evictor");
+      t.setDaemon(true);
+      return t;
+    });
+    long interval = Math.max(1000, keepAliveMillis / 2);
+    evictor.scheduleWithFixedDelay(pool::evictExpired, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Connection connect(Request req) throws IOException {
+    PooledConnection conn = new PooledConnection(pool, proxy);
+    conn.connect(req);
+    return conn;
+  }
+
+  @Override
+  public void setProxy(Proxy proxy) {
+    super.setProxy(proxy);
+    this.proxy = proxy;
+  }
+
+  /**
+   * 关闭所有已过期的空闲连接, 后台线程会定期执行
+   */
+  public void evictExpiredConnections() {
+    pool.evictExpired();
+  }
+
+  /**
+   * @return 新建的连接数
+   */
+  public long getCreatedConnectionCount() {
+    return pool.createdCount.get();
+  }
+
+  /**
+   * @return 复用空闲连接的次数
+   */
+  public long getReusedConnectionCount() {
+    return pool.reusedCount.get();
+  }
+
+  /**
+   * @return 因过期或被服务端关闭而清理的空闲连接数
+   */
+  public long getEvictedConnectionCount() {
+    return pool.evictedCount.get();
+  }
+
+  /**
+   * @return 请求结束后因不能复用而关闭的连接数
+   */
+  public long getDiscardedConnectionCount() {
+    return pool.discardedCount.get();
+  }
+
+  /**
+   * @return 没有归还就被丢弃, 由连接池回收的连接数
+   */
+  public long getLeakedConnectionCount() {
+    return pool.leakedCount.get();
+  }
+
+  public int getIdleConnectionCount() {
+    return pool.getIdleCount();
+  }
+
+  public int getLeasedConnectionCount() {
+    return pool.getLeasedCount();
+  }
+
+  /**
+   * 关闭连接池中的空闲连接, 正在使用的连接在请求结束后关闭
+   */
+  @Override
+  public void close() {
+    evictor.shutdownNow();
+    pool.close();
+  }
+}
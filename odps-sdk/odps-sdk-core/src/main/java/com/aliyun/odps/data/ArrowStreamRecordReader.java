@@ -187,8 +187,10 @@ public class ArrowStreamRecordReader extends DefaultRecordReader {
 
   private void convertToRecord(VectorSchemaRoot vectorSchemaRoot)
       throws IOException {
+    Column[] columnArray = columns.toArray(new Column[0]);
+    ColumnIndex columnIndex = ColumnIndex.of(columnArray);
     for (int rowId = 0; rowId < vectorSchemaRoot.getRowCount(); rowId++) {
-      ArrayRecord arrayRecord = new ArrayRecord(columns.toArray(new Column[0]));
+      ArrayRecord arrayRecord = new ArrayRecord(columnArray, columnIndex, true, null);
       for (Column column : columns) {
         FieldVector vector = vectorSchemaRoot.getVector(column.getName());
         TypeInfo typeInfo = column.getTypeInfo();
@@ -45,6 +45,7 @@ public class DefaultRecordReader implements RecordReader {
   private static final String CHARSET = "utf-8";
   private TableSchema tableSchema;
   private Column[] schemaColumns = null;
+  private ColumnIndex columnIndex = null;
   private InputStream is;
 
   /**
@@ -87,7 +88,10 @@ public class DefaultRecordReader implements RecordReader {
     if (schemaColumns == null) {
       loadSchema();
     }
-    ArrayRecord ret = new ArrayRecord(schemaColumns);
+    if (columnIndex == null) {
+      columnIndex = ColumnIndex.of(schemaColumns);
+    }
+    ArrayRecord ret = new ArrayRecord(schemaColumns, columnIndex, true, null);
     String[] data = load();
     if (data == null) {
       return null;
@@ -135,7 +135,7 @@ public class RestClient {
    */
   public static final int DEFAULT_CHUNK_SIZE = 1500 - 4;
 
-  private final Transport transport;
+  private Transport transport;
 
   private Account account;
   private AppAccount appAccount;
@@ -601,6 +601,23 @@ public class RestClient {
     return transport;
   }
 
+  /**
+   * 替换发送请求使用的 {@link Transport}, 例如使用 {@link com.aliyun.odps.commons.transport.PooledTransport}
+   * 复用 HTTP 连接。已设置的代理会应用到新的 Transport 上
+   *
+   * @param transport
+   *     {@link Transport}
+   */
+  public void setTransport(Transport transport) {
+    if (transport == null) {
+      throw new IllegalArgumentException("Transport cannot be null.");
+    }
+    if (proxy != null) {
+      transport.setProxy(proxy);
+    }
+    this.transport = transport;
+  }
+
   public Request buildRequest(String resource, String method, Map<String, String> params,
                               Map<String, String> headers) {
     return buildRequest(resource, method, params, headers, this.endpoint);
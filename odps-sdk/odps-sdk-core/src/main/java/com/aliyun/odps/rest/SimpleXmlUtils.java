@@ -1,11 +1,14 @@
 package com.aliyun.odps.rest;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.commons.util.DateUtils;
@@ -14,9 +17,9 @@ import com.aliyun.odps.simpleframework.xml.convert.AnnotationStrategy;
 import com.aliyun.odps.simpleframework.xml.convert.Converter;
 import com.aliyun.odps.simpleframework.xml.core.Persister;
 import com.aliyun.odps.simpleframework.xml.strategy.SimpleTreeStrategy;
-import com.aliyun.odps.simpleframework.xml.strategy.Strategy;
 import com.aliyun.odps.simpleframework.xml.stream.Format;
 import com.aliyun.odps.simpleframework.xml.stream.InputNode;
+import com.aliyun.odps.simpleframework.xml.stream.NodeBuilder;
 import com.aliyun.odps.simpleframework.xml.stream.OutputNode;
 import com.aliyun.odps.simpleframework.xml.stream.Style;
 import com.aliyun.odps.simpleframework.xml.stream.Verbosity;
@@ -44,28 +47,31 @@ public class SimpleXmlUtils {
     private final static Format AUTO_ESCAPE_FORMAT =
         new Format(INDENT, PROLOG, IDENTITY_STYLE, Verbosity.HIGH, false);
 
+    /**
+     * Persister is thread safe and caches the annotation scanning results of every class it has
+     * seen, so the serializers are shared instead of being created on every call.
+     * Use SimpleTreeStrategy to avoid unwanted 'class' attribute when marshalling.
+     */
+    private final static Serializer MARSHALLER =
+        new Persister(new AnnotationStrategy(new SimpleTreeStrategy()), AUTO_ESCAPE_FORMAT);
+    private final static Serializer UNMARSHALLER =
+        new Persister(new AnnotationStrategy(), AUTO_ESCAPE_FORMAT);
+
     /**
      * Marshal & Unmalshal methods
      */
     public static <T> String marshal(T obj) throws Exception {
-        // Use SimpleTreeStrategy to avoid unwanted 'class' attribute
-        Strategy strategy = new AnnotationStrategy(new SimpleTreeStrategy());
-        Serializer serializer = new Persister(strategy, AUTO_ESCAPE_FORMAT);
         StringWriter out = new StringWriter();
-        serializer.write(obj, out);
+        MARSHALLER.write(obj, out);
         return out.toString();
     }
 
     public static <T> void marshal(T obj, OutputNode outputNode) throws Exception {
-        Strategy strategy = new AnnotationStrategy(new SimpleTreeStrategy());
-        Serializer serializer = new Persister(strategy, AUTO_ESCAPE_FORMAT);
-        serializer.write(obj, outputNode);
+        MARSHALLER.write(obj, outputNode);
     }
 
     public static <T> T unmarshal(byte[] xml, Class<T> clazz) throws Exception {
-        Strategy strategy = new AnnotationStrategy();
-        Serializer serializer = new Persister(strategy, AUTO_ESCAPE_FORMAT);
-        return serializer.read(clazz, new ByteArrayInputStream(xml));
+        return UNMARSHALLER.read(clazz, new ByteArrayInputStream(xml));
     }
 
     public static <T> T unmarshal(Response resp, Class<T> clazz) throws Exception {
@@ -76,9 +82,86 @@ public class SimpleXmlUtils {
     }
 
     public static <T> T unmarshal(InputNode inputNode, Class<T> clazz) throws Exception {
-        Strategy strategy = new AnnotationStrategy();
-        Serializer serializer = new Persister(strategy, AUTO_ESCAPE_FORMAT);
-        return serializer.read(clazz, inputNode);
+        return UNMARSHALLER.read(clazz, inputNode);
+    }
+
+    /**
+     * Pull-parse a list response like {@code <Tables><Marker/><Table>...</Table>...</Tables>}.
+     * The entries are unmarshalled one at a time while iterating, other child elements of the
+     * root are kept as strings, see {@link ListReader#getField(String)}.
+     *
+     * @param xml   response body
+     * @param entry element name of the entries
+     * @param clazz class of the entries
+     */
+    public static <T> ListReader<T> unmarshalList(byte[] xml, String entry, Class<T> clazz)
+        throws Exception {
+        return unmarshalList(new ByteArrayInputStream(xml), entry, clazz);
+    }
+
+    public static <T> ListReader<T> unmarshalList(InputStream xml, String entry, Class<T> clazz)
+        throws Exception {
+        return new ListReader<T>(NodeBuilder.read(xml), entry, clazz);
+    }
+
+    public static class ListReader<T> implements Iterator<T> {
+
+        private final InputNode root;
+        private final String entry;
+        private final Class<T> clazz;
+        private final Map<String, String> fields = new HashMap<>();
+        private T next;
+        private boolean done;
+
+        private ListReader(InputNode root, String entry, Class<T> clazz) {
+            this.root = root;
+            this.entry = entry;
+            this.clazz = clazz;
+        }
+
+        /**
+         * Get the value of a non-entry child element of the root, an empty element gives an
+         * empty string. Elements after the last entry are available once the iteration is done.
+         */
+        public String getField(String name) {
+            return fields.get(name);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (done) {
+                return false;
+            }
+            try {
+                InputNode node;
+                while ((node = root.getNext()) != null) {
+                    if (entry.equals(node.getName())) {
+                        next = UNMARSHALLER.read(clazz, node);
+                        return true;
+                    }
+                    String value = node.getValue();
+                    fields.put(node.getName(), value == null ? "" : value);
+                    node.skip();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Can't bind xml to " + clazz.getName(), e);
+            }
+            done = true;
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T t = next;
+            next = null;
+            return t;
+        }
     }
 
     /**
@@ -6,6 +6,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import com.aliyun.odps.Instance;
 import com.aliyun.odps.Odps;
 import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.sqa.commandapi.utils.SqlParserUtil;
 
 /**
  * Created by dongxiao on 2020/3/17.
@@ -39,17 +40,27 @@ public class SQLExecutorBuilder {
 
   private boolean sessionSupportNonSelect = false;
 
+  private long resultFetchSize = SQLExecutorConstants.DEFAULT_RESULT_FETCH_SIZE;
+  private int resultPrefetchDepth = SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_DEPTH;
+  private long resultPrefetchBytes = SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_BYTES;
+
+  private boolean warmUpSqlParser = false;
+
   public static SQLExecutorBuilder builder() {
     return new SQLExecutorBuilder();
   }
 
   public SQLExecutor build() throws OdpsException {
+    if (warmUpSqlParser) {
+      SqlParserUtil.warmUpInBackground();
+    }
     return new SQLExecutorImpl(odps, serviceName, taskName, tunnelEndpoint,
                                properties, executeMode, fallbackPolicy, enableReattach,
                                useInstanceTunnel, pool, recoverInstance, runningCluster,
                                tunnelGetResultMaxRetryTime,
                                useCommandApi, quotaName, attachTimeout, odpsNamespaceSchema,
-                               tunnelSocketTimeout, tunnelReadTimeout, sessionSupportNonSelect);
+                               tunnelSocketTimeout, tunnelReadTimeout, sessionSupportNonSelect,
+                               resultFetchSize, resultPrefetchDepth, resultPrefetchBytes);
   }
 
   public SQLExecutorBuilder odps(Odps odps) {
@@ -152,4 +163,48 @@ public class SQLExecutorBuilder {
     this.sessionSupportNonSelect = sessionSupportNonSelect;
     return this;
   }
+
+  /**
+   * 通过 instance tunnel 读取 session 结果时，每次请求的记录数，默认 10000
+   */
+  public SQLExecutorBuilder resultFetchSize(long resultFetchSize) {
+    if (resultFetchSize <= 0) {
+      throw new IllegalArgumentException("Result fetch size must > 0, now: " + resultFetchSize);
+    }
+    this.resultFetchSize = resultFetchSize;
+    return this;
+  }
+
+  /**
+   * 读取 session 结果时，在后台预先下载的批次数，默认 0，即不预取。设置了 sizeLimit 的读取不预取，
+   * executor 关闭时取消尚未完成的下载
+   */
+  public SQLExecutorBuilder resultPrefetchDepth(int resultPrefetchDepth) {
+    if (resultPrefetchDepth < 0) {
+      throw new IllegalArgumentException(
+          "Result prefetch depth must >= 0, now: " + resultPrefetchDepth);
+    }
+    this.resultPrefetchDepth = resultPrefetchDepth;
+    return this;
+  }
+
+  /**
+   * 预取的结果在内存中最多占用的字节数（按下载的数据量估算），默认 64 MiB
+   */
+  public SQLExecutorBuilder resultPrefetchBytes(long resultPrefetchBytes) {
+    if (resultPrefetchBytes <= 0) {
+      throw new IllegalArgumentException(
+          "Result prefetch bytes must > 0, now: " + resultPrefetchBytes);
+    }
+    this.resultPrefetchBytes = resultPrefetchBytes;
+    return this;
+  }
+
+  /**
+   * 构建时在后台预热 sql 解析器，降低第一条语句判断类型的耗时，默认 false
+   */
+  public SQLExecutorBuilder warmUpSqlParser(boolean warmUpSqlParser) {
+    this.warmUpSqlParser = warmUpSqlParser;
+    return this;
+  }
 }
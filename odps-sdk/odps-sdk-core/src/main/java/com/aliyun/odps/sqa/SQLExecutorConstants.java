@@ -20,6 +20,9 @@ class SQLExecutorConstants {
   public static final String sessionJobCancelledFlag = "Job is cancelled";
   public static final String sessionJobCancelledComplierFlag = "OdpsJobCancelledException";
   public static final Long DEFAULT_ATTACH_TIMEOUT = 60L;
+  public static final long DEFAULT_RESULT_FETCH_SIZE = 10000L;
+  public static final int DEFAULT_RESULT_PREFETCH_DEPTH = 0;
+  public static final long DEFAULT_RESULT_PREFETCH_BYTES = 64L * 1024 * 1024;
   public static final String sessionNotSelectException = "InstanceTypeNotSupported";
   public static final String sessionNotSelectMessage = "Non select query not supported";
   public static final String sessionTunnelTimeoutMessage = "Wait for cache data timeout";
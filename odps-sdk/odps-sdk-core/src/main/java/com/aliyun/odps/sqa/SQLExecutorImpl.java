@@ -23,15 +23,26 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import com.aliyun.odps.Instance;
 import com.aliyun.odps.LogView;
@@ -40,6 +51,7 @@ import com.aliyun.odps.OdpsException;
 import com.aliyun.odps.Session;
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.TunnelEndpointLocalCache;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.ResultSet;
 import com.aliyun.odps.sqa.commandapi.Command;
@@ -95,6 +107,14 @@ class SQLExecutorImpl implements SQLExecutor {
   private boolean odpsNamespaceSchema = false;
   private String tunnelEndpoint;
 
+  // session 结果读取参数
+  private long resultFetchSize = SQLExecutorConstants.DEFAULT_RESULT_FETCH_SIZE;
+  private int resultPrefetchDepth = SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_DEPTH;
+  private long resultPrefetchBytes = SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_BYTES;
+  // 预取中的结果迭代器，executor 关闭时取消其后台下载
+  private final Set<SessionRecordSetIterator> resultIterators =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   enum TunnelRetryStatus {
     NEED_RETRY,
     NON_SELECT_QUERY,
@@ -148,7 +168,10 @@ class SQLExecutorImpl implements SQLExecutor {
       boolean odpsNamespaceSchema,
       int tunnelSocketTimeout,
       int tunnelReadTimeout,
-      boolean sessionSupportNonSelect) throws OdpsException {
+      boolean sessionSupportNonSelect,
+      long resultFetchSize,
+      int resultPrefetchDepth,
+      long resultPrefetchBytes) throws OdpsException {
     this.properties.putAll(properties);
     this.serviceName = serviceName;
     this.taskName = taskName;
@@ -165,6 +188,9 @@ class SQLExecutorImpl implements SQLExecutor {
     this.fallbackQuota = quotaName;
     this.commandApi = new CommandApi(odps);
     this.sessionSupportNonSelect = sessionSupportNonSelect;
+    this.resultFetchSize = resultFetchSize;
+    this.resultPrefetchDepth = resultPrefetchDepth;
+    this.resultPrefetchBytes = resultPrefetchBytes;
     if (timeout != null) {
       this.attachTimeout = timeout;
     }
@@ -235,6 +261,7 @@ class SQLExecutorImpl implements SQLExecutor {
    */
   @Override
   public void close() {
+    closeResultIterators();
     if (pool != null) {
       pool.releaseExecutor(this);
     } else {
@@ -248,6 +275,17 @@ class SQLExecutorImpl implements SQLExecutor {
     }
   }
 
+  private void closeResultIterators() {
+    List<SessionRecordSetIterator> iterators;
+    synchronized (resultIterators) {
+      iterators = new ArrayList<>(resultIterators);
+      resultIterators.clear();
+    }
+    for (SessionRecordSetIterator iterator : iterators) {
+      iterator.close();
+    }
+  }
+
   /**
    * 获取Executor的ID
    *
@@ -1196,9 +1234,15 @@ class SQLExecutorImpl implements SQLExecutor {
         return getResultSetInternal(offset, countLimit, sizeLimit, limitEnabled);
       }
     }
-    return new ResultSet(
+    SessionRecordSetIterator iterator =
         new SessionRecordSetIterator(downloadSession, reader, downloadSession.getRecordCount(),
-            offset == null ? 0 : offset, sizeLimit == null ? -1 : sizeLimit),
+            offset == null ? 0 : offset, sizeLimit == null ? -1 : sizeLimit,
+            resultFetchSize, resultPrefetchDepth, resultPrefetchBytes);
+    if (resultPrefetchDepth > 0) {
+      resultIterators.add(iterator);
+    }
+    return new ResultSet(
+        iterator,
         downloadSession.getSchema(),
         downloadSession.getRecordCount());
   }
@@ -1382,31 +1426,93 @@ class SQLExecutorImpl implements SQLExecutor {
 
 /**
  * class: SessionRecordSetIterator It is used in getSessionResultSetByInstanceTunnel
+ *
+ * Records are fetched in ranges of fetchSize. When prefetchDepth > 0, up to prefetchDepth following
+ * ranges are downloaded in background while the current one is consumed, as long as the buffered
+ * ranges stay within prefetchBytes. Prefetch is disabled when sizeLimit is set, so the limit is
+ * checked on the bytes read so far exactly as before and no range beyond the limit is downloaded.
  */
 class SessionRecordSetIterator implements Iterator<Record> {
 
+  private static final int PREFETCH_THREADS =
+      Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final int PREFETCH_QUEUE_SIZE = PREFETCH_THREADS * 4;
+
+  // shared by all iterators, each iterator has at most prefetchDepth ranges in flight. When the
+  // queue is full the range is fetched in the calling thread, so the backlog stays bounded
+  private static final ExecutorService PREFETCH_EXECUTOR;
+
+  static {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 60L, TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE), r -> {
+          Thread t = new Thread(r, "odps-sqa-result-prefetch");
+          t.setDaemon(true);
+          return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    PREFETCH_EXECUTOR = executor;
+  }
+
+  private static class Chunk {
+
+    private final List<Record> records;
+    private final long bytes;
+
+    Chunk(List<Record> records, long bytes) {
+      this.records = records;
+      this.bytes = bytes;
+    }
+  }
+
   private List<Record> buffer;
-  private static final long FETCH_SIZE = 10000L;
   private long cursor = 0;
   private int idx = 0;
-  private long fetchSize = 0;
   private long recordCount;
   private long offset;
   private long sizeLimit;
   private long currentReadSize = 0;
   private InstanceTunnel.DownloadSession session;
-  private TunnelRecordReader reader;
+  private ProtobufRecordStreamReader reader;
+
+  private final long fetchSize;
+  private final int prefetchDepth;
+  private final long prefetchBytes;
+  // start of the next range to fetch, relative to offset
+  private long fetchCursor = 0;
+  // bytes of the last fetched range, used to estimate memory of the ranges in flight
+  private long lastChunkBytes = 0;
+  private final Deque<Future<Chunk>> prefetched = new ArrayDeque<>();
+  private volatile boolean closed = false;
 
   public SessionRecordSetIterator(InstanceTunnel.DownloadSession session
       , TunnelRecordReader reader
       , long recordCount
       , long offset
       , long sizeLimit) {
+    this(session, reader, recordCount, offset, sizeLimit,
+         SQLExecutorConstants.DEFAULT_RESULT_FETCH_SIZE,
+         SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_DEPTH,
+         SQLExecutorConstants.DEFAULT_RESULT_PREFETCH_BYTES);
+  }
+
+  public SessionRecordSetIterator(InstanceTunnel.DownloadSession session
+      , ProtobufRecordStreamReader reader
+      , long recordCount
+      , long offset
+      , long sizeLimit
+      , long fetchSize
+      , int prefetchDepth
+      , long prefetchBytes) {
     this.session = session;
     this.reader = reader;
     this.recordCount = recordCount;
     this.offset = offset;
     this.sizeLimit = sizeLimit;
+    this.fetchSize = fetchSize;
+    this.prefetchDepth = sizeLimit > 0 ? 0 : prefetchDepth;
+    this.prefetchBytes = prefetchBytes;
   }
 
   @Override
@@ -1428,35 +1534,129 @@ class SessionRecordSetIterator implements Iterator<Record> {
     throw new UnsupportedOperationException("remove");
   }
 
+  /**
+   * Cancels the ranges still downloading and closes the reader. Called when the executor is closed
+   */
+  void close() {
+    closed = true;
+    synchronized (prefetched) {
+      for (Future<Chunk> future : prefetched) {
+        future.cancel(true);
+      }
+      prefetched.clear();
+    }
+    closeQuietly(reader);
+    reader = null;
+    buffer = null;
+  }
+
+  int getPrefetchedCount() {
+    synchronized (prefetched) {
+      return prefetched.size();
+    }
+  }
+
   private void fillBuffer() {
+    if (closed) {
+      throw new IllegalStateException("Result set is closed");
+    }
     idx = 0;
-    // use original reader when fill buffer at first time if record count less than 10000
-    if (cursor == 0 && recordCount <= FETCH_SIZE) {
-      // reuse reader
+    Chunk chunk;
+    if (prefetchDepth <= 0) {
+      chunk = fetchNextRange().get();
     } else {
-      reader = openNewReader();
+      Future<Chunk> future;
+      synchronized (prefetched) {
+        if (prefetched.isEmpty()) {
+          prefetched.addLast(PREFETCH_EXECUTOR.submit(fetchNextRange()::get));
+        }
+        future = prefetched.pollFirst();
+      }
+      chunk = awaitChunk(future);
+      // keep downloading the following ranges while the caller consumes this one
+      long inFlightLimit = lastChunkBytes > 0 ? Math.max(1, prefetchBytes / lastChunkBytes)
+                                              : prefetchDepth;
+      synchronized (prefetched) {
+        while (!closed && prefetched.size() < Math.min(prefetchDepth, inFlightLimit)
+               && fetchCursor < recordCount) {
+          prefetched.addLast(PREFETCH_EXECUTOR.submit(fetchNextRange()::get));
+        }
+      }
     }
-    buffer = new ArrayList<Record>();
-    Record r = null;
+    currentReadSize += chunk.bytes;
+    buffer = chunk.records;
+  }
+
+  /**
+   * Returns the task fetching the next range. The original reader is reused for the first range if
+   * record count is no more than fetch size
+   */
+  private Supplier<Chunk> fetchNextRange() {
+    if (fetchCursor == 0 && recordCount <= fetchSize && reader != null) {
+      final ProtobufRecordStreamReader r = reader;
+      reader = null;
+      fetchCursor = recordCount;
+      return () -> readChunk(r);
+    }
+    if (fetchCursor == 0) {
+      closeQuietly(reader);
+      reader = null;
+    }
+    final long start = fetchCursor;
+    final long size = Math.min(recordCount - fetchCursor, fetchSize);
+    fetchCursor += size;
+    return () -> readChunk(openNewReader(start, size));
+  }
+
+  private Chunk awaitChunk(Future<Chunk> future) {
     try {
-      while ((r = reader.read()) != null) {
-        buffer.add(r);
-        if (sizeLimit > 0) {
-          if (currentReadSize + reader.getTotalBytes() > sizeLimit) {
-            throw new RuntimeException("InvalidArgument: sizeLimit, fetched data is larger than limit size");
-          }
+      Chunk chunk = future.get();
+      lastChunkBytes = chunk.bytes;
+      return chunk;
+    } catch (CancellationException e) {
+      throw new IllegalStateException("Result set is closed", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Read from reader interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Read from reader failed:", e.getCause());
+    }
+  }
+
+  private Chunk readChunk(ProtobufRecordStreamReader r) {
+    List<Record> records = new ArrayList<Record>();
+    Record record;
+    try {
+      while (!closed && (record = r.read()) != null) {
+        records.add(record);
+        // prefetch is disabled with sizeLimit, so currentReadSize is up to date here
+        if (sizeLimit > 0 && currentReadSize + r.getTotalBytes() > sizeLimit) {
+          throw new RuntimeException("InvalidArgument: sizeLimit, fetched data is larger than limit size");
         }
       }
-      currentReadSize += reader.getTotalBytes();
+      return new Chunk(records, r.getTotalBytes());
     } catch (IOException e) {
       throw new RuntimeException("Read from reader failed:", e);
+    } finally {
+      closeQuietly(r);
+    }
+  }
+
+  private static void closeQuietly(ProtobufRecordStreamReader r) {
+    if (r != null) {
+      try {
+        r.close();
+      } catch (IOException ignore) {
+      }
     }
   }
 
-  private TunnelRecordReader openNewReader() {
-    fetchSize = recordCount - cursor <= FETCH_SIZE ? recordCount - cursor : FETCH_SIZE;
+  ProtobufRecordStreamReader openNewReader(long start, long size) {
     try {
-      return session.openRecordReader(cursor + offset, fetchSize);
+      return session.openRecordReader(start + offset, size);
     } catch (TunnelException e) {
       throw new RuntimeException("Open reader failed: " + e.getMessage(), e);
     } catch (IOException e) {
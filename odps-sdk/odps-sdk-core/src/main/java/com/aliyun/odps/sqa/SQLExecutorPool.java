@@ -19,27 +19,90 @@
 
 package com.aliyun.odps.sqa;
 
+import com.aliyun.odps.Instance;
 import com.aliyun.odps.OdpsException;
 
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * SQLExecutor 连接池
+ *
+ * 池的状态由一把锁保护，创建 executor（attach session，可能耗时数秒）和检查 executor 是否存活都在锁外进行，
+ * 不会阻塞其他线程的获取和释放。池满时 {@link #getExecutor(long, TimeUnit)} 可以等待其他线程释放。
+ *
+ * 可选的后台维护线程负责异步预热到 initCount，以及定期检查空闲 executor，替换已经失效的 executor。
+ */
 public class SQLExecutorPool {
   private SQLExecutorBuilder sqlExecutorBuilder = null;
   private int initCount = 1;
+  // 包括正在创建中的 executor
   private int currentCount = 0;
   private int maxCount = 1;
+  private long acquireTimeoutMillis = 0;
+  private long healthCheckIntervalMillis = 0;
+  private boolean closed = false;
   private Queue<SQLExecutor> activeExecutor = new ArrayDeque<>();
   private Map<String, SQLExecutor> busyExecutor = new HashMap<>();
 
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private int waitingCount = 0;
+  private ScheduledExecutorService maintainer = null;
+
+  // metrics
+  private final AtomicLong acquireCount = new AtomicLong();
+  private final AtomicLong acquireTimeoutCount = new AtomicLong();
+  private final AtomicLong acquireWaitNanos = new AtomicLong();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong createFailedCount = new AtomicLong();
+  private final AtomicLong evictedCount = new AtomicLong();
+
   static SQLExecutorPool create(int initCount, int maxCount, SQLExecutorBuilder sqlExecutorBuilder) throws OdpsException {
-    return new SQLExecutorPool(initCount, maxCount, sqlExecutorBuilder);
+    return create(initCount, maxCount, 0, false, 0, sqlExecutorBuilder);
+  }
+
+  static SQLExecutorPool create(int initCount, int maxCount, long acquireTimeoutMillis,
+                                boolean asyncInit, long healthCheckIntervalMillis,
+                                SQLExecutorBuilder sqlExecutorBuilder) throws OdpsException {
+    return new SQLExecutorPool(initCount, maxCount, acquireTimeoutMillis, asyncInit,
+                               healthCheckIntervalMillis, sqlExecutorBuilder);
   }
 
-  private SQLExecutorPool(int initCount, int maxCount, SQLExecutorBuilder sqlExecutorBuilder) throws OdpsException {
+  private SQLExecutorPool(int initCount, int maxCount, long acquireTimeoutMillis,
+                          boolean asyncInit, long healthCheckIntervalMillis,
+                          SQLExecutorBuilder sqlExecutorBuilder) throws OdpsException {
+    if (initCount < 0 || maxCount < 1 || initCount > maxCount) {
+      throw new IllegalArgumentException(
+          "Invalid pool size, initCount: " + initCount + ", maxCount: " + maxCount);
+    }
     this.initCount = initCount;
     this.maxCount = maxCount;
+    this.acquireTimeoutMillis = Math.max(0, acquireTimeoutMillis);
+    this.healthCheckIntervalMillis = Math.max(0, healthCheckIntervalMillis);
     this.sqlExecutorBuilder = sqlExecutorBuilder.setPool(this);
-    init();
+    if (!asyncInit) {
+      init();
+    }
+    if (asyncInit || this.healthCheckIntervalMillis > 0) {
+      maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "odps-sqa-pool-maintainer");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    if (asyncInit) {
+      maintainer.execute(this::warmUp);
+    }
+    if (this.healthCheckIntervalMillis > 0) {
+      maintainer.scheduleWithFixedDelay(this::healthCheck, this.healthCheckIntervalMillis,
+                                        this.healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
   }
 
   /**
@@ -48,13 +111,126 @@ public class SQLExecutorPool {
    * @throws OdpsException
    */
   private void init() throws OdpsException {
-    synchronized (this) {
-      while (initCount > currentCount) {
-        // init new session
-        SQLExecutor sqlExecutor = sqlExecutorBuilder.build();
-        currentCount++;
+    while (reserve(initCount)) {
+      addActive(create());
+    }
+  }
+
+  /**
+   * 后台预热到initCount, 失败的创建等待下一次健康检查时补齐
+   */
+  private void warmUp() {
+    while (reserve(initCount)) {
+      try {
+        addActive(create());
+      } catch (OdpsException | RuntimeException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * 检查空闲的executor, 移除已经失效的executor并补齐到initCount
+   */
+  private void healthCheck() {
+    List<SQLExecutor> idle;
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      idle = new ArrayList<>(activeExecutor);
+    } finally {
+      lock.unlock();
+    }
+    for (SQLExecutor executor : idle) {
+      if (isActive(executor)) {
+        continue;
+      }
+      lock.lock();
+      try {
+        // 检查期间可能已经被取走
+        if (!activeExecutor.remove(executor)) {
+          continue;
+        }
+        currentCount--;
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      evictedCount.incrementAndGet();
+      stop(executor);
+    }
+    warmUp();
+  }
+
+  /**
+   * 在executor总数小于limit时占用一个名额, 调用方负责创建executor
+   */
+  private boolean reserve(int limit) {
+    lock.lock();
+    try {
+      if (closed || currentCount >= limit) {
+        return false;
+      }
+      currentCount++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 在锁外创建executor, 失败时释放占用的名额
+   */
+  private SQLExecutor create() throws OdpsException {
+    try {
+      SQLExecutor sqlExecutor = sqlExecutorBuilder.build();
+      createdCount.incrementAndGet();
+      return sqlExecutor;
+    } catch (OdpsException | RuntimeException e) {
+      createFailedCount.incrementAndGet();
+      lock.lock();
+      try {
+        currentCount--;
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      throw e;
+    }
+  }
+
+  private void addActive(SQLExecutor sqlExecutor) {
+    lock.lock();
+    try {
+      if (!closed) {
         activeExecutor.add(sqlExecutor);
+        available.signal();
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
+    stop(sqlExecutor);
+  }
+
+  private static boolean isActive(SQLExecutor sqlExecutor) {
+    try {
+      return sqlExecutor.isActive();
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static void stop(SQLExecutor sqlExecutor) {
+    try {
+      Instance instance = sqlExecutor.getInstance();
+      if (instance != null) {
+        instance.stop();
       }
+    } catch (OdpsException | RuntimeException e) {
+      // ignore
     }
   }
 
@@ -64,54 +240,100 @@ public class SQLExecutorPool {
    * @throws
    */
   public void close() {
-    synchronized (this) {
-      Iterator<Map.Entry<String, SQLExecutor>> it = busyExecutor.entrySet().iterator();
-      while(it.hasNext()) {
-        Map.Entry<String, SQLExecutor> entry = it.next();
-        try {
-          entry.getValue().getInstance().stop();
-        } catch (OdpsException e) {
-          // ignore
-        }
-      }
-      while (!activeExecutor.isEmpty()) {
-        SQLExecutor sqlExecutor = activeExecutor.poll();
-        try {
-          sqlExecutor.getInstance().stop();
-        } catch (OdpsException e) {
-          // ignore
-        }
-      }
+    List<SQLExecutor> executors;
+    lock.lock();
+    try {
+      closed = true;
+      executors = new ArrayList<>(busyExecutor.values());
+      executors.addAll(activeExecutor);
       currentCount = 0;
       activeExecutor.clear();
       busyExecutor.clear();
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    if (maintainer != null) {
+      maintainer.shutdownNow();
+    }
+    for (SQLExecutor sqlExecutor : executors) {
+      stop(sqlExecutor);
     }
   }
 
   /**
    * 获取一个连接,在最大连接数限制内会进行初始化动作
+   * 池满时等待构建连接池时配置的acquireTimeout, 默认不等待
    * @return 一个可用的链接
    * @throws OdpsException
    */
   public SQLExecutor getExecutor() throws OdpsException {
-    synchronized (this) {
-      SQLExecutor sqlExecutor = null;
-      if (!activeExecutor.isEmpty()) {
-        sqlExecutor = activeExecutor.poll();
+    return getExecutor(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 获取一个连接,在最大连接数限制内会进行初始化动作
+   * @param timeout 池满时等待其他连接释放的最长时间, 0表示不等待
+   * @param unit 时间单位
+   * @return 一个可用的链接
+   * @throws OdpsException 池已关闭, 超时或者创建连接失败
+   */
+  public SQLExecutor getExecutor(long timeout, TimeUnit unit) throws OdpsException {
+    long start = System.nanoTime();
+    long remaining = unit.toNanos(timeout);
+    lock.lock();
+    try {
+      while (true) {
+        if (closed) {
+          throw new OdpsException("Executor pool is closed.");
+        }
+        SQLExecutor sqlExecutor = activeExecutor.poll();
         if (sqlExecutor != null) {
           busyExecutor.put(sqlExecutor.getId(), sqlExecutor);
+          recordAcquire(start);
+          return sqlExecutor;
         }
-        return sqlExecutor;
-      } else if (currentCount < maxCount) {
-        // create new session
-        sqlExecutor = sqlExecutorBuilder.build();
-        currentCount++;
+        if (currentCount < maxCount) {
+          currentCount++;
+          break;
+        }
+        if (remaining <= 0) {
+          acquireTimeoutCount.incrementAndGet();
+          throw new OdpsException("No active executor in pool.");
+        }
+        waitingCount++;
+        try {
+          remaining = available.awaitNanos(remaining);
+        } finally {
+          waitingCount--;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OdpsException("Interrupted while waiting for executor.", e);
+    } finally {
+      lock.unlock();
+    }
+
+    // create new session
+    SQLExecutor sqlExecutor = create();
+    lock.lock();
+    try {
+      if (!closed) {
         busyExecutor.put(sqlExecutor.getId(), sqlExecutor);
-      } else {
-        throw new OdpsException("No active executor in pool.");
+        recordAcquire(start);
+        return sqlExecutor;
       }
-      return sqlExecutor;
+    } finally {
+      lock.unlock();
     }
+    stop(sqlExecutor);
+    throw new OdpsException("Executor pool is closed.");
+  }
+
+  private void recordAcquire(long start) {
+    acquireCount.incrementAndGet();
+    acquireWaitNanos.addAndGet(System.nanoTime() - start);
   }
 
   /**
@@ -120,35 +342,127 @@ public class SQLExecutorPool {
    * @throws
    */
   public void releaseExecutor(SQLExecutor executor) {
-    synchronized (this) {
-      if (executor != null) {
-        if (busyExecutor.containsKey(executor.getId())) {
-          SQLExecutor sqlExecutor = busyExecutor.remove(executor.getId());
-          if (sqlExecutor.isActive()) {
-            activeExecutor.add(sqlExecutor);
-          } else {
-            currentCount--;
-          }
-        }
+    if (executor == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (busyExecutor.get(executor.getId()) != executor) {
+        return;
       }
+    } finally {
+      lock.unlock();
+    }
+    // isActive 会请求服务端, 不持有锁
+    boolean active = isActive(executor);
+    lock.lock();
+    try {
+      if (busyExecutor.remove(executor.getId()) == null) {
+        // 已被 close
+        return;
+      }
+      if (active) {
+        activeExecutor.add(executor);
+      } else {
+        currentCount--;
+        evictedCount.incrementAndGet();
+      }
+      available.signal();
+    } finally {
+      lock.unlock();
     }
   }
 
   public int getActiveCount() {
-    synchronized (this) {
+    lock.lock();
+    try {
       return activeExecutor.size();
+    } finally {
+      lock.unlock();
     }
   }
 
   public int getBusyCount() {
-    synchronized (this) {
+    lock.lock();
+    try {
       return busyExecutor.size();
+    } finally {
+      lock.unlock();
     }
   }
 
   public int getExecutorCount() {
-    synchronized (this) {
+    lock.lock();
+    try {
       return currentCount;
+    } finally {
+      lock.unlock();
     }
   }
-}
\ No newline at end of file
+
+  public int getMaxCount() {
+    return maxCount;
+  }
+
+  /**
+   * @return 正在等待可用连接的线程数
+   */
+  public int getWaitingCount() {
+    lock.lock();
+    try {
+      return waitingCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return 使用中的连接占最大连接数的比例
+   */
+  public double getUtilization() {
+    return (double) getBusyCount() / maxCount;
+  }
+
+  /**
+   * @return 成功获取连接的总次数
+   */
+  public long getAcquireCount() {
+    return acquireCount.get();
+  }
+
+  /**
+   * @return 获取连接超时(包括不等待时池满)的总次数
+   */
+  public long getAcquireTimeoutCount() {
+    return acquireTimeoutCount.get();
+  }
+
+  /**
+   * @return 成功获取连接的平均耗时, 包括等待和创建连接的时间
+   */
+  public double getAverageAcquireTimeMillis() {
+    long count = acquireCount.get();
+    return count == 0 ? 0 : acquireWaitNanos.get() / 1e6 / count;
+  }
+
+  /**
+   * @return 创建的连接总数
+   */
+  public long getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /**
+   * @return 创建连接失败的总次数
+   */
+  public long getCreateFailedCount() {
+    return createFailedCount.get();
+  }
+
+  /**
+   * @return 因失效而被移出连接池的连接总数
+   */
+  public long getEvictedCount() {
+    return evictedCount.get();
+  }
+}
@@ -4,6 +4,7 @@ import com.aliyun.odps.Odps;
 import com.aliyun.odps.OdpsException;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by dongxiao on 2020/3/17.
@@ -12,13 +13,17 @@ public class SQLExecutorPoolBuilder {
   private SQLExecutorBuilder sqlExecutorBuilder = SQLExecutorBuilder.builder();
   private int initPoolSize = 1;
   private int maxPoolSize = 5;
+  private long acquireTimeoutMillis = 0;
+  private boolean asyncInit = false;
+  private long healthCheckIntervalMillis = 0;
 
   public static SQLExecutorPoolBuilder builder() {
     return new SQLExecutorPoolBuilder();
   }
 
   public SQLExecutorPool build() throws OdpsException{
-    return SQLExecutorPool.create(initPoolSize, maxPoolSize, sqlExecutorBuilder);
+    return SQLExecutorPool.create(initPoolSize, maxPoolSize, acquireTimeoutMillis, asyncInit,
+                                  healthCheckIntervalMillis, sqlExecutorBuilder);
   }
 
   public SQLExecutorPoolBuilder initPoolSize(int initPoolSize) {
@@ -31,6 +36,30 @@ public class SQLExecutorPoolBuilder {
     return this;
   }
 
+  /**
+   * 池满时getExecutor()等待其他连接释放的最长时间, 默认为0, 即不等待直接抛出异常
+   */
+  public SQLExecutorPoolBuilder acquireTimeout(long timeout, TimeUnit unit) {
+    this.acquireTimeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * 是否在后台线程中初始化initPoolSize个连接, 默认为false, 即build()时同步初始化
+   */
+  public SQLExecutorPoolBuilder asyncInit(boolean asyncInit) {
+    this.asyncInit = asyncInit;
+    return this;
+  }
+
+  /**
+   * 空闲连接的健康检查间隔, 失效的连接会被移除并补齐到initPoolSize, 默认为0, 即不检查
+   */
+  public SQLExecutorPoolBuilder healthCheckInterval(long interval, TimeUnit unit) {
+    this.healthCheckIntervalMillis = unit.toMillis(interval);
+    return this;
+  }
+
   public SQLExecutorPoolBuilder odps(Odps odps) {
     this.sqlExecutorBuilder.odps(odps);
     return this;
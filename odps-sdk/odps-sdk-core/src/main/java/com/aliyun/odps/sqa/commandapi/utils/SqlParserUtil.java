@@ -2,11 +2,21 @@ package com.aliyun.odps.sqa.commandapi.utils;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 import com.aliyun.odps.sqa.commandapi.antlr.sql.OdpsLexer;
@@ -23,6 +33,55 @@ import com.aliyun.odps.sqa.commandapi.antlr.sql.OdpsParserBaseListener;
 
 public class SqlParserUtil {
 
+  /**
+   * 分类结果缓存的条目数
+   */
+  static final int CACHE_CAPACITY = 1024;
+
+  /**
+   * 超过该长度的sql不缓存, 避免大sql长期占用内存
+   */
+  static final int MAX_CACHED_SQL_LENGTH = 64 * 1024;
+
+  /**
+   * 预热使用的语句, 覆盖常见的查询和ddl
+   */
+  private static final String[] WARM_UP_SQLS = {
+      "select a, count(*) as c from t1 a join t2 b on a.id = b.id where a.ds = '1' "
+      + "group by a order by c desc limit 10;",
+      "with t as (select * from t1) select * from t union all select * from t2;",
+      "insert overwrite table t partition (ds='1') select * from t1;",
+      "from t1 insert overwrite table t2 select a insert into table t3 select b;",
+      "create table if not exists t (a bigint, b string) partitioned by (ds string);",
+      "explain select * from t;"
+  };
+
+  private static final Map<String, Classification> CACHE = Collections.synchronizedMap(
+      new LinkedHashMap<String, Classification>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Classification> eldest) {
+          return size() > CACHE_CAPACITY;
+        }
+      });
+
+  private static final AtomicBoolean WARMED_UP = new AtomicBoolean(false);
+  private static final AtomicLong CACHE_HIT_COUNT = new AtomicLong();
+  private static final AtomicLong FULL_PARSE_COUNT = new AtomicLong();
+
+  /**
+   * 一条sql的分类结果
+   */
+  static final class Classification {
+
+    final boolean hasResultSet;
+    final boolean select;
+
+    Classification(boolean hasResultSet, boolean select) {
+      this.hasResultSet = hasResultSet;
+      this.select = select;
+    }
+  }
+
   static class SqlParserListener extends OdpsParserBaseListener {
 
     /**
@@ -141,8 +200,228 @@ public class SqlParserUtil {
    * @return
    */
   public static boolean hasResultSet(String sql) {
+    return classify(sql).hasResultSet;
+  }
+
+  /**
+   * 判断sql是否是select
+   * 非select:
+   * 1. explain select
+   * 2. from xxx insert
+   * select:
+   * 1. from xxx select
+   * 2. with xxx as xxx select
+   */
+  public static boolean isSelect(String sql) throws SQLException {
+    return classify(sql).select;
+  }
+
+  /**
+   * 预先解析几条常见语句, 填充解析器共享的DFA缓存, 降低第一条sql的解析耗时。
+   * 只在第一次调用时执行
+   */
+  public static void warmUp() {
+    if (!WARMED_UP.compareAndSet(false, true)) {
+      return;
+    }
+    parseWarmUpSqls();
+  }
+
+  /**
+   * 同 {@link #warmUp()}, 在后台线程中执行, 每个 JVM 最多启动一个线程
+   */
+  public static void warmUpInBackground() {
+    if (!WARMED_UP.compareAndSet(false, true)) {
+      return;
+    }
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        parseWarmUpSqls();
+      }
+    }, "odps-sql-parser-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void parseWarmUpSqls() {
+    for (String sql : WARM_UP_SQLS) {
+      classifyByParse(sql);
+    }
+  }
+
+  /**
+   * 判断sql的类型, 依次查询缓存、只使用词法分析判断, 最后才做完整的语法分析
+   */
+  static Classification classify(String sql) {
+    String key = normalize(sql);
+    boolean cacheable = key.length() <= MAX_CACHED_SQL_LENGTH;
+    if (cacheable) {
+      Classification cached = CACHE.get(key);
+      if (cached != null) {
+        CACHE_HIT_COUNT.incrementAndGet();
+        return cached;
+      }
+    }
+
+    Classification result = classifyByLexer(key);
+    if (result == null) {
+      result = classifyByParse(key);
+    }
+    if (cacheable) {
+      CACHE.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * 规范化sql作为缓存的key: 去掉首尾空白, 引号和注释以外的连续空白合并为一个,
+   * 包含换行时保留换行, 保证行注释的结束位置不变
+   */
+  static String normalize(String sql) {
+    StringBuilder sb = new StringBuilder(sql.length());
+    char quote = 0;
+    boolean comment = false;
+    boolean space = false;
+    boolean newline = false;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        sb.append(c);
+        if (c == '\\' && quote != '`' && i + 1 < sql.length()) {
+          sb.append(sql.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+        continue;
+      }
+      if (comment) {
+        if (c == '\n' || c == '\r') {
+          comment = false;
+        } else {
+          sb.append(c);
+          continue;
+        }
+      }
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+        space = true;
+        newline |= (c == '\n' || c == '\r');
+        continue;
+      }
+      if (space && sb.length() > 0) {
+        sb.append(newline ? '\n' : ' ');
+      }
+      space = false;
+      newline = false;
+      sb.append(c);
+      if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+        comment = true;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * 只通过词法分析判断常见的单条语句, 无法确定时返回null
+   */
+  static Classification classifyByLexer(String sql) {
+    OdpsLexer lexer = new OdpsLexer(new ANTLRInputStream(sql));
+    lexer.removeErrorListeners();
+    List<Token> tokens = new ArrayList<>();
+    for (Token token : lexer.getAllTokens()) {
+      if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+        tokens.add(token);
+      }
+    }
+
+    // 去掉结尾的分号, 多条语句、脚本等交给语法分析
+    int end = tokens.size();
+    while (end > 0 && tokens.get(end - 1).getType() == OdpsLexer.SEMICOLON) {
+      end--;
+    }
+    if (end == 0) {
+      return null;
+    }
+    for (int i = 0; i < end; i++) {
+      int type = tokens.get(i).getType();
+      if (type == OdpsLexer.SEMICOLON || type == OdpsLexer.KW_CODE_BEGIN
+          || type == OdpsLexer.ANY_CHAR) {
+        return null;
+      }
+    }
+
+    switch (tokens.get(0).getType()) {
+      case OdpsLexer.KW_SELECT:
+        return new Classification(true, true);
+      case OdpsLexer.KW_INSERT:
+        return new Classification(false, false);
+      case OdpsLexer.KW_WITH:
+        return classifyWith(tokens, end);
+      case OdpsLexer.KW_EXPLAIN:
+        // explain from ... 需要区分select和多路insert
+        if (end > 1 && tokens.get(1).getType() == OdpsLexer.KW_SELECT) {
+          return new Classification(true, false);
+        }
+        if (end > 1 && tokens.get(1).getType() == OdpsLexer.KW_INSERT) {
+          return new Classification(false, false);
+        }
+        return null;
+      case OdpsLexer.KW_CREATE:
+      case OdpsLexer.KW_DROP:
+      case OdpsLexer.KW_ALTER:
+      case OdpsLexer.KW_TRUNCATE:
+      case OdpsLexer.KW_DESCRIBE:
+      case OdpsLexer.KW_DESC:
+      case OdpsLexer.KW_SHOW:
+      case OdpsLexer.KW_SET:
+      case OdpsLexer.KW_DELETE:
+      case OdpsLexer.KW_UPDATE:
+      case OdpsLexer.KW_MERGE:
+      case OdpsLexer.KW_GRANT:
+      case OdpsLexer.KW_REVOKE:
+        // 这些语句不是queryStatement, 其中的子查询不影响结果
+        return new Classification(false, false);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * with子句之后第一个不在括号中的select或insert决定语句类型
+   */
+  private static Classification classifyWith(List<Token> tokens, int end) {
+    int depth = 0;
+    for (int i = 1; i < end; i++) {
+      int type = tokens.get(i).getType();
+      if (type == OdpsLexer.LPAREN) {
+        depth++;
+      } else if (type == OdpsLexer.RPAREN) {
+        depth--;
+      } else if (depth == 0) {
+        if (type == OdpsLexer.KW_SELECT) {
+          return new Classification(true, true);
+        } else if (type == OdpsLexer.KW_INSERT) {
+          return new Classification(false, false);
+        } else if (type == OdpsLexer.KW_FROM) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 通过完整的语法树判断sql类型
+   */
+  static Classification classifyByParse(String sql) {
+    FULL_PARSE_COUNT.incrementAndGet();
     SqlParserListener parserListener = getSqlParserListener(sql);
+    return new Classification(hasResultSet(parserListener), isSelect(parserListener));
+  }
 
+  private static boolean hasResultSet(SqlParserListener parserListener) {
     if (parserListener.isQueryStatement()) {
       if (parserListener.isSelectQueryStatement()) {
         return true;
@@ -165,18 +444,7 @@ public class SqlParserUtil {
     return false;
   }
 
-  /**
-   * 判断sql是否是select
-   * 非select:
-   * 1. explain select
-   * 2. from xxx insert
-   * select:
-   * 1. from xxx select
-   * 2. with xxx as xxx select
-   */
-  public static boolean isSelect(String sql) throws SQLException {
-    SqlParserListener parserListener = getSqlParserListener(sql);
-
+  private static boolean isSelect(SqlParserListener parserListener) {
     if (parserListener.isQueryStatement()) {
       if (parserListener.isSelectQueryStatement()) {
         if (parserListener.isExplainStatement()) {
@@ -200,6 +468,18 @@ public class SqlParserUtil {
     return false;
   }
 
+  static long getCacheHitCount() {
+    return CACHE_HIT_COUNT.get();
+  }
+
+  static long getFullParseCount() {
+    return FULL_PARSE_COUNT.get();
+  }
+
+  static void clearCache() {
+    CACHE.clear();
+  }
+
   /**
    * 获取query里占位符'?'的位置，忽略常量字符'?'。主要用于preparedStatement
    *
@@ -219,7 +499,9 @@ public class SqlParserUtil {
   }
 
   /**
-   * 采用的语法树是odps-sql的语法树
+   * 采用的语法树是odps-sql的语法树。
+   * 先使用SLL模式解析, 大多数语句可以直接成功; 出错时再使用完整的LL模式重新解析,
+   * 保持原有的错误恢复行为
    *
    * @param sql sql语句
    * @return
@@ -229,10 +511,25 @@ public class SqlParserUtil {
     OdpsLexer lexer = new OdpsLexer(input);
     CommonTokenStream tokens = new CommonTokenStream(lexer);
     OdpsParser parser = new OdpsParser(tokens);
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(new BailErrorStrategy());
+    parser.removeErrorListeners();
+
+    OdpsParser.ScriptContext script;
+    try {
+      script = parser.script();
+    } catch (ParseCancellationException e) {
+      tokens.seek(0);
+      parser.reset();
+      parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      script = parser.script();
+    }
 
     SqlParserListener parserListener = new SqlParserListener();
     ParseTreeWalker treeWalker = new ParseTreeWalker();
-    treeWalker.walk(parserListener, parser.script());
+    treeWalker.walk(parserListener, script);
     return parserListener;
   }
 
@@ -73,6 +73,7 @@ import com.aliyun.odps.tunnel.io.ArrowTunnelRecordReader;
 import com.aliyun.odps.tunnel.io.ArrowTunnelRecordWriter;
 import com.aliyun.odps.tunnel.io.Checksum;
 import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.io.ParallelTunnelRecordReader;
 import com.aliyun.odps.tunnel.io.ProtobufRecordPack;
 import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
 import com.aliyun.odps.tunnel.io.TunnelRecordReader;
@@ -2325,6 +2326,40 @@ public class TableTunnel {
       return reader;
     }
 
+    /**
+     * 打开{@link ParallelTunnelRecordReader}，使用多个线程并行读取记录
+     *
+     * @param start
+     *     本次要读取记录的起始位置
+     * @param count
+     *     本次要读取记录的数量
+     * @param threadNum
+     *     下载线程数
+     * @param ordered
+     *     是否按照记录原有顺序返回
+     * @throws TunnelException
+     */
+    public ParallelTunnelRecordReader openParallelRecordReader(long start, long count,
+                                                               int threadNum, boolean ordered)
+        throws TunnelException {
+      return newParallelRecordReaderBuilder(start, count)
+          .setThreadNum(threadNum)
+          .setOrdered(ordered)
+          .build();
+    }
+
+    /**
+     * 获取{@link ParallelTunnelRecordReader.Builder}，用于设置 split 大小、预取数量、重试次数等参数
+     *
+     * @param start
+     *     本次要读取记录的起始位置
+     * @param count
+     *     本次要读取记录的数量
+     */
+    public ParallelTunnelRecordReader.Builder newParallelRecordReaderBuilder(long start, long count) {
+      return new ParallelTunnelRecordReader.Builder(this, start, count);
+    }
+
     private Schema arrowSchema;
     public Schema getArrowSchema() {
       if (this.arrowSchema == null){
@@ -2368,6 +2403,23 @@ public class TableTunnel {
       return new ArrowTunnelRecordReader(start, count, columns, this.tunnelServiceClient, this, allocator, compress, disableModifiedCheck);
     }
 
+    /**
+     * 打开 Arrow 格式的 reader, 连接中断时按照 retryStrategy 从已读完的 record batch 之后继续读取
+     *
+     * @param retryStrategy 重试策略, 为 null 时不重试
+     */
+    public ArrowRecordReader openArrowRecordReader(long start, long count, List<Column> columns,
+                                                   BufferAllocator allocator, CompressOption compress,
+                                                   boolean disableModifiedCheck,
+                                                   RetryStrategy retryStrategy)
+        throws TunnelException, IOException {
+      ArrowTunnelRecordReader reader =
+          new ArrowTunnelRecordReader(start, count, columns, this.tunnelServiceClient, this,
+                                      allocator, compress, disableModifiedCheck);
+      reader.setRetryStrategy(retryStrategy);
+      return reader;
+    }
+
     // initiate a new download session
     private void initiate(boolean async, boolean wait) throws TunnelException {
       HashMap<String, String> headers = getCommonHeader();
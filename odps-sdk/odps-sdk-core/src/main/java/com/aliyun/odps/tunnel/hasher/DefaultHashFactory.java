@@ -56,6 +56,16 @@ class DefaultHashFactory implements HasherFactory {
     return "default";
   }
 
+  @Override
+  public int hashLong(long val) {
+    return basicLongHasher(val);
+  }
+
+  @Override
+  public int hashBytes(byte[] bytes, int off, int len) {
+    return basicBytesHasher(bytes, off, len);
+  }
+
   /*
    * basic hash function for long
    */
@@ -70,6 +80,31 @@ class DefaultHashFactory implements HasherFactory {
     return (int) (l);
   }
 
+  /*
+   * basic hash function for utf-8 bytes
+   */
+  static int basicBytesHasher(byte[] bytes, int off, int len) {
+    int hashVal = 0;
+    for (int i = off; i < off + len; ++i) {
+      hashVal = updateBytesHash(hashVal, bytes[i]);
+    }
+    return finishBytesHash(hashVal);
+  }
+
+  static int updateBytesHash(int hashVal, byte b) {
+    hashVal += b;
+    hashVal += (hashVal << 10);
+    hashVal ^= (hashVal >> 6);
+    return hashVal;
+  }
+
+  static int finishBytesHash(int hashVal) {
+    hashVal += (hashVal << 3);
+    hashVal ^= (hashVal >> 11);
+    hashVal += (hashVal << 15);
+    return hashVal;
+  }
+
   /**
    * tinyint type hash
    */
@@ -189,18 +224,7 @@ class DefaultHashFactory implements HasherFactory {
       }
 
       byte[] chars = val.getBytes(UTF8);
-      int hashVal = 0;
-      for (int i = 0; i < chars.length; ++i) {
-        hashVal += chars[i];
-        hashVal += (hashVal << 10);
-        hashVal ^= (hashVal >> 6);
-      }
-
-      hashVal += (hashVal << 3);
-      hashVal ^= (hashVal >> 11);
-      hashVal += (hashVal << 15);
-
-      return hashVal;
+      return basicBytesHasher(chars, 0, chars.length);
     }
   }
 
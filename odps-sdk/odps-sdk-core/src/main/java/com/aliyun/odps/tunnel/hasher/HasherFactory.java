@@ -12,4 +12,14 @@ interface HasherFactory {
    * @return haser
    */
   OdpsHasher getHasher(OdpsType type);
+
+  /**
+   * hash of a long value, also used by the other integral types
+   */
+  int hashLong(long val);
+
+  /**
+   * hash of utf-8 encoded bytes, same as the hash of the decoded string
+   */
+  int hashBytes(byte[] bytes, int off, int len);
 }
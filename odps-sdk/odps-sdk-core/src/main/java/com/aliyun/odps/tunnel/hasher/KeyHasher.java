@@ -0,0 +1,492 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.hasher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.Varchar;
+
+/**
+ * 按表结构预编译的主键 hash 计算器
+ *
+ * <p>构造时为每个主键列确定 hash 方式，之后计算一条 {@link Record} 或一批 Arrow 数据所在的桶时，
+ * 数值、BOOLEAN、字符串、DATE、TIMESTAMP 等类型直接按原始值计算，不装箱也不分配内存，
+ * Arrow 数据的 BINARY 列直接从数据缓冲区读取。
+ * 结果与逐列调用 {@link TypeHasher#hash(OdpsType, Object, String)} 再
+ * {@link TypeHasher#CombineHashVal(int[])} 完全一致。</p>
+ *
+ * <p>值为 null 的主键列 hash 值为 0，是否允许 null 由调用方检查。</p>
+ *
+ * 注意：此类不是线程安全的。
+ */
+public class KeyHasher {
+
+  // 同 BooleanHasher, default 和 legacy 版本相同
+  private static final int TRUE_HASH = 0x172ba9c7;
+  private static final int FALSE_HASH = -0x3a59cb12;
+
+  // Binary.toString() 使用的 quoted-printable 编码
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private final int[] keyIndexes;
+  private final OdpsType[] keyTypes;
+  private final OdpsHasher[] hashers;
+  private final HasherFactory factory;
+  private final boolean legacy;
+
+  // 读取 Arrow 字符串列时复用的缓冲区
+  private byte[] scratch = new byte[64];
+
+  /**
+   * @param schema 表结构
+   * @param keyIndexes 主键列在表结构中的下标
+   * @param version hash 版本，包括 legacy 和 default
+   */
+  public KeyHasher(TableSchema schema, List<Integer> keyIndexes, String version) {
+    this.factory = TypeHasher.getFactory(version);
+    this.legacy = factory instanceof LegacyHashFactory;
+    this.keyIndexes = new int[keyIndexes.size()];
+    this.keyTypes = new OdpsType[keyIndexes.size()];
+    this.hashers = new OdpsHasher[keyIndexes.size()];
+    for (int i = 0; i < keyIndexes.size(); i++) {
+      this.keyIndexes[i] = keyIndexes.get(i);
+      this.keyTypes[i] = schema.getColumn(this.keyIndexes[i]).getTypeInfo().getOdpsType();
+      this.hashers[i] = TypeHasher.getHasher(keyTypes[i], version);
+    }
+  }
+
+  /**
+   * 计算一条记录的主键 hash 值
+   */
+  public int hash(Record record) {
+    int hashVal = 0;
+    for (int i = 0; i < keyIndexes.length; i++) {
+      hashVal += hashValue(i, record.get(keyIndexes[i]));
+    }
+    return combine(hashVal);
+  }
+
+  /**
+   * 计算一条记录所在的桶
+   *
+   * @param record 记录
+   * @param bucketNum 桶数
+   */
+  public int bucket(Record record, int bucketNum) {
+    return hash(record) % bucketNum;
+  }
+
+  /**
+   * 计算一批 Arrow 数据中每一行所在的桶，按列计算 hash 值
+   *
+   * @param keyVectors 主键列，顺序与构造时的 keyIndexes 一致，数据格式为 ARROW_COMPATIBLE 模式
+   * @param rowCount 行数
+   * @param bucketNum 桶数
+   * @param buckets 输出每一行所在的桶，长度不小于 rowCount
+   */
+  public void buckets(FieldVector[] keyVectors, int rowCount, int bucketNum, int[] buckets) {
+    if (keyVectors.length != keyIndexes.length) {
+      throw new IllegalArgumentException(
+          "Expect " + keyIndexes.length + " key vectors, but got " + keyVectors.length);
+    }
+    Arrays.fill(buckets, 0, rowCount, 0);
+    for (int i = 0; i < keyVectors.length; i++) {
+      addHashes(i, keyVectors[i], rowCount, buckets);
+    }
+    for (int row = 0; row < rowCount; row++) {
+      buckets[row] = combine(buckets[row]) % bucketNum;
+    }
+  }
+
+  // 同 TypeHasher.CombineHashVal
+  private static int combine(int hashVal) {
+    return hashVal ^ (hashVal >> 8);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int hashValue(int key, Object value) {
+    if (value == null) {
+      return 0;
+    }
+    switch (keyTypes[key]) {
+      case TINYINT:
+        return factory.hashLong((Byte) value);
+      case SMALLINT:
+        return factory.hashLong((Short) value);
+      case INT:
+        return factory.hashLong((Integer) value);
+      case BIGINT:
+        return factory.hashLong((Long) value);
+      case FLOAT:
+        return factory.hashLong(Float.floatToIntBits((Float) value));
+      case DOUBLE:
+        return factory.hashLong(Double.doubleToLongBits((Double) value));
+      case BOOLEAN:
+        return (Boolean) value ? TRUE_HASH : FALSE_HASH;
+      case STRING:
+        if (value instanceof String) {
+          return hashString((String) value);
+        } else if (value instanceof byte[]) {
+          byte[] bytes = (byte[]) value;
+          return hashUtf8(bytes, 0, bytes.length);
+        }
+        break;
+      case CHAR:
+        if (value instanceof Char) {
+          return hashString(((Char) value).getValue());
+        }
+        break;
+      case VARCHAR:
+        if (value instanceof Varchar) {
+          return hashString(((Varchar) value).getValue());
+        }
+        break;
+      case DATE:
+        if (value instanceof LocalDate) {
+          return hashDate(((LocalDate) value).toEpochDay());
+        }
+        break;
+      case TIMESTAMP:
+        if (value instanceof Instant) {
+          Instant instant = (Instant) value;
+          return hashTimestamp(instant.getEpochSecond(), instant.getNano());
+        }
+        break;
+      default:
+        break;
+    }
+    OdpsHasher hasher = hashers[key];
+    return hasher.hash(hasher.normalizeType(value));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addHashes(int key, FieldVector vector, int rowCount, int[] hashes) {
+    switch (keyTypes[key]) {
+      case TINYINT: {
+        TinyIntVector v = (TinyIntVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(v.get(row));
+          }
+        }
+        break;
+      }
+      case SMALLINT: {
+        SmallIntVector v = (SmallIntVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(v.get(row));
+          }
+        }
+        break;
+      }
+      case INT: {
+        IntVector v = (IntVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(v.get(row));
+          }
+        }
+        break;
+      }
+      case BIGINT: {
+        BigIntVector v = (BigIntVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(v.get(row));
+          }
+        }
+        break;
+      }
+      case FLOAT: {
+        Float4Vector v = (Float4Vector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(Float.floatToIntBits(v.get(row)));
+          }
+        }
+        break;
+      }
+      case DOUBLE: {
+        Float8Vector v = (Float8Vector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(Double.doubleToLongBits(v.get(row)));
+          }
+        }
+        break;
+      }
+      case BOOLEAN: {
+        BitVector v = (BitVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += v.get(row) != 0 ? TRUE_HASH : FALSE_HASH;
+          }
+        }
+        break;
+      }
+      case STRING:
+      case CHAR:
+      case VARCHAR: {
+        VarCharVector v = (VarCharVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            int start = v.getStartOffset(row);
+            int len = v.getEndOffset(row) - start;
+            if (scratch.length < len) {
+              scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            v.getDataBuffer().getBytes(start, scratch, 0, len);
+            hashes[row] += hashUtf8(scratch, 0, len);
+          }
+        }
+        break;
+      }
+      case BINARY: {
+        VarBinaryVector v = (VarBinaryVector) vector;
+        ArrowBuf data = v.getDataBuffer();
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += hashBinary(data, v.getStartOffset(row), v.getEndOffset(row));
+          }
+        }
+        break;
+      }
+      case DATE: {
+        DateDayVector v = (DateDayVector) vector;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += hashDate(v.get(row));
+          }
+        }
+        break;
+      }
+      case DATETIME: {
+        TimeStampVector v = (TimeStampVector) vector;
+        ArrowType.Timestamp type = (ArrowType.Timestamp) v.getField().getType();
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            hashes[row] += factory.hashLong(toEpochMilli(type, v.get(row)));
+          }
+        }
+        break;
+      }
+      case TIMESTAMP: {
+        TimeStampVector v = (TimeStampVector) vector;
+        long unitsPerSecond = unitsPerSecond((ArrowType.Timestamp) v.getField().getType());
+        long nanosPerUnit = 1000000000L / unitsPerSecond;
+        for (int row = 0; row < rowCount; row++) {
+          if (!v.isNull(row)) {
+            long value = v.get(row);
+            long seconds = Math.floorDiv(value, unitsPerSecond);
+            int nanos = (int) (Math.floorMod(value, unitsPerSecond) * nanosPerUnit);
+            hashes[row] += hashTimestamp(seconds, nanos);
+          }
+        }
+        break;
+      }
+      default:
+        throw new UnsupportedOperationException(
+            "Not supported hash function type for arrow:" + keyTypes[key].name());
+    }
+  }
+
+  private int hashDate(long epochDay) {
+    // LocalDate.atStartOfDay(ZoneOffset.UTC).toEpochSecond()
+    return factory.hashLong(epochDay * 86400L);
+  }
+
+  private int hashTimestamp(long seconds, int nanos) {
+    return factory.hashLong((seconds << 30) | nanos);
+  }
+
+  private static long unitsPerSecond(ArrowType.Timestamp type) {
+    switch (type.getUnit()) {
+      case SECOND:
+        return 1L;
+      case MILLISECOND:
+        return 1000L;
+      case MICROSECOND:
+        return 1000000L;
+      case NANOSECOND:
+        return 1000000000L;
+      default:
+        throw new UnsupportedOperationException("Unit not supported: " + type.getUnit());
+    }
+  }
+
+  private static long toEpochMilli(ArrowType.Timestamp type, long value) {
+    switch (type.getUnit()) {
+      case SECOND:
+        return Math.multiplyExact(value, 1000L);
+      case MILLISECOND:
+        return value;
+      case MICROSECOND:
+        return Math.floorDiv(value, 1000L);
+      case NANOSECOND:
+        return Math.floorDiv(value, 1000000L);
+      default:
+        throw new UnsupportedOperationException("Unit not supported: " + type.getUnit());
+    }
+  }
+
+  /**
+   * hash 一段 UTF-8 编码的字节，编码不合法时与先解码成字符串再计算的结果保持一致
+   */
+  private int hashUtf8(byte[] bytes, int off, int len) {
+    if (isWellFormedUtf8(bytes, off, len)) {
+      return factory.hashBytes(bytes, off, len);
+    }
+    return hashString(new String(bytes, off, len, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * 边编码边计算字符串的 hash，结果等同于对 String.getBytes(UTF-8) 计算 hash，
+   * 不成对的代理字符与 JDK 一致编码为 '?'
+   */
+  private int hashString(String value) {
+    int hashVal = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        hashVal = update(hashVal, c);
+      } else if (c < 0x800) {
+        hashVal = update(hashVal, 0xc0 | (c >> 6));
+        hashVal = update(hashVal, 0x80 | (c & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, value.charAt(++i));
+          hashVal = update(hashVal, 0xf0 | (cp >> 18));
+          hashVal = update(hashVal, 0x80 | ((cp >> 12) & 0x3f));
+          hashVal = update(hashVal, 0x80 | ((cp >> 6) & 0x3f));
+          hashVal = update(hashVal, 0x80 | (cp & 0x3f));
+        } else {
+          hashVal = update(hashVal, '?');
+        }
+      } else {
+        hashVal = update(hashVal, 0xe0 | (c >> 12));
+        hashVal = update(hashVal, 0x80 | ((c >> 6) & 0x3f));
+        hashVal = update(hashVal, 0x80 | (c & 0x3f));
+      }
+    }
+    return legacy ? hashVal : DefaultHashFactory.finishBytesHash(hashVal);
+  }
+
+  /**
+   * 边做 quoted-printable 编码边计算 hash，结果等同于对 Binary.toString() 计算 hash
+   */
+  private int hashBinary(ArrowBuf data, int start, int end) {
+    int hashVal = 0;
+    for (int i = start; i < end; i++) {
+      int b = data.getByte(i) & 0xff;
+      // 可打印字符为 33 ~ 126，但不包括 '=' 和 '|'
+      if (b >= 33 && b <= 126 && b != '=' && b != '|') {
+        hashVal = update(hashVal, b);
+      } else {
+        hashVal = update(hashVal, '=');
+        hashVal = update(hashVal, HEX_DIGITS[b >> 4]);
+        hashVal = update(hashVal, HEX_DIGITS[b & 0xf]);
+      }
+    }
+    return legacy ? hashVal : DefaultHashFactory.finishBytesHash(hashVal);
+  }
+
+  private int update(int hashVal, int b) {
+    return legacy ? LegacyHashFactory.updateBytesHash(hashVal, (byte) b)
+                  : DefaultHashFactory.updateBytesHash(hashVal, (byte) b);
+  }
+
+  /**
+   * 是否是合法的 UTF-8 编码，合法的编码解码后再编码得到的字节不变
+   */
+  static boolean isWellFormedUtf8(byte[] bytes, int off, int len) {
+    int i = off;
+    int end = off + len;
+    while (i < end) {
+      int c = bytes[i] & 0xff;
+      if (c < 0x80) {
+        i++;
+        continue;
+      }
+      int n;
+      int lo = 0x80;
+      int hi = 0xbf;
+      if (c >= 0xc2 && c <= 0xdf) {
+        n = 1;
+      } else if (c >= 0xe0 && c <= 0xef) {
+        n = 2;
+        if (c == 0xe0) {
+          lo = 0xa0;
+        } else if (c == 0xed) {
+          hi = 0x9f;
+        }
+      } else if (c >= 0xf0 && c <= 0xf4) {
+        n = 3;
+        if (c == 0xf0) {
+          lo = 0x90;
+        } else if (c == 0xf4) {
+          hi = 0x8f;
+        }
+      } else {
+        return false;
+      }
+      if (end - i <= n) {
+        return false;
+      }
+      int c1 = bytes[i + 1] & 0xff;
+      if (c1 < lo || c1 > hi) {
+        return false;
+      }
+      for (int k = 2; k <= n; k++) {
+        int ck = bytes[i + k] & 0xff;
+        if (ck < 0x80 || ck > 0xbf) {
+          return false;
+        }
+      }
+      i += n + 1;
+    }
+    return true;
+  }
+}
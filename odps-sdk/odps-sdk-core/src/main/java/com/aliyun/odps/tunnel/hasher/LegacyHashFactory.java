@@ -51,6 +51,16 @@ class LegacyHashFactory implements HasherFactory {
     return "legacy";
   }
 
+  @Override
+  public int hashLong(long val) {
+    return basicLongHasher(val);
+  }
+
+  @Override
+  public int hashBytes(byte[] bytes, int off, int len) {
+    return basicBytesHasher(bytes, off, len);
+  }
+
   /*
    * basic hash function for long
    */
@@ -60,6 +70,21 @@ class LegacyHashFactory implements HasherFactory {
     return (int) (l);
   }
 
+  /*
+   * basic hash function for utf-8 bytes
+   */
+  static int basicBytesHasher(byte[] bytes, int off, int len) {
+    int hashVal = 0;
+    for (int i = off; i < off + len; i++) {
+      hashVal = updateBytesHash(hashVal, bytes[i]);
+    }
+    return hashVal;
+  }
+
+  static int updateBytesHash(int hashVal, byte b) {
+    return hashVal * 31 + b;
+  }
+
   /**
    * tinyint type hash
    */
@@ -179,11 +204,7 @@ class LegacyHashFactory implements HasherFactory {
       }
 
       byte[] chars = val.getBytes(UTF8);
-      int hashVal = 0;
-      for (int i = 0; i < chars.length; i++) {
-        hashVal = hashVal * 31 + chars[i];
-      }
-      return hashVal;
+      return basicBytesHasher(chars, 0, chars.length);
     }
   }
 
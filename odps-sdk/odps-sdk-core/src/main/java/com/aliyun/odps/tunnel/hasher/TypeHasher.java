@@ -70,7 +70,16 @@ public class TypeHasher {
         return getHasher(type, null);
     }
     static OdpsHasher getHasher(OdpsType type, String version) {
+        HasherFactory factory = getFactory(version);
 
+        OdpsHasher hasher = factory.getHasher(type);
+        if (hasher == null) {
+            throw new RuntimeException("Not supported hash function type:" + type.name());
+        }
+        return hasher;
+    }
+
+    static HasherFactory getFactory(String version) {
         if (version == null || version.isEmpty()) {
             version = defaultVersion;
         }
@@ -79,12 +88,86 @@ public class TypeHasher {
         if (factory == null) {
             throw new RuntimeException("Not supported hash function version:" + version);
         }
+        return factory;
+    }
 
-        OdpsHasher hasher = factory.getHasher(type);
-        if (hasher == null) {
-            throw new RuntimeException("Not supported hash function type:" + type.name());
-        }
-        return hasher;
+    /**
+     * 计算 BIGINT 类型的 hash 值，与 {@link #hash(OdpsType, Object, String)} 结果一致，但没有装箱
+     *
+     * @param value 数据值
+     * @param version 版本，包括 legacy 和 default
+     * @return hash 值
+     */
+    public static int hashLong(long value, String version) {
+        return getFactory(version).hashLong(value);
+    }
+
+    public static int hashLong(long value) {
+        return hashLong(value, null);
+    }
+
+    /**
+     * 计算 TINYINT/SMALLINT/INT 类型的 hash 值
+     *
+     * @param value 数据值
+     * @param version 版本，包括 legacy 和 default
+     * @return hash 值
+     */
+    public static int hashInt(int value, String version) {
+        return getFactory(version).hashLong(value);
+    }
+
+    public static int hashInt(int value) {
+        return hashInt(value, null);
+    }
+
+    /**
+     * 计算 DOUBLE 类型的 hash 值
+     *
+     * @param value 数据值
+     * @param version 版本，包括 legacy 和 default
+     * @return hash 值
+     */
+    public static int hashDouble(double value, String version) {
+        return getFactory(version).hashLong(Double.doubleToLongBits(value));
+    }
+
+    public static int hashDouble(double value) {
+        return hashDouble(value, null);
+    }
+
+    /**
+     * 计算 FLOAT 类型的 hash 值
+     *
+     * @param value 数据值
+     * @param version 版本，包括 legacy 和 default
+     * @return hash 值
+     */
+    public static int hashFloat(float value, String version) {
+        return getFactory(version).hashLong(Float.floatToIntBits(value));
+    }
+
+    public static int hashFloat(float value) {
+        return hashFloat(value, null);
+    }
+
+    /**
+     * 计算 STRING 类型的 hash 值，输入为 UTF-8 编码的字节
+     *
+     * 对于合法的 UTF-8 编码，结果与对解码后的字符串计算 hash 一致
+     *
+     * @param bytes 数据
+     * @param off 起始位置
+     * @param len 长度
+     * @param version 版本，包括 legacy 和 default
+     * @return hash 值
+     */
+    public static int hashBytes(byte[] bytes, int off, int len, String version) {
+        return getFactory(version).hashBytes(bytes, off, len);
+    }
+
+    public static int hashBytes(byte[] bytes, int off, int len) {
+        return hashBytes(bytes, off, len, null);
     }
 
     /**
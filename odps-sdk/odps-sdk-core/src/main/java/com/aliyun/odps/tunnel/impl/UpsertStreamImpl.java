@@ -1,10 +1,11 @@
 package com.aliyun.odps.tunnel.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -12,13 +13,19 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
 import com.aliyun.odps.Column;
 import com.aliyun.odps.commons.transport.Request;
+import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
+import com.aliyun.odps.table.arrow.accessor.ArrowVectorAccessor;
+import com.aliyun.odps.table.record.accessor.ArrowToRecordConverter;
 import com.aliyun.odps.tunnel.HttpHeaders;
 import com.aliyun.odps.tunnel.TunnelException;
 import com.aliyun.odps.tunnel.TunnelTableSchema;
-import com.aliyun.odps.tunnel.hasher.TypeHasher;
+import com.aliyun.odps.tunnel.hasher.KeyHasher;
 import com.aliyun.odps.tunnel.io.Checksum;
 import com.aliyun.odps.tunnel.io.CompressOption;
 import com.aliyun.odps.tunnel.io.ProtobufRecordPack;
@@ -55,6 +62,7 @@ public class UpsertStreamImpl implements UpsertStream {
   private Map<Integer, Slot> buckets;
   private List<Integer> hashKeys = new ArrayList<>();
   private TunnelTableSchema schema;
+  private final KeyHasher keyHasher;
 
   // buffer
   private final Map<Integer, ProtobufRecordPack> bucketBuffer = new HashMap<>();
@@ -154,6 +162,7 @@ public class UpsertStreamImpl implements UpsertStream {
     this.buckets = session.getBuckets();
     this.schema = session.getRecordSchema();
     this.hashKeys = session.getHashKeys();
+    this.keyHasher = new KeyHasher(schema, hashKeys, session.getHasher());
     this.bootstrap = session.getBootstrap();
     this.channelPool = session.getChannelPool();
     this.connectTimeout = session.getConnectTimeout();
@@ -175,6 +184,16 @@ public class UpsertStreamImpl implements UpsertStream {
 
   @Override
   public void upsert(Record record, List<String> upsertCols) throws IOException, TunnelException {
+    checkUpsertColumns(upsertCols);
+    write(record, UpsertStreamImpl.Operation.UPSERT, upsertCols);
+  }
+
+  @Override
+  public void delete(Record record) throws IOException, TunnelException {
+    write(record, UpsertStreamImpl.Operation.DELETE, null);
+  }
+
+  private void checkUpsertColumns(List<String> upsertCols) throws TunnelException {
     if (upsertCols != null && !upsertCols.isEmpty() && !session.supportPartialUpdate()) {
       throw new TunnelException(
           "Table " + session.tableName
@@ -189,12 +208,136 @@ public class UpsertStreamImpl implements UpsertStream {
         }
       });
     }
-    write(record, UpsertStreamImpl.Operation.UPSERT, upsertCols);
   }
 
   @Override
-  public void delete(Record record) throws IOException, TunnelException {
-    write(record, UpsertStreamImpl.Operation.DELETE, null);
+  public void upsert(VectorSchemaRoot root) throws IOException, TunnelException {
+    write(root, UpsertStreamImpl.Operation.UPSERT, null);
+  }
+
+  @Override
+  public void upsert(VectorSchemaRoot root, List<String> upsertCols)
+      throws IOException, TunnelException {
+    checkUpsertColumns(upsertCols);
+    write(root, UpsertStreamImpl.Operation.UPSERT, upsertCols);
+  }
+
+  @Override
+  public void delete(VectorSchemaRoot root) throws IOException, TunnelException {
+    write(root, UpsertStreamImpl.Operation.DELETE, null);
+  }
+
+  /**
+   * 批量写入 root 中的所有行，编码与逐条调用 {@link #write(Record, Operation, List)} 相同。
+   * 全列 upsert 要求 root 包含所有列；部分列 upsert 和 delete 只要求包含主键列和 valueColumns，
+   * 缺少的列按 null 写入
+   */
+  private void write(VectorSchemaRoot root, UpsertStreamImpl.Operation op,
+                     List<String> valueColumns) throws IOException, TunnelException {
+    checkStatus();
+    int rowCount = root.getRowCount();
+    if (rowCount == 0) {
+      return;
+    }
+
+    // 数据列不包含最后 5 个元数据列
+    List<Column> columns = schema.getColumns();
+    int dataColumnCount = columns.size() - 5;
+    Map<String, FieldVector> vectors = new HashMap<>();
+    for (FieldVector vector : root.getFieldVectors()) {
+      vectors.put(vector.getName().toLowerCase(), vector);
+    }
+    boolean partial = op == UpsertStreamImpl.Operation.DELETE
+                      || (valueColumns != null && !valueColumns.isEmpty());
+    Set<String> requiredColumns = new HashSet<>();
+    if (partial) {
+      for (int key : hashKeys) {
+        requiredColumns.add(columns.get(key).getName().toLowerCase());
+      }
+      if (valueColumns != null) {
+        valueColumns.forEach(col -> requiredColumns.add(col.toLowerCase()));
+      }
+    }
+    ArrowVectorAccessor[] accessors = new ArrowVectorAccessor[dataColumnCount];
+    for (int i = 0; i < dataColumnCount; i++) {
+      Column column = columns.get(i);
+      FieldVector vector = vectors.get(column.getName().toLowerCase());
+      if (vector == null) {
+        if (!partial || requiredColumns.contains(column.getName().toLowerCase())) {
+          throw new IllegalArgumentException(
+              "Column not found in VectorSchemaRoot: " + column.getName());
+        }
+        continue;
+      }
+      accessors[i] = ArrowToRecordConverter.createColumnVectorAccessor(vector, column.getTypeInfo());
+    }
+
+    FieldVector[] keyVectors = new FieldVector[hashKeys.size()];
+    for (int i = 0; i < keyVectors.length; i++) {
+      int key = hashKeys.get(i);
+      keyVectors[i] = vectors.get(columns.get(key).getName().toLowerCase());
+      if (keyVectors[i].getNullCount() > 0) {
+        throw new TunnelException(
+            " UpsertRecord must have primary key value, consider provide values for column '"
+            + columns.get(key).getName() + "'");
+      }
+    }
+    int[] rowBuckets = new int[rowCount];
+    keyHasher.buckets(keyVectors, rowCount, buckets.size(), rowBuckets);
+    for (int bucket : rowBuckets) {
+      if (!bucketBuffer.containsKey(bucket)) {
+        throw new TunnelException(
+            "Tunnel internal error! Do not have bucket for hash key " + bucket);
+      }
+    }
+
+    // 按桶排序行号，使每个桶的行可以连续写入对应的 pack，桶内保持原有顺序
+    int bucketCount = buckets.size();
+    int[] offsets = new int[bucketCount + 1];
+    for (int bucket : rowBuckets) {
+      offsets[bucket + 1]++;
+    }
+    for (int b = 0; b < bucketCount; b++) {
+      offsets[b + 1] += offsets[b];
+    }
+    int[] rows = new int[rowCount];
+    int[] cursor = Arrays.copyOf(offsets, bucketCount);
+    for (int row = 0; row < rowCount; row++) {
+      rows[cursor[rowBuckets[row]]++] = row;
+    }
+
+    // pack 在 append 时即完成序列化，同一批数据复用一条 record
+    UpsertRecord r = (UpsertRecord) session.newRecord();
+    r.setOperation(op == UpsertStreamImpl.Operation.UPSERT ? (byte) 'U' : (byte) 'D');
+    ArrayList<Long> valueCols = new ArrayList<>();
+    if (valueColumns != null) {
+      for (String validColumnName : valueColumns) {
+        valueCols.add(this.schema.getColumnId(validColumnName));
+      }
+    }
+    r.setValueCols(valueCols);
+    ArrayRecord record = r.getRecord();
+    for (int b = 0; b < bucketCount; b++) {
+      if (offsets[b] == offsets[b + 1]) {
+        continue;
+      }
+      ProtobufRecordPack pack = bucketBuffer.get(b);
+      for (int i = offsets[b]; i < offsets[b + 1]; i++) {
+        int row = rows[i];
+        for (int c = 0; c < dataColumnCount; c++) {
+          record.set(c, accessors[c] == null ? null : ArrowToRecordConverter.getData(
+              accessors[c], columns.get(c).getTypeInfo(), row));
+        }
+        long bytes = pack.getTotalBytes();
+        pack.append(record);
+        totalBufferSize += pack.getTotalBytes() - bytes;
+        if (pack.getTotalBytes() > slotBufferSize) {
+          flush(false);
+        } else if (totalBufferSize > maxBufferSize) {
+          flush(true);
+        }
+      }
+    }
   }
 
   @Override
@@ -226,19 +369,15 @@ public class UpsertStreamImpl implements UpsertStream {
           throws TunnelException, IOException {
     checkStatus();
 
-    List<Integer> hashValues = new ArrayList<>();
     for (int key : hashKeys) {
-      Object value = record.get(key);
-      if (value == null) {
+      if (record.get(key) == null) {
         throw new TunnelException(
             " UpsertRecord must have primary key value, consider provide values for column '"
             + schema.getColumn(key).getName() + "'");
       }
-      hashValues.add(TypeHasher.hash(schema.getColumn(key).getTypeInfo().getOdpsType(), value,
-                                     session.getHasher()));
     }
 
-    int bucket = TypeHasher.CombineHashVal(hashValues) % buckets.size();
+    int bucket = keyHasher.bucket(record, buckets.size());
 
     if (!bucketBuffer.containsKey(bucket)) {
       throw new TunnelException(
@@ -304,7 +443,7 @@ public class UpsertStreamImpl implements UpsertStream {
               handlers.add(handler);
               ChannelFuture
                   channelFuture =
-                  channel.writeAndFlush(buildFullHttpRequest(request, pack.getProtobufStream()));
+                  channel.writeAndFlush(buildFullHttpRequest(request, pack));
               channelFuture.addListener((ChannelFutureListener) future -> {
                 if (!future.isSuccess()) {
                   latch.countDown();
@@ -367,10 +506,12 @@ public class UpsertStreamImpl implements UpsertStream {
     }
   }
 
-  private HttpRequest buildFullHttpRequest(Request request, ByteArrayOutputStream content) {
+  private HttpRequest buildFullHttpRequest(Request request, ProtobufRecordPack pack)
+      throws IOException {
     String uri = request.getURI().toString().replace(endpoint.toString(), "");
+    // wrap the pack's chunks as a composite buffer, no copy of the block
     HttpRequest req = new DefaultFullHttpRequest(
-            HttpVersion.HTTP_1_1, HttpMethod.PUT, uri, Unpooled.wrappedBuffer(content.toByteArray()));
+            HttpVersion.HTTP_1_1, HttpMethod.PUT, uri, Unpooled.wrappedBuffer(pack.getProtobufBuffers()));
     request.getHeaders().forEach((key, value) -> req.headers().set(key, value));
     req.headers().set(HttpHeaderNames.HOST, request.getURI().getHost());
     return req;
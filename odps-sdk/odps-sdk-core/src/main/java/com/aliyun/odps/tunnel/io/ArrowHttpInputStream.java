@@ -19,9 +19,9 @@
 
 package com.aliyun.odps.tunnel.io;
 
+import com.github.luben.zstd.ZstdInputStream;
 import com.google.protobuf.CodedInputStream;
 import net.jpountz.lz4.LZ4FrameInputStream;
-import org.xerial.snappy.PureJavaCrc32C;
 import org.xerial.snappy.SnappyFramedInputStream;
 
 import java.io.IOException;
@@ -36,8 +36,8 @@ public class ArrowHttpInputStream implements ReadableByteChannel {
     private CompressOption compress;
     private byte buf[] = new byte[0];
 
-    private PureJavaCrc32C chunkCrc = new PureJavaCrc32C();
-    private PureJavaCrc32C globalCrc = new PureJavaCrc32C();
+    private java.util.zip.Checksum chunkCrc = Checksum.newCrc32C();
+    private java.util.zip.Checksum globalCrc = Checksum.newCrc32C();
     private int crcChunkSize;
     private int readPos; //can read pos
     private int bufSize; //buf size
@@ -67,12 +67,41 @@ public class ArrowHttpInputStream implements ReadableByteChannel {
                 this.in = new SnappyFramedInputStream(inputStream);
             } else if (compress.algorithm.equals(CompressOption.CompressAlgorithm.ODPS_ARROW_LZ4_FRAME)) {
                 this.in = new LZ4FrameInputStream(inputStream);
+            } else if (compress.algorithm.equals(CompressOption.CompressAlgorithm.ODPS_ARROW_ZSTD)) {
+                checkZstdAvailable();
+                this.in = Zstd.wrap(inputStream);
             } else {
                 throw new IOException("invalid compression option.");
             }
         }
     }
 
+    /**
+     * zstd-jni 是可选依赖, 使用 ZSTD 压缩时需要用户自行引入
+     */
+    static boolean isZstdAvailable() {
+        try {
+            Class.forName("com.github.luben.zstd.ZstdInputStream");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    static void checkZstdAvailable() throws IOException {
+        if (!isZstdAvailable()) {
+            throw new IOException(
+                "ZSTD compression requires com.github.luben:zstd-jni in the classpath.");
+        }
+    }
+
+    // 单独的类, 没有 zstd-jni 时加载 ArrowHttpInputStream 不会失败
+    private static class Zstd {
+        static InputStream wrap(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    }
+
     private boolean readChunk() throws IOException {
         if (bufSize > readPos) {
             return true;
@@ -19,7 +19,6 @@
 
 package com.aliyun.odps.tunnel.io;
 
-import org.xerial.snappy.PureJavaCrc32C;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -32,8 +31,8 @@ public class ArrowHttpOutputStream implements WritableByteChannel {
 
     private byte buf[] = new byte[0];
     private final int CHUNK_SIZE;
-    private PureJavaCrc32C chunkCrc = new PureJavaCrc32C();
-    private PureJavaCrc32C globalCrc = new PureJavaCrc32C();
+    private java.util.zip.Checksum chunkCrc = Checksum.newCrc32C();
+    private java.util.zip.Checksum globalCrc = Checksum.newCrc32C();
     private boolean isOpen;
     private int currentPosition;
     private boolean isWriteChunkSize = false;
@@ -25,6 +25,8 @@ import com.aliyun.odps.commons.transport.Connection;
 import com.aliyun.odps.commons.transport.Headers;
 import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.commons.util.ArrowUtils;
+import com.aliyun.odps.commons.util.RetryExceedLimitException;
+import com.aliyun.odps.commons.util.RetryStrategy;
 import com.aliyun.odps.data.ArrowRecordReader;
 import com.aliyun.odps.rest.ResourceBuilder;
 import com.aliyun.odps.rest.RestClient;
@@ -35,10 +37,8 @@ import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.complex.ListVector;
 import org.apache.arrow.vector.ipc.ReadChannel;
 import org.apache.arrow.vector.ipc.message.*;
-import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 
@@ -47,13 +47,24 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+/**
+ * 以 Arrow 格式读取 download session 中的一段数据
+ *
+ * <p>
+ * 连接中断或数据校验失败时, 从已读完的最后一个 record batch 之后重新打开连接继续读取,
+ * 重试策略可以通过 {@link #setRetryStrategy(RetryStrategy)} 设置。
+ * </p>
+ */
 public class ArrowTunnelRecordReader implements ArrowRecordReader {
 
     private RestClient tunnelServiceClient;
     private long start = 0L;
     private long count = 0L;
+    // 已经返回的记录数, 重新打开连接时从 start + offset 开始读
+    private long offset = 0L;
     private List<Column> columnList;
     private TableTunnel.DownloadSession tableSession;
+    private boolean disableModifiedCheck;
 
     private boolean isClosed;
     private ArrowHttpInputStream inputStream;
@@ -61,8 +72,12 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
     private BufferAllocator allocator;
     private MessageChannelReader messageReader;
     private Schema arrowSchema;
+    // 之前的连接上读取的字节数
+    private long bytesReadBefore = 0L;
 
+    private CompressOption requestCompression;
     private CompressOption compression;
+    private RetryStrategy retryStrategy = new TunnelRetryStrategy();
 
     public ArrowTunnelRecordReader(long start,
                                    long count,
@@ -94,22 +109,103 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
         }
         this.tunnelServiceClient = tunnelRestClient;
         this.tableSession = session;
+        this.disableModifiedCheck = disableModifiedCheck;
         this.isClosed = false;
         this.arrowSchema = ArrowUtils.tableSchemaToArrowSchema(session.getSchema(), columns);
+        this.requestCompression = compress;
         this.compression = compress;
         openReaderConnection(this.start, this.count, this.columnList, this.tunnelServiceClient, this.tableSession, disableModifiedCheck);
     }
 
+    /**
+     * 设置读取失败时的重试策略, 每成功读取一个 record batch 后重试次数重新计算
+     *
+     * @param retryStrategy 重试策略, 为 null 时不重试
+     */
+    public void setRetryStrategy(RetryStrategy retryStrategy) {
+        this.retryStrategy = retryStrategy;
+    }
+
     private ArrowRecordBatch readBatch() throws IOException {
-        if (isClosed) {
-            throw new IOException("Arrow reader is closed");
+        while (true) {
+            if (isClosed) {
+                throw new IOException("Arrow reader is closed");
+            }
+            if (offset >= count) {
+                return null;
+            }
+            try {
+                if (this.inputStream == null) {
+                    this.inputStream = new ArrowHttpInputStream(this.connection.getInputStream(), compression);
+                    this.messageReader = new MessageChannelReader(new ReadChannel(this.inputStream), allocator);
+                }
+                ArrowMessage deserializeMessageBatch = MessageSerializer.deserializeMessageBatch(messageReader);
+                if (deserializeMessageBatch == null) {
+                    return null;
+                }
+                ArrowRecordBatch batch = (ArrowRecordBatch) deserializeMessageBatch;
+                offset += batch.getLength();
+                if (retryStrategy != null) {
+                    retryStrategy.reset();
+                }
+                return batch;
+            } catch (IOException e) {
+                if (isClosed) {
+                    throw e;
+                }
+                reopen(e);
+            }
         }
-        if (this.inputStream == null) {
-            this.inputStream = new ArrowHttpInputStream(this.connection.getInputStream(), compression);
-            this.messageReader = new MessageChannelReader(new ReadChannel(this.inputStream), allocator);
+    }
+
+    /**
+     * 按照重试策略等待后, 从未读完的 record batch 开始重新打开连接
+     */
+    private void reopen(IOException cause) throws IOException {
+        IOException last = cause;
+        while (true) {
+            if (retryStrategy == null) {
+                throw last;
+            }
+            try {
+                retryStrategy.onFailure(last);
+            } catch (RetryExceedLimitException e) {
+                throw last;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw last;
+            }
+
+            closeConnection();
+            try {
+                openReaderConnection(start + offset, count - offset, columnList, tunnelServiceClient,
+                                     tableSession, disableModifiedCheck);
+                return;
+            } catch (TunnelException e) {
+                last = new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void closeConnection() {
+        if (messageReader != null) {
+            bytesReadBefore += messageReader.bytesRead();
+            messageReader = null;
+        }
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignore) {
+            }
+            inputStream = null;
+        }
+        if (connection != null) {
+            try {
+                connection.disconnect();
+            } catch (IOException ignore) {
+            }
+            connection = null;
         }
-        ArrowMessage deserializeMessageBatch = MessageSerializer.deserializeMessageBatch(messageReader);
-        return deserializeMessageBatch == null ? null : (ArrowRecordBatch)deserializeMessageBatch;
     }
 
     @Override
@@ -133,9 +229,9 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
     @Override
     public long bytesRead() {
         if (messageReader != null) {
-            return messageReader.bytesRead();
+            return bytesReadBefore + messageReader.bytesRead();
         }
-        return 0L;
+        return bytesReadBefore;
     }
 
     @Override
@@ -143,8 +239,12 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
         if (!isClosed) {
             if (inputStream != null) {
                 inputStream.close();
+                inputStream = null;
+            }
+            if (connection != null) {
+                connection.disconnect();
+                connection = null;
             }
-            connection.disconnect();
             isClosed = true;
         }
     }
@@ -158,7 +258,9 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
         headers.put(Headers.CONTENT_LENGTH, String.valueOf(0));
         headers.put(HttpHeaders.HEADER_ODPS_TUNNEL_VERSION, String.valueOf(TunnelConstants.VERSION));
 
-        switch (compression.algorithm) {
+        CompressOption.CompressAlgorithm algorithm = requestCompression == null
+                ? CompressOption.CompressAlgorithm.ODPS_RAW : requestCompression.algorithm;
+        switch (algorithm) {
             case ODPS_RAW: {
                 break;
             }
@@ -174,6 +276,14 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
                 headers.put(Headers.ACCEPT_ENCODING, "x-odps-lz4-frame");
                 break;
             }
+            case ODPS_ARROW_ZSTD: {
+                if (!ArrowHttpInputStream.isZstdAvailable()) {
+                    throw new TunnelException(
+                        "ZSTD compression requires com.github.luben:zstd-jni in the classpath.");
+                }
+                headers.put(Headers.ACCEPT_ENCODING, "x-odps-zstd");
+                break;
+            }
             default: {
                 throw new TunnelException("invalid compression option.");
             }
@@ -234,6 +344,9 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
                 } else if (content_encoding.equals("x-odps-lz4-frame")) {
                     reply_compression = new CompressOption(CompressOption.CompressAlgorithm.ODPS_ARROW_LZ4_FRAME,
                         -1, 0);
+                } else if (content_encoding.equals("x-odps-zstd") || content_encoding.equals("zstd")) {
+                    reply_compression = new CompressOption(CompressOption.CompressAlgorithm.ODPS_ARROW_ZSTD,
+                        -1, 0);
                 } else {
                     throw new TunnelException("invalid content encoding");
                 }
@@ -241,15 +354,18 @@ public class ArrowTunnelRecordReader implements ArrowRecordReader {
             this.compression = reply_compression; // update to match server's selection of compress algorithm
             this.connection = conn;
         } catch (IOException e) {
-            if (connection != null) {
-                connection.disconnect();
+            if (conn != null) {
+                conn.disconnect();
             }
             throw new TunnelException(e.getMessage(), e);
         } catch (TunnelException e) {
+            if (conn != null) {
+                conn.disconnect();
+            }
             throw e;
         } catch (OdpsException e) {
-            if (connection != null) {
-                connection.disconnect();
+            if (conn != null) {
+                conn.disconnect();
             }
             throw new TunnelException(e.getMessage(), e);
         }
@@ -19,63 +19,121 @@
 
 package com.aliyun.odps.tunnel.io;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 import org.xerial.snappy.PureJavaCrc32C;
 
 /**
  * CRC32 checksum util
+ *
+ * <p>
+ * 定长的值先写入内部缓冲区, 在缓冲区满、更新较长的 byte 数组或者获取结果时再一次性计算,
+ * 一条记录的多个定长字段只需要一次 CRC 计算。结果与逐个值计算相同。<br />
+ * Java 9 及以上使用 JDK 自带的 java.util.zip.CRC32C (有硬件指令加速), 否则使用 {@link PureJavaCrc32C}。
+ * </p>
  */
 public class Checksum {
 
-  private static byte[] TRUE = {1};
-  private static byte[] FALSE = {0};
+  private static final Class<?> CRC32C_CLASS = loadCrc32C();
+
+  // 小于该长度的 byte 数组复制到缓冲区中, 与定长字段一起计算
+  private static final int MAX_BUFFERED_BYTES = 64;
+  private static final int BUFFER_SIZE = 512;
 
-  private PureJavaCrc32C crc = new PureJavaCrc32C();
-  private ByteBuffer buf;
+  private final java.util.zip.Checksum crc = newCrc32C();
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private int pos = 0;
 
   public Checksum() {
-    buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static Class<?> loadCrc32C() {
+    try {
+      return Class.forName("java.util.zip.CRC32C");
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * 创建 CRC32C 计算器, 有 JDK 内置实现(Java 9+)时优先使用
+   */
+  public static java.util.zip.Checksum newCrc32C() {
+    if (CRC32C_CLASS != null) {
+      try {
+        return (java.util.zip.Checksum) CRC32C_CLASS.newInstance();
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // fall through
+      }
+    }
+    return new PureJavaCrc32C();
+  }
+
+  private void ensure(int len) {
+    if (pos + len > BUFFER_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (pos > 0) {
+      crc.update(buf, 0, pos);
+      pos = 0;
+    }
   }
 
   public void update(int v) {
-    buf.clear();
-    buf.putInt(v);
-    crc.update(buf.array(), 0, 4);
+    ensure(4);
+    // little endian
+    buf[pos] = (byte) v;
+    buf[pos + 1] = (byte) (v >>> 8);
+    buf[pos + 2] = (byte) (v >>> 16);
+    buf[pos + 3] = (byte) (v >>> 24);
+    pos += 4;
   }
 
   public void update(long v) {
-    buf.clear();
-    buf.putLong(v);
-    crc.update(buf.array(), 0, 8);
+    ensure(8);
+    buf[pos] = (byte) v;
+    buf[pos + 1] = (byte) (v >>> 8);
+    buf[pos + 2] = (byte) (v >>> 16);
+    buf[pos + 3] = (byte) (v >>> 24);
+    buf[pos + 4] = (byte) (v >>> 32);
+    buf[pos + 5] = (byte) (v >>> 40);
+    buf[pos + 6] = (byte) (v >>> 48);
+    buf[pos + 7] = (byte) (v >>> 56);
+    pos += 8;
   }
 
   public void update(double v) {
-    buf.clear();
-    buf.putDouble(v);
-    crc.update(buf.array(), 0, 8);
+    update(Double.doubleToRawLongBits(v));
   }
 
   public void update(float v) {
-    buf.clear();
-    buf.putFloat(v);
-    crc.update(buf.array(), 0, 4);
+    update(Float.floatToRawIntBits(v));
   }
 
   public void update(boolean v) {
-    crc.update(v ? TRUE : FALSE, 0, 1);
+    ensure(1);
+    buf[pos++] = (byte) (v ? 1 : 0);
   }
 
   public void update(byte[] b, int off, int len) {
-    crc.update(b, off, len);
+    if (len <= MAX_BUFFERED_BYTES) {
+      ensure(len);
+      System.arraycopy(b, off, buf, pos, len);
+      pos += len;
+    } else {
+      flush();
+      crc.update(b, off, len);
+    }
   }
 
   public long getValue() {
+    flush();
     return crc.getValue();
   }
 
   public void reset() {
+    pos = 0;
     crc.reset();
   }
 
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块存储数据的 {@link ByteArrayOutputStream}
+ *
+ * <p>数据写入一组定长的 byte[] 块中，容量不足时追加新块，不会像 {@link ByteArrayOutputStream} 那样
+ * 翻倍扩容并拷贝已有数据。{@link #reset()} 之后已分配的块会被保留并复用。</p>
+ *
+ * <p>通过 {@link #writeTo(OutputStream)} 可以把数据逐块写到 http 连接，通过 {@link #toByteBuffers()}
+ * 可以无拷贝地包装成 {@link ByteBuffer} 数组（例如交给 netty 的 {@code Unpooled.wrappedBuffer}）。</p>
+ *
+ * <p>父类的 buf 和 count 不再使用，所有读写缓冲区的方法都由此类重写。继承 {@link ByteArrayOutputStream}
+ * 只是为了兼容 {@link ProtobufRecordPack#getProtobufStream()} 的返回类型。</p>
+ *
+ * 注意：此类不是线程安全的。
+ */
+public class ChunkedByteArrayOutputStream extends ByteArrayOutputStream {
+
+  private static final int MIN_CHUNK_SIZE = 4 * 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+  private final List<byte[]> chunks = new ArrayList<byte[]>();
+  // 当前写入的块下标，以及块内偏移
+  private int chunkIndex;
+  private int chunkOffset;
+  private long size;
+
+  public ChunkedByteArrayOutputStream() {
+    this(MIN_CHUNK_SIZE);
+  }
+
+  /**
+   * @param capacity
+   *     第一个块的大小，最大 1 MiB，超出的部分按需分配
+   */
+  public ChunkedByteArrayOutputStream(int capacity) {
+    super(0);
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Negative initial size: " + capacity);
+    }
+    chunks.add(new byte[Math.min(Math.max(capacity, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE)]);
+  }
+
+  private byte[] nextChunk() {
+    chunkIndex++;
+    chunkOffset = 0;
+    if (chunkIndex < chunks.size()) {
+      return chunks.get(chunkIndex);
+    }
+    // 块大小随已写入数据翻倍增长，上限 MAX_CHUNK_SIZE
+    int last = chunks.get(chunkIndex - 1).length;
+    byte[] chunk = new byte[Math.min(last * 2, MAX_CHUNK_SIZE)];
+    chunks.add(chunk);
+    return chunk;
+  }
+
+  @Override
+  public void write(int b) {
+    byte[] chunk = chunks.get(chunkIndex);
+    if (chunkOffset == chunk.length) {
+      chunk = nextChunk();
+    }
+    chunk[chunkOffset++] = (byte) b;
+    size++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if ((off < 0) || (off > b.length) || (len < 0) || ((off + len) - b.length > 0)) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      byte[] chunk = chunks.get(chunkIndex);
+      if (chunkOffset == chunk.length) {
+        chunk = nextChunk();
+      }
+      int n = Math.min(len, chunk.length - chunkOffset);
+      System.arraycopy(b, off, chunk, chunkOffset, n);
+      chunkOffset += n;
+      off += n;
+      len -= n;
+      size += n;
+    }
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    for (int i = 0; i <= chunkIndex; i++) {
+      out.write(chunks.get(i), 0, chunkLength(i));
+    }
+  }
+
+  /**
+   * 以 {@link ByteBuffer} 数组的形式返回已写入的数据，不拷贝底层的块
+   *
+   * 返回的 buffer 在下一次 {@link #reset()} 之后失效
+   */
+  public ByteBuffer[] toByteBuffers() {
+    ByteBuffer[] buffers = new ByteBuffer[chunkIndex + 1];
+    for (int i = 0; i <= chunkIndex; i++) {
+      buffers[i] = ByteBuffer.wrap(chunks.get(i), 0, chunkLength(i));
+    }
+    return buffers;
+  }
+
+  private int chunkLength(int i) {
+    return i == chunkIndex ? chunkOffset : chunks.get(i).length;
+  }
+
+  /**
+   * 清空数据，保留已分配的块供之后复用
+   */
+  @Override
+  public void reset() {
+    chunkIndex = 0;
+    chunkOffset = 0;
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Buffer size exceeds Integer.MAX_VALUE: " + size);
+    }
+    return (int) size;
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    byte[] bytes = new byte[size()];
+    int pos = 0;
+    for (int i = 0; i <= chunkIndex; i++) {
+      int len = chunkLength(i);
+      System.arraycopy(chunks.get(i), 0, bytes, pos, len);
+      pos += len;
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return new String(toByteArray());
+  }
+
+  @Override
+  public String toString(String charsetName) throws UnsupportedEncodingException {
+    return new String(toByteArray(), charsetName);
+  }
+
+  /**
+   * JDK 10 起 {@link ByteArrayOutputStream} 提供此方法并直接读取 buf，这里需要重写
+   */
+  public String toString(Charset charset) {
+    return new String(toByteArray(), charset);
+  }
+
+  @Deprecated
+  @Override
+  public String toString(int hibyte) {
+    return new String(toByteArray(), hibyte);
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+
+/**
+ * 多线程并行下载的 {@link RecordReader}
+ *
+ * <p>将 [start, start + count) 划分为若干个 split，由 threadNum 个线程分别通过
+ * {@link TableTunnel.DownloadSession#openRecordReader} 下载，每个线程的数据先放入有界的预取队列。
+ * 单个 split 读取失败时，从已读到的 offset 处重新打开 reader 继续下载，最多重试 retryTimes 次。</p>
+ *
+ * <p>结果可以通过 {@link #read()} 作为一个整体读取（ordered 为 true 时保持记录原有顺序，
+ * 否则按下载完成的顺序返回），也可以通过 {@link #read(SplitHandler)} 在下载线程中按 split 回调处理。</p>
+ *
+ * <pre>
+ * try (ParallelTunnelRecordReader reader = session.openParallelRecordReader(0, session.getRecordCount(), 8, true)) {
+ *   Record record;
+ *   while ((record = reader.read()) != null) {
+ *     // process record
+ *   }
+ * }
+ * </pre>
+ */
+public class ParallelTunnelRecordReader implements RecordReader {
+
+  /**
+   * 按 split 处理下载结果的回调，在下载线程中调用，需要自行保证线程安全
+   */
+  public interface SplitHandler {
+
+    void onRecord(Split split, Record record) throws IOException;
+
+    default void onSplitFinished(Split split) throws IOException {
+    }
+  }
+
+  /**
+   * 一段连续的待下载记录
+   */
+  public static class Split {
+
+    private final int index;
+    private final long start;
+    private final long count;
+
+    Split(int index, long start, long count) {
+      this.index = index;
+      this.start = start;
+      this.count = count;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public long getStart() {
+      return start;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return "Split{index=" + index + ", start=" + start + ", count=" + count + "}";
+    }
+  }
+
+  public static class Builder {
+
+    private final TableTunnel.DownloadSession session;
+    private long start;
+    private long count;
+    private int threadNum = DEFAULT_THREAD_NUM;
+    private long splitSize = 0;
+    private int prefetchSize = DEFAULT_PREFETCH_SIZE;
+    private boolean ordered = true;
+    private int retryTimes = DEFAULT_RETRY_TIMES;
+    private List<Column> columns;
+    private CompressOption compressOption =
+        new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+
+    public Builder(TableTunnel.DownloadSession session, long start, long count) {
+      this.session = session;
+      this.start = start;
+      this.count = count;
+    }
+
+    /**
+     * 下载线程数，默认 4
+     */
+    public Builder setThreadNum(int threadNum) {
+      this.threadNum = threadNum;
+      return this;
+    }
+
+    /**
+     * 每个 split 的记录数，默认按 threadNum 均分
+     */
+    public Builder setSplitSize(long splitSize) {
+      this.splitSize = splitSize;
+      return this;
+    }
+
+    /**
+     * 每个下载线程最多预取的记录数，默认 10000
+     */
+    public Builder setPrefetchSize(int prefetchSize) {
+      this.prefetchSize = prefetchSize;
+      return this;
+    }
+
+    /**
+     * 是否按照记录原有顺序返回，默认 true
+     */
+    public Builder setOrdered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    /**
+     * 单个 split 失败后的重试次数，默认 3
+     */
+    public Builder setRetryTimes(int retryTimes) {
+      this.retryTimes = retryTimes;
+      return this;
+    }
+
+    public Builder setColumns(List<Column> columns) {
+      this.columns = columns;
+      return this;
+    }
+
+    public Builder setCompressOption(CompressOption compressOption) {
+      this.compressOption = compressOption;
+      return this;
+    }
+
+    public ParallelTunnelRecordReader build() throws TunnelException {
+      if (start < 0 || count < 0) {
+        throw new IllegalArgumentException("Invalid range, start: " + start + ", count: " + count);
+      }
+      if (threadNum <= 0) {
+        throw new IllegalArgumentException("Thread num must > 0, now: " + threadNum);
+      }
+      if (prefetchSize <= 0) {
+        throw new IllegalArgumentException("Prefetch size must > 0, now: " + prefetchSize);
+      }
+      if (retryTimes < 0) {
+        throw new IllegalArgumentException("Retry times must >= 0, now: " + retryTimes);
+      }
+      if (columns != null && columns.isEmpty()) {
+        throw new TunnelException("Specified column list is empty.");
+      }
+      return new ParallelTunnelRecordReader(this);
+    }
+  }
+
+  private static final int DEFAULT_THREAD_NUM = 4;
+  private static final int DEFAULT_PREFETCH_SIZE = 10000;
+  private static final int DEFAULT_RETRY_TIMES = 3;
+  private static final long RETRY_INTERVAL_MILLIS = 1000;
+
+  // 队列中标记一个 split 结束
+  private static final Object END_OF_SPLIT = new Object();
+
+  private final TableTunnel.DownloadSession session;
+  private final List<Split> splits;
+  private final int threadNum;
+  private final int prefetchSize;
+  private final boolean ordered;
+  private final int retryTimes;
+  private final List<Column> columns;
+  private final CompressOption compressOption;
+
+  private final AtomicInteger nextSplit = new AtomicInteger(0);
+  private ExecutorService executor;
+  private volatile Throwable error;
+  private volatile boolean isClosed = false;
+
+  // read() 使用的队列，ordered 时每个 split 一个，否则共用一个
+  private List<BlockingQueue<Object>> queues;
+  private int currentQueue = 0;
+  private int finishedSplits = 0;
+
+  private ParallelTunnelRecordReader(Builder builder) {
+    this.session = builder.session;
+    this.threadNum = builder.threadNum;
+    this.prefetchSize = builder.prefetchSize;
+    this.ordered = builder.ordered;
+    this.retryTimes = builder.retryTimes;
+    this.columns = builder.columns;
+    this.compressOption = builder.compressOption;
+
+    long splitSize = builder.splitSize > 0 ? builder.splitSize
+                                           : (builder.count + threadNum - 1) / threadNum;
+    this.splits = new ArrayList<>();
+    for (long offset = 0; offset < builder.count; offset += splitSize) {
+      splits.add(new Split(splits.size(), builder.start + offset,
+                           Math.min(splitSize, builder.count - offset)));
+    }
+  }
+
+  public List<Split> getSplits() {
+    return splits;
+  }
+
+  /**
+   * 读取下一条记录
+   *
+   * @return 下一条记录，全部读取完成时返回 null
+   */
+  @Override
+  public Record read() throws IOException {
+    checkStatus();
+    if (executor == null) {
+      startPrefetch();
+    }
+    while (finishedSplits < splits.size()) {
+      Object item;
+      try {
+        item = queues.get(currentQueue).poll(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for records", e);
+      }
+      checkStatus();
+      if (item == null) {
+        continue;
+      }
+      if (item == END_OF_SPLIT) {
+        finishedSplits++;
+        if (ordered) {
+          currentQueue++;
+        }
+        continue;
+      }
+      return (Record) item;
+    }
+    return null;
+  }
+
+  private void startPrefetch() {
+    queues = new ArrayList<>();
+    if (ordered) {
+      for (int i = 0; i < splits.size(); i++) {
+        queues.add(new LinkedBlockingQueue<>(prefetchSize));
+      }
+    } else {
+      queues.add(new LinkedBlockingQueue<>(prefetchSize * threadNum));
+    }
+    startWorkers(new SplitHandler() {
+      @Override
+      public void onRecord(Split split, Record record) throws IOException {
+        put(split, record);
+      }
+
+      @Override
+      public void onSplitFinished(Split split) throws IOException {
+        put(split, END_OF_SPLIT);
+      }
+    });
+  }
+
+  private void put(Split split, Object item) throws IOException {
+    try {
+      queues.get(ordered ? split.getIndex() : 0).put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while prefetching " + split, e);
+    }
+  }
+
+  /**
+   * 在下载线程中按 split 处理所有记录，阻塞直到全部处理完成
+   *
+   * @param handler
+   *     记录处理回调
+   * @throws IOException
+   *     任一 split 下载（重试后仍然）失败或回调抛出异常
+   */
+  public void read(SplitHandler handler) throws IOException {
+    checkStatus();
+    if (executor != null) {
+      throw new IllegalStateException("Reader is already started.");
+    }
+    startWorkers(handler);
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        checkStatus();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for splits", e);
+    }
+    checkStatus();
+  }
+
+  private void startWorkers(SplitHandler handler) {
+    int workers = Math.max(1, Math.min(threadNum, splits.size()));
+    executor = Executors.newFixedThreadPool(workers, r -> {
+      Thread t = new Thread(r, "odps-tunnel-parallel-reader");
+      t.setDaemon(true);
+      return t;
+    });
+    for (int i = 0; i < workers; i++) {
+      executor.submit(() -> {
+        int index;
+        // split 按顺序分配，保证 ordered 模式下正在消费的 split 一定有线程在下载
+        while (!isClosed && error == null && (index = nextSplit.getAndIncrement()) < splits.size()) {
+          try {
+            readSplit(splits.get(index), handler);
+          } catch (Throwable e) {
+            if (error == null) {
+              error = e;
+            }
+            return;
+          }
+        }
+      });
+    }
+  }
+
+  private void readSplit(Split split, SplitHandler handler) throws IOException, TunnelException {
+    long offset = 0;
+    int retryCount = 0;
+    while (offset < split.getCount() && !isClosed) {
+      TunnelRecordReader reader;
+      try {
+        reader = session.openRecordReader(split.getStart() + offset, split.getCount() - offset,
+                                          compressOption, columns);
+      } catch (TunnelException | IOException e) {
+        if (++retryCount > retryTimes) {
+          throw e;
+        }
+        sleep();
+        continue;
+      }
+
+      try {
+        while (true) {
+          Record record;
+          try {
+            record = reader.read();
+          } catch (IOException e) {
+            // 从已读到的 offset 处重新打开 reader
+            if (++retryCount > retryTimes) {
+              throw e;
+            }
+            sleep();
+            break;
+          }
+          if (record == null) {
+            offset = split.getCount();
+            break;
+          }
+          handler.onRecord(split, record);
+          offset++;
+        }
+      } finally {
+        try {
+          reader.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+    if (!isClosed) {
+      handler.onSplitFinished(split);
+    }
+  }
+
+  private void sleep() throws IOException {
+    try {
+      Thread.sleep(RETRY_INTERVAL_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while retrying", e);
+    }
+  }
+
+  private void checkStatus() throws IOException {
+    if (isClosed) {
+      throw new IOException("Reader has been closed");
+    }
+    Throwable e = error;
+    if (e != null) {
+      if (e instanceof IOException) {
+        throw new IOException(e.getMessage(), e);
+      }
+      throw new IOException("Parallel download failed: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    isClosed = true;
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -21,6 +21,7 @@ package com.aliyun.odps.tunnel.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
@@ -36,7 +37,7 @@ import com.aliyun.odps.data.RecordReader;
 public class ProtobufRecordPack extends RecordPack {
 
   private ProtobufRecordStreamWriter writer;
-  private ByteArrayOutputStream byteos;
+  private ChunkedByteArrayOutputStream byteos;
   private long count = 0;
   private TableSchema schema;
   private CompressOption option = null;
@@ -108,9 +109,9 @@ public class ProtobufRecordPack extends RecordPack {
     throws IOException {
     isComplete = false;
     if (capacity == 0) {
-      byteos = new ByteArrayOutputStream();
+      byteos = new ChunkedByteArrayOutputStream();
     } else {
-      byteos = new ByteArrayOutputStream(capacity);
+      byteos = new ChunkedByteArrayOutputStream(capacity);
     }
 
     this.schema = schema;
@@ -149,6 +150,8 @@ public class ProtobufRecordPack extends RecordPack {
   }
 
   // FIXME: 返回的并不是 probuf 的 stream，而是 protobuf 输出的那个缓冲区
+  // 缓冲区是分块存储的 ChunkedByteArrayOutputStream，发送时应使用 writeTo 或
+  // toByteBuffers 以避免 toByteArray 的整块拷贝
   public ByteArrayOutputStream getProtobufStream() throws IOException {
     if (!isComplete) {
       writer.flush();
@@ -198,7 +201,19 @@ public class ProtobufRecordPack extends RecordPack {
   }
 
   /**
-   * 清空 RecordPack
+   * 以 {@link ByteBuffer} 数组的形式返回缓冲区中的数据，不拷贝数据
+   *
+   * 返回的 buffer 在 {@link #reset()} 之后失效
+   */
+  public ByteBuffer[] getProtobufBuffers() throws IOException {
+    if (!isComplete) {
+      writer.flush();
+    }
+    return byteos.toByteBuffers();
+  }
+
+  /**
+   * 清空 RecordPack，已分配的缓冲区会被保留并复用
    */
   public void reset() throws IOException {
     if (byteos != null) {
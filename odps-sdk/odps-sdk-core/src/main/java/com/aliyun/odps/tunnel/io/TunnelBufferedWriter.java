@@ -20,6 +20,12 @@
 package com.aliyun.odps.tunnel.io;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.aliyun.odps.commons.util.RetryExceedLimitException;
 import com.aliyun.odps.commons.util.RetryStrategy;
@@ -34,6 +40,9 @@ import com.aliyun.odps.tunnel.TunnelException;
  * <p>通过调用 write 接口将 record 写入缓冲区，当缓冲区大小超过 bufferSize 时将触发上传动作。
  * 上传过程中如果发生错误将自动进行重试。</p>
  *
+ * <p>默认情况下上传动作在调用 write 的线程中同步完成。通过 {@link #setAsyncUpload(int)} 可以开启异步上传：
+ * 写满的缓冲区交给后台线程上传，write 切换到备用缓冲区继续写入，从而让序列化和网络传输重叠进行。</p>
+ *
  * <h3>TunnelBufferedWriter 和 TunnelRecordWriter 有什么区别？</h3>
  *
  * <p>和 {@link TunnelRecordWriter} 的不同之处在于，在使用 {@link TunnelRecordWriter} 时用户
@@ -105,7 +114,14 @@ public class TunnelBufferedWriter implements RecordWriter {
   private boolean isClosed;
   private long timeout;
   private TableTunnel.BlockVersionProvider versionProvider;
+  private CompressOption option;
 
+  // 异步上传相关，maxPendingBlocks 为 0 表示同步上传
+  private int maxPendingBlocks;
+  private ExecutorService uploadExecutor;
+  private final Deque<ProtobufRecordPack> sparePacks = new ArrayDeque<>();
+  private final Deque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+  private IOException uploadError;
 
   private static final long BUFFER_SIZE_DEFAULT = 64 * 1024 * 1024;
   private static final long BUFFER_SIZE_MIN = 1024 * 1024;
@@ -113,6 +129,18 @@ public class TunnelBufferedWriter implements RecordWriter {
   private static final float FLUSH_THRESHOLD_DEFAULT = 0.9F;
   private static final float FLUSH_THRESHOLD_MIN = 0.01F;
   private static final float FLUSH_THRESHOLD_MAX = 0.99F;
+  private static final int MAX_PENDING_BLOCKS_MAX = 16;
+
+  private static class PendingBlock {
+
+    private final ProtobufRecordPack pack;
+    private final Future<Long> future;
+
+    PendingBlock(ProtobufRecordPack pack, Future<Long> future) {
+      this.pack = pack;
+      this.future = future;
+    }
+  }
 
   /**
    * 构造此类对象，使用默认缓冲区大小为 64 MiB，和默认的回退策略：4s、8s、16s、32s、64s、128s
@@ -129,6 +157,7 @@ public class TunnelBufferedWriter implements RecordWriter {
       throws IOException {
     this.bufferedPack = (ProtobufRecordPack)session.newRecordPack(option);
     this.session = session;
+    this.option = option;
     this.bufferSize = BUFFER_SIZE_DEFAULT;
     this.flushThreshold = FLUSH_THRESHOLD_DEFAULT;
     this.retry = new TunnelRetryStrategy();
@@ -202,6 +231,43 @@ public class TunnelBufferedWriter implements RecordWriter {
     this.retry = strategy;
   }
 
+  /**
+   * 开启异步上传。写满的缓冲区将交给后台线程上传（同样使用 {@link RetryStrategy} 重试、
+   * {@link TableTunnel.BlockVersionProvider} 生成 block version），write 继续写入备用缓冲区。
+   * 同一个 writer 的数据块按提交顺序依次上传，当有 maxPendingBlocks 个数据块等待上传时 write 将阻塞。
+   *
+   * 注意：开启后最多会占用 (maxPendingBlocks + 1) * bufferSize 的内存；上传失败的异常将在之后的
+   * {@link #write(Record)}、{@link #flush()} 或 {@link #close()} 中抛出。必须在第一次 write 之前调用。
+   *
+   * @param maxPendingBlocks
+   *     最多等待上传的数据块个数，0 代表同步上传，最大值为 16
+   */
+  public void setAsyncUpload(int maxPendingBlocks) {
+    if (maxPendingBlocks < 0 || maxPendingBlocks > MAX_PENDING_BLOCKS_MAX) {
+      throw new IllegalArgumentException("max pending blocks must between 0 and "
+                                         + MAX_PENDING_BLOCKS_MAX + ", now: " + maxPendingBlocks);
+    }
+    if (bufferedPack.getSize() > 0 || bytesWritten > 0 || !pendingBlocks.isEmpty()) {
+      throw new IllegalStateException("Async upload must be set before writing any record.");
+    }
+    this.maxPendingBlocks = maxPendingBlocks;
+    if (maxPendingBlocks > 0 && uploadExecutor == null) {
+      // 单个上传线程：RetryStrategy 有状态，同一 writer 的数据块不能并发重试
+      uploadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "odps-tunnel-buffered-writer-upload");
+        t.setDaemon(true);
+        return t;
+      });
+    } else if (maxPendingBlocks == 0 && uploadExecutor != null) {
+      uploadExecutor.shutdown();
+      uploadExecutor = null;
+    }
+  }
+
+  private boolean isAsync() {
+    return maxPendingBlocks > 0;
+  }
+
   /**
    * 将 record 写入缓冲区，当其大小超过 bufferSize 时，上传缓冲区中的记录。过程中如果发生错误将
    * 进行自动重试，这个过程中 write 调用将一直阻塞，直到所有记录上传成功为止。
@@ -217,7 +283,11 @@ public class TunnelBufferedWriter implements RecordWriter {
     checkStatus();
 
     if (bufferedPack.getTotalBytes() > bufferSize * flushThreshold) {
-      flush();
+      if (isAsync()) {
+        submitBufferedPack();
+      } else {
+        flush();
+      }
     }
     bufferedPack.append(r);
   }
@@ -226,6 +296,9 @@ public class TunnelBufferedWriter implements RecordWriter {
     if (isClosed) {
       throw new IOException("Writer is closed.");
     }
+    if (uploadError != null) {
+      throw new IOException("Async upload failed: " + uploadError.getMessage(), uploadError);
+    }
   }
 
   /**
@@ -236,8 +309,22 @@ public class TunnelBufferedWriter implements RecordWriter {
    */
   @Override
   public void close() throws IOException {
-    flush();
-    isClosed = true;
+    if (!isAsync()) {
+      flush();
+      isClosed = true;
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      isClosed = true;
+      for (PendingBlock block : pendingBlocks) {
+        block.future.cancel(true);
+      }
+      pendingBlocks.clear();
+      sparePacks.clear();
+      uploadExecutor.shutdownNow();
+    }
   }
 
   /**
@@ -253,10 +340,58 @@ public class TunnelBufferedWriter implements RecordWriter {
   public void flush() throws IOException {
     checkStatus();
 
+    if (isAsync()) {
+      submitBufferedPack();
+      while (!pendingBlocks.isEmpty()) {
+        awaitOldestBlock();
+      }
+    } else {
+      bytesWritten += writeBlock(bufferedPack);
+    }
+  }
+
+  /**
+   * 将当前缓冲区交给后台线程上传，并切换到一个备用缓冲区
+   */
+  private void submitBufferedPack() throws IOException {
+    if (bufferedPack.getTotalBytesWritten() == 0) {
+      return;
+    }
+    while (pendingBlocks.size() >= maxPendingBlocks) {
+      awaitOldestBlock();
+    }
+    final ProtobufRecordPack pack = bufferedPack;
+    pendingBlocks.addLast(new PendingBlock(pack, uploadExecutor.submit(() -> writeBlock(pack))));
+    ProtobufRecordPack spare = sparePacks.pollFirst();
+    bufferedPack = spare != null ? spare : (ProtobufRecordPack) session.newRecordPack(option);
+  }
+
+  private void awaitOldestBlock() throws IOException {
+    PendingBlock block = pendingBlocks.pollFirst();
+    try {
+      bytesWritten += block.future.get();
+      sparePacks.addLast(block.pack);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for block upload", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      uploadError = cause instanceof IOException ? (IOException) cause
+                                                 : new IOException(cause.getMessage(), cause);
+      throw uploadError;
+    }
+  }
+
+  /**
+   * 上传一个数据块，失败时按照重试策略重试
+   *
+   * @return 上传的字节数
+   */
+  private long writeBlock(ProtobufRecordPack pack) throws IOException {
     // 每一个block的上传单独计算重试次数
     retry.reset();
     // 得到实际序列化的的字节数，如果等于 0，说明没有写，跳过即可
-    long delta = bufferedPack.getTotalBytesWritten();
+    long delta = pack.getTotalBytesWritten();
     if (delta > 0) {
       Long blockId = session.getAvailBlockId();
       long version = 0;
@@ -267,16 +402,15 @@ public class TunnelBufferedWriter implements RecordWriter {
         try {
           if (versionProvider != null) {
             try {
-              session.writeBlock(blockId, bufferedPack, timeout, version);
+              session.writeBlock(blockId, pack, timeout, version);
             } catch (TunnelException e) {
               throw new IOException("Generate block version invalid", e);
             }
           } else {
-            session.writeBlock(blockId, bufferedPack, timeout);
+            session.writeBlock(blockId, pack, timeout);
           }
-          bufferedPack.reset();
-          bytesWritten += delta;
-          return;
+          pack.reset();
+          return delta;
         } catch (IOException e) {
           try {
             retry.onFailure(e);
@@ -288,6 +422,7 @@ public class TunnelBufferedWriter implements RecordWriter {
         }
       }
     }
+    return 0;
   }
 
   public long getTimeout() {
@@ -3,6 +3,8 @@ package com.aliyun.odps.tunnel.streams;
 import java.io.IOException;
 import java.util.List;
 
+import org.apache.arrow.vector.VectorSchemaRoot;
+
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.tunnel.TunnelException;
 import com.aliyun.odps.tunnel.io.CompressOption;
@@ -17,6 +19,33 @@ public interface UpsertStream {
 
   public void upsert(Record record, List<String> upsertCols) throws IOException, TunnelException;
 
+  /**
+   * 按upsert操作，批量写入一个 Arrow {@link VectorSchemaRoot} 中的所有行到缓冲区
+   *
+   * root 中需要包含表的所有列（按列名匹配，不区分大小写），数据格式同 Arrow 读接口的 ARROW_COMPATIBLE 模式。
+   * 主键列按列计算 hash 并分桶，每个桶的行连续序列化，比逐条调用 {@link #upsert(Record)} 开销更小。
+   *
+   * 默认实现不支持列存写入，抛出 {@link UnsupportedOperationException}
+   *
+   * @param root - 列存数据，调用返回后可以被复用
+   */
+  public default void upsert(VectorSchemaRoot root) throws IOException, TunnelException {
+    throw new UnsupportedOperationException("Upsert of VectorSchemaRoot is not supported.");
+  }
+
+  /**
+   * 按upsert操作，批量写入 {@link VectorSchemaRoot} 中的所有行，只更新 upsertCols 指定的列
+   *
+   * root 中只需要包含主键列和 upsertCols，缺少的列按 null 写入。
+   *
+   * @param root - 列存数据，调用返回后可以被复用
+   * @param upsertCols - 需要更新的列名
+   */
+  public default void upsert(VectorSchemaRoot root, List<String> upsertCols)
+      throws IOException, TunnelException {
+    throw new UnsupportedOperationException("Upsert of VectorSchemaRoot is not supported.");
+  }
+
   /**
    * 按delete操作，写入一条{@link Record}对象到缓冲区
    *
@@ -24,6 +53,15 @@ public interface UpsertStream {
    */
   public void delete(Record record) throws IOException, TunnelException;
 
+  /**
+   * 按delete操作，批量写入 {@link VectorSchemaRoot} 中的所有行，root 中只需要包含主键列
+   *
+   * @param root - 列存数据，调用返回后可以被复用
+   */
+  public default void delete(VectorSchemaRoot root) throws IOException, TunnelException {
+    throw new UnsupportedOperationException("Delete of VectorSchemaRoot is not supported.");
+  }
+
   /**
    * 发送缓冲区数据到服务端
    */
@@ -0,0 +1,171 @@
+package com.aliyun.odps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.MockOdpsServer;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 模拟 instance 状态接口
+ */
+public class InstanceWaiterTest {
+
+  private MockOdpsServer server;
+  private Odps odps;
+  private InstanceWaiter waiter;
+
+  // instance id -> Running / Terminated, 结束的 instance 的 task 状态为 Success 或 Cancelled
+  private final Map<String, String> status = new ConcurrentHashMap<>();
+  private final Map<String, String> taskStatus = new ConcurrentHashMap<>();
+  private final AtomicInteger statusRequests = new AtomicInteger();
+  private final AtomicInteger listRequests = new AtomicInteger();
+  private final AtomicInteger secondPageRequests = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockOdpsServer().handle("/api/projects/p/instances", this::handle);
+    odps = server.newOdps();
+    waiter = new InstanceWaiter(2, 20, 100);
+  }
+
+  @After
+  public void tearDown() {
+    waiter.close();
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String query = exchange.getRequestURI().getRawQuery();
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    if (path.endsWith("/instances")) {
+      // 第一页是 i 开头的 instance, 第二页是其他 instance
+      listRequests.incrementAndGet();
+      boolean secondPage = query != null && query.contains("marker=page2");
+      if (secondPage) {
+        secondPageRequests.incrementAndGet();
+      }
+      xml.append("<Instances><Marker>").append(secondPage ? "" : "page2").append("</Marker>");
+      for (Map.Entry<String, String> e : status.entrySet()) {
+        if ("Running".equals(e.getValue()) && e.getKey().startsWith("i") != secondPage) {
+          xml.append("<Instance><Name>").append(e.getKey())
+              .append("</Name><Status>Running</Status></Instance>");
+        }
+      }
+      xml.append("</Instances>");
+    } else {
+      String id = path.substring(path.lastIndexOf('/') + 1);
+      if (query != null && query.contains("taskstatus")) {
+        xml.append("<Instance><Status>Terminated</Status><Tasks><Task Type=\"SQL\">")
+            .append("<Name>t</Name><Status>").append(taskStatus.getOrDefault(id, "Success"))
+            .append("</Status></Task></Tasks></Instance>");
+      } else {
+        statusRequests.incrementAndGet();
+        xml.append("<Instance><Status>").append(status.get(id)).append("</Status></Instance>");
+      }
+    }
+    exchange.getResponseHeaders().add(Headers.ODPS_START_TIME,
+                                      DateUtils.formatRfc822Date(new Date()));
+    exchange.getResponseHeaders().add(Headers.ODPS_END_TIME,
+                                      DateUtils.formatRfc822Date(new Date()));
+    MockOdpsServer.reply(exchange, 200, "application/xml", xml.toString());
+  }
+
+  @Test
+  public void testWaitersSharePoll() throws Exception {
+    status.put("i1", "Running");
+    CompletableFuture<Instance> f1 = waiter.waitForSuccess(odps.instances().get("i1"));
+    CompletableFuture<Instance> f2 = waiter.waitForTermination(odps.instances().get("i1"));
+    Assert.assertEquals(1, waiter.getTrackedCount());
+
+    Thread.sleep(500);
+    // 机器负载高时第一次请求可能较慢
+    long deadline = System.currentTimeMillis() + 5000;
+    while (statusRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse(f1.isDone() || f2.isDone());
+    int polls = statusRequests.get();
+    // 间隔翻倍: 20, 40, 80, 100, 100 ..., 两个等待者共享轮询
+    Assert.assertTrue("polls: " + polls, polls >= 1 && polls <= 8);
+
+    status.put("i1", "Terminated");
+    Instance instance = f1.get(5, TimeUnit.SECONDS);
+    Assert.assertEquals("i1", instance.getId());
+    Assert.assertTrue(instance.isTerminated());
+    Assert.assertEquals("i1", f2.get(5, TimeUnit.SECONDS).getId());
+    Assert.assertEquals(0, waiter.getTrackedCount());
+    Assert.assertEquals(waiter.getPollCount(), statusRequests.get());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    status.put("i1", "Terminated");
+    taskStatus.put("i1", "Cancelled");
+    try {
+      waiter.waitForSuccess(odps.instances().get("i1")).get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof OdpsException);
+      Assert.assertTrue(e.getCause().getMessage().contains("CANCELLED"));
+    }
+
+    // 取消后不再轮询
+    status.put("i2", "Running");
+    CompletableFuture<Instance> f = waiter.waitForTermination(odps.instances().get("i2"));
+    f.cancel(false);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (waiter.getTrackedCount() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, waiter.getTrackedCount());
+  }
+
+  @Test
+  public void testBatchPoll() throws Exception {
+    waiter.setBatchThreshold(5);
+    // 不在等待中的 instance
+    for (int i = 0; i < 50; i++) {
+      status.put("o" + i, "Running");
+    }
+    List<CompletableFuture<Instance>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      status.put("i" + i, "Running");
+      futures.add(waiter.waitForTermination(odps.instances().get("i" + i)));
+    }
+    Thread.sleep(300);
+    Assert.assertTrue(waiter.getBatchPollCount() > 0);
+    // 仍在运行的 instance 通过列举确认, 不单独查询
+    Assert.assertEquals(0, statusRequests.get());
+    // 等待的 instance 都在第一页, 不读取第二页
+    Assert.assertEquals(0, secondPageRequests.get());
+
+    for (int i = 0; i < 10; i++) {
+      status.put("i" + i, "Terminated");
+    }
+    for (int i = 0; i < 10; i++) {
+      futures.get(i).get(5, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(10, statusRequests.get());
+    Assert.assertTrue(secondPageRequests.get() > 0);
+    for (int i = 10; i < 20; i++) {
+      Assert.assertFalse(futures.get(i).isDone());
+    }
+  }
+}
@@ -19,11 +19,16 @@
 
 package com.aliyun.odps;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -60,4 +65,87 @@ public class ListIteratorTest {
     Iterator<String> list = getList();
     assertTrue("not empty".equals(list.next()));
   }
+
+  /**
+   * 每页耗时 50ms, 共 5 页, 每页 pageSize 条
+   */
+  private static class SlowListIterator extends ListIterator<Integer> {
+
+    final AtomicInteger pages = new AtomicInteger();
+    volatile Thread listThread;
+    volatile long pageSize = 3;
+    final int failAt;
+
+    SlowListIterator(int failAt) {
+      this.failAt = failAt;
+    }
+
+    @Override
+    public List<Integer> list(String marker, long maxItems) {
+      pageSize = maxItems;
+      return list();
+    }
+
+    @Override
+    protected List<Integer> list() {
+      listThread = Thread.currentThread();
+      int page = pages.get();
+      if (page == 5) {
+        return null;
+      }
+      if (page == failAt) {
+        throw new RuntimeException("list failed");
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      List<Integer> items = new ArrayList<Integer>();
+      for (int i = 0; i < pageSize; i++) {
+        items.add((int) (page * pageSize + i));
+      }
+      pages.incrementAndGet();
+      return items;
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    SlowListIterator iter = new SlowListIterator(-1);
+    iter.prefetch(2, 4);
+    int expected = 0;
+    while (iter.hasNext()) {
+      assertEquals(Integer.valueOf(expected++), iter.next());
+      if (expected == 1) {
+        // 调用方处理第一页时, 后续的页面已经在后台获取
+        Thread.sleep(200);
+        assertEquals(3, iter.pages.get());
+        assertNotEquals(Thread.currentThread(), iter.listThread);
+      }
+    }
+    assertEquals(20, expected);
+    assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void testPrefetchError() throws Exception {
+    SlowListIterator iter = new SlowListIterator(2);
+    iter.prefetch(1);
+    for (int i = 0; i < 6; i++) {
+      assertEquals(Integer.valueOf(i), iter.next());
+    }
+    try {
+      iter.hasNext();
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals("list failed", e.getMessage());
+    }
+
+    iter = new SlowListIterator(-1);
+    iter.prefetch(1);
+    assertTrue(iter.hasNext());
+    iter.close();
+    assertFalse(iter.hasNext());
+  }
 }
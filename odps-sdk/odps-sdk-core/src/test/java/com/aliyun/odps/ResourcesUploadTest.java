@@ -0,0 +1,165 @@
+package com.aliyun.odps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.transport.Headers;
+import com.aliyun.odps.commons.transport.MockOdpsServer;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.commons.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 模拟资源的分片上传和合并接口
+ */
+public class ResourcesUploadTest {
+
+  private MockOdpsServer server;
+  private Odps odps;
+  private Resources resources;
+
+  // 临时分片名 -> 内容
+  private final Map<String, byte[]> parts = new ConcurrentHashMap<>();
+  private final AtomicInteger partUploads = new AtomicInteger();
+  private final AtomicInteger failuresToInject = new AtomicInteger();
+  private volatile String mergeContent;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockOdpsServer().handle("/api/projects/p/resources", this::handle);
+    odps = server.newOdps();
+    resources = odps.resources();
+    resources.setChunkSize(1000);
+    resources.setUploadThreads(3);
+    resources.setMaxInflightBytes(4000);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String query = String.valueOf(exchange.getRequestURI().getRawQuery());
+    byte[] body = IOUtils.readFully(exchange.getRequestBody());
+    int status = 200;
+    if ("GET".equals(exchange.getRequestMethod())) {
+      String name = path.substring(path.lastIndexOf('/') + 1);
+      byte[] part = parts.get(name);
+      if (part == null) {
+        status = 404;
+      } else {
+        exchange.getResponseHeaders().add(Headers.ODPS_RESOURCE_TYPE, "file");
+        exchange.getResponseHeaders().add(Headers.ODPS_RESOURCE_SIZE, String.valueOf(part.length));
+        exchange.getResponseHeaders().add(Headers.CONTENT_MD5, DigestUtils.md5Hex(part));
+        exchange.getResponseHeaders().add(Headers.ODPS_CREATION_TIME,
+                                          DateUtils.formatRfc822Date(new Date()));
+        exchange.getResponseHeaders().add(Headers.LAST_MODIFIED,
+                                          DateUtils.formatRfc822Date(new Date()));
+      }
+    } else if (query.contains("rOpMerge")) {
+      mergeContent = new String(body, StandardCharsets.UTF_8);
+    } else if (failuresToInject.getAndDecrement() > 0) {
+      status = 500;
+    } else {
+      partUploads.incrementAndGet();
+      parts.put(exchange.getRequestHeaders().getFirst(Headers.ODPS_RESOURCE_NAME), body);
+    }
+    MockOdpsServer.reply(exchange, status, null,
+                         "<Error><Code>Error</Code><Message>error</Message></Error>");
+  }
+
+  private static byte[] data(int size) {
+    byte[] data = new byte[size];
+    new Random(0).nextBytes(data);
+    return data;
+  }
+
+  private byte[] merged() {
+    String[] split = mergeContent.split("\\|");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (split.length > 1) {
+      for (String name : split[1].split(",")) {
+        out.write(parts.get(name), 0, parts.get(name).length);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private void upload(byte[] data) throws OdpsException {
+    FileResource r = new FileResource();
+    r.setName("r.jar");
+    resources.create(r, new ByteArrayInputStream(data));
+  }
+
+  @Test
+  public void testParallelUpload() throws Exception {
+    byte[] data = data(10500);
+    upload(data);
+    Assert.assertEquals(11, partUploads.get());
+    Assert.assertTrue(mergeContent.startsWith(DigestUtils.md5Hex(data) + "|r.jar.part.tmp.000000,"));
+    Assert.assertTrue(mergeContent.endsWith(",r.jar.part.tmp.000010"));
+    Assert.assertArrayEquals(data, merged());
+
+    // 空文件
+    upload(new byte[0]);
+    Assert.assertEquals(DigestUtils.md5Hex(new byte[0]) + "|", mergeContent);
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    byte[] data = data(5000);
+    // 前三个分片已经上传, 其中第三个内容不一致
+    for (int i = 0; i < 3; i++) {
+      byte[] part = new byte[1000];
+      System.arraycopy(data, i * 1000, part, 0, 1000);
+      parts.put(String.format("r.jar.part.tmp.%06d", i), part);
+    }
+    parts.get("r.jar.part.tmp.000002")[0]++;
+
+    resources.setResumable(true);
+    upload(data);
+    Assert.assertEquals(3, partUploads.get());
+    Assert.assertArrayEquals(data, merged());
+
+    // 关闭断点续传时全部重新上传
+    partUploads.set(0);
+    resources.setResumable(false);
+    upload(data);
+    Assert.assertEquals(5, partUploads.get());
+  }
+
+  @Test
+  public void testRetryPart() throws Exception {
+    byte[] data = data(3000);
+    resources.setUploadThreads(1);
+    failuresToInject.set(1);
+    upload(data);
+    Assert.assertArrayEquals(data, merged());
+
+    // 超过重试次数后失败
+    resources.setPartRetryTimes(0);
+    resources.setResumable(false);
+    failuresToInject.set(1);
+    try {
+      upload(data(2000));
+      Assert.fail();
+    } catch (OdpsException e) {
+      Assert.assertEquals(Integer.valueOf(500), e.getStatus());
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.aliyun.odps;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.transport.MockOdpsServer;
+import com.aliyun.odps.commons.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 模拟表的元数据接口
+ */
+public class TableMetaCacheTest {
+
+  private MockOdpsServer server;
+  private Odps odps;
+  private TableMetaCache cache;
+
+  // 表名 -> lastDDLTime / 数据大小
+  private final Map<String, Long> ddlTimes = new ConcurrentHashMap<>();
+  private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+  private final AtomicInteger getRequests = new AtomicInteger();
+  private final AtomicInteger queryRequests = new AtomicInteger();
+  private final AtomicInteger queriedTables = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockOdpsServer().handle("/api/projects/p/tables", this::handle);
+    odps = server.newOdps();
+    cache = new TableMetaCache(3, 1, TimeUnit.HOURS);
+    odps.tables().setMetaCache(cache);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private String tableXml(String name) {
+    String json = "{\"lastDDLTime\":" + ddlTimes.get(name) + ",\"size\":" + sizes.get(name)
+                  + ",\"columns\":[{\"name\":\"c" + ddlTimes.get(name)
+                  + "\",\"type\":\"bigint\"}]}";
+    return "<Table><Name>" + name + "</Name><Project>p</Project><Schema><![CDATA[" + json
+           + "]]></Schema></Table>";
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String body = new String(IOUtils.readFully(exchange.getRequestBody()), StandardCharsets.UTF_8);
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    if ("POST".equals(exchange.getRequestMethod())) {
+      queryRequests.incrementAndGet();
+      xml.append("<Tables>");
+      Matcher m = Pattern.compile("<Name>(.*?)</Name>").matcher(body);
+      while (m.find()) {
+        queriedTables.incrementAndGet();
+        xml.append(tableXml(m.group(1)));
+      }
+      xml.append("</Tables>");
+    } else {
+      getRequests.incrementAndGet();
+      xml.append(tableXml(path.substring(path.lastIndexOf('/') + 1)));
+    }
+    MockOdpsServer.reply(exchange, 200, "application/xml", xml.toString());
+  }
+
+  @Test
+  public void testGet() throws Exception {
+    ddlTimes.put("t1", 100L);
+    sizes.put("t1", 1L);
+
+    // 第一次访问加载并写入缓存
+    Table t = odps.tables().get("t1");
+    Assert.assertEquals("c100", t.getSchema().getColumn(0).getName());
+    Assert.assertEquals(1, getRequests.get());
+    Assert.assertEquals(1, cache.size());
+
+    // 之后直接返回已加载的表
+    for (int i = 0; i < 10; i++) {
+      t = odps.tables().get("p", "T1");
+      Assert.assertEquals("c100", t.getSchema().getColumn(0).getName());
+    }
+    Assert.assertEquals(1, getRequests.get());
+    Assert.assertEquals(10, cache.getHitCount());
+
+    // 重新加载: 只有数据变化时沿用缓存中的表结构
+    TableSchema schema = t.getSchema();
+    sizes.put("t1", 2L);
+    t.reload();
+    Assert.assertSame(schema, t.getSchema());
+    Assert.assertEquals(2L, t.getSize());
+    Assert.assertEquals(1, cache.getRevalidatedCount());
+
+    // 元数据变化后使用新的表结构
+    ddlTimes.put("t1", 200L);
+    t.reload();
+    Assert.assertEquals("c200", t.getSchema().getColumn(0).getName());
+    Assert.assertEquals("c200", odps.tables().get("t1").getSchema().getColumn(0).getName());
+
+    cache.invalidate("p", null, "t1");
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLoadTables() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      ddlTimes.put("t" + i, 100L + i);
+      sizes.put("t" + i, 1L);
+    }
+    List<Table> tables = odps.tables().loadTables(Arrays.asList("t0", "t1"));
+    Assert.assertEquals(2, tables.size());
+    Assert.assertEquals(1, queryRequests.get());
+
+    // 只请求未命中的表, 超过容量时淘汰最久未使用的表
+    tables = odps.tables().loadTables(Arrays.asList("t0", "t1", "t2", "t3"));
+    Assert.assertEquals(4, tables.size());
+    Assert.assertEquals(2, queryRequests.get());
+    Assert.assertEquals(4, queriedTables.get());
+    Assert.assertEquals(3, cache.size());
+    Assert.assertEquals(1, cache.getEvictionCount());
+    for (Table t : tables) {
+      Assert.assertEquals("c" + ddlTimes.get(t.getName()), t.getSchema().getColumn(0).getName());
+    }
+
+    // 按传入的顺序返回, 与是否命中缓存无关
+    tables = odps.tables().loadTables(Arrays.asList("t4", "t2", "t0", "t3", "t2"));
+    Assert.assertEquals(3, queryRequests.get());
+    List<String> names = new ArrayList<>();
+    for (Table t : tables) {
+      names.add(t.getName());
+    }
+    Assert.assertEquals(Arrays.asList("t4", "t2", "t0", "t3", "t2"), names);
+
+    odps.tables().setMetaCache(null);
+    odps.tables().loadTables(Arrays.asList("t0", "t1"));
+    Assert.assertEquals(4, queryRequests.get());
+  }
+
+  @Test
+  public void testCopyModel() throws Exception {
+    ddlTimes.put("t1", 100L);
+    sizes.put("t1", 1L);
+    odps.tables().get("t1").reload();
+
+    // 修改一个表的元数据不影响缓存和其他表
+    sizes.put("t1", 5L);
+    Table t = odps.tables().get("t1");
+    Table other = odps.tables().get("t1");
+    t.reloadExtendInfo();
+    Assert.assertEquals(5L, t.getSize());
+    Assert.assertEquals(1L, other.getSize());
+    Assert.assertEquals(1L, odps.tables().get("t1").getSize());
+  }
+
+  @Test
+  public void testModelCopyIsIndependent() {
+    Table.TableModel model = new Table.TableModel();
+    model.name = "t1";
+    model.lastModifiedTime = new Date(1000L);
+    model.primaryKey = new ArrayList<>(Arrays.asList("k1"));
+    model.mvProperties = new HashMap<>();
+    model.mvProperties.put("a", "1");
+    model.refreshHistory = new ArrayList<>();
+    model.refreshHistory.add(new HashMap<>(model.mvProperties));
+
+    Table.TableModel copy = model.copy();
+    model.lastModifiedTime.setTime(2000L);
+    model.primaryKey.add("k2");
+    model.mvProperties.put("b", "2");
+    model.refreshHistory.get(0).put("b", "2");
+
+    Assert.assertEquals("t1", copy.name);
+    Assert.assertEquals(1000L, copy.lastModifiedTime.getTime());
+    Assert.assertEquals(Arrays.asList("k1"), copy.primaryKey);
+    Assert.assertEquals(1, copy.mvProperties.size());
+    Assert.assertEquals(1, copy.refreshHistory.get(0).size());
+  }
+
+  @Test
+  public void testInvalidateOnDdl() throws Exception {
+    ddlTimes.put("t1", 100L);
+    sizes.put("t1", 1L);
+    Table t = odps.tables().get("t1");
+    t.reload();
+    Assert.assertEquals(1, cache.size());
+
+    // 模拟的服务端不支持 SQL 任务, DDL 失败时同样清除缓存
+    try {
+      t.truncate();
+      Assert.fail();
+    } catch (OdpsException e) {
+      // expected
+    }
+    Assert.assertEquals(0, cache.size());
+
+    odps.tables().get("t1").reload();
+    Assert.assertEquals(1, cache.size());
+    try {
+      odps.tables().newTableCreator("p", "t1", t.getSchema()).ifNotExists().create();
+      Assert.fail();
+    } catch (OdpsException e) {
+      // expected
+    }
+    Assert.assertEquals(0, cache.size());
+  }
+}
@@ -19,6 +19,13 @@
 
 package com.aliyun.odps.account;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -75,6 +82,153 @@ public class SecurityUtilsTest {
     Assert.assertEquals(true, isEquale(expectedResult, result));
   }
 
+  private static byte[] uncachedHmac(String algorithm, byte[] data, byte[] key) throws Exception {
+    Mac mac = Mac.getInstance(algorithm);
+    mac.init(new SecretKeySpec(key, algorithm));
+    return mac.doFinal(data);
+  }
+
+  @Test
+  public void testCachedMac() throws Exception {
+    Random random = new Random(0);
+    // 超过缓存上限的密钥, 覆盖淘汰后重新初始化
+    byte[][] keys = new byte[SecurityUtils.MAX_CACHED_MAC_PER_THREAD * 2][];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new byte[random.nextInt(64) + 1];
+      random.nextBytes(keys[i]);
+    }
+    for (int round = 0; round < 3; round++) {
+      for (byte[] key : keys) {
+        byte[] data = new byte[random.nextInt(256)];
+        random.nextBytes(data);
+        Assert.assertArrayEquals(uncachedHmac("HmacSHA1", data, key),
+                                 SecurityUtils.hmacsha1Signature(data, key));
+        Assert.assertArrayEquals(uncachedHmac("HmacSHA256", data, key),
+                                 SecurityUtils.hmacsha256Signature(data, key));
+      }
+    }
+
+    // 修改调用方的密钥数组不影响缓存
+    byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+    byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+    SecurityUtils.hmacsha1Signature(data, key);
+    key[0] = 'K';
+    Assert.assertArrayEquals(uncachedHmac("HmacSHA1", data, key),
+                             SecurityUtils.hmacsha1Signature(data, key));
+    Assert.assertArrayEquals(uncachedHmac("HmacSHA1", data, "key".getBytes()),
+                             SecurityUtils.hmacsha1Signature(data, "key".getBytes()));
+
+    Assert.assertSame(SecurityUtils.getMac("HmacSHA1", key),
+                      SecurityUtils.getMac("HmacSHA1", key));
+  }
+
+  @Test
+  public void testClearMacCache() throws Exception {
+    byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+    Mac mac = SecurityUtils.getMac("HmacSHA1", key);
+    SecurityUtils.clearMacCache();
+    Assert.assertNotSame(mac, SecurityUtils.getMac("HmacSHA1", key));
+  }
+
+  private static byte[] repeat(int b, int length) {
+    byte[] result = new byte[length];
+    Arrays.fill(result, (byte) b);
+    return result;
+  }
+
+  private static String toHex(byte[] data) {
+    StringBuilder builder = new StringBuilder();
+    for (byte b : data) {
+      builder.append(String.format("%02x", b & 0xff));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * RFC 2202 和 RFC 4231 中的测试用例, 不同的密钥交替签名
+   */
+  @Test
+  public void testHmacWithDistinctKeys() {
+    byte[][] keys = {
+        repeat(0x0b, 20),
+        "Jefe".getBytes(StandardCharsets.UTF_8),
+        repeat(0xaa, 20)};
+    byte[][] data = {
+        "Hi There".getBytes(StandardCharsets.UTF_8),
+        "what do ya want for nothing?".getBytes(StandardCharsets.UTF_8),
+        repeat(0xdd, 50)};
+    String[] sha1 = {
+        "b617318655057264e28bc0b6fb378c8ef146be00",
+        "effcdf6ae5eb2fa2d27416d5f184df9c259a7c79",
+        "125d7342b9ac11cd91a39af48aa17b4f63f175d3"};
+    String[] sha256 = {
+        "b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7",
+        "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+        "773ea91e36800e46854db8ebd09181a72959098b3ef8c122d9635514ced565fe"};
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < keys.length; i++) {
+        Assert.assertEquals(sha1[i], toHex(SecurityUtils.hmacsha1Signature(data[i], keys[i])));
+        Assert.assertEquals(sha256[i],
+                            toHex(SecurityUtils.hmacsha256Signature(data[i], keys[i])));
+      }
+    }
+  }
+
+  private static Request benchRequest(int i) {
+    Request request = new Request();
+    request.setMethod(Method.GET);
+    request.setHeader(Headers.ODPS_USER_AGENT, "JavaSDK/0.48.0;Linux");
+    request.setHeader(Headers.DATE, "Tue, 13 May 2014 09:22:20 GMT");
+    request.setHeader(Headers.CONTENT_TYPE, "application/xml");
+    request.setHeader(Headers.USER_AGENT, "JavaSDK/0.48.0;Linux");
+    request.setHeader("x-odps-request-id", "req" + i);
+    request.getParameters().put("curr_project", "p");
+    return request;
+  }
+
+  /**
+   * 签名吞吐, 只输出结果
+   */
+  @Test
+  public void testSignBenchmark() throws Exception {
+    String resource = "/projects/p/tables/t";
+    String accessKey = "accessKeySecret0123456789";
+    AliyunRequestSigner v2 = new AliyunRequestSigner("accessId", accessKey);
+    AliyunRequestSigner v4 = new AliyunRequestSigner("accessId", accessKey, "cn-hangzhou");
+    int ops = 20000;
+
+    // 第一轮预热, 输出第二轮的结果
+    for (int round = 0; round < 2; round++) {
+      long checksum = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < ops; i++) {
+        String str = SecurityUtils.buildCanonicalString(resource, benchRequest(i), "x-odps-");
+        checksum += uncachedHmac("HmacSHA1", str.getBytes(StandardCharsets.UTF_8),
+                                 accessKey.getBytes())[0];
+      }
+      long uncached = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < ops; i++) {
+        checksum += v2.getSignature(resource, benchRequest(i)).length();
+      }
+      long cachedV2 = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < ops; i++) {
+        checksum += v4.getSignature(resource, benchRequest(i)).length();
+      }
+      long cachedV4 = System.nanoTime() - start;
+
+      if (round == 1) {
+        System.out.println(String.format(
+            "sign v2 uncached mac: %.1f ns/op, v2: %.1f ns/op, v4: %.1f ns/op, checksum: %d",
+            (double) uncached / ops, (double) cachedV2 / ops, (double) cachedV4 / ops,
+            checksum));
+      }
+    }
+  }
+
   private byte[] fromIntToByte(int[] data) {
     byte[] result = new byte[data.length];
     for (int i = 0; i < data.length; i++) {
@@ -0,0 +1,63 @@
+package com.aliyun.odps.commons.proto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.ColumnIndex;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.io.CompressOption;
+
+public class ProtobufRecordStreamReaderTest {
+
+  private static final int RECORD_COUNT = 100;
+
+  private static ColumnIndex columnIndexOf(Record record) throws Exception {
+    Field field = ArrayRecord.class.getDeclaredField("columnIndex");
+    field.setAccessible(true);
+    return (ColumnIndex) field.get(record);
+  }
+
+  @Test
+  public void testSharedColumnIndex() throws Exception {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("id", OdpsType.BIGINT));
+    schema.addColumn(new Column("name", OdpsType.STRING));
+    CompressOption option = new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(schema, out, option);
+    for (long i = 0; i < RECORD_COUNT; i++) {
+      Record record = new ArrayRecord(schema.getColumns().toArray(new Column[0]));
+      record.setBigint(0, i);
+      record.setString(1, "name_" + i);
+      writer.write(record);
+    }
+    writer.close();
+
+    ProtobufRecordStreamReader reader =
+        new ProtobufRecordStreamReader(schema, new ByteArrayInputStream(out.toByteArray()), option);
+    ColumnIndex index = columnIndexOf(reader.createEmptyRecord());
+    Assert.assertNotNull(index);
+
+    Record record;
+    int count = 0;
+    while ((record = reader.read()) != null) {
+      // 同一个 reader 返回的 record 共享一个列名索引
+      Assert.assertSame(index, columnIndexOf(record));
+      Assert.assertEquals(Long.valueOf(count), record.getBigint("id"));
+      Assert.assertEquals("name_" + count, record.getString("name"));
+      Assert.assertSame(index, columnIndexOf(record.clone()));
+      count++;
+    }
+    Assert.assertEquals(RECORD_COUNT, count);
+    reader.close();
+  }
+}
@@ -0,0 +1,107 @@
+package com.aliyun.odps.commons.transport;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 在本地随机端口启动的 HttpServer, 测试通过 {@link #handle(String, HttpHandler)} 注册需要模拟的接口
+ *
+ * <p>{@link #newOdps()} 返回访问该服务的 Odps 对象, 默认 project 为 p, odps 接口的路径以 /api 开头,
+ * tunnel 接口的路径不带前缀</p>
+ */
+public class MockOdpsServer implements AutoCloseable {
+
+  private final HttpServer server;
+
+  public MockOdpsServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.start();
+  }
+
+  /**
+   * 注册 path 下的请求处理, 处理结束后自动关闭 exchange
+   */
+  public MockOdpsServer handle(String path, HttpHandler handler) {
+    server.createContext(path, exchange -> {
+      try {
+        handler.handle(exchange);
+      } finally {
+        exchange.close();
+      }
+    });
+    return this;
+  }
+
+  public String getEndpoint() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public Odps newOdps() {
+    Odps odps = new Odps(new AliyunAccount("ak", "sk"));
+    odps.setEndpoint(getEndpoint() + "/api");
+    odps.setDefaultProject("p");
+    return odps;
+  }
+
+  public TableTunnel newTableTunnel() {
+    TableTunnel tunnel = new TableTunnel(newOdps());
+    tunnel.setEndpoint(getEndpoint());
+    return tunnel;
+  }
+
+  /**
+   * 返回响应, body 为 null 时不带响应体
+   */
+  public static void reply(HttpExchange exchange, int status, String contentType, String body)
+      throws IOException {
+    if (contentType != null) {
+      exchange.getResponseHeaders().add(Headers.CONTENT_TYPE, contentType);
+    }
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+
+  public static Map<String, String> parseQuery(HttpExchange exchange) {
+    Map<String, String> params = new HashMap<>();
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return params;
+    }
+    for (String pair : query.split("&")) {
+      int idx = pair.indexOf('=');
+      try {
+        if (idx < 0) {
+          params.put(URLDecoder.decode(pair, "UTF-8"), null);
+        } else {
+          params.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"),
+                     URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+        }
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return params;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
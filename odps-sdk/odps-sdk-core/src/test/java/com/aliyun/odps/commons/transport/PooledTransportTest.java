@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.commons.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.util.IOUtils;
+import com.aliyun.odps.rest.RestClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledTransportTest {
+
+  private HttpServer server;
+  private PooledTransport transport;
+  private RestClient client;
+  private String endpoint;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/echo", this::echo);
+    server.createContext("/gzip", exchange -> {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+        gzip.write("compressed".getBytes(StandardCharsets.UTF_8));
+      }
+      exchange.getResponseHeaders().add(Headers.CONTENT_ENCODING, "gzip");
+      exchange.sendResponseHeaders(200, bytes.size());
+      exchange.getResponseBody().write(bytes.toByteArray());
+      exchange.close();
+    });
+    server.createContext("/chunked", exchange -> {
+      // 长度为 0 表示以 chunked 编码返回
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream out = exchange.getResponseBody()) {
+        for (int i = 0; i < 100; i++) {
+          out.write(("line" + i + "\n").getBytes(StandardCharsets.UTF_8));
+          out.flush();
+        }
+      }
+    });
+    server.createContext("/close", exchange -> {
+      exchange.getResponseHeaders().add("Connection", "close");
+      exchange.sendResponseHeaders(200, 2);
+      exchange.getResponseBody().write("ok".getBytes(StandardCharsets.UTF_8));
+      exchange.close();
+    });
+    server.start();
+
+    endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    transport = new PooledTransport(4, 4, 60000);
+    client = new RestClient(transport);
+  }
+
+  @After
+  public void tearDown() {
+    transport.close();
+    server.stop(0);
+  }
+
+  private void echo(HttpExchange exchange) throws IOException {
+    byte[] body = IOUtils.readFully(exchange.getRequestBody());
+    String te = exchange.getRequestHeaders().getFirst(Headers.TRANSFER_ENCODING);
+    exchange.getResponseHeaders().add("x-method", exchange.getRequestMethod());
+    exchange.getResponseHeaders().add("x-query", String.valueOf(exchange.getRequestURI().getRawQuery()));
+    exchange.getResponseHeaders().add("x-chunked", String.valueOf(te != null));
+    if (body.length == 0) {
+      // 没有 body 的响应会被 HttpServer 关闭连接
+      body = "empty".getBytes(StandardCharsets.UTF_8);
+    }
+    exchange.sendResponseHeaders(200, body.length);
+    if (!"HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseBody().write(body);
+    }
+    exchange.close();
+  }
+
+  private Request newRequest(String path, Request.Method method) throws Exception {
+    Request req = new Request(client);
+    req.setURI(new URI(endpoint + path));
+    req.setMethod(method);
+    return req;
+  }
+
+  @Test
+  public void testReuseConnection() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      Request req = newRequest("/echo?i=" + i, Request.Method.POST);
+      byte[] body = ("body" + i).getBytes(StandardCharsets.UTF_8);
+      req.setBody(new ByteArrayInputStream(body));
+      req.setBodyLength(body.length);
+      Response resp = transport.request(req);
+      Assert.assertEquals(200, resp.getStatus());
+      Assert.assertEquals("body" + i, new String(resp.getBody(), StandardCharsets.UTF_8));
+      Assert.assertEquals("POST", header(resp, "x-method"));
+      Assert.assertEquals("i=" + i, header(resp, "x-query"));
+      Assert.assertEquals("false", header(resp, "x-chunked"));
+    }
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+    Assert.assertEquals(9, transport.getReusedConnectionCount());
+    Assert.assertEquals(1, transport.getIdleConnectionCount());
+    Assert.assertEquals(0, transport.getLeasedConnectionCount());
+
+    // GET / HEAD / 空 body 的 POST
+    Response resp = transport.request(newRequest("/echo", Request.Method.GET));
+    Assert.assertEquals("GET", header(resp, "x-method"));
+    resp = transport.request(newRequest("/echo", Request.Method.HEAD));
+    Assert.assertEquals("HEAD", header(resp, "x-method"));
+    resp = transport.request(newRequest("/echo", Request.Method.POST));
+    Assert.assertEquals("POST", header(resp, "x-method"));
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+  }
+
+  @Test
+  public void testStreamingBody() throws Exception {
+    // chunked 请求 body
+    Request req = newRequest("/echo", Request.Method.PUT);
+    req.setHeader(Headers.TRANSFER_ENCODING, Headers.CHUNKED);
+    Connection conn = transport.connect(req);
+    StringBuilder expected = new StringBuilder();
+    OutputStream out = conn.getOutputStream();
+    for (int i = 0; i < 10000; i++) {
+      byte[] data = ("record" + i + ",").getBytes(StandardCharsets.UTF_8);
+      out.write(data);
+      expected.append("record").append(i).append(',');
+    }
+    out.close();
+    Assert.assertEquals(200, conn.getResponse().getStatus());
+    Assert.assertEquals("true", header(conn.getResponse(), "x-chunked"));
+    Assert.assertEquals(expected.toString(),
+                        new String(IOUtils.readFully(conn.getInputStream()),
+                                   StandardCharsets.UTF_8));
+    conn.disconnect();
+
+    // chunked 响应
+    req = newRequest("/chunked", Request.Method.GET);
+    conn = transport.connect(req);
+    InputStream in = conn.getInputStream();
+    String text = new String(IOUtils.readFully(in), StandardCharsets.UTF_8);
+    Assert.assertTrue(text.startsWith("line0\n") && text.endsWith("line99\n"));
+    in.close();
+    conn.disconnect();
+
+    // gzip 响应
+    Response resp = transport.request(newRequest("/gzip", Request.Method.GET));
+    Assert.assertEquals("compressed", new String(resp.getBody(), StandardCharsets.UTF_8));
+
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+    Assert.assertEquals(2, transport.getReusedConnectionCount());
+  }
+
+  @Test
+  public void testDiscardConnection() throws Exception {
+    // 服务端要求关闭连接
+    Response resp = transport.request(newRequest("/close", Request.Method.GET));
+    Assert.assertEquals("ok", new String(resp.getBody(), StandardCharsets.UTF_8));
+    Assert.assertEquals(1, transport.getDiscardedConnectionCount());
+    Assert.assertEquals(0, transport.getIdleConnectionCount());
+
+    // 没有读完的少量响应在断开时读完, 连接仍可复用
+    Connection conn = transport.connect(newRequest("/chunked", Request.Method.GET));
+    conn.getResponse();
+    conn.disconnect();
+    conn.disconnect();
+    Assert.assertEquals(0, transport.getLeasedConnectionCount());
+    Assert.assertEquals(2, transport.getCreatedConnectionCount());
+
+    resp = transport.request(newRequest("/echo", Request.Method.GET));
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertEquals(1, transport.getIdleConnectionCount());
+
+    // 服务端关闭空闲连接后, 下次请求新建连接
+    server.stop(0);
+    setUpServerOnly();
+    Assert.assertEquals(200, transport.request(newRequest("/echo", Request.Method.GET)).getStatus());
+    Assert.assertEquals(1, transport.getEvictedConnectionCount());
+  }
+
+  @Test
+  public void testReleaseWithoutClose() throws Exception {
+    // 读完 body 后即使不关闭也归还连接
+    Connection conn = transport.connect(newRequest("/chunked", Request.Method.GET));
+    IOUtils.readFully(conn.getInputStream());
+    Assert.assertEquals(0, transport.getLeasedConnectionCount());
+    Assert.assertEquals(1, transport.getIdleConnectionCount());
+
+    conn = transport.connect(newRequest("/echo", Request.Method.HEAD));
+    Assert.assertEquals(200, conn.getResponse().getStatus());
+    Assert.assertEquals(0, transport.getLeasedConnectionCount());
+    Assert.assertEquals(1, transport.getCreatedConnectionCount());
+    Assert.assertEquals(1, transport.getReusedConnectionCount());
+  }
+
+  @Test
+  public void testLeakedConnection() throws Exception {
+    PooledTransport single = new PooledTransport(1, 1, 60000);
+    try {
+      RestClient restClient = new RestClient(single);
+      // 丢弃没有读取也没有关闭的响应
+      Request req = new Request(restClient);
+      req.setURI(new URI(endpoint + "/chunked"));
+      req.setMethod(Request.Method.GET);
+      Assert.assertEquals(200, single.connect(req).getResponse().getStatus());
+      Assert.assertEquals(1, single.getLeasedConnectionCount());
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (single.getLeakedConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+        System.gc();
+        single.evictExpiredConnections();
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(1, single.getLeakedConnectionCount());
+      Assert.assertEquals(0, single.getLeasedConnectionCount());
+
+      req = new Request(restClient);
+      req.setURI(new URI(endpoint + "/echo"));
+      req.setMethod(Request.Method.GET);
+      Assert.assertEquals(200, single.request(req).getStatus());
+      Assert.assertEquals(2, single.getCreatedConnectionCount());
+    } finally {
+      single.close();
+    }
+  }
+
+  @Test
+  public void testWaitTimeout() throws Exception {
+    PooledTransport single = new PooledTransport(1, 1, 60000);
+    try {
+      RestClient restClient = new RestClient(single);
+      restClient.setConnectTimeout(1);
+      Request req = new Request(restClient);
+      req.setURI(new URI(endpoint + "/chunked"));
+      req.setMethod(Request.Method.GET);
+      Connection held = single.connect(req);
+      held.getResponse();
+
+      req = new Request(restClient);
+      req.setURI(new URI(endpoint + "/echo"));
+      req.setMethod(Request.Method.GET);
+      long start = System.currentTimeMillis();
+      try {
+        single.request(req);
+        Assert.fail();
+      } catch (SocketTimeoutException e) {
+        Assert.assertTrue(e.getMessage().startsWith("Timeout waiting for connection"));
+      }
+      Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+      Assert.assertEquals(0, single.getLeakedConnectionCount());
+
+      held.disconnect();
+      Assert.assertEquals(200, single.request(req).getStatus());
+    } finally {
+      single.close();
+    }
+  }
+
+  @Test
+  public void testRetryStaleConnection() throws Exception {
+    // 第一个连接在返回一个响应后, 读到下一个请求时直接关闭, 模拟服务端关闭 keep-alive 连接
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, null)) {
+      Thread serverThread = new Thread(() -> {
+        try {
+          try (Socket first = serverSocket.accept()) {
+            readRequestHead(first.getInputStream());
+            writeOk(first.getOutputStream());
+            readRequestHead(first.getInputStream());
+          }
+          while (true) {
+            try (Socket next = serverSocket.accept()) {
+              readRequestHead(next.getInputStream());
+              writeOk(next.getOutputStream());
+              readRequestHead(next.getInputStream());
+            }
+          }
+        } catch (IOException ignore) {
+          // server socket 关闭
+        }
+      });
+      serverThread.setDaemon(true);
+      serverThread.start();
+
+      String raw = "http://127.0.0.1:" + serverSocket.getLocalPort();
+      Request req = new Request(client);
+      req.setURI(new URI(raw + "/a"));
+      req.setMethod(Request.Method.GET);
+      Assert.assertEquals("ok", new String(transport.request(req).getBody(),
+                                           StandardCharsets.UTF_8));
+      Assert.assertEquals(1, transport.getIdleConnectionCount());
+
+      // 幂等请求在新连接上重试
+      req = new Request(client);
+      req.setURI(new URI(raw + "/b"));
+      req.setMethod(Request.Method.GET);
+      Assert.assertEquals("ok", new String(transport.request(req).getBody(),
+                                           StandardCharsets.UTF_8));
+      Assert.assertEquals(2, transport.getCreatedConnectionCount());
+      Assert.assertEquals(1, transport.getReusedConnectionCount());
+
+      // POST 不重试
+      req = new Request(client);
+      req.setURI(new URI(raw + "/c"));
+      req.setMethod(Request.Method.POST);
+      try {
+        transport.request(req);
+        Assert.fail();
+      } catch (IOException e) {
+        // expected
+      }
+      Assert.assertEquals(2, transport.getCreatedConnectionCount());
+      Assert.assertEquals(0, transport.getLeasedConnectionCount());
+    }
+  }
+
+  private static void readRequestHead(InputStream in) throws IOException {
+    String line;
+    while ((line = PooledConnection.readLine(in)) != null && !line.isEmpty()) {
+      // 测试请求都没有 body
+    }
+    if (line == null) {
+      throw new IOException("closed");
+    }
+  }
+
+  private static void writeOk(OutputStream out) throws IOException {
+    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  private static String header(Response resp, String name) {
+    // HttpServer 会改写响应头的大小写
+    for (Map.Entry<String, String> kv : resp.getHeaders().entrySet()) {
+      if (kv.getKey().equalsIgnoreCase(name)) {
+        return kv.getValue();
+      }
+    }
+    return null;
+  }
+
+  private void setUpServerOnly() throws Exception {
+    int port = server.getAddress().getPort();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    server.createContext("/echo", this::echo);
+    server.start();
+  }
+}
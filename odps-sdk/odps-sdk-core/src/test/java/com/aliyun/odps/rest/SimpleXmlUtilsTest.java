@@ -0,0 +1,101 @@
+package com.aliyun.odps.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.simpleframework.xml.Element;
+import com.aliyun.odps.simpleframework.xml.ElementList;
+import com.aliyun.odps.simpleframework.xml.Root;
+import com.aliyun.odps.simpleframework.xml.convert.Convert;
+
+public class SimpleXmlUtilsTest {
+
+  @Root(name = "Item", strict = false)
+  static class Item {
+
+    @Element(name = "Name", required = false)
+    String name;
+
+    @Element(name = "CreationTime", required = false)
+    @Convert(SimpleXmlUtils.DateConverter.class)
+    Date creationTime;
+  }
+
+  @Root(name = "Items", strict = false)
+  static class Items {
+
+    @ElementList(entry = "Item", inline = true, required = false)
+    List<Item> items = new ArrayList<>();
+
+    @Element(name = "Marker", required = false)
+    @Convert(SimpleXmlUtils.EmptyStringConverter.class)
+    String marker;
+  }
+
+  private static byte[] xml(int count, String marker) {
+    StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Items>");
+    sb.append("<MaxItems>").append(count).append("</MaxItems>");
+    for (int i = 0; i < count; i++) {
+      sb.append("<Item><Name>item").append(i).append("</Name><CreationTime>")
+          .append(DateUtils.formatRfc822Date(new Date(i * 1000L)))
+          .append("</CreationTime><Unknown><A>a</A></Unknown></Item>");
+    }
+    sb.append("<Marker>").append(marker).append("</Marker></Items>");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testUnmarshalList() throws Exception {
+    byte[] xml = xml(100, "next");
+    Items expected = SimpleXmlUtils.unmarshal(xml, Items.class);
+
+    SimpleXmlUtils.ListReader<Item> reader = SimpleXmlUtils.unmarshalList(xml, "Item", Item.class);
+    // 第一个 entry 之前的元素在读到第一个 entry 时可用
+    Assert.assertTrue(reader.hasNext());
+    Assert.assertEquals("100", reader.getField("MaxItems"));
+    Assert.assertNull(reader.getField("Marker"));
+    int i = 0;
+    while (reader.hasNext()) {
+      Item item = reader.next();
+      Assert.assertEquals(expected.items.get(i).name, item.name);
+      Assert.assertEquals(new Date(i * 1000L), item.creationTime);
+      i++;
+    }
+    Assert.assertEquals(100, i);
+    Assert.assertEquals("next", reader.getField("Marker"));
+
+    // 空的 marker 和空列表
+    reader = SimpleXmlUtils.unmarshalList(xml(0, ""), "Item", Item.class);
+    Assert.assertFalse(reader.hasNext());
+    Assert.assertEquals("", reader.getField("Marker"));
+  }
+
+  @Test
+  public void testConcurrentUnmarshal() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Items>> futures = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        final int count = i;
+        futures.add(executor.submit(() -> SimpleXmlUtils.unmarshal(xml(count, "m" + count),
+                                                                   Items.class)));
+      }
+      for (int i = 0; i < 64; i++) {
+        Items items = futures.get(i).get();
+        Assert.assertEquals(i, items.items.size());
+        Assert.assertEquals("m" + i, items.marker);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
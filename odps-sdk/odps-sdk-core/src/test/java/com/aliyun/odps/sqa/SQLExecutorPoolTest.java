@@ -0,0 +1,177 @@
+package com.aliyun.odps.sqa;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.OdpsException;
+
+/**
+ * 使用本地的假 executor 测试连接池的并发行为, 不需要服务端
+ */
+public class SQLExecutorPoolTest {
+
+  private static class FakeExecutorBuilder extends SQLExecutorBuilder {
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile long buildMillis = 0;
+    private volatile CountDownLatch building = null;
+
+    @Override
+    public SQLExecutor build() throws OdpsException {
+      if (building != null) {
+        building.countDown();
+      }
+      if (buildMillis > 0) {
+        try {
+          Thread.sleep(buildMillis);
+        } catch (InterruptedException e) {
+          throw new OdpsException("interrupted", e);
+        }
+      }
+      String id = "executor_" + ids.incrementAndGet();
+      AtomicBoolean active = new AtomicBoolean(true);
+      return (SQLExecutor) Proxy.newProxyInstance(
+          SQLExecutor.class.getClassLoader(), new Class[]{SQLExecutor.class},
+          (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "getId":
+                return id;
+              case "isActive":
+                return active.get();
+              case "close":
+                // mark inactive, used to simulate a dead session
+                active.set(false);
+                return null;
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "equals":
+                return proxy == args[0];
+              default:
+                return null;
+            }
+          });
+    }
+  }
+
+  @Test
+  public void testAcquireTimeout() throws Exception {
+    FakeExecutorBuilder builder = new FakeExecutorBuilder();
+    SQLExecutorPool pool = SQLExecutorPool.create(1, 1, 200, false, 0, builder);
+    SQLExecutor executor = pool.getExecutor();
+    Assert.assertEquals(1, pool.getBusyCount());
+    Assert.assertEquals(1.0, pool.getUtilization(), 0.0001);
+
+    long start = System.currentTimeMillis();
+    try {
+      pool.getExecutor();
+      Assert.fail();
+    } catch (OdpsException e) {
+      Assert.assertTrue(e.getMessage().contains("No active executor in pool"));
+    }
+    Assert.assertTrue(System.currentTimeMillis() - start >= 150);
+    Assert.assertEquals(1, pool.getAcquireTimeoutCount());
+
+    // a waiting acquire succeeds once the executor is released
+    ExecutorService threads = Executors.newSingleThreadExecutor();
+    Future<SQLExecutor> waiting = threads.submit(() -> pool.getExecutor(5, TimeUnit.SECONDS));
+    while (pool.getWaitingCount() == 0) {
+      Thread.sleep(10);
+    }
+    pool.releaseExecutor(executor);
+    Assert.assertSame(executor, waiting.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(2, pool.getAcquireCount());
+    threads.shutdown();
+    pool.close();
+  }
+
+  @Test
+  public void testCreateOutsideLock() throws Exception {
+    FakeExecutorBuilder builder = new FakeExecutorBuilder();
+    SQLExecutorPool pool = SQLExecutorPool.create(1, 2, 0, false, 0, builder);
+    SQLExecutor first = pool.getExecutor();
+
+    // a slow creation must not block releasing or acquiring other executors
+    builder.buildMillis = 2000;
+    builder.building = new CountDownLatch(1);
+    ExecutorService threads = Executors.newSingleThreadExecutor();
+    Future<SQLExecutor> creating = threads.submit(() -> pool.getExecutor());
+    builder.building.await();
+
+    long start = System.currentTimeMillis();
+    pool.releaseExecutor(first);
+    Assert.assertSame(first, pool.getExecutor());
+    Assert.assertEquals(2, pool.getExecutorCount());
+    Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+
+    Assert.assertNotNull(creating.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(2, pool.getBusyCount());
+    threads.shutdown();
+    pool.close();
+    Assert.assertEquals(0, pool.getExecutorCount());
+  }
+
+  @Test
+  public void testAsyncInitAndHealthCheck() throws Exception {
+    FakeExecutorBuilder builder = new FakeExecutorBuilder();
+    builder.buildMillis = 100;
+    SQLExecutorPool pool = SQLExecutorPool.create(2, 3, 5000, true, 50, builder);
+    // build returns before the executors are ready
+    Assert.assertTrue(pool.getActiveCount() < 2);
+    waitFor(() -> pool.getActiveCount() == 2);
+    Assert.assertEquals(2, pool.getCreatedCount());
+
+    // kill an idle executor, health check replaces it
+    SQLExecutor executor = pool.getExecutor();
+    pool.releaseExecutor(executor);
+    executor.close();
+    waitFor(() -> pool.getEvictedCount() == 1 && pool.getActiveCount() == 2);
+    Assert.assertEquals(3, pool.getCreatedCount());
+    Assert.assertEquals(2, pool.getExecutorCount());
+    pool.close();
+  }
+
+  @Test
+  public void testReleaseInactiveExecutor() throws Exception {
+    FakeExecutorBuilder builder = new FakeExecutorBuilder();
+    SQLExecutorPool pool = SQLExecutorPool.create(1, 1, 0, false, 0, builder);
+    SQLExecutor executor = pool.getExecutor();
+    executor.close();
+    pool.releaseExecutor(executor);
+    // released twice, only the first takes effect
+    pool.releaseExecutor(executor);
+    Assert.assertEquals(0, pool.getExecutorCount());
+    Assert.assertEquals(1, pool.getEvictedCount());
+
+    SQLExecutor another = pool.getExecutor();
+    Assert.assertNotEquals(executor.getId(), another.getId());
+    pool.close();
+    try {
+      pool.getExecutor();
+      Assert.fail();
+    } catch (OdpsException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+
+  private interface Condition {
+    boolean check();
+  }
+
+  private static void waitFor(Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.check()) {
+      if (System.currentTimeMillis() > deadline) {
+        Assert.fail("condition not met in time");
+      }
+      Thread.sleep(10);
+    }
+  }
+}
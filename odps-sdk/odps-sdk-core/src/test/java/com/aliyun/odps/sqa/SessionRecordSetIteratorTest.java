@@ -0,0 +1,188 @@
+package com.aliyun.odps.sqa;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+
+/**
+ * 使用内存中的 reader 代替 instance tunnel 测试 session 结果的分段读取和预取
+ */
+public class SessionRecordSetIteratorTest {
+
+  private static final Column[] COLUMNS = {new Column("id", OdpsType.BIGINT)};
+  // 每条记录按 10 字节计算
+  private static final long RECORD_BYTES = 10;
+
+  private static class StubReader extends ProtobufRecordStreamReader {
+
+    private final long start;
+    private final long end;
+    private final CountDownLatch blocked;
+    private long next;
+    private volatile boolean interrupted = false;
+
+    StubReader(long start, long count, CountDownLatch blocked) {
+      this.start = start;
+      this.next = start;
+      this.end = start + count;
+      this.blocked = blocked;
+    }
+
+    @Override
+    public Record read() throws IOException {
+      if (blocked != null) {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          throw new IOException("interrupted", e);
+        }
+      }
+      if (next >= end) {
+        return null;
+      }
+      Record record = new ArrayRecord(COLUMNS);
+      record.setBigint(0, next++);
+      return record;
+    }
+
+    @Override
+    public long getTotalBytes() {
+      return (next - start) * RECORD_BYTES;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class StubIterator extends SessionRecordSetIterator {
+
+    private final List<StubReader> readers = new ArrayList<>();
+    private final List<String> openThreads = new ArrayList<>();
+    // 从该位置开始的批次阻塞在下载中, 直到被中断
+    private long blockFrom = Long.MAX_VALUE;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    StubIterator(long recordCount, long sizeLimit, long fetchSize, int prefetchDepth) {
+      super(null, null, recordCount, 0, sizeLimit, fetchSize, prefetchDepth, Long.MAX_VALUE);
+    }
+
+    @Override
+    ProtobufRecordStreamReader openNewReader(long start, long size) {
+      StubReader reader = new StubReader(start, size, start >= blockFrom ? blocked : null);
+      synchronized (readers) {
+        readers.add(reader);
+        openThreads.add(Thread.currentThread().getName());
+      }
+      return reader;
+    }
+  }
+
+  private static List<Long> readAll(SessionRecordSetIterator iterator) {
+    List<Long> ids = new ArrayList<>();
+    while (iterator.hasNext()) {
+      ids.add(iterator.next().getBigint(0));
+    }
+    return ids;
+  }
+
+  private static List<Long> range(long to) {
+    List<Long> ids = new ArrayList<>();
+    for (long i = 0; i < to; i++) {
+      ids.add(i);
+    }
+    return ids;
+  }
+
+  @Test
+  public void testSync() {
+    StubIterator iterator = new StubIterator(25, -1, 10, 0);
+    Assert.assertEquals(range(25), readAll(iterator));
+    Assert.assertEquals(3, iterator.readers.size());
+    for (String thread : iterator.openThreads) {
+      Assert.assertEquals(Thread.currentThread().getName(), thread);
+    }
+  }
+
+  @Test
+  public void testPrefetch() {
+    StubIterator iterator = new StubIterator(1000, -1, 10, 3);
+    List<Long> ids = new ArrayList<>();
+    while (iterator.hasNext()) {
+      ids.add(iterator.next().getBigint(0));
+      Assert.assertTrue(iterator.getPrefetchedCount() <= 3);
+    }
+    Assert.assertEquals(range(1000), ids);
+    Assert.assertEquals(100, iterator.readers.size());
+    Assert.assertEquals(0, iterator.getPrefetchedCount());
+    for (String thread : iterator.openThreads) {
+      Assert.assertEquals("odps-sqa-result-prefetch", thread);
+    }
+  }
+
+  @Test
+  public void testSizeLimit() {
+    // 第二批读到第 6 条时超过 150 字节
+    StubIterator iterator = new StubIterator(30, 150, 10, 3);
+    for (long i = 0; i < 10; i++) {
+      Assert.assertEquals(i, iterator.next().getBigint(0).longValue());
+    }
+    try {
+      iterator.next();
+      Assert.fail();
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getMessage().contains("sizeLimit"));
+    }
+    // 设置 sizeLimit 时不预取, 超过限制后不再下载
+    Assert.assertEquals(2, iterator.readers.size());
+    for (String thread : iterator.openThreads) {
+      Assert.assertEquals(Thread.currentThread().getName(), thread);
+    }
+  }
+
+  @Test
+  public void testCloseCancelsPrefetch() throws Exception {
+    StubIterator iterator = new StubIterator(100, -1, 10, 2);
+    iterator.blockFrom = 30;
+    for (long i = 0; i <= 20; i++) {
+      Assert.assertEquals(i, iterator.next().getBigint(0).longValue());
+    }
+    // [30, 40) 和 [40, 50) 两个批次阻塞在下载中
+    long deadline = System.currentTimeMillis() + 5000;
+    while (iterator.readers.size() < 5 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(5, iterator.readers.size());
+    Assert.assertEquals(2, iterator.getPrefetchedCount());
+
+    iterator.close();
+    Assert.assertEquals(0, iterator.getPrefetchedCount());
+    List<StubReader> blockedReaders = iterator.readers.subList(3, 5);
+    deadline = System.currentTimeMillis() + 5000;
+    while (!(blockedReaders.get(0).interrupted && blockedReaders.get(1).interrupted)
+           && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(blockedReaders.get(0).interrupted);
+    Assert.assertTrue(blockedReaders.get(1).interrupted);
+    Assert.assertEquals(5, iterator.readers.size());
+
+    try {
+      iterator.next();
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+}
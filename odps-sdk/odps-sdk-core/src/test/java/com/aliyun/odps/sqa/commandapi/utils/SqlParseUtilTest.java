@@ -102,4 +102,81 @@ public class SqlParseUtilTest {
       }
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testLexerClassification() {
+    String[] sqls = {"select a from t;",
+                     "SELECT a FROM t WHERE b = 'insert' -- from\n;",
+                     "select a from t",
+                     "select * from (select a from t) x union all select b from t2;",
+                     "insert overwrite table t select a from t1;",
+                     "insert into table t values (1, 2);",
+                     "with a as (select a from t), b as (select * from a) select * from b;",
+                     "with a as (select a from t) insert into table t2 select * from a;",
+                     "with a as (select a from t) from a select a;",
+                     "explain select a from t;",
+                     "explain insert into table t select a from t1;",
+                     "explain from t insert into table t2 select a;",
+                     "create table t as select a from t1;",
+                     "create table t (a bigint);",
+                     "drop table if exists t;",
+                     "alter table t add columns (b string);",
+                     "desc t;",
+                     "show tables;",
+                     "set odps.sql.allow.fullscan=true;",
+                     "delete from t where a = 1;",
+                     "update t set a = 1 where b = 2;",
+                     "from t insert into table t2 select a;",
+                     "from t select a;",
+                     "(select a from t) union all (select a from t1);",
+                     "select 1; select 2;",
+                     "create table t like t1; select * from t;",
+                     ""};
+    for (String sql : sqls) {
+      SqlParserUtil.Classification fast = SqlParserUtil.classifyByLexer(sql);
+      if (fast == null) {
+        continue;
+      }
+      SqlParserUtil.Classification parsed = SqlParserUtil.classifyByParse(sql);
+      Assert.assertEquals(sql, parsed.hasResultSet, fast.hasResultSet);
+      Assert.assertEquals(sql, parsed.select, fast.select);
+    }
+
+    // 需要语法分析才能确定的语句
+    Assert.assertNull(SqlParserUtil.classifyByLexer("from t select a;"));
+    Assert.assertNull(SqlParserUtil.classifyByLexer("select 1; select 2;"));
+    Assert.assertNull(SqlParserUtil.classifyByLexer("with a as (select 1) from a select *;"));
+  }
+
+  @Test
+  public void testNormalize() {
+    Assert.assertEquals("select a from t;", SqlParserUtil.normalize("  select   a\tfrom t; \n"));
+    Assert.assertEquals("select a\nfrom t;", SqlParserUtil.normalize("select a \r\n  from t;"));
+    // 引号和注释中的空白保持不变
+    Assert.assertEquals("select 'a  b', \"c \\\"  d\" from `e  f`;",
+                        SqlParserUtil.normalize("select  'a  b',  \"c \\\"  d\"  from `e  f`;"));
+    Assert.assertEquals("select a -- x  y\nfrom t;",
+                        SqlParserUtil.normalize("select a  -- x  y\n  from t;"));
+  }
+
+  @Test
+  public void testCache() throws SQLException {
+    SqlParserUtil.clearCache();
+    String sql = "from sale_detail insert overwrite table t partition (ds='1') select a;";
+    long parsed = SqlParserUtil.getFullParseCount();
+    long hits = SqlParserUtil.getCacheHitCount();
+    Assert.assertFalse(SqlParserUtil.isSelect(sql));
+    Assert.assertFalse(SqlParserUtil.hasResultSet("  " + sql.replace(" ", "   ")));
+    Assert.assertFalse(SqlParserUtil.isSelect(sql + "\n"));
+    Assert.assertEquals(parsed + 1, SqlParserUtil.getFullParseCount());
+    Assert.assertEquals(hits + 2, SqlParserUtil.getCacheHitCount());
+
+    // 容量有限, 淘汰最久未使用的语句
+    for (int i = 0; i <= SqlParserUtil.CACHE_CAPACITY; i++) {
+      Assert.assertTrue(SqlParserUtil.hasResultSet("from t" + i + " select a;"));
+    }
+    parsed = SqlParserUtil.getFullParseCount();
+    Assert.assertFalse(SqlParserUtil.isSelect(sql));
+    Assert.assertEquals(parsed + 1, SqlParserUtil.getFullParseCount());
+  }
+}
@@ -0,0 +1,261 @@
+package com.aliyun.odps.tunnel.hasher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.TimeStampNanoVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+public class KeyHasherTest {
+
+  private static final String[] VERSIONS = {"default", "legacy"};
+
+  private static final String[] STRINGS = {
+      "", "a", "hello world", "中文", "éè", "😀 emoji", "\ud800 unpaired",
+      "tail \udc00", "\ud83d"
+  };
+
+  @Test
+  public void testPrimitiveHashers() {
+    Random random = new Random(0);
+    for (String version : VERSIONS) {
+      for (int i = 0; i < 1000; i++) {
+        long l = random.nextLong();
+        int n = random.nextInt();
+        double d = random.nextDouble() * l;
+        float f = random.nextFloat() * n;
+        Assert.assertEquals(TypeHasher.hash(OdpsType.BIGINT, l, version),
+                            TypeHasher.hashLong(l, version));
+        Assert.assertEquals(TypeHasher.hash(OdpsType.INT, n, version),
+                            TypeHasher.hashInt(n, version));
+        Assert.assertEquals(TypeHasher.hash(OdpsType.SMALLINT, (short) n, version),
+                            TypeHasher.hashInt((short) n, version));
+        Assert.assertEquals(TypeHasher.hash(OdpsType.TINYINT, (byte) n, version),
+                            TypeHasher.hashInt((byte) n, version));
+        Assert.assertEquals(TypeHasher.hash(OdpsType.DOUBLE, d, version),
+                            TypeHasher.hashDouble(d, version));
+        Assert.assertEquals(TypeHasher.hash(OdpsType.FLOAT, f, version),
+                            TypeHasher.hashFloat(f, version));
+      }
+      for (String s : new String[]{"", "a", "hello world", "中文", "😀"}) {
+        byte[] bytes = ("xx" + s).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(TypeHasher.hash(OdpsType.STRING, s, version),
+                            TypeHasher.hashBytes(bytes, 2, bytes.length - 2, version));
+      }
+    }
+    Assert.assertEquals(TypeHasher.hash(OdpsType.BIGINT, 10L), TypeHasher.hashLong(10L));
+  }
+
+  @Test
+  public void testRecordKeyHasher() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_tinyint", OdpsType.TINYINT));
+    schema.addColumn(new Column("c_smallint", OdpsType.SMALLINT));
+    schema.addColumn(new Column("c_int", OdpsType.INT));
+    schema.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    schema.addColumn(new Column("c_float", OdpsType.FLOAT));
+    schema.addColumn(new Column("c_double", OdpsType.DOUBLE));
+    schema.addColumn(new Column("c_boolean", OdpsType.BOOLEAN));
+    schema.addColumn(new Column("c_string", OdpsType.STRING));
+    schema.addColumn(new Column("c_varchar", TypeInfoFactory.getVarcharTypeInfo(64)));
+    schema.addColumn(new Column("c_char", TypeInfoFactory.getCharTypeInfo(64)));
+    schema.addColumn(new Column("c_date", OdpsType.DATE));
+    schema.addColumn(new Column("c_datetime", OdpsType.DATETIME));
+    schema.addColumn(new Column("c_timestamp", OdpsType.TIMESTAMP));
+    schema.addColumn(new Column("c_binary", OdpsType.BINARY));
+    List<Integer> keys = new ArrayList<>();
+    for (int i = 0; i < schema.getColumns().size(); i++) {
+      keys.add(i);
+    }
+
+    Random random = new Random(1);
+    for (String version : VERSIONS) {
+      KeyHasher keyHasher = new KeyHasher(schema, keys, version);
+      for (int i = 0; i < 500; i++) {
+        String s = STRINGS[random.nextInt(STRINGS.length)];
+        Object[] values = {
+            (byte) random.nextInt(), (short) random.nextInt(), random.nextInt(),
+            random.nextLong(), random.nextFloat(), random.nextDouble(), random.nextBoolean(),
+            s, new Varchar(s), new Char(s),
+            LocalDate.ofEpochDay(random.nextInt(100000) - 50000),
+            ZonedDateTime.ofInstant(Instant.ofEpochMilli(random.nextLong() >> 20),
+                                    ZoneId.systemDefault()),
+            Instant.ofEpochSecond(random.nextInt(), random.nextInt(1000000000)),
+            new Binary(s.getBytes(StandardCharsets.UTF_8))
+        };
+        // null key columns hash to 0
+        if (i % 10 == 0) {
+          values[random.nextInt(values.length)] = null;
+        }
+        ArrayRecord record = new ArrayRecord(schema.getColumns().toArray(new Column[0]), values);
+        Assert.assertEquals(expectedHash(schema, keys, values, version), keyHasher.hash(record));
+        Assert.assertEquals(expectedHash(schema, keys, values, version) % 7,
+                            keyHasher.bucket(record, 7));
+      }
+
+      // STRING values stored as utf-8 bytes
+      KeyHasher stringHasher = new KeyHasher(schema, Arrays.asList(7), version);
+      for (String s : STRINGS) {
+        ArrayRecord record = new ArrayRecord(schema.getColumns().toArray(new Column[0]));
+        record.set(7, s.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(expectedHash(schema, Arrays.asList(7), new Object[]{null, null, null,
+            null, null, null, null, s}, version), stringHasher.hash(record));
+      }
+    }
+  }
+
+  @Test
+  public void testArrowKeyHasher() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_bigint", OdpsType.BIGINT));
+    schema.addColumn(new Column("c_int", OdpsType.INT));
+    schema.addColumn(new Column("c_string", OdpsType.STRING));
+    schema.addColumn(new Column("c_date", OdpsType.DATE));
+    schema.addColumn(new Column("c_datetime", OdpsType.DATETIME));
+    schema.addColumn(new Column("c_timestamp", OdpsType.TIMESTAMP));
+    List<Integer> keys = Arrays.asList(0, 1, 2, 3, 4, 5);
+
+    int rowCount = 300;
+    Random random = new Random(2);
+    try (BufferAllocator allocator = new RootAllocator();
+         BigIntVector bigints = new BigIntVector("c_bigint", allocator);
+         IntVector ints = new IntVector("c_int", allocator);
+         VarCharVector strings = new VarCharVector("c_string", allocator);
+         DateDayVector dates = new DateDayVector("c_date", allocator);
+         TimeStampMilliVector datetimes = new TimeStampMilliVector("c_datetime", allocator);
+         TimeStampNanoVector timestamps = new TimeStampNanoVector("c_timestamp", allocator)) {
+      Object[][] rows = new Object[rowCount][];
+      for (int row = 0; row < rowCount; row++) {
+        long l = random.nextLong();
+        int n = random.nextInt();
+        byte[] bytes;
+        String s;
+        if (row % 50 == 0) {
+          // malformed utf-8 is hashed as the decoded string
+          bytes = new byte[]{'a', (byte) 0xed, (byte) 0xa0, (byte) 0x80, (byte) 0xff};
+          s = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+          s = STRINGS[random.nextInt(STRINGS.length)] + row;
+          bytes = s.getBytes(StandardCharsets.UTF_8);
+          s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int day = random.nextInt(100000) - 50000;
+        long millis = random.nextLong() >> 20;
+        long nanos = random.nextLong() >> 2;
+        bigints.setSafe(row, l);
+        ints.setSafe(row, n);
+        strings.setSafe(row, bytes);
+        dates.setSafe(row, day);
+        datetimes.setSafe(row, millis);
+        timestamps.setSafe(row, nanos);
+        rows[row] = new Object[]{
+            l, n, s, LocalDate.ofEpochDay(day),
+            ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()),
+            Instant.ofEpochSecond(Math.floorDiv(nanos, 1000000000L),
+                                  Math.floorMod(nanos, 1000000000L))
+        };
+      }
+      FieldVector[] vectors = {bigints, ints, strings, dates, datetimes, timestamps};
+      for (FieldVector vector : vectors) {
+        vector.setValueCount(rowCount);
+      }
+
+      for (String version : VERSIONS) {
+        KeyHasher keyHasher = new KeyHasher(schema, keys, version);
+        int[] buckets = new int[rowCount];
+        keyHasher.buckets(vectors, rowCount, 13, buckets);
+        for (int row = 0; row < rowCount; row++) {
+          Assert.assertEquals(expectedHash(schema, keys, rows[row], version) % 13, buckets[row]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testArrowBinaryAndBoolean() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("c_boolean", OdpsType.BOOLEAN));
+    schema.addColumn(new Column("c_binary", OdpsType.BINARY));
+    List<Integer> keys = Arrays.asList(0, 1);
+
+    int rowCount = 300;
+    Random random = new Random(3);
+    try (BufferAllocator allocator = new RootAllocator();
+         BitVector booleans = new BitVector("c_boolean", allocator);
+         VarBinaryVector binaries = new VarBinaryVector("c_binary", allocator)) {
+      Object[][] rows = new Object[rowCount][];
+      for (int row = 0; row < rowCount; row++) {
+        // all byte values, including the ones escaped by quoted-printable encoding
+        byte[] bytes = new byte[random.nextInt(20)];
+        random.nextBytes(bytes);
+        boolean b = random.nextBoolean();
+        rows[row] = new Object[]{b, new Binary(bytes)};
+        if (row % 10 == 0) {
+          booleans.setNull(row);
+          rows[row][0] = null;
+        } else {
+          booleans.setSafe(row, b ? 1 : 0);
+        }
+        if (row % 15 == 0) {
+          binaries.setNull(row);
+          rows[row][1] = null;
+        } else {
+          binaries.setSafe(row, bytes);
+        }
+      }
+      FieldVector[] vectors = {booleans, binaries};
+      for (FieldVector vector : vectors) {
+        vector.setValueCount(rowCount);
+      }
+
+      for (String version : VERSIONS) {
+        KeyHasher keyHasher = new KeyHasher(schema, keys, version);
+        int[] buckets = new int[rowCount];
+        // a large bucket number keeps almost the whole hash value
+        keyHasher.buckets(vectors, rowCount, Integer.MAX_VALUE, buckets);
+        for (int row = 0; row < rowCount; row++) {
+          Assert.assertEquals(expectedHash(schema, keys, rows[row], version) % Integer.MAX_VALUE,
+                              buckets[row]);
+        }
+      }
+    }
+  }
+
+  private static int expectedHash(TableSchema schema, List<Integer> keys, Object[] values,
+                                  String version) {
+    int[] hashes = new int[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      int key = keys.get(i);
+      hashes[i] = TypeHasher.hash(schema.getColumn(key).getTypeInfo().getOdpsType(), values[key],
+                                  version);
+    }
+    return TypeHasher.CombineHashVal(hashes);
+  }
+}
@@ -0,0 +1,272 @@
+package com.aliyun.odps.tunnel.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
+import com.aliyun.odps.commons.transport.MockOdpsServer;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.tunnel.streams.UpsertStream;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 模拟 upsert 接口，比较 Arrow 批量写入与逐条写入发送到服务端的数据
+ *
+ * <p>表 p.t 的结构为 (k bigint, s string, d double)，主键为 k，共 4 个桶</p>
+ */
+public class UpsertStreamImplTest {
+
+  private static final String SESSION_JSON =
+      "{\"id\":\"up\",\"status\":\"normal\",\"hasher\":\"default\",\"hash_key\":[\"k\"],"
+      + "\"enable_partial_update\":true,"
+      + "\"schema\":{\"columns\":["
+      + "{\"name\":\"k\",\"type\":\"bigint\",\"nullable\":\"false\",\"column_id\":\"1\"},"
+      + "{\"name\":\"s\",\"type\":\"string\",\"nullable\":\"true\",\"column_id\":\"2\"},"
+      + "{\"name\":\"d\",\"type\":\"double\",\"nullable\":\"true\",\"column_id\":\"3\"}]},"
+      + "\"slots\":[{\"slot_id\":\"1\",\"buckets\":[0,1,2,3],\"worker_addr\":\"127.0.0.1:0\"}]}";
+
+  private MockOdpsServer server;
+  private UpsertSessionImpl session;
+  private BufferAllocator allocator;
+  // 每个桶收到的记录，按请求顺序拼接
+  private final Map<Integer, List<String>> received = new TreeMap<>();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockOdpsServer().handle("/projects/p/tables/t/upserts", this::handle);
+    session = (UpsertSessionImpl) server.newTableTunnel().buildUpsertSession("p", "t").build();
+    allocator = new RootAllocator();
+  }
+
+  @After
+  public void tearDown() {
+    session.close();
+    allocator.close();
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    if ("POST".equals(exchange.getRequestMethod())) {
+      MockOdpsServer.reply(exchange, 200, "application/json", SESSION_JSON);
+    } else if ("PUT".equals(exchange.getRequestMethod())) {
+      int bucket = Integer.parseInt(MockOdpsServer.parseQuery(exchange).get("bucketid"));
+      Assert.assertEquals("deflate", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+      ProtobufRecordStreamReader reader = new ProtobufRecordStreamReader(
+          session.getRecordSchema(), exchange.getRequestBody(), new CompressOption());
+      List<String> records = new ArrayList<>();
+      Record record;
+      while ((record = reader.read()) != null) {
+        records.add(format(record));
+      }
+      synchronized (received) {
+        received.computeIfAbsent(bucket, b -> new ArrayList<>()).addAll(records);
+      }
+      MockOdpsServer.reply(exchange, 200, null, null);
+    } else {
+      MockOdpsServer.reply(exchange, 400, null, null);
+    }
+  }
+
+  /**
+   * 数据列加上 __operation 和 __value_cols
+   */
+  private static String format(Record record) {
+    return Arrays.asList(record.getBigint("k"), record.getString("s"), record.getDouble("d"),
+                         record.get("__operation"), record.get("__value_cols")).toString();
+  }
+
+  private Map<Integer, List<String>> takeReceived() {
+    synchronized (received) {
+      Map<Integer, List<String>> result = new TreeMap<>(received);
+      received.clear();
+      return result;
+    }
+  }
+
+  private Record newRecord(long k, String s, Double d) {
+    Record record = session.newRecord();
+    record.setBigint("k", k);
+    record.setString("s", s);
+    record.setDouble("d", d);
+    return record;
+  }
+
+  private VectorSchemaRoot newRoot(int rows, boolean withS, boolean withD) {
+    List<FieldVector> vectors = new ArrayList<>();
+    BigIntVector k = new BigIntVector("k", allocator);
+    k.allocateNew(rows);
+    vectors.add(k);
+    if (withS) {
+      VarCharVector s = new VarCharVector("s", allocator);
+      s.allocateNew(rows);
+      vectors.add(s);
+    }
+    if (withD) {
+      Float8Vector d = new Float8Vector("D", allocator);
+      d.allocateNew(rows);
+      vectors.add(d);
+    }
+    VectorSchemaRoot root = new VectorSchemaRoot(vectors);
+    root.setRowCount(rows);
+    return root;
+  }
+
+  private static void setRow(VectorSchemaRoot root, int row, long k, String s, Double d) {
+    ((BigIntVector) root.getVector("k")).setSafe(row, k);
+    VarCharVector sv = (VarCharVector) root.getVector("s");
+    if (sv != null) {
+      if (s == null) {
+        sv.setNull(row);
+      } else {
+        sv.setSafe(row, s.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Float8Vector dv = (Float8Vector) root.getVector("D");
+    if (dv != null) {
+      if (d == null) {
+        dv.setNull(row);
+      } else {
+        dv.setSafe(row, d);
+      }
+    }
+  }
+
+  private static String value(long k) {
+    return k % 3 == 0 ? null : "v" + k;
+  }
+
+  private static Double doubleValue(long k) {
+    return k % 5 == 0 ? null : k * 1.5;
+  }
+
+  @Test
+  public void testMixedUpsertDelete() throws Exception {
+    // 逐条写入：upsert [0, 40)，delete [10, 20)，再 upsert [30, 50)
+    UpsertStream stream = session.buildUpsertStream().build();
+    for (long k = 0; k < 40; k++) {
+      stream.upsert(newRecord(k, value(k), doubleValue(k)));
+    }
+    for (long k = 10; k < 20; k++) {
+      Record record = session.newRecord();
+      record.setBigint("k", k);
+      stream.delete(record);
+    }
+    for (long k = 30; k < 50; k++) {
+      stream.upsert(newRecord(k, value(k + 1), doubleValue(k + 1)));
+    }
+    stream.close();
+    Map<Integer, List<String>> expected = takeReceived();
+    Assert.assertEquals(4, expected.size());
+
+    stream = session.buildUpsertStream().build();
+    try (VectorSchemaRoot root = newRoot(40, true, true)) {
+      for (int i = 0; i < 40; i++) {
+        setRow(root, i, i, value(i), doubleValue(i));
+      }
+      stream.upsert(root);
+    }
+    // delete 只需要主键列
+    try (VectorSchemaRoot root = newRoot(10, false, false)) {
+      for (int i = 0; i < 10; i++) {
+        setRow(root, i, 10 + i, null, null);
+      }
+      stream.delete(root);
+    }
+    try (VectorSchemaRoot root = newRoot(20, true, true)) {
+      for (int i = 0; i < 20; i++) {
+        long k = 30 + i;
+        setRow(root, i, k, value(k + 1), doubleValue(k + 1));
+      }
+      stream.upsert(root);
+    }
+    stream.close();
+    Assert.assertEquals(expected, takeReceived());
+  }
+
+  @Test
+  public void testPartialUpsert() throws Exception {
+    List<String> upsertCols = Collections.singletonList("s");
+    UpsertStream stream = session.buildUpsertStream().build();
+    for (long k = 0; k < 30; k++) {
+      Record record = session.newRecord();
+      record.setBigint("k", k);
+      record.setString("s", value(k));
+      stream.upsert(record, upsertCols);
+    }
+    stream.close();
+    Map<Integer, List<String>> expected = takeReceived();
+    Assert.assertTrue(expected.values().iterator().next().get(0).endsWith("[2]]"));
+
+    // root 中不包含 d 列，按 null 写入
+    stream = session.buildUpsertStream().build();
+    try (VectorSchemaRoot root = newRoot(30, true, false)) {
+      for (int i = 0; i < 30; i++) {
+        setRow(root, i, i, value(i), null);
+      }
+      stream.upsert(root, upsertCols);
+    }
+    stream.close();
+    Assert.assertEquals(expected, takeReceived());
+
+    // 全列 upsert 要求包含所有列
+    stream = session.buildUpsertStream().build();
+    try (VectorSchemaRoot root = newRoot(1, true, false)) {
+      setRow(root, 0, 0, "a", null);
+      stream.upsert(root);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("Column not found"));
+    }
+    // 部分列 upsert 要求包含 upsertCols
+    try (VectorSchemaRoot root = newRoot(1, false, true)) {
+      setRow(root, 0, 0, null, 1.0);
+      stream.upsert(root, upsertCols);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("Column not found"));
+    }
+  }
+
+  @Test
+  public void testNullKey() throws Exception {
+    UpsertStream stream = session.buildUpsertStream().build();
+    Record record = session.newRecord();
+    record.setString("s", "a");
+    try {
+      stream.upsert(record);
+      Assert.fail();
+    } catch (TunnelException e) {
+      Assert.assertTrue(e.getMessage().contains("must have primary key value"));
+    }
+    try (VectorSchemaRoot root = newRoot(2, true, true)) {
+      setRow(root, 0, 0, "a", 1.0);
+      ((BigIntVector) root.getVector("k")).setNull(1);
+      stream.upsert(root);
+      Assert.fail();
+    } catch (TunnelException e) {
+      Assert.assertTrue(e.getMessage().contains("must have primary key value"));
+    }
+    stream.close();
+    Assert.assertTrue(takeReceived().isEmpty());
+  }
+}
@@ -0,0 +1,89 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+public class ArrowHttpInputStreamTest {
+
+  private static byte[] frame(byte[] data, OutputStream compressed, ByteArrayOutputStream sink)
+      throws IOException {
+    ArrowHttpOutputStream out = new ArrowHttpOutputStream(compressed, 4096);
+    // 分多次写入, 跨越多个 chunk
+    int pos = 0;
+    while (pos < data.length) {
+      int len = Math.min(1000, data.length - pos);
+      out.write(ByteBuffer.wrap(data, pos, len));
+      pos += len;
+    }
+    out.close();
+    return sink.toByteArray();
+  }
+
+  private static byte[] readAll(byte[] framed, CompressOption option) throws IOException {
+    ArrowHttpInputStream in = new ArrowHttpInputStream(new ByteArrayInputStream(framed), option);
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(777);
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      result.write(buffer.array(), 0, n);
+      buffer.clear();
+    }
+    in.close();
+    return result.toByteArray();
+  }
+
+  private static byte[] data() {
+    byte[] data = new byte[100000];
+    Random random = new Random(0);
+    for (int i = 0; i < data.length; i++) {
+      // 可压缩的数据
+      data[i] = (byte) (random.nextInt(8) + 'a');
+    }
+    return data;
+  }
+
+  @Test
+  public void testZstd() throws IOException {
+    byte[] data = data();
+    ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    byte[] framed = frame(data, new ZstdOutputStream(sink), sink);
+    Assert.assertTrue(framed.length < data.length / 2);
+
+    CompressOption option =
+        new CompressOption(CompressOption.CompressAlgorithm.ODPS_ARROW_ZSTD, -1, 0);
+    Assert.assertArrayEquals(data, readAll(framed, option));
+  }
+
+  @Test
+  public void testLz4AndCrcCheck() throws IOException {
+    byte[] data = data();
+    ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    byte[] framed = frame(data, new LZ4FrameOutputStream(sink), sink);
+    CompressOption option =
+        new CompressOption(CompressOption.CompressAlgorithm.ODPS_ARROW_LZ4_FRAME, -1, 0);
+    Assert.assertArrayEquals(data, readAll(framed, option));
+
+    // 被截断的数据在校验时报错, reader 据此重新打开连接
+    sink = new ByteArrayOutputStream();
+    framed = frame(data, sink, sink);
+    byte[] truncated = new byte[framed.length - 5000];
+    System.arraycopy(framed, 0, truncated, 0, truncated.length);
+    try {
+      readAll(truncated, null);
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("CRC"));
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xerial.snappy.PureJavaCrc32C;
+
+public class ChecksumTest {
+
+  /**
+   * 逐个值计算的参考实现
+   */
+  private static class Reference {
+    PureJavaCrc32C crc = new PureJavaCrc32C();
+    ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    void update(long v) {
+      buf.clear();
+      buf.putLong(v);
+      crc.update(buf.array(), 0, 8);
+    }
+
+    void update(int v) {
+      buf.clear();
+      buf.putInt(v);
+      crc.update(buf.array(), 0, 4);
+    }
+
+    void update(double v) {
+      buf.clear();
+      buf.putDouble(v);
+      crc.update(buf.array(), 0, 8);
+    }
+
+    void update(float v) {
+      buf.clear();
+      buf.putFloat(v);
+      crc.update(buf.array(), 0, 4);
+    }
+  }
+
+  @Test
+  public void testSameAsPerValueUpdate() {
+    Random random = new Random(0);
+    Checksum checksum = new Checksum();
+    Reference reference = new Reference();
+    for (int record = 0; record < 1000; record++) {
+      int fields = random.nextInt(100);
+      for (int i = 0; i < fields; i++) {
+        switch (random.nextInt(7)) {
+          case 0: {
+            long v = random.nextLong();
+            checksum.update(v);
+            reference.update(v);
+            break;
+          }
+          case 1: {
+            int v = random.nextInt();
+            checksum.update(v);
+            reference.update(v);
+            break;
+          }
+          case 2: {
+            double v = random.nextInt(3) == 0 ? Double.NaN : random.nextDouble();
+            checksum.update(v);
+            reference.update(v);
+            break;
+          }
+          case 3: {
+            float v = random.nextFloat();
+            checksum.update(v);
+            reference.update(v);
+            break;
+          }
+          case 4: {
+            boolean v = random.nextBoolean();
+            checksum.update(v);
+            reference.crc.update(v ? 1 : 0);
+            break;
+          }
+          default: {
+            // 短的和超过缓冲区的 byte 数组
+            byte[] bytes = new byte[random.nextInt(3) == 0 ? random.nextInt(2000) : random.nextInt(20)];
+            random.nextBytes(bytes);
+            int off = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            checksum.update(bytes, off, bytes.length - off);
+            reference.crc.update(bytes, off, bytes.length - off);
+          }
+        }
+      }
+      Assert.assertEquals(reference.crc.getValue(), checksum.getValue());
+      if (record % 3 == 0) {
+        checksum.reset();
+        reference.crc.reset();
+      }
+    }
+  }
+
+  @Test
+  public void testNewCrc32C() {
+    byte[] bytes = "123456789".getBytes();
+    java.util.zip.Checksum crc = Checksum.newCrc32C();
+    crc.update(bytes, 0, bytes.length);
+    // CRC32C 标准校验值
+    Assert.assertEquals(0xE3069283L, crc.getValue());
+  }
+}
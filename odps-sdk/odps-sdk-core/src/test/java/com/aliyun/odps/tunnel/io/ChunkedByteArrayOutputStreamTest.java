@@ -0,0 +1,76 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkedByteArrayOutputStreamTest {
+
+  private static byte[] randomBytes(int len) {
+    byte[] bytes = new byte[len];
+    new Random(len).nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testWriteAcrossChunks() throws Exception {
+    byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+    ChunkedByteArrayOutputStream out = new ChunkedByteArrayOutputStream();
+    out.write(data[0]);
+    out.write(data, 1, 999);
+    out.write(data, 1000, data.length - 1000);
+
+    Assert.assertEquals(data.length, out.size());
+    Assert.assertArrayEquals(data, out.toByteArray());
+
+    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    out.writeTo(copy);
+    Assert.assertArrayEquals(data, copy.toByteArray());
+
+    ByteArrayOutputStream wrapped = new ByteArrayOutputStream();
+    for (ByteBuffer buffer : out.toByteBuffers()) {
+      wrapped.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    Assert.assertArrayEquals(data, wrapped.toByteArray());
+  }
+
+  @Test
+  public void testReuseAfterReset() throws Exception {
+    ChunkedByteArrayOutputStream out = new ChunkedByteArrayOutputStream(16);
+    out.write(randomBytes(100 * 1024));
+    ByteBuffer[] before = out.toByteBuffers();
+
+    out.reset();
+    Assert.assertEquals(0, out.size());
+    Assert.assertEquals(0, out.toByteArray().length);
+
+    byte[] data = randomBytes(50 * 1024);
+    out.write(data);
+    Assert.assertArrayEquals(data, out.toByteArray());
+    // chunks allocated before reset are reused
+    Assert.assertSame(before[0].array(), out.toByteBuffers()[0].array());
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testToString() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      builder.append("数据").append(i);
+    }
+    String text = builder.toString();
+    byte[] data = text.getBytes(StandardCharsets.UTF_8);
+    ChunkedByteArrayOutputStream out = new ChunkedByteArrayOutputStream(16);
+    out.write(data, 0, data.length);
+
+    // the buffer of the parent class is empty, all of these have to read the chunks
+    Assert.assertEquals(text, out.toString("UTF-8"));
+    Assert.assertEquals(text, out.toString(StandardCharsets.UTF_8));
+    Assert.assertEquals(new String(data), out.toString());
+    Assert.assertEquals(new String(data, 0), out.toString(0));
+  }
+}
@@ -0,0 +1,170 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.commons.transport.MockOdpsServer;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 模拟 table tunnel 的上传和下载接口, 表 p.t 的结构为 (id bigint, name string)
+ *
+ * <p>下载时第 i 条记录为 (i, "name_i"), 上传的 block 按 blockId 保存</p>
+ */
+class MockTunnelServer implements AutoCloseable {
+
+  static final CompressOption RAW =
+      new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+
+  private static final String SCHEMA_JSON =
+      "{\"columns\":[{\"name\":\"id\",\"type\":\"bigint\",\"nullable\":\"true\"},"
+      + "{\"name\":\"name\",\"type\":\"string\",\"nullable\":\"true\"}]}";
+
+  private final MockOdpsServer server;
+  private final TableSchema schema = new TableSchema();
+  private final long recordCount;
+
+  private final Map<Long, List<Record>> blocks = new ConcurrentSkipListMap<>();
+  private final Set<Long> failingBlocks = ConcurrentHashMap.newKeySet();
+  private final Set<Long> failingRowStarts = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger blockRequests = new AtomicInteger();
+
+  MockTunnelServer(long recordCount) throws IOException {
+    this.recordCount = recordCount;
+    schema.addColumn(new Column("id", OdpsType.BIGINT));
+    schema.addColumn(new Column("name", OdpsType.STRING));
+    server = new MockOdpsServer().handle("/projects/p/tables/t", this::handle);
+  }
+
+  TableTunnel newTunnel() {
+    return server.newTableTunnel();
+  }
+
+  static Record newRecord(TableSchema schema, long id) {
+    Record record = new ArrayRecord(schema.getColumns().toArray(new Column[0]));
+    record.setBigint(0, id);
+    record.setString(1, "name_" + id);
+    return record;
+  }
+
+  /**
+   * 已上传的记录 id, 按 blockId 顺序拼接
+   */
+  List<Long> getUploadedIds() {
+    List<Long> ids = new ArrayList<>();
+    for (List<Record> records : blocks.values()) {
+      for (Record record : records) {
+        ids.add(record.getBigint(0));
+      }
+    }
+    return ids;
+  }
+
+  int getBlockCount() {
+    return blocks.size();
+  }
+
+  int getBlockRequests() {
+    return blockRequests.get();
+  }
+
+  /**
+   * 对该 block 的上传请求返回 500
+   */
+  void failBlock(long blockId) {
+    failingBlocks.add(blockId);
+  }
+
+  /**
+   * 对从该位置开始的下载请求返回 500
+   */
+  void failRowStart(long start) {
+    failingRowStarts.add(start);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    Map<String, String> params = MockOdpsServer.parseQuery(exchange);
+    String method = exchange.getRequestMethod();
+    if ("POST".equals(method) && params.containsKey("uploads")) {
+      sendJson(exchange, "{\"UploadID\":\"u\",\"Status\":\"normal\",\"Schema\":" + SCHEMA_JSON
+                         + "}");
+    } else if ("POST".equals(method) && params.containsKey("downloads")) {
+      sendJson(exchange, "{\"DownloadID\":\"d\",\"Status\":\"normal\",\"RecordCount\":"
+                         + recordCount + ",\"Schema\":" + SCHEMA_JSON + "}");
+    } else if ("PUT".equals(method) && params.containsKey("blockid")) {
+      handleBlock(exchange, Long.parseLong(params.get("blockid")));
+    } else if ("GET".equals(method) && params.containsKey("data")) {
+      handleData(exchange, params.get("rowrange"));
+    } else {
+      sendError(exchange, 400);
+    }
+  }
+
+  private void handleBlock(HttpExchange exchange, long blockId) throws IOException {
+    blockRequests.incrementAndGet();
+    if (failingBlocks.contains(blockId)) {
+      sendError(exchange, 500);
+      return;
+    }
+    ProtobufRecordStreamReader reader =
+        new ProtobufRecordStreamReader(schema, exchange.getRequestBody(), RAW);
+    List<Record> records = new ArrayList<>();
+    Record record;
+    while ((record = reader.read()) != null) {
+      records.add(record.clone());
+    }
+    blocks.put(blockId, records);
+    MockOdpsServer.reply(exchange, 200, null, null);
+  }
+
+  private void handleData(HttpExchange exchange, String rowRange) throws IOException {
+    String[] range = rowRange.substring(1, rowRange.length() - 1).split(",");
+    long start = Long.parseLong(range[0].trim());
+    long count = Long.parseLong(range[1].trim());
+    if (failingRowStarts.contains(start)) {
+      sendError(exchange, 500);
+      return;
+    }
+    exchange.sendResponseHeaders(200, 0);
+    OutputStream out = exchange.getResponseBody();
+    try {
+      ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(schema, out, RAW);
+      for (long i = start; i < start + count; i++) {
+        writer.write(newRecord(schema, i));
+      }
+      writer.close();
+    } catch (IOException e) {
+      // 客户端提前关闭连接
+    }
+  }
+
+  private static void sendJson(HttpExchange exchange, String json) throws IOException {
+    MockOdpsServer.reply(exchange, 200, "application/json", json);
+  }
+
+  private static void sendError(HttpExchange exchange, int status) throws IOException {
+    MockOdpsServer.reply(exchange, status, null,
+                         "{\"Code\":\"InternalServerError\",\"Message\":\"mock error " + status
+                         + "\"}");
+  }
+
+  @Override
+  public void close() {
+    server.close();
+  }
+}
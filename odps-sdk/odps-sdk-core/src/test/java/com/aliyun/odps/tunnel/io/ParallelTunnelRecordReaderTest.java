@@ -0,0 +1,156 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+
+public class ParallelTunnelRecordReaderTest {
+
+  private static final int RECORD_COUNT = 10000;
+
+  private MockTunnelServer server;
+  private TableTunnel.DownloadSession session;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockTunnelServer(RECORD_COUNT);
+    session = server.newTunnel().createDownloadSession("p", "t");
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private static List<Long> readIds(ParallelTunnelRecordReader reader) throws IOException {
+    List<Long> ids = new ArrayList<>();
+    Record record;
+    while ((record = reader.read()) != null) {
+      Assert.assertEquals("name_" + record.getBigint(0), record.getString(1));
+      ids.add(record.getBigint(0));
+    }
+    return ids;
+  }
+
+  private static List<Long> range(long from, long to) {
+    List<Long> ids = new ArrayList<>();
+    for (long i = from; i < to; i++) {
+      ids.add(i);
+    }
+    return ids;
+  }
+
+  private static int countWorkerThreads() {
+    int count = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.isAlive() && "odps-tunnel-parallel-reader".equals(t.getName())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testOrdered() throws Exception {
+    try (ParallelTunnelRecordReader reader = session.newParallelRecordReaderBuilder(100, 9000)
+        .setThreadNum(4)
+        .setSplitSize(700)
+        .setPrefetchSize(50)
+        .build()) {
+      Assert.assertEquals(13, reader.getSplits().size());
+      Assert.assertEquals(range(100, 9100), readIds(reader));
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void testUnordered() throws Exception {
+    try (ParallelTunnelRecordReader reader = session.newParallelRecordReaderBuilder(0, RECORD_COUNT)
+        .setThreadNum(3)
+        .setSplitSize(1000)
+        .setOrdered(false)
+        .build()) {
+      List<Long> ids = readIds(reader);
+      Collections.sort(ids);
+      Assert.assertEquals(range(0, RECORD_COUNT), ids);
+    }
+  }
+
+  @Test
+  public void testSplitHandler() throws Exception {
+    final List<List<Long>> bySplit = new ArrayList<>();
+    ParallelTunnelRecordReader reader = session.newParallelRecordReaderBuilder(0, 1000)
+        .setThreadNum(2)
+        .setSplitSize(300)
+        .build();
+    for (int i = 0; i < reader.getSplits().size(); i++) {
+      bySplit.add(Collections.synchronizedList(new ArrayList<>()));
+    }
+    reader.read(new ParallelTunnelRecordReader.SplitHandler() {
+      @Override
+      public void onRecord(ParallelTunnelRecordReader.Split split, Record record) {
+        bySplit.get(split.getIndex()).add(record.getBigint(0));
+      }
+    });
+    reader.close();
+    for (ParallelTunnelRecordReader.Split split : reader.getSplits()) {
+      Assert.assertEquals(range(split.getStart(), split.getStart() + split.getCount()),
+                          bySplit.get(split.getIndex()));
+    }
+  }
+
+  @Test
+  public void testProducerError() throws Exception {
+    // 第三个 split 下载失败, 错误从 read() 抛出
+    server.failRowStart(2000);
+    ParallelTunnelRecordReader reader = session.newParallelRecordReaderBuilder(0, RECORD_COUNT)
+        .setThreadNum(4)
+        .setSplitSize(1000)
+        .setRetryTimes(0)
+        .build();
+    try {
+      readIds(reader);
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("mock error 500"));
+    } finally {
+      reader.close();
+    }
+    try {
+      reader.read();
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+
+  @Test
+  public void testEarlyClose() throws Exception {
+    int before = countWorkerThreads();
+    ParallelTunnelRecordReader reader = session.newParallelRecordReaderBuilder(0, RECORD_COUNT)
+        .setThreadNum(4)
+        .setPrefetchSize(10)
+        .build();
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(i, reader.read().getBigint(0).longValue());
+    }
+    // 此时下载线程阻塞在预取队列上
+    Assert.assertTrue(countWorkerThreads() > before);
+    reader.close();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (countWorkerThreads() > before && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(before, countWorkerThreads());
+  }
+}
@@ -0,0 +1,147 @@
+package com.aliyun.odps.tunnel.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.util.RetryStrategy;
+import com.aliyun.odps.tunnel.TableTunnel;
+
+public class TunnelBufferedWriterTest {
+
+  private static final int RECORD_COUNT = 5000;
+
+  private MockTunnelServer server;
+  private TableTunnel.UploadSession session;
+  private TableSchema schema;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockTunnelServer(0);
+    session = server.newTunnel().createUploadSession("p", "t");
+    schema = session.getSchema();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private TunnelBufferedWriter openWriter(int maxPendingBlocks) throws Exception {
+    TunnelBufferedWriter writer =
+        (TunnelBufferedWriter) session.openBufferedWriter(MockTunnelServer.RAW);
+    // 每个 block 约 10 KB
+    writer.setBufferSize(1024 * 1024);
+    writer.setFlushThreshold(0.01F);
+    writer.setRetryStrategy(new RetryStrategy(0));
+    writer.setAsyncUpload(maxPendingBlocks);
+    return writer;
+  }
+
+  private static List<Long> range(int from, int to) {
+    List<Long> ids = new ArrayList<>();
+    for (long i = from; i < to; i++) {
+      ids.add(i);
+    }
+    return ids;
+  }
+
+  @Test
+  public void testAsyncOrder() throws Exception {
+    TunnelBufferedWriter writer = openWriter(2);
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      writer.write(MockTunnelServer.newRecord(schema, i));
+    }
+    writer.close();
+
+    Assert.assertTrue(server.getBlockCount() > 2);
+    // 按 blockId 拼接后与写入顺序一致
+    Assert.assertEquals(range(0, RECORD_COUNT), server.getUploadedIds());
+  }
+
+  @Test
+  public void testSameBlocksAsSync() throws Exception {
+    TunnelBufferedWriter writer = openWriter(0);
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      writer.write(MockTunnelServer.newRecord(schema, i));
+    }
+    writer.close();
+    int syncBlocks = server.getBlockCount();
+
+    tearDown();
+    setUp();
+    writer = openWriter(4);
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      writer.write(MockTunnelServer.newRecord(schema, i));
+    }
+    writer.close();
+    Assert.assertEquals(syncBlocks, server.getBlockCount());
+    Assert.assertEquals(range(0, RECORD_COUNT), server.getUploadedIds());
+  }
+
+  @Test
+  public void testFlushAndClose() throws Exception {
+    TunnelBufferedWriter writer = openWriter(2);
+    for (int i = 0; i < 10; i++) {
+      writer.write(MockTunnelServer.newRecord(schema, i));
+    }
+    Assert.assertEquals(0, server.getBlockCount());
+
+    // flush 等待所有数据块上传完成
+    writer.flush();
+    Assert.assertEquals(range(0, 10), server.getUploadedIds());
+    // 没有新数据时 flush 不上传
+    writer.flush();
+    Assert.assertEquals(1, server.getBlockRequests());
+
+    for (int i = 10; i < 20; i++) {
+      writer.write(MockTunnelServer.newRecord(schema, i));
+    }
+    writer.close();
+    Assert.assertEquals(range(0, 20), server.getUploadedIds());
+
+    try {
+      writer.write(MockTunnelServer.newRecord(schema, 20));
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+
+  @Test
+  public void testAsyncUploadError() throws Exception {
+    server.failBlock(1);
+    TunnelBufferedWriter writer = openWriter(2);
+    IOException error = null;
+    try {
+      for (int i = 0; i < RECORD_COUNT; i++) {
+        writer.write(MockTunnelServer.newRecord(schema, i));
+      }
+      writer.flush();
+    } catch (IOException e) {
+      error = e;
+    }
+    Assert.assertNotNull(error);
+    Assert.assertTrue(error.getMessage(), error.getMessage().contains("mock error 500"));
+
+    // 失败后所有操作都抛出同一个错误
+    try {
+      writer.write(MockTunnelServer.newRecord(schema, 0));
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Async upload failed"));
+    }
+    try {
+      writer.close();
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Async upload failed"));
+    }
+  }
+}
@@ -193,6 +193,11 @@ class CONF {
    */
   public final static String COMBINER_CACHE_ITEMS = "odps.mapred.combiner.cache.items";
 
+  /**
+   * Combiner缓存的内存大小(MB), 大于0时按内存而不是记录数缓存
+   */
+  public final static String COMBINER_CACHE_MEMORY = "odps.mapred.combiner.cache.memory.mb";
+
   /**
    * Combiner缓存的Spill阈值
    */
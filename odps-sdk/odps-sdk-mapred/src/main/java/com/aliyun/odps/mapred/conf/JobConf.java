@@ -751,6 +751,26 @@ public class JobConf extends Configuration {
     setInt(CONF.COMBINER_CACHE_ITEMS, size);
   }
 
+  /**
+   * 获取Combiner的缓存大小（MB），默认为0，表示按记录条数缓存。
+   * <p>
+   * 大于0并且没有设置自定义的key比较器，且分组列和排序列相同时，Combiner按分组列在哈希表中
+   * 聚合 map 的输出，缓存的数据超过该大小时排序并执行Combiner，此时忽略
+   * {@link #getCombinerCacheItems()}。
+   *
+   * @return Combiner的缓存大小（MB）
+   */
+  public int getCombinerCacheMemory() {
+    return getInt(CONF.COMBINER_CACHE_MEMORY, 0);
+  }
+
+  /**
+   * 设置Combiner的缓存大小（MB）
+   */
+  public void setCombinerCacheMemory(int mb) {
+    setInt(CONF.COMBINER_CACHE_MEMORY, mb);
+  }
+
   /**
    * 获取Combiner的缓存spill阈值，默认为0.5, 当combine后记录数超出该阈值所定的比例，
    * 则进行spill操作, 仅在CombinerOptimizeEnable为true的时候才生效。
@@ -0,0 +1,928 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.table.arrow;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FloatingPointVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.table.DataSchema;
+import com.aliyun.odps.table.arrow.accessor.ArrowVectorAccessor;
+import com.aliyun.odps.table.optimizer.predicate.BinaryPredicate;
+import com.aliyun.odps.table.optimizer.predicate.CompoundPredicate;
+import com.aliyun.odps.table.optimizer.predicate.Constant;
+import com.aliyun.odps.table.optimizer.predicate.InPredicate;
+import com.aliyun.odps.table.optimizer.predicate.Predicate;
+import com.aliyun.odps.table.optimizer.predicate.UnaryPredicate;
+import com.aliyun.odps.table.record.accessor.ArrowToRecordConverter;
+
+/**
+ * Evaluates a {@link Predicate} over arrow batches and produces selection vectors,
+ * i.e. the indexes of the rows that satisfy the predicate.
+ *
+ * <p>The predicate is compiled once into a tree of nodes. Each node narrows the rows
+ * of its input selection column by column, so a batch is scanned once per leaf instead
+ * of building a record per row.
+ *
+ * <p>Evaluation follows SQL three-valued logic: a comparison with null is unknown and
+ * unknown rows are not selected. Parts of the predicate that can not be evaluated on
+ * the client, such as raw predicates, column to column comparisons, columns missing
+ * from the batch or constants whose type does not match the column (the server may
+ * cast them), keep every row. A value that still can not be compared at runtime keeps
+ * its row as well, whether or not the part is negated. The result is therefore always
+ * a superset of the rows the predicate matches, which is safe for a residual filter.
+ */
+public class ArrowPredicateEvaluator {
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = -1;
+    // the row can not be evaluated and is selected whatever the expected result is
+    private static final int KEEP = 2;
+
+    private final Node root;
+    private final Map<String, Column> columns = new HashMap<>();
+
+    public ArrowPredicateEvaluator(Predicate predicate, DataSchema schema) {
+        for (Column column : schema.getColumns()) {
+            columns.put(column.getName().toLowerCase(), column);
+        }
+        this.root = compile(predicate);
+    }
+
+    /**
+     * @return true if no part of the predicate can be evaluated, every row is selected
+     */
+    public boolean isAlwaysTrue() {
+        return root instanceof KeepAllNode;
+    }
+
+    /**
+     * Selects the rows of the batch that satisfy the predicate.
+     *
+     * @param batch     arrow batch
+     * @param selection output buffer, at least as long as the row count of the batch
+     * @return number of selected rows, their indexes are written to the head of selection
+     *         in ascending order
+     */
+    public int select(VectorSchemaRoot batch, int[] selection) {
+        int rowCount = batch.getRowCount();
+        if (selection.length < rowCount) {
+            throw new IllegalArgumentException(
+                    "Selection buffer is too small, size: " + selection.length
+                    + ", rows: " + rowCount);
+        }
+        int[] rows = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = i;
+        }
+        return root.select(new Batch(batch), rows, rowCount, selection, true);
+    }
+
+    private Node compile(Predicate predicate) {
+        if (predicate instanceof CompoundPredicate) {
+            CompoundPredicate compound = (CompoundPredicate) predicate;
+            if (compound.getPredicates().isEmpty()) {
+                return new KeepAllNode();
+            }
+            List<Node> children = new ArrayList<>();
+            for (Predicate child : compound.getPredicates()) {
+                children.add(compile(child));
+            }
+            switch (compound.getLogicalOperator()) {
+                case AND:
+                    return new AndNode(children);
+                case OR:
+                    return new OrNode(children);
+                case NOT:
+                    return new NotNode(children.get(0));
+                default:
+                    return new KeepAllNode();
+            }
+        } else if (predicate instanceof BinaryPredicate) {
+            return compileBinary((BinaryPredicate) predicate);
+        } else if (predicate instanceof UnaryPredicate) {
+            UnaryPredicate unary = (UnaryPredicate) predicate;
+            Column column = resolveColumn(unary.getOperand());
+            if (column == null) {
+                return new KeepAllNode();
+            }
+            return new NullTestNode(column,
+                                    unary.getOperator() == UnaryPredicate.Operator.IS_NULL);
+        } else if (predicate instanceof InPredicate) {
+            return compileIn((InPredicate) predicate);
+        }
+        return new KeepAllNode();
+    }
+
+    private Node compileBinary(BinaryPredicate predicate) {
+        BinaryPredicate.Operator operator = predicate.getOperator();
+        Object left = predicate.getLeftOperand();
+        Object right = predicate.getRightOperand();
+        if (left instanceof Constant && !(right instanceof Constant)) {
+            // constant op column => column op' constant
+            Object tmp = left;
+            left = right;
+            right = tmp;
+            switch (operator) {
+                case GREATER_THAN:
+                    operator = BinaryPredicate.Operator.LESS_THAN;
+                    break;
+                case LESS_THAN:
+                    operator = BinaryPredicate.Operator.GREATER_THAN;
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    operator = BinaryPredicate.Operator.LESS_THAN_OR_EQUAL;
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    operator = BinaryPredicate.Operator.GREATER_THAN_OR_EQUAL;
+                    break;
+                case LIKE:
+                    return new KeepAllNode();
+                default:
+                    break;
+            }
+        }
+        if (!(right instanceof Constant) || left instanceof Constant) {
+            return new KeepAllNode();
+        }
+        Column column = resolveColumn(left);
+        if (column == null) {
+            return new KeepAllNode();
+        }
+        Object value = adaptConstant(((Constant) right).getValue(), column);
+        if (value == null) {
+            return new KeepAllNode();
+        }
+        if (operator == BinaryPredicate.Operator.LIKE) {
+            if (!(value instanceof String) || !isCharacterColumn(column)) {
+                return new KeepAllNode();
+            }
+            return new LikeNode(column, (String) value);
+        }
+        return new CompareNode(column, operator, value);
+    }
+
+    private Node compileIn(InPredicate predicate) {
+        Column column = resolveColumn(predicate.getOperand());
+        if (column == null) {
+            return new KeepAllNode();
+        }
+        List<Object> values = new ArrayList<>();
+        boolean hasNull = false;
+        for (Serializable element : predicate.getSet()) {
+            Object value;
+            if (element instanceof Constant) {
+                value = ((Constant) element).getValue();
+            } else if (element instanceof Number || element instanceof Boolean) {
+                value = element;
+            } else {
+                // a raw string may be a column name or an sql expression
+                return new KeepAllNode();
+            }
+            if (value == null) {
+                hasNull = true;
+                continue;
+            }
+            value = adaptConstant(value, column);
+            if (value == null) {
+                return new KeepAllNode();
+            }
+            values.add(value);
+        }
+        Node node = new InNode(column, values, hasNull);
+        return predicate.getOperator() == InPredicate.Operator.NOT_IN ? new NotNode(node) : node;
+    }
+
+    private Column resolveColumn(Object operand) {
+        if (operand == null || operand instanceof Constant || operand instanceof Predicate) {
+            return null;
+        }
+        String name = operand.toString().trim();
+        if (name.length() > 1 && name.startsWith("`") && name.endsWith("`")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return columns.get(name.toLowerCase());
+    }
+
+    /**
+     * Converts the constant to the value type produced by the column, null if the column
+     * type is not supported or the constant does not match it. Implicit casts done by the
+     * server, e.g. comparing a string column with a number, are not emulated.
+     */
+    private static Object adaptConstant(Object value, Column column) {
+        Class<?> valueClass = valueClass(column);
+        if (value == null || valueClass == null) {
+            return null;
+        }
+        OdpsType type = column.getTypeInfo().getOdpsType();
+        if (value instanceof String && type == OdpsType.DATE) {
+            try {
+                return LocalDate.parse((String) value);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        if (value instanceof String && type == OdpsType.DECIMAL) {
+            try {
+                return new BigDecimal(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        Object normalized = normalize(value);
+        return valueClass.isInstance(normalized) ? normalized : null;
+    }
+
+    /**
+     * @return class of the normalized values read from the column, null if predicates on
+     *         the column are not evaluated
+     */
+    private static Class<?> valueClass(Column column) {
+        switch (column.getTypeInfo().getOdpsType()) {
+            case TINYINT:
+            case SMALLINT:
+            case INT:
+            case BIGINT:
+            case FLOAT:
+            case DOUBLE:
+            case DECIMAL:
+                return Number.class;
+            case STRING:
+            case VARCHAR:
+            case CHAR:
+                return String.class;
+            case BOOLEAN:
+                return Boolean.class;
+            case DATE:
+                return LocalDate.class;
+            case DATETIME:
+            case TIMESTAMP:
+                return Instant.class;
+            case TIMESTAMP_NTZ:
+                return LocalDateTime.class;
+            default:
+                return null;
+        }
+    }
+
+    private static Pattern likeToPattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                literal.append(like.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Maps values of the same logical type to one java type so they can be compared.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        } else if (value instanceof AbstractChar) {
+            return ((AbstractChar) value).getValue();
+        } else if (value instanceof Character) {
+            return value.toString();
+        } else if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        } else if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).toInstant();
+        } else if (value instanceof ZonedDateTime) {
+            return ((ZonedDateTime) value).toInstant();
+        } else if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant();
+        }
+        return value;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short
+               || value instanceof Byte;
+    }
+
+    private static boolean isIntegerColumn(Column column) {
+        switch (column.getTypeInfo().getOdpsType()) {
+            case TINYINT:
+            case SMALLINT:
+            case INT:
+            case BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isCharacterColumn(Column column) {
+        return valueClass(column) == String.class;
+    }
+
+    private static boolean isStringColumn(Column column, FieldVector vector) {
+        return column.getTypeInfo().getOdpsType() == OdpsType.STRING
+               && vector instanceof BaseVariableWidthVector;
+    }
+
+    /**
+     * Compares the utf-8 bytes of a value in the vector with the given bytes without decoding,
+     * the unsigned byte order of utf-8 is the order of code points.
+     */
+    private static int compareBytes(BaseVariableWidthVector vector, int row, byte[] bytes,
+                                    int length) {
+        ArrowBuf data = vector.getDataBuffer();
+        long start = vector.getStartOffset(row);
+        int valueLength = vector.getValueLength(row);
+        int n = Math.min(Math.min(valueLength, length), bytes.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (data.getByte(start + i) & 0xff) - (bytes[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Math.min(valueLength, length) - Math.min(bytes.length, length);
+    }
+
+    private static boolean isFloatingColumn(Column column) {
+        OdpsType type = column.getTypeInfo().getOdpsType();
+        return type == OdpsType.FLOAT || type == OdpsType.DOUBLE;
+    }
+
+    /**
+     * @return comparison result of two normalized values, null if they are not comparable or
+     * either is NaN
+     */
+    @SuppressWarnings("unchecked")
+    private static Integer compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            boolean exact = a instanceof BigDecimal || b instanceof BigDecimal
+                            || a instanceof BigInteger || b instanceof BigInteger;
+            double da = ((Number) a).doubleValue();
+            double db = ((Number) b).doubleValue();
+            if (Double.isNaN(da) || Double.isNaN(db)) {
+                return null;
+            }
+            if (!exact || Double.isInfinite(da) || Double.isInfinite(db)) {
+                return compareDoubles(da, db);
+            }
+            return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return null;
+    }
+
+    /**
+     * Compares with primitive operators, so -0.0 equals 0.0. Callers handle NaN, which the server
+     * may order differently.
+     */
+    private static int compareDoubles(double a, double b) {
+        return a < b ? -1 : (a > b ? 1 : 0);
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        } else if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        } else if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        return BigDecimal.valueOf(number.doubleValue());
+    }
+
+    private static int toTruth(BinaryPredicate.Operator operator, int cmp) {
+        boolean result;
+        switch (operator) {
+            case EQUALS:
+                result = cmp == 0;
+                break;
+            case NOT_EQUALS:
+                result = cmp != 0;
+                break;
+            case GREATER_THAN:
+                result = cmp > 0;
+                break;
+            case LESS_THAN:
+                result = cmp < 0;
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                result = cmp >= 0;
+                break;
+            case LESS_THAN_OR_EQUAL:
+                result = cmp <= 0;
+                break;
+            default:
+                return KEEP;
+        }
+        return result ? TRUE : FALSE;
+    }
+
+    /**
+     * Vectors of the batch being evaluated, looked up by lower case name.
+     */
+    private static class Batch {
+
+        private final VectorSchemaRoot root;
+        private final Map<String, FieldVector> vectors = new HashMap<>();
+
+        Batch(VectorSchemaRoot root) {
+            this.root = root;
+            for (FieldVector vector : root.getFieldVectors()) {
+                vectors.put(vector.getField().getName().toLowerCase(), vector);
+            }
+        }
+
+        FieldVector vector(Column column) {
+            return vectors.get(column.getName().toLowerCase());
+        }
+
+        int getRowCount() {
+            return root.getRowCount();
+        }
+    }
+
+    private abstract static class Node {
+
+        /**
+         * Selects the input rows on which the node evaluates to true (or false if expected
+         * is false). Rows on which the result is unknown are not selected, rows which can
+         * not be evaluated are always selected.
+         *
+         * @return number of rows written to out
+         */
+        abstract int select(Batch batch, int[] in, int n, int[] out, boolean expected);
+    }
+
+    private static int copy(int[] in, int n, int[] out) {
+        System.arraycopy(in, 0, out, 0, n);
+        return n;
+    }
+
+    /**
+     * Rows selected by all children.
+     */
+    private static int intersect(List<Node> children, Batch batch, int[] in, int n, int[] out,
+                                 boolean expected) {
+        int[] current = in;
+        int count = n;
+        for (Node child : children) {
+            int[] next = new int[count];
+            count = child.select(batch, current, count, next, expected);
+            current = next;
+            if (count == 0) {
+                break;
+            }
+        }
+        return copy(current, count, out);
+    }
+
+    /**
+     * Rows selected by any child, later children only see rows not selected yet.
+     */
+    private static int union(List<Node> children, Batch batch, int[] in, int n, int[] out,
+                             boolean expected) {
+        boolean[] selected = new boolean[batch.getRowCount()];
+        int[] remaining = in;
+        int remainingCount = n;
+        for (Node child : children) {
+            int[] hit = new int[remainingCount];
+            int hitCount = child.select(batch, remaining, remainingCount, hit, expected);
+            if (hitCount == 0) {
+                continue;
+            }
+            for (int i = 0; i < hitCount; i++) {
+                selected[hit[i]] = true;
+            }
+            int[] rest = new int[remainingCount - hitCount];
+            int restCount = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (!selected[remaining[i]]) {
+                    rest[restCount++] = remaining[i];
+                }
+            }
+            remaining = rest;
+            remainingCount = restCount;
+            if (remainingCount == 0) {
+                break;
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (selected[in[i]]) {
+                out[count++] = in[i];
+            }
+        }
+        return count;
+    }
+
+    private static class KeepAllNode extends Node {
+
+        @Override
+        int select(Batch batch, int[] in, int n, int[] out, boolean expected) {
+            return copy(in, n, out);
+        }
+    }
+
+    private static class AndNode extends Node {
+
+        private final List<Node> children;
+
+        AndNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        int select(Batch batch, int[] in, int n, int[] out, boolean expected) {
+            // not (a and b) = (not a) or (not b)
+            return expected ? intersect(children, batch, in, n, out, true)
+                            : union(children, batch, in, n, out, false);
+        }
+    }
+
+    private static class OrNode extends Node {
+
+        private final List<Node> children;
+
+        OrNode(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        int select(Batch batch, int[] in, int n, int[] out, boolean expected) {
+            // not (a or b) = (not a) and (not b)
+            return expected ? union(children, batch, in, n, out, true)
+                            : intersect(children, batch, in, n, out, false);
+        }
+    }
+
+    private static class NotNode extends Node {
+
+        private final Node child;
+
+        NotNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        int select(Batch batch, int[] in, int n, int[] out, boolean expected) {
+            return child.select(batch, in, n, out, !expected);
+        }
+    }
+
+    /**
+     * Truth value of a leaf on a single row.
+     */
+    private interface RowTest {
+
+        int test(int row);
+    }
+
+    /**
+     * A predicate on one column, evaluated row by row over the input selection.
+     */
+    private abstract static class LeafNode extends Node {
+
+        protected final Column column;
+
+        LeafNode(Column column) {
+            this.column = column;
+        }
+
+        /**
+         * @return row test bound to the vector, null if the vector is not supported
+         */
+        abstract RowTest bind(FieldVector vector);
+
+        @Override
+        int select(Batch batch, int[] in, int n, int[] out, boolean expected) {
+            FieldVector vector = batch.vector(column);
+            RowTest test = null;
+            if (vector != null) {
+                try {
+                    test = bind(vector);
+                } catch (RuntimeException e) {
+                    // vector layout does not match the column type, e.g. extension types
+                    test = null;
+                }
+            }
+            if (test == null) {
+                return copy(in, n, out);
+            }
+            int want = expected ? TRUE : FALSE;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                int result = test.test(in[i]);
+                if (result == want || result == KEEP) {
+                    out[count++] = in[i];
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Generic row test reading values through the same accessors as the record reader.
+         */
+        protected RowTest bindGeneric(FieldVector vector, final ValueTest valueTest) {
+            final ArrowVectorAccessor accessor =
+                    ArrowToRecordConverter.createColumnVectorAccessor(vector, column.getTypeInfo());
+            return new RowTest() {
+                @Override
+                public int test(int row) {
+                    if (accessor.isNullAt(row)) {
+                        return UNKNOWN;
+                    }
+                    try {
+                        Object value = ArrowToRecordConverter.getData(accessor,
+                                                                      column.getTypeInfo(), row);
+                        return valueTest.test(normalize(value));
+                    } catch (IOException e) {
+                        return KEEP;
+                    }
+                }
+            };
+        }
+    }
+
+    private interface ValueTest {
+
+        int test(Object value);
+    }
+
+    private static class CompareNode extends LeafNode {
+
+        private final BinaryPredicate.Operator operator;
+        private final Object value;
+
+        CompareNode(Column column, BinaryPredicate.Operator operator, Object value) {
+            super(column);
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        RowTest bind(FieldVector vector) {
+            if (vector instanceof BaseIntVector && isIntegerColumn(column) && isIntegral(value)) {
+                final BaseIntVector intVector = (BaseIntVector) vector;
+                final long constant = ((Number) value).longValue();
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (intVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        return toTruth(operator, Long.compare(intVector.getValueAsLong(row),
+                                                              constant));
+                    }
+                };
+            }
+            if (vector instanceof FloatingPointVector && isFloatingColumn(column)
+                && value instanceof Number && !(value instanceof BigDecimal)) {
+                final FloatingPointVector floatVector = (FloatingPointVector) vector;
+                final double constant = ((Number) value).doubleValue();
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (floatVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        double v = floatVector.getValueAsDouble(row);
+                        if (Double.isNaN(v) || Double.isNaN(constant)) {
+                            return KEEP;
+                        }
+                        return toTruth(operator, compareDoubles(v, constant));
+                    }
+                };
+            }
+            if (isStringColumn(column, vector) && value instanceof String) {
+                final BaseVariableWidthVector stringVector = (BaseVariableWidthVector) vector;
+                final byte[] constant = ((String) value).getBytes(StandardCharsets.UTF_8);
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (stringVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        return toTruth(operator, compareBytes(stringVector, row, constant,
+                                                              Integer.MAX_VALUE));
+                    }
+                };
+            }
+            return bindGeneric(vector, new ValueTest() {
+                @Override
+                public int test(Object v) {
+                    Integer cmp = compare(v, value);
+                    return cmp == null ? KEEP : toTruth(operator, cmp);
+                }
+            });
+        }
+    }
+
+    private static class LikeNode extends LeafNode {
+
+        private final Pattern pattern;
+        // utf-8 bytes of the prefix if the pattern is a plain 'prefix%', otherwise null
+        private final byte[] prefix;
+
+        LikeNode(Column column, String like) {
+            super(column);
+            this.pattern = likeToPattern(like);
+            String body = like.substring(0, Math.max(like.length() - 1, 0));
+            if (like.endsWith("%") && body.indexOf('%') < 0 && body.indexOf('_') < 0
+                && body.indexOf('\\') < 0) {
+                this.prefix = body.getBytes(StandardCharsets.UTF_8);
+            } else {
+                this.prefix = null;
+            }
+        }
+
+        @Override
+        RowTest bind(FieldVector vector) {
+            if (prefix != null && isStringColumn(column, vector)) {
+                final BaseVariableWidthVector stringVector = (BaseVariableWidthVector) vector;
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (stringVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        return compareBytes(stringVector, row, prefix, prefix.length) == 0
+                               ? TRUE : FALSE;
+                    }
+                };
+            }
+            return bindGeneric(vector, new ValueTest() {
+                @Override
+                public int test(Object v) {
+                    if (!(v instanceof String)) {
+                        return KEEP;
+                    }
+                    return pattern.matcher((String) v).matches() ? TRUE : FALSE;
+                }
+            });
+        }
+    }
+
+    private static class InNode extends LeafNode {
+
+        private final List<Object> values;
+        private final boolean hasNull;
+
+        InNode(Column column, List<Object> values, boolean hasNull) {
+            super(column);
+            this.values = values;
+            this.hasNull = hasNull;
+        }
+
+        @Override
+        RowTest bind(FieldVector vector) {
+            boolean allIntegral = true;
+            for (Object v : values) {
+                allIntegral &= isIntegral(v);
+            }
+            if (vector instanceof BaseIntVector && isIntegerColumn(column) && allIntegral) {
+                final BaseIntVector intVector = (BaseIntVector) vector;
+                final Set<Long> set = new HashSet<>();
+                for (Object v : values) {
+                    set.add(((Number) v).longValue());
+                }
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (intVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        if (set.contains(intVector.getValueAsLong(row))) {
+                            return TRUE;
+                        }
+                        return hasNull ? UNKNOWN : FALSE;
+                    }
+                };
+            }
+            boolean allString = true;
+            for (Object v : values) {
+                allString &= v instanceof String;
+            }
+            if (isStringColumn(column, vector) && allString) {
+                final BaseVariableWidthVector stringVector = (BaseVariableWidthVector) vector;
+                final byte[][] constants = new byte[values.size()][];
+                for (int i = 0; i < constants.length; i++) {
+                    constants[i] = ((String) values.get(i)).getBytes(StandardCharsets.UTF_8);
+                }
+                return new RowTest() {
+                    @Override
+                    public int test(int row) {
+                        if (stringVector.isNull(row)) {
+                            return UNKNOWN;
+                        }
+                        int length = stringVector.getValueLength(row);
+                        for (byte[] constant : constants) {
+                            if (constant.length == length
+                                && compareBytes(stringVector, row, constant, length) == 0) {
+                                return TRUE;
+                            }
+                        }
+                        return hasNull ? UNKNOWN : FALSE;
+                    }
+                };
+            }
+            return bindGeneric(vector, new ValueTest() {
+                @Override
+                public int test(Object v) {
+                    boolean comparable = true;
+                    for (Object value : values) {
+                        Integer cmp = compare(v, value);
+                        if (cmp == null) {
+                            comparable = false;
+                        } else if (cmp == 0) {
+                            return TRUE;
+                        }
+                    }
+                    if (!comparable) {
+                        return KEEP;
+                    }
+                    return hasNull ? UNKNOWN : FALSE;
+                }
+            });
+        }
+    }
+
+    private static class NullTestNode extends LeafNode {
+
+        private final boolean isNull;
+
+        NullTestNode(Column column, boolean isNull) {
+            super(column);
+            this.isNull = isNull;
+        }
+
+        @Override
+        RowTest bind(final FieldVector vector) {
+            return new RowTest() {
+                @Override
+                public int test(int row) {
+                    return vector.isNull(row) == isNull ? TRUE : FALSE;
+                }
+            };
+        }
+    }
+}
@@ -36,6 +36,7 @@ public class ReaderOptions {
     private EnvironmentSettings settings;
     private CompressionCodec compressionCodec;
     private DataFormat dataFormat;
+    private boolean residualFilter;
 
     private ReaderOptions() {
         this.batchRowCount = DEFAULT_BUFFERED_ROW_COUNT;
@@ -73,6 +74,10 @@ public class ReaderOptions {
         return compressionCodec;
     }
 
+    public boolean isResidualFilter() {
+        return residualFilter;
+    }
+
     public static ReaderOptions.Builder newBuilder() {
         return new Builder();
     }
@@ -119,6 +124,16 @@ public class ReaderOptions {
             return this;
         }
 
+        /**
+         * Re-applies the filter predicate of the read session on the client.
+         * Predicate push down is best effort, splits may still contain rows
+         * that do not match the predicate. Disabled by default.
+         */
+        public Builder withResidualFilter(boolean residualFilter) {
+            this.readerOptions.residualFilter = residualFilter;
+            return this;
+        }
+
         public ReaderOptions build() {
             Preconditions.checkNotNull(readerOptions.settings,
                     "Environment settings", "required");
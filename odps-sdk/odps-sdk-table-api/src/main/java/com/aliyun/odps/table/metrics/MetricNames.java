@@ -26,5 +26,7 @@ public class MetricNames {
 
     public static final String RECORD_COUNT = "recordCount";
     public static final String BYTES_COUNT = "bytesCount";
+    public static final String SCANNED_RECORD_COUNT = "scannedRecordCount";
+    public static final String FILTERED_RECORD_COUNT = "filteredRecordCount";
 
 }
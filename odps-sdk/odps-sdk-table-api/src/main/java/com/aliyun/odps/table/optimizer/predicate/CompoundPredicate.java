@@ -62,6 +62,14 @@ public class CompoundPredicate extends Predicate {
     return new CompoundPredicate(Operator.NOT, ImmutableList.of(predicates));
   }
 
+  public Operator getLogicalOperator() {
+    return logicalOperator;
+  }
+
+  public List<Predicate> getPredicates() {
+    return predicates;
+  }
+
   public void addPredicate(Predicate predicate) {
     if (validatePredicate(predicate)) {
       predicates.add(predicate);
@@ -19,6 +19,10 @@ public class Constant extends Predicate {
     return new Constant(value);
   }
 
+  public Object getValue() {
+    return value;
+  }
+
   private boolean isStringType() {
     return value instanceof String || value instanceof Character;
   }
@@ -30,6 +34,9 @@ public class Constant extends Predicate {
 
   @Override
   public String toString() {
+    if (value == null) {
+      return "NULL";
+    }
     if (isStringType() || isTimeType()) {
       return "'" + value + "'";
     }
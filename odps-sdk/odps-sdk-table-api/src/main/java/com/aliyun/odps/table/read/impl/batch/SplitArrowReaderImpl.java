@@ -20,9 +20,12 @@
 package com.aliyun.odps.table.read.impl.batch;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 
 import com.aliyun.odps.commons.transport.Connection;
@@ -31,6 +34,7 @@ import com.aliyun.odps.commons.transport.Response;
 import com.aliyun.odps.rest.ResourceBuilder;
 import com.aliyun.odps.rest.RestClient;
 import com.aliyun.odps.table.TableIdentifier;
+import com.aliyun.odps.table.arrow.ArrowPredicateEvaluator;
 import com.aliyun.odps.table.arrow.ArrowReader;
 import com.aliyun.odps.table.arrow.ArrowReaderFactory;
 import com.aliyun.odps.table.configuration.CompressionCodec;
@@ -38,7 +42,9 @@ import com.aliyun.odps.table.configuration.ReaderOptions;
 import com.aliyun.odps.table.enviroment.ExecutionEnvironment;
 import com.aliyun.odps.table.metrics.Metrics;
 import com.aliyun.odps.table.metrics.count.BytesCount;
+import com.aliyun.odps.table.metrics.count.FilteredRecordCount;
 import com.aliyun.odps.table.metrics.count.RecordCount;
+import com.aliyun.odps.table.metrics.count.ScannedRecordCount;
 import com.aliyun.odps.table.read.SplitReader;
 import com.aliyun.odps.table.read.split.InputSplit;
 import com.aliyun.odps.table.read.split.InputSplitWithIndex;
@@ -57,32 +63,124 @@ public class SplitArrowReaderImpl implements SplitReader<VectorSchemaRoot> {
     private Metrics metrics;
     private BytesCount bytesCount;
     private RecordCount recordCount;
+    private ScannedRecordCount scannedRecordCount;
+    private FilteredRecordCount filteredRecordCount;
+
+    private final ReaderOptions options;
+    private final ArrowPredicateEvaluator residualFilter;
+    private int[] selection;
+    private VectorSchemaRoot currentRoot;
+    private VectorSchemaRoot filteredRoot;
 
     public SplitArrowReaderImpl(TableIdentifier identifier,
                                 InputSplit split,
                                 ReaderOptions options) throws IOException {
+        this(identifier, split, options, null);
+    }
+
+    /**
+     * @param residualFilter rows of each batch not selected by the filter are dropped,
+     *                       null to return batches as they are read
+     */
+    public SplitArrowReaderImpl(TableIdentifier identifier,
+                                InputSplit split,
+                                ReaderOptions options,
+                                ArrowPredicateEvaluator residualFilter) throws IOException {
         openReaderConnection(identifier, split, options);
         initMetrics();
         this.isClosed = false;
+        this.options = options;
+        this.residualFilter = residualFilter;
         this.reader = ArrowReaderFactory.getRecordBatchReader(connection.getInputStream(), options);
     }
 
+    /**
+     * Reads batches from an opened reader instead of a split, used by tests.
+     */
+    SplitArrowReaderImpl(ArrowReader reader,
+                         ReaderOptions options,
+                         ArrowPredicateEvaluator residualFilter) {
+        initMetrics();
+        this.isClosed = false;
+        this.options = options;
+        this.residualFilter = residualFilter;
+        this.reader = reader;
+    }
+
     @Override
     public boolean hasNext() throws IOException {
-        return this.reader.nextBatch();
+        closeFilteredRoot();
+        while (this.reader.nextBatch()) {
+            VectorSchemaRoot root = reader.getCurrentValue();
+            int rowCount = root.getRowCount();
+            scannedRecordCount.inc(rowCount);
+            if (residualFilter == null) {
+                currentRoot = root;
+                return true;
+            }
+
+            if (selection == null || selection.length < rowCount) {
+                selection = new int[rowCount];
+            }
+            int selected = residualFilter.select(root, selection);
+            filteredRecordCount.inc(rowCount - selected);
+            if (selected == rowCount) {
+                currentRoot = root;
+                return true;
+            }
+            VectorSchemaRoot filtered = selected == 0 ? null : compact(root, selection, selected);
+            if (options.isReuseBatch()) {
+                filteredRoot = filtered;
+            } else {
+                // the caller owns batches which are not reused, the original one is never returned
+                root.close();
+            }
+            if (filtered != null) {
+                currentRoot = filtered;
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public VectorSchemaRoot get() {
-        VectorSchemaRoot root = reader.getCurrentValue();
+        VectorSchemaRoot root = currentRoot;
         recordCount.inc(root.getRowCount());
         bytesCount.setValue(reader.bytesRead());
         return root;
     }
 
+    /**
+     * Copies the selected rows of the batch into a new batch.
+     */
+    private VectorSchemaRoot compact(VectorSchemaRoot root, int[] rows, int count) {
+        List<FieldVector> vectors = new ArrayList<>(root.getFieldVectors().size());
+        for (FieldVector from : root.getFieldVectors()) {
+            FieldVector to = from.getField().createVector(options.getBufferAllocator());
+            to.setInitialCapacity(count);
+            to.allocateNew();
+            for (int i = 0; i < count; i++) {
+                to.copyFromSafe(rows[i], i, from);
+            }
+            to.setValueCount(count);
+            vectors.add(to);
+        }
+        return new VectorSchemaRoot(root.getSchema(), vectors, count);
+    }
+
+    private void closeFilteredRoot() {
+        // batches filtered for a reused reader are owned by this reader
+        if (filteredRoot != null) {
+            filteredRoot.close();
+            filteredRoot = null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (!isClosed) {
+            closeFilteredRoot();
             if (reader != null) {
                 reader.close();
             }
@@ -102,8 +200,12 @@ public class SplitArrowReaderImpl implements SplitReader<VectorSchemaRoot> {
         this.bytesCount = new BytesCount();
         this.recordCount = new RecordCount();
         this.metrics = new Metrics();
+        this.scannedRecordCount = new ScannedRecordCount();
+        this.filteredRecordCount = new FilteredRecordCount();
         metrics.register(bytesCount);
         metrics.register(recordCount);
+        metrics.register(scannedRecordCount);
+        metrics.register(filteredRecordCount);
     }
 
     private void openReaderConnection(TableIdentifier identifier,
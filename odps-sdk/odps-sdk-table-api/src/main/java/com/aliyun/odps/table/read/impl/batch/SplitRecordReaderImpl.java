@@ -38,6 +38,7 @@ public class SplitRecordReaderImpl implements SplitReader<ArrayRecord> {
     private int rowsInBatch;
     private int nextRow;
     private ColumnarBatchRecord batchRecord;
+    private VectorSchemaRoot batchRoot;
 
     public SplitRecordReaderImpl(SplitReader<VectorSchemaRoot> arrowReader,
                                  DataSchema schema,
@@ -51,13 +52,12 @@ public class SplitRecordReaderImpl implements SplitReader<ArrayRecord> {
 
     @Override
     public boolean hasNext() throws IOException {
-        if (nextRow >= rowsInBatch) {
-            boolean moreRows = arrowBatchReader.hasNext();
-            if (moreRows) {
-                nextRow = 0;
-                rowsInBatch = fillRows();
+        while (nextRow >= rowsInBatch) {
+            if (!arrowBatchReader.hasNext()) {
+                return false;
             }
-            return moreRows;
+            nextRow = 0;
+            rowsInBatch = fillRows();
         }
         return true;
     }
@@ -70,12 +70,14 @@ public class SplitRecordReaderImpl implements SplitReader<ArrayRecord> {
 
     protected int fillRows() {
         VectorSchemaRoot root = arrowBatchReader.get();
-        if (batchRecord == null || !readerOptions.isReuseBatch()) {
-            if (batchRecord != null) {
+        if (batchRecord == null || !readerOptions.isReuseBatch() || batchRoot != root) {
+            if (batchRecord != null && !readerOptions.isReuseBatch()) {
                 batchRecord.close();
             }
+            // a residual filter returns a new batch when rows are dropped, rebind to it
             batchRecord = new ColumnarBatchRecord(root,
                     readSchema.getColumns().toArray(new Column[0]));
+            batchRoot = root;
         }
         return root.getRowCount();
     }
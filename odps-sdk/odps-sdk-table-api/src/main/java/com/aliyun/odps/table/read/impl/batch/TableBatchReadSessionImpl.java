@@ -47,6 +47,7 @@ import com.aliyun.odps.table.DataFormat;
 import com.aliyun.odps.table.DataSchema;
 import com.aliyun.odps.table.SessionStatus;
 import com.aliyun.odps.table.TableIdentifier;
+import com.aliyun.odps.table.arrow.ArrowPredicateEvaluator;
 import com.aliyun.odps.table.configuration.ArrowOptions;
 import com.aliyun.odps.table.configuration.ReaderOptions;
 import com.aliyun.odps.table.configuration.SplitOptions;
@@ -101,7 +102,14 @@ public class TableBatchReadSessionImpl extends TableBatchReadSessionBase {
         Preconditions.checkNotNull(identifier, "Table read identifier");
         Preconditions.checkNotNull(split, "Input split");
         Preconditions.checkNotNull(options, "Reader options");
-        return new SplitArrowReaderImpl(identifier, split, options);
+        ArrowPredicateEvaluator residualFilter = null;
+        if (options.isResidualFilter() && !Predicate.NO_PREDICATE.equals(filterPredicate)) {
+            residualFilter = new ArrowPredicateEvaluator(filterPredicate, readSchema());
+            if (residualFilter.isAlwaysTrue()) {
+                residualFilter = null;
+            }
+        }
+        return new SplitArrowReaderImpl(identifier, split, options, residualFilter);
     }
 
     @Override
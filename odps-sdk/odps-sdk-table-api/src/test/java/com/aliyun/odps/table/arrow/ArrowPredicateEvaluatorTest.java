@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.table.arrow;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.table.DataSchema;
+import com.aliyun.odps.table.optimizer.predicate.BinaryPredicate;
+import com.aliyun.odps.table.optimizer.predicate.CompoundPredicate;
+import com.aliyun.odps.table.optimizer.predicate.Constant;
+import com.aliyun.odps.table.optimizer.predicate.InPredicate;
+import com.aliyun.odps.table.optimizer.predicate.Predicate;
+import com.aliyun.odps.table.optimizer.predicate.UnaryPredicate;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+public class ArrowPredicateEvaluatorTest {
+
+    private static final Long[] IDS = {1L, 2L, 3L, null, 5L, 6L};
+    private static final String[] NAMES = {"a", "b", null, "abc", "ab", "c"};
+    private static final String[] AMOUNTS = {"1.50", "2.00", null, "3.25", "10.00", "0.10"};
+    private static final Double[] SCORES = {0.0, -0.0, Double.NaN, 1.5, null, -2.0};
+
+    private static final DataSchema SCHEMA = new DataSchema(Arrays.asList(
+            new Column("id", TypeInfoFactory.BIGINT),
+            new Column("name", TypeInfoFactory.STRING),
+            new Column("amount", TypeInfoFactory.getDecimalTypeInfo(10, 2)),
+            new Column("ts", TypeInfoFactory.TIMESTAMP),
+            new Column("dt", TypeInfoFactory.DATETIME),
+            new Column("score", TypeInfoFactory.DOUBLE)));
+
+    private BufferAllocator allocator;
+    private VectorSchemaRoot batch;
+
+    @Before
+    public void setUp() {
+        allocator = new RootAllocator();
+        BigIntVector id = new BigIntVector("id", allocator);
+        VarCharVector name = new VarCharVector("name", allocator);
+        DecimalVector amount = new DecimalVector("amount", allocator, 10, 2);
+        Float8Vector score = new Float8Vector("score", allocator);
+        id.allocateNew(IDS.length);
+        name.allocateNew(IDS.length);
+        amount.allocateNew(IDS.length);
+        score.allocateNew(IDS.length);
+        for (int i = 0; i < IDS.length; i++) {
+            if (IDS[i] == null) {
+                id.setNull(i);
+            } else {
+                id.set(i, IDS[i]);
+            }
+            if (NAMES[i] == null) {
+                name.setNull(i);
+            } else {
+                name.setSafe(i, NAMES[i].getBytes(StandardCharsets.UTF_8));
+            }
+            if (AMOUNTS[i] == null) {
+                amount.setNull(i);
+            } else {
+                amount.set(i, new BigDecimal(AMOUNTS[i]));
+            }
+            if (SCORES[i] == null) {
+                score.setNull(i);
+            } else {
+                score.set(i, SCORES[i]);
+            }
+        }
+        List<FieldVector> vectors = new ArrayList<>();
+        vectors.add(id);
+        vectors.add(name);
+        vectors.add(amount);
+        vectors.add(score);
+        batch = new VectorSchemaRoot(vectors);
+        batch.setRowCount(IDS.length);
+    }
+
+    @After
+    public void tearDown() {
+        batch.close();
+        allocator.close();
+    }
+
+    private List<Integer> select(Predicate predicate) {
+        ArrowPredicateEvaluator evaluator = new ArrowPredicateEvaluator(predicate, SCHEMA);
+        int[] selection = new int[batch.getRowCount()];
+        int count = evaluator.select(batch, selection);
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(selection[i]);
+        }
+        return rows;
+    }
+
+    private static List<Integer> rows(Integer... rows) {
+        return Arrays.asList(rows);
+    }
+
+    private static List<Integer> allRows() {
+        return rows(0, 1, 2, 3, 4, 5);
+    }
+
+    private static boolean isAlwaysTrue(Predicate predicate) {
+        return new ArrowPredicateEvaluator(predicate, SCHEMA).isAlwaysTrue();
+    }
+
+    private static Predicate idGreaterThan(long value) {
+        return BinaryPredicate.greaterThan("id", Constant.of(value));
+    }
+
+    private static Predicate nameEquals(Object value) {
+        return BinaryPredicate.equals("name", Constant.of(value));
+    }
+
+    private static InPredicate idIn(boolean in, Serializable... values) {
+        List<Serializable> set = new ArrayList<>();
+        for (Serializable value : values) {
+            set.add(Constant.of(value));
+        }
+        return in ? InPredicate.in("id", set) : InPredicate.notIn("id", set);
+    }
+
+    @Test
+    public void testThreeValuedLogic() {
+        // comparisons with null are unknown and never selected
+        Assert.assertEquals(rows(2, 4, 5), select(idGreaterThan(2)));
+        Assert.assertEquals(rows(0, 1), select(CompoundPredicate.not(idGreaterThan(2))));
+        Assert.assertEquals(rows(1, 3, 4, 5), select(CompoundPredicate.not(nameEquals("a"))));
+
+        // unknown or false is unknown, unknown or true is true
+        Assert.assertEquals(rows(0, 2, 4, 5),
+                            select(CompoundPredicate.or(idGreaterThan(2), nameEquals("a"))));
+        Assert.assertEquals(rows(2, 3, 4, 5),
+                            select(CompoundPredicate.or(idGreaterThan(2), nameEquals("abc"))));
+        // unknown and true is unknown, unknown and false is false
+        Assert.assertEquals(rows(4),
+                            select(CompoundPredicate.and(idGreaterThan(2), nameEquals("ab"))));
+        Assert.assertEquals(rows(),
+                            select(CompoundPredicate.and(idGreaterThan(2), nameEquals("abc"))));
+    }
+
+    @Test
+    public void testNotPushdown() {
+        // not (a or b) = (not a) and (not b)
+        Assert.assertEquals(rows(1), select(CompoundPredicate.not(
+                CompoundPredicate.or(idGreaterThan(2), nameEquals("a")))));
+        // not (a and b) = (not a) or (not b), not of unknown is still unknown
+        Assert.assertEquals(rows(1, 2, 3, 4, 5), select(CompoundPredicate.not(
+                CompoundPredicate.and(CompoundPredicate.not(idGreaterThan(2)),
+                                      nameEquals("a")))));
+        Assert.assertEquals(rows(0, 1, 2, 4, 5), select(CompoundPredicate.not(
+                CompoundPredicate.and(CompoundPredicate.not(idGreaterThan(2)),
+                                      nameEquals("abc")))));
+        Assert.assertEquals(select(idGreaterThan(2)),
+                            select(CompoundPredicate.not(CompoundPredicate.not(idGreaterThan(2)))));
+
+        Assert.assertEquals(rows(3), select(UnaryPredicate.isNull("id")));
+        Assert.assertEquals(rows(0, 1, 2, 4, 5),
+                            select(CompoundPredicate.not(UnaryPredicate.isNull("id"))));
+        Assert.assertEquals(rows(2), select(CompoundPredicate.not(UnaryPredicate.notNull("name"))));
+    }
+
+    @Test
+    public void testInWithNull() {
+        Assert.assertEquals(rows(0, 4), select(idIn(true, 1L, 5L)));
+        Assert.assertEquals(rows(1, 2, 5), select(idIn(false, 1L, 5L)));
+
+        // x in (..., null) is true or unknown, x not in (..., null) is never true
+        Assert.assertEquals(rows(0, 4), select(idIn(true, 1L, 5L, null)));
+        Assert.assertEquals(rows(), select(idIn(false, 1L, 5L, null)));
+        Assert.assertEquals(rows(0, 4), select(CompoundPredicate.not(idIn(false, 1L, 5L, null))));
+        Assert.assertEquals(rows(), select(idIn(true, (Serializable) null)));
+    }
+
+    @Test
+    public void testLike() {
+        Assert.assertEquals(rows(3, 4), select(BinaryPredicate.like("name", Constant.of("ab%"))));
+        Assert.assertEquals(rows(1, 5),
+                            select(CompoundPredicate.not(
+                                    BinaryPredicate.like("name", Constant.of("a%")))));
+        Assert.assertEquals(rows(3), select(BinaryPredicate.like("name", Constant.of("_b_"))));
+    }
+
+    @Test
+    public void testDecimal() {
+        Assert.assertEquals(rows(3, 4),
+                            select(BinaryPredicate.greaterThan("amount", Constant.of("2.5"))));
+        Assert.assertEquals(rows(1), select(
+                BinaryPredicate.equals("amount", Constant.of(new BigDecimal("2")))));
+        Assert.assertEquals(rows(0, 1, 5),
+                            select(BinaryPredicate.lessThanOrEqual("amount", Constant.of(2))));
+    }
+
+    private static InPredicate scoreIn(boolean in, Serializable... values) {
+        List<Serializable> set = new ArrayList<>();
+        for (Serializable value : values) {
+            set.add(Constant.of(value));
+        }
+        return in ? InPredicate.in("score", set) : InPredicate.notIn("score", set);
+    }
+
+    @Test
+    public void testSignedZeroAndNaN() {
+        // -0.0 equals 0.0, rows with NaN are kept whatever the comparison
+        Assert.assertEquals(rows(0, 1, 2),
+                            select(BinaryPredicate.equals("score", Constant.of(0.0))));
+        Assert.assertEquals(rows(0, 1, 2),
+                            select(BinaryPredicate.equals("score", Constant.of(-0.0))));
+        Assert.assertEquals(rows(2, 3, 5), select(CompoundPredicate.not(
+                BinaryPredicate.equals("score", Constant.of(0.0)))));
+        Assert.assertEquals(rows(2, 3),
+                            select(BinaryPredicate.greaterThan("score", Constant.of(0.0))));
+        Assert.assertEquals(rows(2, 5),
+                            select(BinaryPredicate.lessThan("score", Constant.of(0.0))));
+        Assert.assertEquals(rows(0, 1, 2, 3),
+                            select(BinaryPredicate.greaterThanOrEqual("score", Constant.of(-0.0))));
+        Assert.assertEquals(rows(0, 1, 2), select(
+                BinaryPredicate.equals("score", Constant.of(new BigDecimal("0")))));
+
+        // a NaN constant decides nothing
+        Assert.assertEquals(rows(0, 1, 2, 3, 5),
+                            select(BinaryPredicate.equals("score", Constant.of(Double.NaN))));
+        Assert.assertEquals(rows(0, 1, 2, 3, 5), select(CompoundPredicate.not(
+                BinaryPredicate.lessThan("score", Constant.of(Double.NaN)))));
+
+        Assert.assertEquals(rows(0, 1, 2, 3), select(scoreIn(true, 0.0, 1.5)));
+        Assert.assertEquals(rows(2, 5), select(scoreIn(false, 0.0, 1.5)));
+        Assert.assertEquals(rows(0, 1, 2, 3, 5), select(scoreIn(true, Double.NaN)));
+    }
+
+    @Test
+    public void testIncompatibleConstantKeepsRows() {
+        // the server may cast these constants, they are not evaluated on the client
+        Predicate[] predicates = {
+                nameEquals(5),
+                BinaryPredicate.equals("id", Constant.of("2")),
+                BinaryPredicate.greaterThan("amount", Constant.of("abc")),
+                BinaryPredicate.greaterThan("ts", Constant.of("2023-01-01 00:00:00")),
+                BinaryPredicate.lessThan("dt", Constant.of("2023-01-01 00:00:00")),
+                BinaryPredicate.like("id", Constant.of("1%")),
+                InPredicate.in("name", Arrays.<Serializable>asList(Constant.of(1L))),
+        };
+        for (Predicate predicate : predicates) {
+            Assert.assertTrue(predicate.toString(), isAlwaysTrue(predicate));
+            Assert.assertEquals(predicate.toString(), allRows(), select(predicate));
+            Assert.assertEquals(predicate.toString(), allRows(),
+                                select(CompoundPredicate.not(predicate)));
+        }
+
+        Assert.assertEquals(rows(2, 4, 5),
+                            select(CompoundPredicate.and(nameEquals(5), idGreaterThan(2))));
+        Assert.assertEquals(allRows(), select(CompoundPredicate.not(
+                CompoundPredicate.and(nameEquals(5), idGreaterThan(2)))));
+        Assert.assertEquals(allRows(),
+                            select(CompoundPredicate.or(nameEquals(5), idGreaterThan(2))));
+    }
+}
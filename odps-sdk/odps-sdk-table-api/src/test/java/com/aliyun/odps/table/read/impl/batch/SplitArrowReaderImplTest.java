@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.table.read.impl.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.table.DataSchema;
+import com.aliyun.odps.table.arrow.ArrowPredicateEvaluator;
+import com.aliyun.odps.table.arrow.ArrowReaderFactory;
+import com.aliyun.odps.table.configuration.ReaderOptions;
+import com.aliyun.odps.table.enviroment.Credentials;
+import com.aliyun.odps.table.enviroment.EnvironmentSettings;
+import com.aliyun.odps.table.metrics.MetricNames;
+import com.aliyun.odps.table.optimizer.predicate.BinaryPredicate;
+import com.aliyun.odps.table.optimizer.predicate.Constant;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+public class SplitArrowReaderImplTest {
+
+    // every row of the first batch matches id >= 5, some of the second and none of the third
+    private static final Long[][] BATCHES = {
+            {5L, 6L, 7L},
+            {3L, 8L, null, 9L},
+            {0L, 1L, 2L}
+    };
+
+    private static final DataSchema SCHEMA = new DataSchema(Arrays.asList(
+            new Column("id", TypeInfoFactory.BIGINT),
+            new Column("name", TypeInfoFactory.STRING)));
+
+    private BufferAllocator allocator;
+    private byte[] stream;
+
+    @Before
+    public void setUp() throws Exception {
+        allocator = new RootAllocator();
+        BigIntVector id = new BigIntVector("id", allocator);
+        VarCharVector name = new VarCharVector("name", allocator);
+        List<FieldVector> vectors = new ArrayList<>();
+        vectors.add(id);
+        vectors.add(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VectorSchemaRoot root = new VectorSchemaRoot(vectors);
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+            writer.start();
+            for (Long[] batch : BATCHES) {
+                id.allocateNew(batch.length);
+                name.allocateNew(batch.length);
+                for (int i = 0; i < batch.length; i++) {
+                    if (batch[i] == null) {
+                        id.setNull(i);
+                        name.setNull(i);
+                    } else {
+                        id.set(i, batch[i]);
+                        name.setSafe(i, ("name_" + batch[i]).getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                root.setRowCount(batch.length);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+        stream = out.toByteArray();
+    }
+
+    @After
+    public void tearDown() {
+        // fails if any buffer is leaked
+        allocator.close();
+    }
+
+    private SplitArrowReaderImpl newReader(boolean reuseBatch) {
+        ReaderOptions options = ReaderOptions.newBuilder()
+                .withSettings(EnvironmentSettings.newBuilder()
+                                      .withCredentials(Credentials.newBuilder()
+                                                               .withAccount(new AliyunAccount("ak", "sk"))
+                                                               .build())
+                                      .build())
+                .withBufferAllocator(allocator)
+                .withReuseBatch(reuseBatch)
+                .withResidualFilter(true)
+                .build();
+        ArrowPredicateEvaluator filter = new ArrowPredicateEvaluator(
+                BinaryPredicate.greaterThanOrEqual("id", Constant.of(5L)), SCHEMA);
+        return new SplitArrowReaderImpl(
+                ArrowReaderFactory.getRecordBatchReader(new ByteArrayInputStream(stream), options),
+                options, filter);
+    }
+
+    private static List<String> rows(VectorSchemaRoot root) {
+        List<String> rows = new ArrayList<>();
+        BigIntVector id = (BigIntVector) root.getVector("id");
+        VarCharVector name = (VarCharVector) root.getVector("name");
+        for (int i = 0; i < root.getRowCount(); i++) {
+            rows.add(id.get(i) + ":" + new String(name.get(i), StandardCharsets.UTF_8));
+        }
+        return rows;
+    }
+
+    private static long metric(SplitArrowReaderImpl reader, String name) {
+        return reader.currentMetricsValues().counter(name).get().getCount();
+    }
+
+    private static void assertMetrics(SplitArrowReaderImpl reader) {
+        Assert.assertEquals(10, metric(reader, MetricNames.SCANNED_RECORD_COUNT));
+        Assert.assertEquals(5, metric(reader, MetricNames.FILTERED_RECORD_COUNT));
+        Assert.assertEquals(5, metric(reader, MetricNames.RECORD_COUNT));
+    }
+
+    @Test
+    public void testNonReusedBatches() throws Exception {
+        SplitArrowReaderImpl reader = newReader(false);
+        List<VectorSchemaRoot> batches = new ArrayList<>();
+        while (reader.hasNext()) {
+            batches.add(reader.get());
+        }
+        assertMetrics(reader);
+        reader.close();
+
+        // the batch left empty is skipped
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(Arrays.asList("5:name_5", "6:name_6", "7:name_7"),
+                            rows(batches.get(0)));
+        Assert.assertEquals(Arrays.asList("8:name_8", "9:name_9"), rows(batches.get(1)));
+        Assert.assertEquals(2, batches.get(1).getFieldVectors().get(0).getValueCount());
+
+        // the caller owns the returned batches, the reader closed the ones it dropped
+        Assert.assertTrue(allocator.getAllocatedMemory() > 0);
+        for (VectorSchemaRoot batch : batches) {
+            batch.close();
+        }
+        Assert.assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    public void testReusedBatches() throws Exception {
+        SplitArrowReaderImpl reader = newReader(true);
+        List<List<String>> batches = new ArrayList<>();
+        VectorSchemaRoot compacted = null;
+        VectorSchemaRoot first = null;
+        while (reader.hasNext()) {
+            VectorSchemaRoot root = reader.get();
+            if (first == null) {
+                first = root;
+            } else {
+                compacted = root;
+            }
+            batches.add(rows(root));
+        }
+        assertMetrics(reader);
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("5:name_5", "6:name_6", "7:name_7"),
+                                          Arrays.asList("8:name_8", "9:name_9")), batches);
+        // a fully selected batch is returned as it is, a filtered one is a copy
+        Assert.assertNotSame(first, compacted);
+        // the copy is released when the next batch is requested
+        Assert.assertEquals(0, compacted.getFieldVectors().get(0).getValueCount());
+
+        // the reader owns every batch
+        reader.close();
+        Assert.assertEquals(0, allocator.getAllocatedMemory());
+    }
+}
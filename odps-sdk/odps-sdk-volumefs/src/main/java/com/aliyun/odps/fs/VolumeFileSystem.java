@@ -178,7 +178,7 @@ public class VolumeFileSystem extends FileSystem {
       return new FSDataInputStream(new ExternalVolumeFSInputStream(filePath, volumeClient, getConf()));
     }
     return new FSDataInputStream(new VolumeFSInputStream(filePath, volumeClient,
-        fileStatus.getLen(), getConf()));
+        fileStatus.getLen(), fileStatus.getModificationTime(), getConf()));
   }
 
 
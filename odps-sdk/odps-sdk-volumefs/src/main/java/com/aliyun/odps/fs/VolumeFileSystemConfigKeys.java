@@ -39,6 +39,9 @@ public class VolumeFileSystemConfigKeys extends CommonConfigurationKeys {
       "odps.volume.transfer.compress.algorithm";
   public static final String ODPS_VOLUME_SEEK_OPTIMIZATION_ENABLED =
       "odps.volume.seek.optimization.enabled";
+  public static final String ODPS_VOLUME_BLOCK_CACHE_SIZE = "odps.volume.block.cache.size";
+  public static final String ODPS_VOLUME_READAHEAD_BLOCKS = "odps.volume.readahead.blocks";
+  public static final String ODPS_VOLUME_PREFETCH_THREADS = "odps.volume.prefetch.threads";
   public static final String DFS_REPLICATION_KEY = "dfs.replication";
   public static final String ODPS_RESTCLIENT_RETRYTIME = "odps.restclient.retrytime";
 }
@@ -0,0 +1,504 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aliyun.odps.volume;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.odps.VolumeException;
+import com.aliyun.odps.fs.VolumeFileSystemConfigKeys;
+import com.aliyun.odps.volume.protocol.VolumeFSConstants;
+
+/**
+ * Cache of volume file blocks, shared by all {@link VolumeFSInputStream}s opened with the same
+ * cache configuration.
+ *
+ * Blocks are downloaded into the block buffer directory and memory-mapped, the local file is
+ * removed right after mapping. The total size of the cached blocks is bounded by
+ * {@link VolumeFileSystemConfigKeys#ODPS_VOLUME_BLOCK_CACHE_SIZE}, the least recently used blocks
+ * are evicted first. A block is unmapped as soon as it is evicted and no stream holds it, so the
+ * mapped memory is at most the cache size plus one block per open stream.
+ *
+ * Blocks are keyed by file, length and modification time. {@link VolumeFSClient} also drops the
+ * blocks of a path when it writes, renames or deletes it.
+ */
+public class VolumeFSBlockCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VolumeFSBlockCache.class);
+
+  /**
+   * One cache per distinct (buffer dir, cache size, prefetch threads) configuration
+   */
+  private static final Map<String, VolumeFSBlockCache> INSTANCES =
+      new ConcurrentHashMap<String, VolumeFSBlockCache>();
+
+  /**
+   * Cache key of a block, blocks of the same file with a different length, modification time or
+   * block size are different blocks
+   */
+  static class BlockKey {
+
+    private final String file;
+    private final long fileLength;
+    private final long modificationTime;
+    private final long blockSize;
+    private final long index;
+
+    BlockKey(String file, long fileLength, long modificationTime, long blockSize, long index) {
+      this.file = file;
+      this.fileLength = fileLength;
+      this.modificationTime = modificationTime;
+      this.blockSize = blockSize;
+      this.index = index;
+    }
+
+    BlockKey next(long step) {
+      return new BlockKey(file, fileLength, modificationTime, blockSize, index + step);
+    }
+
+    long getStart() {
+      return index * blockSize;
+    }
+
+    long getEnd() {
+      return Math.min((index + 1) * blockSize, fileLength) - 1;
+    }
+
+    boolean isValid() {
+      return index >= 0 && getStart() < fileLength;
+    }
+
+    boolean isUnder(String path) {
+      return file.equals(path) || file.startsWith(path.endsWith("/") ? path : path + "/");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BlockKey)) {
+        return false;
+      }
+      BlockKey key = (BlockKey) o;
+      return fileLength == key.fileLength && modificationTime == key.modificationTime
+             && blockSize == key.blockSize && index == key.index && file.equals(key.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, fileLength, modificationTime, blockSize, index);
+    }
+
+    @Override
+    public String toString() {
+      return file + "#" + index;
+    }
+  }
+
+  /**
+   * A mapped block. Callers of {@link #get} hold a reference until they call {@link #release},
+   * the mapping is released once the block is evicted and no longer referenced.
+   */
+  static class Block {
+
+    private final BlockKey key;
+    private final MappedByteBuffer buffer;
+    private int refs = 0;
+    private boolean evicted = false;
+    private boolean unmapped = false;
+
+    Block(BlockKey key, MappedByteBuffer buffer) {
+      this.key = key;
+      this.buffer = buffer;
+    }
+
+    /**
+     * @return a view of the block positioned at 0, not shared with other callers
+     */
+    ByteBuffer getBuffer() {
+      return buffer.duplicate();
+    }
+
+    int size() {
+      return buffer.limit();
+    }
+  }
+
+  /**
+   * Download the range [start, end] of the file into target
+   */
+  interface BlockLoader {
+
+    void load(long start, long end, File target) throws VolumeException;
+  }
+
+  private final long capacity;
+  private final File bufferDir;
+  private final ExecutorService prefetchExecutor;
+
+  private long usedBytes = 0;
+  private int mappedBlocks = 0;
+  private final LinkedHashMap<BlockKey, Block> blocks =
+      new LinkedHashMap<BlockKey, Block>(16, 0.75f, true);
+  private final Map<BlockKey, CompletableFuture<Block>> loading =
+      new ConcurrentHashMap<BlockKey, CompletableFuture<Block>>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong prefetchCount = new AtomicLong();
+
+  VolumeFSBlockCache(long capacity, File bufferDir, int prefetchThreads) {
+    this.capacity = capacity;
+    this.bufferDir = bufferDir;
+    AtomicInteger threadIndex = new AtomicInteger();
+    this.prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, prefetchThreads), r -> {
+      Thread t = new Thread(r, "odps-volumefs-prefetch-" + threadIndex.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Get the cache for the given configuration. Streams opened with the same buffer directory,
+   * cache size and prefetch threads share one cache.
+   */
+  public static VolumeFSBlockCache getInstance(Configuration conf) throws IOException {
+    File dir = new File(conf.get(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_BUFFER_DIR,
+                                 VolumeFSConstants.DEFAULT_VOLUME_BLOCK_BUFFER_DIR));
+    long capacity = conf.getLong(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_CACHE_SIZE,
+                                 VolumeFSConstants.DEFAULT_VOLUME_BLOCK_CACHE_SIZE);
+    int prefetchThreads = conf.getInt(VolumeFileSystemConfigKeys.ODPS_VOLUME_PREFETCH_THREADS,
+                                      VolumeFSConstants.DEFAULT_VOLUME_PREFETCH_THREADS);
+    String id = dir.getAbsolutePath() + ":" + capacity + ":" + prefetchThreads;
+    VolumeFSBlockCache cache = INSTANCES.get(id);
+    if (cache == null) {
+      synchronized (INSTANCES) {
+        cache = INSTANCES.get(id);
+        if (cache == null) {
+          if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create Volume block buffer directory: " + dir);
+          }
+          cache = new VolumeFSBlockCache(capacity, dir, prefetchThreads);
+          INSTANCES.put(id, cache);
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Drop the cached blocks of a file, or of all files under a directory, from every cache
+   *
+   * @param file file id, see {@link VolumeFSClient#getCacheId(String)}
+   */
+  static void invalidateAll(String file) {
+    for (VolumeFSBlockCache cache : INSTANCES.values()) {
+      cache.invalidate(file);
+    }
+  }
+
+  /**
+   * Get a block, download it if not cached. The caller must {@link #release} the block when it
+   * no longer reads from it.
+   */
+  Block get(BlockKey key, BlockLoader loader) throws IOException {
+    Block block = retainIfPresent(key);
+    if (block != null) {
+      hitCount.incrementAndGet();
+      return block;
+    }
+    missCount.incrementAndGet();
+
+    while (true) {
+      CompletableFuture<Block> future = new CompletableFuture<Block>();
+      CompletableFuture<Block> existing = loading.putIfAbsent(key, future);
+      if (existing == null) {
+        block = retainIfPresent(key);
+        if (block != null) {
+          // loaded by another thread just now
+          loading.remove(key);
+          future.complete(block);
+          return block;
+        }
+        load(key, loader, future);
+        existing = future;
+      }
+      try {
+        block = existing.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while loading block " + key, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw new IOException(cause.getMessage(), cause);
+      }
+      if (retain(block)) {
+        return block;
+      }
+      // evicted and unmapped before this caller got it, load again
+    }
+  }
+
+  /**
+   * Release a block returned by {@link #get}
+   */
+  void release(Block block) {
+    boolean unmap;
+    synchronized (this) {
+      block.refs--;
+      unmap = shouldUnmap(block);
+    }
+    if (unmap) {
+      unmap(block);
+    }
+  }
+
+  /**
+   * Download a block in background if it is neither cached nor being loaded
+   */
+  void prefetch(final BlockKey key, final BlockLoader loader) {
+    if (!key.isValid() || contains(key)) {
+      return;
+    }
+    final CompletableFuture<Block> future = new CompletableFuture<Block>();
+    if (loading.putIfAbsent(key, future) != null) {
+      return;
+    }
+    prefetchCount.incrementAndGet();
+    try {
+      prefetchExecutor.submit(() -> load(key, loader, future));
+    } catch (RuntimeException e) {
+      loading.remove(key);
+      future.completeExceptionally(e);
+    }
+  }
+
+  private void load(BlockKey key, BlockLoader loader, CompletableFuture<Block> future) {
+    File blockFile = new File(bufferDir, "volumefs-block-" + UUID.randomUUID() + ".tmp");
+    try {
+      loader.load(key.getStart(), key.getEnd(), blockFile);
+      MappedByteBuffer buffer;
+      RandomAccessFile raf = new RandomAccessFile(blockFile, "r");
+      try {
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+      } finally {
+        raf.close();
+      }
+      Block block = new Block(key, buffer);
+      synchronized (this) {
+        mappedBlocks++;
+      }
+      if (block.size() != key.getEnd() - key.getStart() + 1) {
+        block.evicted = true;
+        unmap(block);
+        throw new IOException("Incomplete block " + key + ", expect "
+                              + (key.getEnd() - key.getStart() + 1) + " bytes, got "
+                              + block.size());
+      }
+      put(block);
+      future.complete(block);
+    } catch (Throwable e) {
+      LOG.warn("Load block " + key + " failed: " + e.getMessage());
+      future.completeExceptionally(e);
+    } finally {
+      loading.remove(key);
+      // the mapping stays valid after the file is deleted
+      if (!blockFile.delete()) {
+        blockFile.deleteOnExit();
+      }
+    }
+  }
+
+  private synchronized Block retainIfPresent(BlockKey key) {
+    Block block = blocks.get(key);
+    if (block != null) {
+      block.refs++;
+    }
+    return block;
+  }
+
+  private synchronized boolean retain(Block block) {
+    if (block.unmapped) {
+      return false;
+    }
+    block.refs++;
+    return true;
+  }
+
+  private synchronized boolean contains(BlockKey key) {
+    return blocks.containsKey(key);
+  }
+
+  private void put(Block block) {
+    List<Block> unmapped = new ArrayList<Block>();
+    synchronized (this) {
+      if (block.size() > capacity) {
+        // never cached, unmapped once the loading callers release it
+        block.evicted = true;
+        return;
+      }
+      Block old = blocks.put(block.key, block);
+      if (old != null) {
+        usedBytes -= old.size();
+        evict(old, unmapped);
+      }
+      usedBytes += block.size();
+      Iterator<Map.Entry<BlockKey, Block>> iter = blocks.entrySet().iterator();
+      while (usedBytes > capacity && iter.hasNext()) {
+        Block eldest = iter.next().getValue();
+        if (eldest == block) {
+          continue;
+        }
+        usedBytes -= eldest.size();
+        iter.remove();
+        evictionCount.incrementAndGet();
+        evict(eldest, unmapped);
+      }
+    }
+    for (Block b : unmapped) {
+      unmap(b);
+    }
+  }
+
+  /**
+   * Mark a block removed from the cache, collect it if it can be unmapped now. Must be called
+   * while holding the lock.
+   */
+  private void evict(Block block, List<Block> unmapped) {
+    block.evicted = true;
+    if (shouldUnmap(block)) {
+      unmapped.add(block);
+    }
+  }
+
+  private boolean shouldUnmap(Block block) {
+    if (block.evicted && block.refs <= 0 && !block.unmapped) {
+      block.unmapped = true;
+      return true;
+    }
+    return false;
+  }
+
+  private void unmap(Block block) {
+    synchronized (this) {
+      block.unmapped = true;
+      mappedBlocks--;
+    }
+    try {
+      NativeIO.POSIX.munmap(block.buffer);
+    } catch (Throwable e) {
+      // the mapping is released when the buffer is garbage collected
+      LOG.debug("Unmap block " + block.key + " failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Drop the cached blocks of a file, or of all files under a directory
+   */
+  void invalidate(String file) {
+    List<Block> unmapped = new ArrayList<Block>();
+    synchronized (this) {
+      Iterator<Map.Entry<BlockKey, Block>> iter = blocks.entrySet().iterator();
+      while (iter.hasNext()) {
+        Block block = iter.next().getValue();
+        if (block.key.isUnder(file)) {
+          usedBytes -= block.size();
+          iter.remove();
+          evict(block, unmapped);
+        }
+      }
+    }
+    for (Block b : unmapped) {
+      unmap(b);
+    }
+  }
+
+  /**
+   * Drop all cached blocks
+   */
+  public void clear() {
+    List<Block> unmapped = new ArrayList<Block>();
+    synchronized (this) {
+      for (Block block : blocks.values()) {
+        evict(block, unmapped);
+      }
+      blocks.clear();
+      usedBytes = 0;
+    }
+    for (Block b : unmapped) {
+      unmap(b);
+    }
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  /**
+   * @return number of blocks still mapped, including evicted blocks that are being read
+   */
+  public synchronized int getMappedBlockCount() {
+    return mappedBlocks;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public long getPrefetchCount() {
+    return prefetchCount.get();
+  }
+}
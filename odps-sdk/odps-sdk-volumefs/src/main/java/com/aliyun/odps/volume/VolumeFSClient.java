@@ -85,6 +85,20 @@ public class VolumeFSClient {
     client = odps.getRestClient();
   }
 
+  /**
+   * Identify a file of this client in {@link VolumeFSBlockCache}
+   */
+  String getCacheId(String path) {
+    return odps.getEndpoint() + "/" + odps.getDefaultProject() + path;
+  }
+
+  /**
+   * Drop cached blocks of a path (and the files under it) after it is written, renamed or deleted
+   */
+  private void invalidateCache(String path) {
+    VolumeFSBlockCache.invalidateAll(getCacheId(path));
+  }
+
   /**
    * Get File meta info
    *
@@ -380,6 +394,16 @@ public class VolumeFSClient {
     String[] srcPair = VolumeFSUtil.getVolumeAndPath(src);
     String[] dstPair = VolumeFSUtil.getVolumeAndPath(dst);
     boolean isExternal = isExternalVolume(srcPair[0]);
+    try {
+      return renameInternal(src, params, isExternal, srcPair, dstPair);
+    } finally {
+      invalidateCache(src);
+      invalidateCache(dst);
+    }
+  }
+
+  private boolean renameInternal(String src, Map<String, Object> params, boolean isExternal,
+      String[] srcPair, String[] dstPair) throws VolumeException {
     return new VolumeFSJobRunnerProxy<Boolean>() {
 
       @SuppressWarnings("unchecked")
@@ -434,6 +458,14 @@ public class VolumeFSClient {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put(VolumeFSFile.ParamKey.RECURSIVE.name().toLowerCase(), recursive);
 
+    try {
+      return deleteInternal(path, params);
+    } finally {
+      invalidateCache(path);
+    }
+  }
+
+  private boolean deleteInternal(String path, Map<String, Object> params) throws VolumeException {
     return new VolumeFSJobRunnerProxy<Boolean>() {
 
       @Override
@@ -645,6 +677,8 @@ public class VolumeFSClient {
       tunnel.commit(odps.getDefaultProject(), path, sessionId);
     } catch (TunnelException e) {
       throw new VolumeException(e);
+    } finally {
+      invalidateCache(path);
     }
   }
 
@@ -688,6 +722,8 @@ public class VolumeFSClient {
       getVolumeTunnel().commit(odps.getDefaultProject(), path, sessionId);
     } catch (Exception e) {
       throw new VolumeException(e);
+    } finally {
+      invalidateCache(path);
     }
   }
 
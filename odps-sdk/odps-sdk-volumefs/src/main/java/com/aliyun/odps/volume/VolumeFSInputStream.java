@@ -15,27 +15,18 @@
 package com.aliyun.odps.volume;
 
 import java.io.EOFException;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import com.aliyun.odps.VolumeException;
 import com.aliyun.odps.fs.VolumeFileSystemConfigKeys;
+import com.aliyun.odps.volume.VolumeFSBlockCache.BlockKey;
 import com.aliyun.odps.volume.protocol.VolumeFSConstants;
 
 /**
@@ -46,9 +37,6 @@ import com.aliyun.odps.volume.protocol.VolumeFSConstants;
  */
 public class VolumeFSInputStream extends FSInputStream {
 
-  private static final Logger LOG = LoggerFactory.getLogger(VolumeFSInputStream.class);
-
-
   private VolumeFSClient volumeFSClient;
 
   private String path;
@@ -57,41 +45,51 @@ public class VolumeFSInputStream extends FSInputStream {
 
   private Long fileLength;
 
+  private long modificationTime;
+
   private long pos = 0;
   /**
    * unit:byte
    */
   private long blockSize;
 
-  private String uuid;
-
-  private Map<Long, Integer> cache = new ConcurrentHashMap<Long, Integer>();
-
   private InputStream in;
 
-  private RandomAccessFile raf;
-
-  private long curIndex = 0;
+  private boolean isSeeked = false;
 
-  private File buffer_block_dir;
+  private boolean seekOptimization;
 
-  private boolean isSeeked = false;
+  /**
+   * Blocks are read through the process-wide {@link VolumeFSBlockCache} when seek optimization
+   * is enabled
+   */
+  private VolumeFSBlockCache blockCache;
 
-  private boolean isCache = false;
+  private VolumeFSBlockCache.BlockLoader blockLoader;
 
-  private boolean seekOptimization;
+  private String cacheId;
 
-  private static final Integer STATUS_DOWNLOADING = 0;
+  private int readAheadBlocks;
 
-  private static final Integer STATUS_DOWNLOADED = 1;
+  private VolumeFSBlockCache.Block cachedBlock;
 
-  private ExecutorService executorService;
+  private ByteBuffer block;
 
-  private boolean isPreLoaded = false;
+  private long curIndex = -1;
 
   public VolumeFSInputStream(String path, VolumeFSClient volumeClient, Long fileLength,
       Configuration conf) throws IOException {
+    this(path, volumeClient, fileLength, 0, conf);
+  }
+
+  /**
+   * @param modificationTime modification time of the file, cached blocks of an older version of
+   *        the file are not used
+   */
+  public VolumeFSInputStream(String path, VolumeFSClient volumeClient, Long fileLength,
+      long modificationTime, Configuration conf) throws IOException {
     this.path = path;
+    this.modificationTime = modificationTime;
     this.volumeFSClient = volumeClient;
     this.seekOptimization =
         conf.getBoolean(VolumeFileSystemConfigKeys.ODPS_VOLUME_SEEK_OPTIMIZATION_ENABLED, false);
@@ -99,19 +97,19 @@ public class VolumeFSInputStream extends FSInputStream {
       this.blockSize =
           conf.getLong(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_SIZE,
               VolumeFSConstants.DEFAULT_VOLUME_BLOCK_SIZE);
+      if (blockSize <= 0 || blockSize > Integer.MAX_VALUE) {
+        throw new IOException("Invalid Volume block size: " + blockSize);
+      }
+      this.readAheadBlocks =
+          conf.getInt(VolumeFileSystemConfigKeys.ODPS_VOLUME_READAHEAD_BLOCKS,
+              VolumeFSConstants.DEFAULT_VOLUME_READAHEAD_BLOCKS);
+      this.blockCache = VolumeFSBlockCache.getInstance(conf);
+      this.cacheId = volumeClient.getCacheId(path);
+      this.blockLoader = (start, end, target) ->
+          volumeFSClient.downloadFile(this.path, start, end, target, false);
     }
     this.fileLength = fileLength;
     this.closed = false;
-    this.uuid = UUID.randomUUID().toString();
-    buffer_block_dir =
-        new File(conf.get(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_BUFFER_DIR,
-            VolumeFSConstants.DEFAULT_VOLUME_BLOCK_BUFFER_DIR));
-    if (!buffer_block_dir.exists() && !buffer_block_dir.mkdirs()) {
-      throw new IOException("Cannot create Volume block buffer directory: " + buffer_block_dir);
-    }
-    if (seekOptimization) {
-      executorService = Executors.newFixedThreadPool(1);
-    }
   }
 
 
@@ -139,6 +137,9 @@ public class VolumeFSInputStream extends FSInputStream {
   public synchronized boolean seekToNewSource(long targetPos) throws IOException {
     checkClosed();
     seek(targetPos);
+    if (seekOptimization) {
+      return true;
+    }
     try {
       in = getInputStream();
       return true;
@@ -166,7 +167,10 @@ public class VolumeFSInputStream extends FSInputStream {
     if (pos >= fileLength) {
       return VolumeFSConstants.EOF;
     }
-    if (in == null || isSeeked || (seekOptimization && isCache && pos / blockSize != curIndex)) {
+    if (seekOptimization) {
+      return readFromBlocks(buf, off, len);
+    }
+    if (in == null || isSeeked) {
       in = getInputStream();
     }
     int avaliable = in.read(buf, off, len);
@@ -180,55 +184,58 @@ public class VolumeFSInputStream extends FSInputStream {
     }
   }
 
-  private synchronized InputStream getInputStream() throws IOException {
-    if (seekOptimization) {
+  /**
+   * Synchronized with {@link #close()}, which releases the mapped block being read
+   */
+  private synchronized int readFromBlocks(byte[] buf, int off, int len) throws IOException {
+    checkClosed();
+    int total = 0;
+    while (total < len && pos < fileLength) {
       long index = pos / blockSize;
-      if (!isPreLoaded) {
-        isPreLoaded = true;
-        seekOptimization();
+      if (block == null || index != curIndex) {
+        getBlock(index);
       }
-      if (in != null && index == curIndex && isCache && isSeeked) {
-        in = Channels.newInputStream(raf.getChannel().position(pos - curIndex * blockSize));
-        return in;
-      } else {
-        IOUtils.closeQuietly(in);
-        IOUtils.closeQuietly(raf);
-        if (cache.get(index) != STATUS_DOWNLOADED) {
-          curIndex = index;
-          return getRemoteInputStream();
-        } else {
-          File blockFile = new File(buffer_block_dir, getBlockFileName(index));
-          if (!blockFile.exists()) {
-            cache.remove(index);
-            curIndex = index;
-            return getRemoteInputStream();
-          }
-          return getLocalInputStream(index);
-        }
-      }
-    } else {
-      IOUtils.closeQuietly(in);
-      return getRemoteInputStream();
+      int offset = (int) (pos - index * blockSize);
+      int n = Math.min(len - total, block.limit() - offset);
+      block.position(offset);
+      block.get(buf, off + total, n);
+      pos += n;
+      total += n;
     }
-
+    isSeeked = false;
+    return total;
   }
 
+  private void getBlock(long index) throws IOException {
+    BlockKey key = new BlockKey(cacheId, fileLength, modificationTime, blockSize, index);
+    // read ahead only on sequential access, random seeks fetch just the block they need
+    if (index == curIndex + 1) {
+      for (int i = 1; i <= readAheadBlocks; i++) {
+        blockCache.prefetch(key.next(i), blockLoader);
+      }
+    }
+    VolumeFSBlockCache.Block b = blockCache.get(key, blockLoader);
+    releaseBlock();
+    cachedBlock = b;
+    block = b.getBuffer();
+    curIndex = index;
+  }
 
-  private synchronized InputStream getLocalInputStream(long index) throws FileNotFoundException,
-      IOException {
-    if (!seekOptimization) {
-      return null;
+  private void releaseBlock() {
+    if (cachedBlock != null) {
+      blockCache.release(cachedBlock);
+      cachedBlock = null;
+      block = null;
     }
-    isCache = true;
-    File blockFile = new File(buffer_block_dir, getBlockFileName(index));
-    raf = new RandomAccessFile(blockFile, "r");
-    return Channels.newInputStream(raf.getChannel().position(pos - curIndex * blockSize));
   }
 
+  private synchronized InputStream getInputStream() throws IOException {
+    IOUtils.closeQuietly(in);
+    return getRemoteInputStream();
+  }
 
   private synchronized InputStream getRemoteInputStream() throws IOException {
     isSeeked = false;
-    isCache = false;
     try {
       return volumeFSClient.openInputStream(path, pos, fileLength - 1);
     } catch (VolumeException e) {
@@ -236,24 +243,6 @@ public class VolumeFSInputStream extends FSInputStream {
     }
   }
 
-  private void seekOptimization() {
-    long totalBlockNum = (long) Math.ceil(fileLength.doubleValue() / blockSize);
-    if (totalBlockNum > 2) {
-      for (long i = 2l; i < totalBlockNum; i++) {
-        if (!cache.containsKey(i)) {
-          cache.put(i, STATUS_DOWNLOADING);
-          executorService.submit(new SeekOptimizationWorker(i));
-        }
-      }
-    }
-    for (long i = totalBlockNum - 1; i >= 0; i--) {
-      if (!cache.containsKey(i)) {
-        cache.put(i, STATUS_DOWNLOADING);
-        executorService.submit(new SeekOptimizationWorker(i));
-      }
-    }
-  }
-
   @Override
   public synchronized int available() throws IOException {
     checkClosed();
@@ -265,9 +254,7 @@ public class VolumeFSInputStream extends FSInputStream {
     if (!closed) {
       closed = true;
       IOUtils.closeQuietly(in);
-      IOUtils.closeQuietly(raf);
-      if (executorService != null)
-        executorService.shutdownNow();
+      releaseBlock();
     }
   }
 
@@ -276,34 +263,4 @@ public class VolumeFSInputStream extends FSInputStream {
       throw new IOException(FSExceptionMessages.STREAM_IS_CLOSED);
     }
   }
-
-  private String getBlockFileName(long index) {
-    return "volumefs-input-block-" + uuid + "-" + index + ".tmp";
-  }
-
-  class SeekOptimizationWorker implements Runnable {
-
-    private Long index;
-
-    SeekOptimizationWorker(Long index) {
-      this.index = index;
-    }
-
-    @Override
-    public void run() {
-      long start = index * blockSize;
-      if (start > fileLength - 1)
-        return;
-      long end = Math.min((index + 1) * blockSize - 1, fileLength - 1);
-      File blockFile = new File(buffer_block_dir, getBlockFileName(index));
-      blockFile.deleteOnExit();
-      try {
-        volumeFSClient.downloadFile(path, start, end, blockFile, false);
-        cache.put(index, STATUS_DOWNLOADED);
-      } catch (VolumeException e) {
-        cache.remove(index);
-        LOG.error(e.getMessage(), e);
-      }
-    }
-  }
 }
@@ -44,6 +44,9 @@ public class VolumeFSConstants {
   public static final long DEFAULT_VOLUME_BLOCK_SIZE = 512 * 1024;
   public static final String DEFAULT_HOME_VOLUME = "user";
   public static final String DEFAULT_VOLUME_BLOCK_BUFFER_DIR = "/tmp/volumefs/";
+  public static final long DEFAULT_VOLUME_BLOCK_CACHE_SIZE = 256L * 1024 * 1024;
+  public static final int DEFAULT_VOLUME_READAHEAD_BLOCKS = 4;
+  public static final int DEFAULT_VOLUME_PREFETCH_THREADS = 4;
   public static final short DFS_REPLICATION_DEFAULT = 3;
 
 }
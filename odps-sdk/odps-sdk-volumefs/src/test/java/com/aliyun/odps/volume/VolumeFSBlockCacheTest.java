@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aliyun.odps.volume;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.VolumeException;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.fs.VolumeFileSystemConfigKeys;
+
+/**
+ * Reads volume files from memory instead of the tunnel to test the block cache
+ */
+public class VolumeFSBlockCacheTest {
+
+  private static final int BLOCK_SIZE = 100;
+  private static final String PATH = "/volume/dir/file";
+
+  private File bufferDir;
+  private Configuration conf;
+  private LocalClient client;
+
+  /**
+   * Serves file content from memory and counts the downloaded blocks
+   */
+  private static class LocalClient extends VolumeFSClient {
+
+    private final Map<String, byte[]> files = new HashMap<String, byte[]>();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    LocalClient(Configuration conf) {
+      super(new Odps(new AliyunAccount("ak", "sk")), "p", "http://127.0.0.1:1/api",
+            "http://127.0.0.1:1", conf);
+    }
+
+    @Override
+    public void downloadFile(String path, Long start, Long end, File targetFile, boolean append)
+        throws VolumeException {
+      downloads.incrementAndGet();
+      byte[] content = files.get(path);
+      try (FileOutputStream out = new FileOutputStream(targetFile, append)) {
+        out.write(content, start.intValue(), (int) (end - start + 1));
+      } catch (IOException e) {
+        throw new VolumeException(e);
+      }
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    // a new buffer directory gets a new cache
+    bufferDir = Files.createTempDirectory("volumefs-cache-test").toFile();
+    conf = new Configuration(false);
+    conf.setBoolean(VolumeFileSystemConfigKeys.ODPS_VOLUME_SEEK_OPTIMIZATION_ENABLED, true);
+    conf.setLong(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_SIZE, BLOCK_SIZE);
+    conf.setLong(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_CACHE_SIZE, 3 * BLOCK_SIZE);
+    conf.setInt(VolumeFileSystemConfigKeys.ODPS_VOLUME_READAHEAD_BLOCKS, 0);
+    conf.set(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_BUFFER_DIR, bufferDir.getPath());
+    client = new LocalClient(conf);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    VolumeFSBlockCache.getInstance(conf).clear();
+    FileUtils.deleteQuietly(bufferDir);
+  }
+
+  private static byte[] content(int length, int seed) {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) (i * 31 + seed);
+    }
+    return content;
+  }
+
+  private byte[] readAt(long modificationTime, long pos, int len) throws IOException {
+    VolumeFSInputStream in = new VolumeFSInputStream(PATH, client,
+                                                     (long) client.files.get(PATH).length,
+                                                     modificationTime, conf);
+    try {
+      byte[] buf = new byte[len];
+      in.seek(pos);
+      int total = 0;
+      while (total < len) {
+        int n = in.read(buf, total, len - total);
+        if (n <= 0) {
+          break;
+        }
+        total += n;
+      }
+      return Arrays.copyOf(buf, total);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testHit() throws IOException {
+    byte[] content = content(250, 0);
+    client.files.put(PATH, content);
+    VolumeFSBlockCache cache = VolumeFSBlockCache.getInstance(conf);
+
+    Assert.assertArrayEquals(content, readAt(1, 0, 250));
+    Assert.assertEquals(3, client.downloads.get());
+    Assert.assertEquals(3, cache.getMissCount());
+
+    Assert.assertArrayEquals(Arrays.copyOfRange(content, 120, 230), readAt(1, 120, 110));
+    Assert.assertEquals(3, client.downloads.get());
+    Assert.assertEquals(2, cache.getHitCount());
+    Assert.assertEquals(250, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testGetInstanceByConfig() throws IOException {
+    VolumeFSBlockCache cache = VolumeFSBlockCache.getInstance(conf);
+    Assert.assertSame(cache, VolumeFSBlockCache.getInstance(new Configuration(conf)));
+
+    Configuration other = new Configuration(conf);
+    other.setLong(VolumeFileSystemConfigKeys.ODPS_VOLUME_BLOCK_CACHE_SIZE, 5 * BLOCK_SIZE);
+    VolumeFSBlockCache otherCache = VolumeFSBlockCache.getInstance(other);
+    Assert.assertNotSame(cache, otherCache);
+    Assert.assertEquals(5 * BLOCK_SIZE, otherCache.getCapacity());
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    byte[] content = content(1000, 0);
+    client.files.put(PATH, content);
+    VolumeFSBlockCache cache = VolumeFSBlockCache.getInstance(conf);
+
+    VolumeFSInputStream in =
+        new VolumeFSInputStream(PATH, client, (long) content.length, 1, conf);
+    byte[] buf = new byte[content.length];
+    for (int off = 0; off < content.length; off += 50) {
+      Assert.assertEquals(50, in.read(buf, off, 50));
+      Assert.assertTrue(cache.getUsedBytes() <= 3 * BLOCK_SIZE);
+      // evicted blocks are unmapped as soon as the stream moves on
+      Assert.assertTrue(cache.getMappedBlockCount() <= 4);
+    }
+    Assert.assertArrayEquals(content, buf);
+    Assert.assertEquals(3, cache.getBlockCount());
+    Assert.assertEquals(7, cache.getEvictionCount());
+    Assert.assertEquals(3, cache.getMappedBlockCount());
+    in.close();
+
+    // the first blocks were evicted and are downloaded again
+    Assert.assertArrayEquals(Arrays.copyOf(content, 10), readAt(1, 0, 10));
+    Assert.assertEquals(11, client.downloads.get());
+    Assert.assertEquals(3, cache.getMappedBlockCount());
+  }
+
+  @Test
+  public void testEvictedBlockStillReadable() throws IOException {
+    byte[] content = content(1000, 0);
+    client.files.put(PATH, content);
+    VolumeFSBlockCache cache = new VolumeFSBlockCache(BLOCK_SIZE, bufferDir, 1);
+    VolumeFSBlockCache.BlockLoader loader = (start, end, target) ->
+        client.downloadFile(PATH, start, end, target, false);
+    VolumeFSBlockCache.BlockKey key =
+        new VolumeFSBlockCache.BlockKey(PATH, content.length, 1, BLOCK_SIZE, 0);
+
+    VolumeFSBlockCache.Block first = cache.get(key, loader);
+    VolumeFSBlockCache.Block second = cache.get(key.next(1), loader);
+    // the first block is evicted but still mapped while it is held
+    Assert.assertEquals(1, cache.getBlockCount());
+    Assert.assertEquals(2, cache.getMappedBlockCount());
+    ByteBuffer buffer = first.getBuffer();
+    byte[] bytes = new byte[BLOCK_SIZE];
+    buffer.get(bytes);
+    Assert.assertArrayEquals(Arrays.copyOf(content, BLOCK_SIZE), bytes);
+
+    cache.release(first);
+    Assert.assertEquals(1, cache.getMappedBlockCount());
+    // a cached block stays mapped after release
+    cache.release(second);
+    Assert.assertEquals(1, cache.getMappedBlockCount());
+    cache.clear();
+    Assert.assertEquals(0, cache.getMappedBlockCount());
+  }
+
+  @Test
+  public void testOverwriteWithSameLength() throws IOException {
+    byte[] content = content(250, 0);
+    client.files.put(PATH, content);
+    Assert.assertArrayEquals(content, readAt(1, 0, 250));
+
+    // a newer version of the file is not served from the blocks of the old one
+    byte[] newContent = content(250, 7);
+    client.files.put(PATH, newContent);
+    Assert.assertArrayEquals(newContent, readAt(2, 0, 250));
+    Assert.assertEquals(6, client.downloads.get());
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    byte[] content = content(250, 0);
+    client.files.put(PATH, content);
+    VolumeFSBlockCache cache = VolumeFSBlockCache.getInstance(conf);
+    Assert.assertArrayEquals(content, readAt(0, 0, 250));
+    Assert.assertEquals(3, cache.getMappedBlockCount());
+
+    // what the client does after it writes, renames or deletes a path
+    VolumeFSBlockCache.invalidateAll(client.getCacheId("/volume/dir"));
+    Assert.assertEquals(0, cache.getBlockCount());
+    Assert.assertEquals(0, cache.getUsedBytes());
+    Assert.assertEquals(0, cache.getMappedBlockCount());
+
+    byte[] newContent = content(250, 7);
+    client.files.put(PATH, newContent);
+    Assert.assertArrayEquals(newContent, readAt(0, 0, 250));
+    Assert.assertEquals(6, client.downloads.get());
+  }
+}